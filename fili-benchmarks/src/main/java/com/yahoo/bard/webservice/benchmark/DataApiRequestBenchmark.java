@@ -0,0 +1,54 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.benchmark;
+
+import com.yahoo.bard.webservice.web.apirequest.DataApiRequest;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing and binding a filtered, sorted data request against the Wikipedia configuration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataApiRequestBenchmark {
+
+    @Param({"1000", "100000"})
+    public int dimensionRows;
+
+    private WikiBenchmarkFixture fixture;
+
+    /**
+     * Load the fixture.
+     */
+    @Setup
+    public void setUp() {
+        fixture = new WikiBenchmarkFixture(dimensionRows);
+    }
+
+    /**
+     * Parse and bind a data request.
+     *
+     * @return the bound request
+     */
+    @Benchmark
+    public DataApiRequest parse() {
+        return fixture.buildDataApiRequest();
+    }
+}
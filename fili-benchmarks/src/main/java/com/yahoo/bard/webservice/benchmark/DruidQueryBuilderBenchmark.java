@@ -0,0 +1,73 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.benchmark;
+
+import com.yahoo.bard.webservice.data.metric.TemplateDruidQuery;
+import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
+import com.yahoo.bard.webservice.web.apirequest.DataApiRequest;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures merging the metric templates of a data request and building its Druid query, including physical table
+ * resolution and filter building.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DruidQueryBuilderBenchmark {
+
+    @Param({"1000", "100000"})
+    public int dimensionRows;
+
+    private WikiBenchmarkFixture fixture;
+    private DataApiRequest apiRequest;
+    private TemplateDruidQuery template;
+
+    /**
+     * Load the fixture and bind the request.
+     */
+    @Setup
+    public void setUp() {
+        fixture = new WikiBenchmarkFixture(dimensionRows);
+        apiRequest = fixture.buildDataApiRequest();
+        template = fixture.buildTemplateQuery(apiRequest);
+    }
+
+    /**
+     * Merge the template queries of the request's metrics.
+     *
+     * @return the merged template
+     */
+    @Benchmark
+    public TemplateDruidQuery mergeTemplates() {
+        return fixture.buildTemplateQuery(apiRequest);
+    }
+
+    /**
+     * Build the Druid query from an already merged template.
+     *
+     * @return the Druid query
+     *
+     * @throws Exception if the query cannot be built
+     */
+    @Benchmark
+    public DruidAggregationQuery<?> buildQuery() throws Exception {
+        return fixture.getDruidQueryBuilder().buildQuery(apiRequest, template);
+    }
+}
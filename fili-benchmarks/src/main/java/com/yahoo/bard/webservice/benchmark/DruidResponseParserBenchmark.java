@@ -0,0 +1,93 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.benchmark;
+
+import com.yahoo.bard.webservice.data.ResultSet;
+import com.yahoo.bard.webservice.data.ResultSetSchema;
+import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
+import com.yahoo.bard.webservice.web.apirequest.DataApiRequest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import org.joda.time.DateTimeZone;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures turning a Druid groupBy response into a ResultSet, both from an already read JSON tree and from the raw
+ * bytes of the response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DruidResponseParserBenchmark {
+
+    @Param({"1000", "100000"})
+    public int dimensionRows;
+
+    @Param({"100", "10000"})
+    public int resultRows;
+
+    private WikiBenchmarkFixture fixture;
+    private DruidAggregationQuery<?> druidQuery;
+    private ResultSetSchema schema;
+    private JsonNode response;
+    private byte[] responseBytes;
+
+    /**
+     * Load the fixture and build the response.
+     *
+     * @throws IOException if the response cannot be serialized
+     */
+    @Setup
+    public void setUp() throws IOException {
+        fixture = new WikiBenchmarkFixture(dimensionRows);
+        DataApiRequest apiRequest = fixture.buildDataApiRequest();
+        druidQuery = fixture.buildDruidQuery(apiRequest);
+        schema = fixture.buildSchema(apiRequest, druidQuery);
+        response = fixture.buildGroupByResponse(resultRows);
+        responseBytes = fixture.getObjectMappers().getMapper().writeValueAsBytes(response);
+    }
+
+    /**
+     * Parse a JSON tree into a result set.
+     *
+     * @return the result set
+     */
+    @Benchmark
+    public ResultSet parse() {
+        return fixture.getDruidResponseParser().parse(response, schema, druidQuery.getQueryType(), DateTimeZone.UTC);
+    }
+
+    /**
+     * Read the response bytes and parse them into a result set.
+     *
+     * @return the result set
+     *
+     * @throws IOException if the response cannot be read
+     */
+    @Benchmark
+    public ResultSet readAndParse() throws IOException {
+        return fixture.getDruidResponseParser().parse(
+                fixture.getObjectMappers().getMapper().readTree(responseBytes),
+                schema,
+                druidQuery.getQueryType(),
+                DateTimeZone.UTC
+        );
+    }
+}
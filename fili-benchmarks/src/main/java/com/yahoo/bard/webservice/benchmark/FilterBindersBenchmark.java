@@ -0,0 +1,78 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.benchmark;
+
+import com.yahoo.bard.webservice.data.dimension.DimensionRow;
+import com.yahoo.bard.webservice.table.LogicalTable;
+import com.yahoo.bard.webservice.web.ApiFilter;
+import com.yahoo.bard.webservice.web.apirequest.DataApiRequest;
+import com.yahoo.bard.webservice.web.apirequest.binders.FilterBinders;
+import com.yahoo.bard.webservice.web.filters.ApiFilters;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures binding filter query strings to ApiFilters, and resolving the dimension rows the filters select.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FilterBindersBenchmark {
+
+    @Param({"1000", "100000"})
+    public int dimensionRows;
+
+    private WikiBenchmarkFixture fixture;
+    private LogicalTable table;
+    private String filterQuery;
+    private ApiFilter filter;
+
+    /**
+     * Load the fixture and build the filter query.
+     */
+    @Setup
+    public void setUp() {
+        fixture = new WikiBenchmarkFixture(dimensionRows);
+        DataApiRequest apiRequest = fixture.buildDataApiRequest();
+        table = apiRequest.getTable();
+        filterQuery = fixture.buildFilterQuery();
+        filter = apiRequest.getApiFilters().values().iterator().next().iterator().next();
+    }
+
+    /**
+     * Bind a filter query string with one filter per dimension.
+     *
+     * @return the bound filters
+     */
+    @Benchmark
+    public ApiFilters generateFilters() {
+        return FilterBinders.getInstance().generateFilters(filterQuery, table, fixture.getDimensionDictionary());
+    }
+
+    /**
+     * Resolve the rows selected by a bound filter through the dimension's search provider.
+     *
+     * @return the matching dimension rows
+     */
+    @Benchmark
+    public TreeSet<DimensionRow> findFilteredDimensionRows() {
+        return filter.getDimension().getSearchProvider().findFilteredDimensionRows(Collections.singleton(filter));
+    }
+}
@@ -0,0 +1,145 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.benchmark;
+
+import com.yahoo.bard.webservice.data.dimension.DimensionDictionary;
+import com.yahoo.bard.webservice.data.dimension.DimensionField;
+import com.yahoo.bard.webservice.data.dimension.DimensionRow;
+import com.yahoo.bard.webservice.data.dimension.MapStore;
+import com.yahoo.bard.webservice.data.dimension.impl.KeyValueStoreDimension;
+import com.yahoo.bard.webservice.data.dimension.impl.LuceneSearchProvider;
+import com.yahoo.bard.webservice.util.Pagination;
+import com.yahoo.bard.webservice.util.Utils;
+import com.yahoo.bard.webservice.web.ApiFilter;
+import com.yahoo.bard.webservice.web.BadFilterException;
+import com.yahoo.bard.webservice.web.apirequest.binders.FilterBinders;
+import com.yahoo.bard.webservice.web.util.PaginationParameters;
+import com.yahoo.wiki.webservice.data.config.dimension.WikiDimensionField;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Measures filtered searches of a Lucene indexed dimension shaped like the Wikipedia example's dimensions, for each
+ * of the filter operations the data and dimension endpoints accept.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LuceneSearchProviderBenchmark {
+
+    private static final String DIMENSION = "page";
+
+    @Param({"1000", "100000"})
+    public int dimensionRows;
+
+    @Param({"in", "startswith", "contains", "notin"})
+    public String operation;
+
+    private Path indexPath;
+    private LuceneSearchProvider searchProvider;
+    private Set<ApiFilter> filters;
+    private final PaginationParameters firstPage = new PaginationParameters(100, 1);
+
+    /**
+     * Index the dimension rows and bind the filter.
+     *
+     * @throws IOException if the index directory cannot be created
+     * @throws BadFilterException if the filter cannot be bound
+     */
+    @Setup
+    public void setUp() throws IOException, BadFilterException {
+        indexPath = Files.createTempDirectory("fili-benchmark-lucene");
+        searchProvider = new LuceneSearchProvider(indexPath.toString(), Integer.MAX_VALUE);
+
+        LinkedHashSet<DimensionField> fields = Utils.asLinkedHashSet(WikiDimensionField.ID, WikiDimensionField.DESC);
+        KeyValueStoreDimension dimension = new KeyValueStoreDimension(
+                DIMENSION,
+                "Synthetic page dimension",
+                fields,
+                new MapStore(),
+                searchProvider
+        );
+        dimension.addAllDimensionRows(IntStream.range(0, dimensionRows)
+                .mapToObj(i -> {
+                    Map<DimensionField, String> row = new LinkedHashMap<>();
+                    row.put(WikiDimensionField.ID, DIMENSION + "-" + i);
+                    row.put(WikiDimensionField.DESC, "Page number " + i);
+                    return new DimensionRow(WikiDimensionField.ID, row);
+                })
+                .collect(Collectors.toSet()));
+
+        String values;
+        switch (operation) {
+            case "startswith":
+                values = DIMENSION + "-1";
+                break;
+            case "contains":
+                values = "7";
+                break;
+            default:
+                values = IntStream.range(0, 10)
+                        .mapToObj(i -> DIMENSION + "-" + i * Math.max(1, dimensionRows / 10))
+                        .collect(Collectors.joining(","));
+        }
+        ApiFilter filter = FilterBinders.getInstance().generateApiFilter(
+                DIMENSION + "|id-" + operation + "[" + values + "]",
+                new DimensionDictionary(Collections.singleton(dimension))
+        );
+        filters = Collections.singleton(filter);
+    }
+
+    /**
+     * Remove the index.
+     */
+    @TearDown
+    public void tearDown() {
+        searchProvider.clearDimension();
+        Utils.deleteFiles(indexPath.toString());
+    }
+
+    /**
+     * Find the first page of rows matching the filter.
+     *
+     * @return the first page of matching rows
+     */
+    @Benchmark
+    public Pagination<DimensionRow> firstPage() {
+        return searchProvider.findFilteredDimensionRowsPaged(filters, firstPage);
+    }
+
+    /**
+     * Find all the rows matching the filter.
+     *
+     * @return the matching rows
+     */
+    @Benchmark
+    public Set<DimensionRow> allRows() {
+        return searchProvider.findFilteredDimensionRows(filters);
+    }
+}
@@ -0,0 +1,121 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.benchmark;
+
+import com.yahoo.bard.webservice.util.SimplifiedIntervalList;
+import com.yahoo.bard.webservice.web.CsvResponseWriter;
+import com.yahoo.bard.webservice.web.JsonResponseWriter;
+import com.yahoo.bard.webservice.web.ResponseData;
+import com.yahoo.bard.webservice.web.apirequest.DataApiRequest;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures serializing a result set to the client in the JSON and CSV formats. Output is discarded into a blackhole
+ * so that only serialization is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseWriterBenchmark {
+
+    @Param({"1000", "100000"})
+    public int dimensionRows;
+
+    @Param({"100", "10000"})
+    public int resultRows;
+
+    private DataApiRequest apiRequest;
+    private ResponseData responseData;
+    private JsonResponseWriter jsonResponseWriter;
+    private CsvResponseWriter csvResponseWriter;
+
+    /**
+     * Build the result set and the writers.
+     */
+    @Setup
+    public void setUp() {
+        WikiBenchmarkFixture fixture = new WikiBenchmarkFixture(dimensionRows);
+        apiRequest = fixture.buildDataApiRequest();
+        responseData = new ResponseData(
+                fixture.buildResultSet(apiRequest, resultRows),
+                apiRequest,
+                new SimplifiedIntervalList(),
+                new SimplifiedIntervalList(),
+                null,
+                Collections.emptyMap()
+        );
+        jsonResponseWriter = new JsonResponseWriter(fixture.getObjectMappers());
+        csvResponseWriter = new CsvResponseWriter(fixture.getObjectMappers());
+    }
+
+    /**
+     * Write the response as JSON.
+     *
+     * @param blackhole  Sink for the written bytes
+     *
+     * @throws IOException if the response cannot be written
+     */
+    @Benchmark
+    public void writeJson(Blackhole blackhole) throws IOException {
+        jsonResponseWriter.write(apiRequest, responseData, new BlackholeOutputStream(blackhole));
+    }
+
+    /**
+     * Write the response as CSV.
+     *
+     * @param blackhole  Sink for the written bytes
+     *
+     * @throws IOException if the response cannot be written
+     */
+    @Benchmark
+    public void writeCsv(Blackhole blackhole) throws IOException {
+        csvResponseWriter.write(apiRequest, responseData, new BlackholeOutputStream(blackhole));
+    }
+
+    /**
+     * An output stream handing everything written to it to a blackhole.
+     */
+    private static class BlackholeOutputStream extends OutputStream {
+
+        private final Blackhole blackhole;
+
+        /**
+         * Constructor.
+         *
+         * @param blackhole  The blackhole to consume the written bytes
+         */
+        BlackholeOutputStream(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void write(int b) {
+            blackhole.consume(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            blackhole.consume(b);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.benchmark;
+
+import com.yahoo.bard.webservice.data.ResultSet;
+import com.yahoo.bard.webservice.data.metric.mappers.DateTimeSortMapper;
+import com.yahoo.bard.webservice.data.metric.mappers.PartialDataResultSetMapper;
+import com.yahoo.bard.webservice.data.metric.mappers.ResultSetMapper;
+import com.yahoo.bard.webservice.data.metric.mappers.RowNumMapper;
+import com.yahoo.bard.webservice.data.metric.mappers.TopNResultSetMapper;
+import com.yahoo.bard.webservice.druid.model.orderby.SortDirection;
+import com.yahoo.bard.webservice.util.SimplifiedIntervalList;
+
+import org.joda.time.DateTime;
+import org.joda.time.Interval;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a chain of the stock ResultSetMappers, as run by the response processors after parsing: partial data
+ * removal, time sorting, top N truncation and row numbering.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResultSetMapperBenchmark {
+
+    @Param({"100", "10000"})
+    public int resultRows;
+
+    private ResultSet resultSet;
+    private List<ResultSetMapper> mappers;
+
+    /**
+     * Build the result set and the mapper chain.
+     */
+    @Setup
+    public void setUp() {
+        WikiBenchmarkFixture fixture = new WikiBenchmarkFixture(1000);
+        resultSet = fixture.buildResultSet(fixture.buildDataApiRequest(), resultRows);
+
+        // The last two hours of the day are missing, but the final hour is still volatile
+        DateTime end = WikiBenchmarkFixture.START.plusDays(1);
+        SimplifiedIntervalList missing = new SimplifiedIntervalList(
+                Collections.singleton(new Interval(end.minusHours(2), end))
+        );
+        SimplifiedIntervalList volatileIntervals = new SimplifiedIntervalList(
+                Collections.singleton(new Interval(end.minusHours(1), end))
+        );
+        mappers = Arrays.asList(
+                new PartialDataResultSetMapper(missing, () -> volatileIntervals),
+                new DateTimeSortMapper(SortDirection.DESC),
+                new TopNResultSetMapper(resultRows / 10),
+                new RowNumMapper()
+        );
+    }
+
+    /**
+     * Run the result set through the mapper chain.
+     *
+     * @return the mapped result set
+     */
+    @Benchmark
+    public ResultSet mapChain() {
+        ResultSet mapped = resultSet;
+        for (ResultSetMapper mapper : mappers) {
+            mapped = mapper.map(mapped);
+        }
+        return mapped;
+    }
+}
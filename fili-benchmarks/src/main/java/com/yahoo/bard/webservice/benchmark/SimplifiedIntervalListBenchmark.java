@@ -0,0 +1,103 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.benchmark;
+
+import com.yahoo.bard.webservice.util.SimplifiedIntervalList;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.Interval;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the set operations on SimplifiedIntervalList that availability and partial data checks rely on, using
+ * fragmented lists of hourly segments like those of a table with gaps in its data.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimplifiedIntervalListBenchmark {
+
+    @Param({"100", "10000"})
+    public int intervals;
+
+    private List<Interval> unsimplified;
+    private SimplifiedIntervalList left;
+    private SimplifiedIntervalList right;
+
+    /**
+     * Build two fragmented lists over the same span of time.
+     */
+    @Setup
+    public void setUp() {
+        Random random = new Random(intervals);
+        DateTime start = new DateTime(2015, 1, 1, 0, 0, DateTimeZone.UTC);
+        unsimplified = new ArrayList<>();
+        List<Interval> rightIntervals = new ArrayList<>();
+        for (int i = 0; i < intervals; i++) {
+            DateTime hour = start.plusHours(i * 2);
+            unsimplified.add(new Interval(hour, hour.plusHours(1 + random.nextInt(2))));
+            rightIntervals.add(new Interval(hour.plusMinutes(30), hour.plusMinutes(90 + random.nextInt(60))));
+        }
+        left = new SimplifiedIntervalList(unsimplified);
+        right = new SimplifiedIntervalList(rightIntervals);
+    }
+
+    /**
+     * Simplify an unordered collection of overlapping intervals.
+     *
+     * @return the simplified list
+     */
+    @Benchmark
+    public SimplifiedIntervalList simplify() {
+        return new SimplifiedIntervalList(unsimplified);
+    }
+
+    /**
+     * Union two simplified lists.
+     *
+     * @return the union
+     */
+    @Benchmark
+    public SimplifiedIntervalList union() {
+        return left.union(right);
+    }
+
+    /**
+     * Intersect two simplified lists.
+     *
+     * @return the intersection
+     */
+    @Benchmark
+    public SimplifiedIntervalList intersect() {
+        return left.intersect(right);
+    }
+
+    /**
+     * Subtract one simplified list from another.
+     *
+     * @return the difference
+     */
+    @Benchmark
+    public SimplifiedIntervalList subtract() {
+        return left.subtract(right);
+    }
+}
@@ -0,0 +1,421 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.benchmark;
+
+import com.yahoo.bard.webservice.application.ObjectMappersSuite;
+import com.yahoo.bard.webservice.data.DruidQueryBuilder;
+import com.yahoo.bard.webservice.data.DruidResponseParser;
+import com.yahoo.bard.webservice.data.PartialDataHandler;
+import com.yahoo.bard.webservice.data.ResultSet;
+import com.yahoo.bard.webservice.data.ResultSetSchema;
+import com.yahoo.bard.webservice.data.config.ConfigurationLoader;
+import com.yahoo.bard.webservice.data.config.DefaultConfigurationLoader;
+import com.yahoo.bard.webservice.data.config.ResourceDictionaries;
+import com.yahoo.bard.webservice.data.config.dimension.TypeAwareDimensionLoader;
+import com.yahoo.bard.webservice.data.config.names.DataSourceName;
+import com.yahoo.bard.webservice.data.dimension.Dimension;
+import com.yahoo.bard.webservice.data.dimension.DimensionField;
+import com.yahoo.bard.webservice.data.dimension.DimensionRow;
+import com.yahoo.bard.webservice.data.dimension.FilterBuilderException;
+import com.yahoo.bard.webservice.data.metric.TemplateDruidQuery;
+import com.yahoo.bard.webservice.data.metric.TemplateDruidQueryMerger;
+import com.yahoo.bard.webservice.data.time.GranularityParser;
+import com.yahoo.bard.webservice.data.time.StandardGranularityParser;
+import com.yahoo.bard.webservice.data.volatility.DefaultingVolatileIntervalsService;
+import com.yahoo.bard.webservice.druid.model.builders.DefaultDruidHavingBuilder;
+import com.yahoo.bard.webservice.druid.model.builders.DruidFilterBuilder;
+import com.yahoo.bard.webservice.druid.model.builders.DruidInFilterBuilder;
+import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
+import com.yahoo.bard.webservice.metadata.DataSourceMetadataService;
+import com.yahoo.bard.webservice.table.resolver.DefaultPhysicalTableResolver;
+import com.yahoo.bard.webservice.table.resolver.NoMatchFoundException;
+import com.yahoo.bard.webservice.util.SimplifiedIntervalList;
+import com.yahoo.bard.webservice.web.apirequest.DataApiRequest;
+import com.yahoo.bard.webservice.web.apirequest.DataApiRequestImpl;
+import com.yahoo.bard.webservice.web.apirequest.binders.DefaultHavingApiGenerator;
+import com.yahoo.bard.webservice.web.apirequest.binders.HavingGenerator;
+import com.yahoo.bard.webservice.web.apirequest.binders.PerRequestDictionaryHavingGenerator;
+import com.yahoo.bard.webservice.web.util.BardConfigResources;
+import com.yahoo.wiki.webservice.data.config.dimension.WikiDimensionField;
+import com.yahoo.wiki.webservice.data.config.dimension.WikiDimensions;
+import com.yahoo.wiki.webservice.data.config.metric.WikiMetricLoader;
+import com.yahoo.wiki.webservice.data.config.names.WikiApiDimensionConfigInfo;
+import com.yahoo.wiki.webservice.data.config.names.WikiDruidMetricName;
+import com.yahoo.wiki.webservice.data.config.names.WikiLogicalTableName;
+import com.yahoo.wiki.webservice.data.config.table.WikiTableLoader;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.Interval;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.PathSegment;
+
+/**
+ * The Fili configuration of the Wikipedia example, loaded with synthetic dimension rows and data availability so that
+ * benchmarks can drive the request path without a Druid cluster.
+ * <p>
+ * The fixture is deterministic for a given size, so results of different versions can be compared.
+ */
+public class WikiBenchmarkFixture implements BardConfigResources {
+
+    public static final String TABLE = WikiLogicalTableName.WIKIPEDIA.asName();
+    public static final String GRANULARITY = "hour";
+    public static final String METRICS = "count,added,delta,deleted";
+    public static final List<String> DIMENSIONS = Collections.unmodifiableList(Arrays.asList(
+            WikiApiDimensionConfigInfo.PAGE.asName(),
+            WikiApiDimensionConfigInfo.COUNTRY_ISO_CODE.asName(),
+            WikiApiDimensionConfigInfo.IS_ROBOT.asName()
+    ));
+    public static final DateTime START = new DateTime(2015, 9, 12, 0, 0, DateTimeZone.UTC);
+    public static final String INTERVALS = "2015-09-12/2015-09-13";
+
+    private static final int FILTER_VALUES = 10;
+    private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+
+    private final int dimensionRows;
+    private final ConfigurationLoader loader;
+    private final GranularityParser granularityParser = new StandardGranularityParser();
+    private final DruidFilterBuilder filterBuilder = new DruidInFilterBuilder();
+    private final HavingGenerator havingGenerator;
+    private final DruidQueryBuilder druidQueryBuilder;
+    private final DruidResponseParser druidResponseParser = new DruidResponseParser();
+    private final TemplateDruidQueryMerger templateDruidQueryMerger = new TemplateDruidQueryMerger();
+    private final ObjectMappersSuite objectMappers = new ObjectMappersSuite();
+
+    /**
+     * Constructor.
+     *
+     * @param dimensionRows  The number of rows to load into each dimension
+     */
+    public WikiBenchmarkFixture(int dimensionRows) {
+        this.dimensionRows = dimensionRows;
+
+        loader = new DefaultConfigurationLoader(
+                new TypeAwareDimensionLoader(new WikiDimensions().getAllDimensionConfigurations()),
+                new WikiMetricLoader(),
+                new WikiTableLoader(new FullyAvailableMetadataService())
+        );
+        loader.load();
+        havingGenerator = new PerRequestDictionaryHavingGenerator(
+                new DefaultHavingApiGenerator(loader.getMetricDictionary())
+        );
+        druidQueryBuilder = new DruidQueryBuilder(
+                loader.getLogicalTableDictionary(),
+                new DefaultPhysicalTableResolver(new PartialDataHandler(), new DefaultingVolatileIntervalsService()),
+                filterBuilder,
+                new DefaultDruidHavingBuilder()
+        );
+
+        for (Dimension dimension : loader.getDimensionDictionary().findAll()) {
+            dimension.addAllDimensionRows(IntStream.range(0, dimensionRows)
+                    .mapToObj(i -> buildDimensionRow(dimension, i))
+                    .collect(Collectors.toSet()));
+        }
+    }
+
+    @Override
+    public ResourceDictionaries getResourceDictionaries() {
+        return loader.getDictionaries();
+    }
+
+    @Override
+    public GranularityParser getGranularityParser() {
+        return granularityParser;
+    }
+
+    @Override
+    public DruidFilterBuilder getFilterBuilder() {
+        return filterBuilder;
+    }
+
+    @Override
+    public HavingGenerator getHavingApiGenerator() {
+        return havingGenerator;
+    }
+
+    @Override
+    public DateTimeZone getSystemTimeZone() {
+        return DateTimeZone.UTC;
+    }
+
+    /**
+     * Get the number of rows loaded into each dimension.
+     *
+     * @return the number of rows per dimension
+     */
+    public int getDimensionRows() {
+        return dimensionRows;
+    }
+
+    /**
+     * Get the query builder configured for the fixture.
+     *
+     * @return the Druid query builder
+     */
+    public DruidQueryBuilder getDruidQueryBuilder() {
+        return druidQueryBuilder;
+    }
+
+    /**
+     * Get the response parser.
+     *
+     * @return the Druid response parser
+     */
+    public DruidResponseParser getDruidResponseParser() {
+        return druidResponseParser;
+    }
+
+    /**
+     * Get the JSON tools.
+     *
+     * @return the object mappers
+     */
+    public ObjectMappersSuite getObjectMappers() {
+        return objectMappers;
+    }
+
+    /**
+     * Get the fixture's requested dimensions, in request order.
+     *
+     * @return the requested dimensions
+     */
+    public Set<Dimension> getRequestedDimensions() {
+        return DIMENSIONS.stream()
+                .map(loader.getDimensionDictionary()::findByApiName)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    /**
+     * Build the value of a dimension's key field for a row of the fixture.
+     *
+     * @param dimension  The dimension the row belongs to
+     * @param index  The number of the row
+     *
+     * @return the key value of the row
+     */
+    public static String keyValue(Dimension dimension, int index) {
+        return dimension.getApiName() + "-" + index;
+    }
+
+    /**
+     * Build an API filter string with an {@code in} filter on each requested dimension.
+     *
+     * @return the filter query string
+     */
+    public String buildFilterQuery() {
+        return DIMENSIONS.stream()
+                .map(name -> {
+                    Dimension dimension = loader.getDimensionDictionary().findByApiName(name);
+                    String values = IntStream.range(0, Math.min(FILTER_VALUES, dimensionRows))
+                            .map(i -> i * Math.max(1, dimensionRows / FILTER_VALUES))
+                            .mapToObj(i -> keyValue(dimension, i))
+                            .collect(Collectors.joining(","));
+                    return name + "|id-in[" + values + "]";
+                })
+                .collect(Collectors.joining(","));
+    }
+
+    /**
+     * Parse a data request for the fixture's table, grouped by the fixture's dimensions and filtered on them.
+     *
+     * @return the bound data request
+     */
+    public DataApiRequest buildDataApiRequest() {
+        return new DataApiRequestImpl(
+                TABLE,
+                GRANULARITY,
+                DIMENSIONS.stream().map(SimplePathSegment::new).collect(Collectors.toList()),
+                METRICS,
+                INTERVALS,
+                buildFilterQuery(),
+                null,
+                "added|desc",
+                null,
+                null,
+                null,
+                null,
+                null,
+                "",
+                "",
+                this
+        );
+    }
+
+    /**
+     * Merge the template queries of a request's metrics.
+     *
+     * @param apiRequest  The request to merge the template for
+     *
+     * @return the template query of the request
+     */
+    public TemplateDruidQuery buildTemplateQuery(DataApiRequest apiRequest) {
+        return templateDruidQueryMerger.merge(apiRequest);
+    }
+
+    /**
+     * Build the Druid query for a request.
+     *
+     * @param apiRequest  The request to build the query for
+     *
+     * @return the Druid query
+     */
+    public DruidAggregationQuery<?> buildDruidQuery(DataApiRequest apiRequest) {
+        try {
+            return druidQueryBuilder.buildQuery(apiRequest, buildTemplateQuery(apiRequest));
+        } catch (FilterBuilderException | NoMatchFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Build the result set schema of a Druid query.
+     *
+     * @param apiRequest  The request the query was built for
+     * @param druidQuery  The query
+     *
+     * @return the schema of the query's results
+     */
+    public ResultSetSchema buildSchema(DataApiRequest apiRequest, DruidAggregationQuery<?> druidQuery) {
+        return new ResultSetSchema(
+                apiRequest.getGranularity(),
+                druidResponseParser.buildSchemaColumns(druidQuery).collect(Collectors.toCollection(LinkedHashSet::new))
+        );
+    }
+
+    /**
+     * Build a synthetic Druid groupBy response for a request, spreading the rows over the hours of the request.
+     *
+     * @param rows  The number of rows in the response
+     *
+     * @return the response, as Druid would send it
+     */
+    public JsonNode buildGroupByResponse(int rows) {
+        Random random = new Random(rows);
+        List<Dimension> dimensions = DIMENSIONS.stream()
+                .map(loader.getDimensionDictionary()::findByApiName)
+                .collect(Collectors.toList());
+
+        ArrayNode response = NODES.arrayNode();
+        for (int i = 0; i < rows; i++) {
+            ObjectNode event = NODES.objectNode();
+            for (Dimension dimension : dimensions) {
+                event.put(dimension.getApiName(), keyValue(dimension, random.nextInt(dimensionRows)));
+            }
+            for (WikiDruidMetricName metric : WikiDruidMetricName.values()) {
+                event.put(metric.asName(), random.nextInt(10_000));
+            }
+            ObjectNode row = NODES.objectNode();
+            row.put("version", "v1");
+            row.put("timestamp", START.plusHours(i % 24).toString());
+            row.set("event", event);
+            response.add(row);
+        }
+        return response;
+    }
+
+    /**
+     * Build the result set a request would get for a synthetic Druid response.
+     *
+     * @param apiRequest  The request
+     * @param rows  The number of rows in the result set
+     *
+     * @return the result set
+     */
+    public ResultSet buildResultSet(DataApiRequest apiRequest, int rows) {
+        DruidAggregationQuery<?> druidQuery = buildDruidQuery(apiRequest);
+        return druidResponseParser.parse(
+                buildGroupByResponse(rows),
+                buildSchema(apiRequest, druidQuery),
+                druidQuery.getQueryType(),
+                DateTimeZone.UTC
+        );
+    }
+
+    /**
+     * Build a synthetic row of a dimension.
+     *
+     * @param dimension  The dimension to build the row for
+     * @param index  The number of the row
+     *
+     * @return the dimension row
+     */
+    private static DimensionRow buildDimensionRow(Dimension dimension, int index) {
+        Map<DimensionField, String> fields = new LinkedHashMap<>();
+        fields.put(WikiDimensionField.ID, keyValue(dimension, index));
+        fields.put(WikiDimensionField.DESC, "Description of " + dimension.getApiName() + " value " + index);
+        return new DimensionRow(dimension.getKey(), fields);
+    }
+
+    /**
+     * A metadata service reporting every column of the Wikipedia example as available for the fixture's day.
+     */
+    private static class FullyAvailableMetadataService extends DataSourceMetadataService {
+
+        private final Map<String, SimplifiedIntervalList> availability = new HashMap<>();
+
+        /**
+         * Constructor.
+         */
+        FullyAvailableMetadataService() {
+            SimplifiedIntervalList available = new SimplifiedIntervalList(
+                    Collections.singleton(new Interval(START.minusYears(1), START.plusYears(1)))
+            );
+            Stream.concat(
+                    Arrays.stream(WikiApiDimensionConfigInfo.values()).map(WikiApiDimensionConfigInfo::asName),
+                    Arrays.stream(WikiDruidMetricName.values()).map(WikiDruidMetricName::asName)
+            ).forEach(column -> availability.put(column, available));
+        }
+
+        @Override
+        public Map<String, SimplifiedIntervalList> getAvailableIntervalsByDataSource(DataSourceName dataSourceName) {
+            return availability;
+        }
+    }
+
+    /**
+     * A path segment without matrix parameters, as Jersey passes the dimensions of a data request.
+     */
+    private static class SimplePathSegment implements PathSegment {
+
+        private final String path;
+
+        /**
+         * Constructor.
+         *
+         * @param path  The text of the segment
+         */
+        SimplePathSegment(String path) {
+            this.path = path;
+        }
+
+        @Override
+        public String getPath() {
+            return path;
+        }
+
+        @Override
+        public MultivaluedMap<String, String> getMatrixParameters() {
+            return new MultivaluedHashMap<>();
+        }
+    }
+}
@@ -151,6 +151,7 @@ import org.slf4j.LoggerFactory;
 import rx.subjects.PublishSubject;
 
 import java.io.IOException;
+import java.io.Serializable;
 import java.lang.management.ManagementFactory;
 import java.time.Clock;
 import java.time.ZoneId;
@@ -978,7 +979,7 @@ public abstract class AbstractBinderFactory implements BinderFactory {
             );
         }
         try {
-            MemTupleDataCache<Long, String> cache = new MemTupleDataCache<>();
+            MemTupleDataCache<Long, Serializable> cache = new MemTupleDataCache<>();
             LOG.info("MemcachedClient Version 2 started {}", cache);
             return cache;
         } catch (IOException e) {
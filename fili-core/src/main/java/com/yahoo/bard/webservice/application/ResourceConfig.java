@@ -6,6 +6,7 @@ import com.yahoo.bard.webservice.config.SystemConfig;
 import com.yahoo.bard.webservice.config.SystemConfigProvider;
 import com.yahoo.bard.webservice.web.filters.BardLoggingFilter;
 import com.yahoo.bard.webservice.web.filters.HealthCheckFilter;
+import com.yahoo.bard.webservice.web.filters.MetadataResponseCacheFilter;
 import com.yahoo.bard.webservice.web.filters.QueryParameterNormalizationFilter;
 import com.yahoo.bard.webservice.web.filters.RateLimitFilter;
 import com.yahoo.bard.webservice.web.filters.ResponseCorsFilter;
@@ -73,6 +74,11 @@ public class ResourceConfig extends org.glassfish.jersey.server.ResourceConfig {
 
         // Register HealthCheckFilter
         register(HealthCheckFilter.class, 5);
+
+        // Register metadata response cache filter
+        if (MetadataResponseCacheFilter.CACHE_SIZE > 0) {
+            register(MetadataResponseCacheFilter.class, 6);
+        }
     }
 
     /**
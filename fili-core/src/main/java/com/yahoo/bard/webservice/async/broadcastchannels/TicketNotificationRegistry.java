@@ -0,0 +1,152 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.async.broadcastchannels;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import rx.Observable;
+import rx.Subscription;
+import rx.subjects.AsyncSubject;
+
+import java.io.Closeable;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fans the tickets published on a BroadcastChannel out to the requests waiting on those tickets.
+ * <p>
+ * The registry holds a single subscription to the channel, and keeps the waiters for each ticket in a map keyed by
+ * ticket. When a ticket is published, only the waiters for that ticket are looked up and woken, so the cost of a
+ * notification does not grow with the number of requests waiting on other tickets.
+ * <p>
+ * A waiter is registered before the caller checks whether the results it is waiting for are already available, so
+ * that a notification published in between is not missed. Every registration must be cancelled once the caller is no
+ * longer interested in it, whether or not a notification arrived.
+ */
+public class TicketNotificationRegistry implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TicketNotificationRegistry.class);
+
+    private final Map<String, Set<Registration>> waiters = new ConcurrentHashMap<>();
+    private final Subscription subscription;
+
+    /**
+     * Constructor.
+     *
+     * @param broadcastChannel  The channel on which the tickets of stored PreResponses are published
+     */
+    public TicketNotificationRegistry(BroadcastChannel<String> broadcastChannel) {
+        this.subscription = broadcastChannel.getNotifications().subscribe(
+                this::notifyWaiters,
+                error -> LOG.error("Ticket notifications from the BroadcastChannel failed", error)
+        );
+    }
+
+    /**
+     * Register interest in the notification for a ticket.
+     *
+     * @param ticket  The ticket to wait for
+     *
+     * @return the registration, whose notification emits the ticket once it is published
+     */
+    public Registration register(String ticket) {
+        Registration registration = new Registration(ticket);
+        waiters.compute(ticket, (key, registrations) -> {
+            Set<Registration> ticketWaiters = registrations == null ? ConcurrentHashMap.newKeySet() : registrations;
+            ticketWaiters.add(registration);
+            return ticketWaiters;
+        });
+        return registration;
+    }
+
+    /**
+     * Get the number of tickets that currently have at least one waiter.
+     *
+     * @return the number of tickets being waited on
+     */
+    public int getWaitingTicketCount() {
+        return waiters.size();
+    }
+
+    /**
+     * Wake the waiters for a ticket.
+     *
+     * @param ticket  The ticket that was published
+     */
+    private void notifyWaiters(String ticket) {
+        Set<Registration> registrations = waiters.remove(ticket);
+        if (registrations != null) {
+            registrations.forEach(Registration::notifyWaiter);
+        }
+    }
+
+    /**
+     * Remove a registration that no longer needs to be woken.
+     *
+     * @param registration  The registration to remove
+     */
+    private void deregister(Registration registration) {
+        waiters.computeIfPresent(registration.ticket, (key, registrations) -> {
+            registrations.remove(registration);
+            return registrations.isEmpty() ? null : registrations;
+        });
+    }
+
+    /**
+     * Stop listening to the channel. Requests still waiting are completed without a notification.
+     */
+    @Override
+    public void close() {
+        subscription.unsubscribe();
+        waiters.keySet().forEach(ticket -> {
+            Set<Registration> registrations = waiters.remove(ticket);
+            if (registrations != null) {
+                registrations.forEach(registration -> registration.notification.onCompleted());
+            }
+        });
+    }
+
+    /**
+     * A request's interest in the notification for a single ticket.
+     */
+    public class Registration {
+        private final String ticket;
+        private final AsyncSubject<String> notification = AsyncSubject.create();
+
+        /**
+         * Constructor.
+         *
+         * @param ticket  The ticket being waited for
+         */
+        private Registration(String ticket) {
+            this.ticket = ticket;
+        }
+
+        /**
+         * Get the notification for the ticket. Emits the ticket and completes once the ticket is published, even if
+         * it was published before subscription.
+         *
+         * @return the notification for the ticket
+         */
+        public Observable<String> getNotification() {
+            return notification;
+        }
+
+        /**
+         * Stop waiting for the ticket. Safe to call more than once, and after the notification was received.
+         */
+        public void cancel() {
+            deregister(this);
+        }
+
+        /**
+         * Deliver the notification for the ticket.
+         */
+        private void notifyWaiter() {
+            notification.onNext(ticket);
+            notification.onCompleted();
+        }
+    }
+}
@@ -0,0 +1,391 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.async.jobs.stores;
+
+import com.yahoo.bard.webservice.application.MetricRegistryFactory;
+import com.yahoo.bard.webservice.async.jobs.jobrows.DefaultJobField;
+import com.yahoo.bard.webservice.async.jobs.jobrows.DefaultJobStatus;
+import com.yahoo.bard.webservice.async.jobs.jobrows.JobField;
+import com.yahoo.bard.webservice.async.jobs.jobrows.JobRow;
+import com.yahoo.bard.webservice.web.DefaultFilterOperation;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import rx.Observable;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * A thread safe, in-memory ApiJobStore with secondary indexes on the commonly filtered job fields.
+ * <p>
+ * Each indexed field maps its distinct values, in sorted order, to the ids of the jobs holding them. Filtered queries
+ * use the indexes to narrow the jobs to inspect: {@code eq} and {@code in} filters look up their values directly,
+ * {@code startswith} filters scan the matching range of sorted values, and {@code contains} filters scan the distinct
+ * values rather than the jobs. Every candidate is then checked against all the filters, so filters on fields that are
+ * not indexed, or whose operation cannot use an index, are still honored.
+ * <p>
+ * Jobs that are no longer pending are evicted once they have been complete for longer than the time to live, and the
+ * oldest complete jobs are evicted first when the store grows beyond its maximum size. Pending jobs are never evicted.
+ * The number of jobs held by the live stores, the latency of filtered queries and the eviction rate are reported to the
+ * metric registry.
+ */
+public class IndexedJobStore implements ApiJobStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(IndexedJobStore.class);
+    private static final MetricRegistry REGISTRY = MetricRegistryFactory.getRegistry();
+
+    public static final String SIZE_GAUGE = "jobs.store.gauge.size";
+    public static final Timer QUERY_TIMER = REGISTRY.timer("jobs.store.timer.query");
+    public static final Meter EVICTIONS = REGISTRY.meter("jobs.store.meter.evictions");
+
+    // The stores reporting to the size gauge, held weakly so a discarded store stops being reported once collected
+    private static final Set<IndexedJobStore> STORES = Collections.newSetFromMap(new WeakHashMap<>());
+
+    static {
+        REGISTRY.remove(SIZE_GAUGE);
+        REGISTRY.register(SIZE_GAUGE, (Gauge<Integer>) () -> {
+            synchronized (STORES) {
+                return STORES.stream().mapToInt(IndexedJobStore::size).sum();
+            }
+        });
+    }
+
+    public static final List<JobField> DEFAULT_INDEXED_FIELDS = Collections.unmodifiableList(Arrays.asList(
+            DefaultJobField.USER_ID,
+            DefaultJobField.STATUS,
+            DefaultJobField.DATE_CREATED
+    ));
+
+    private final Map<String, Entry> rows = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Long, Entry> completed = new ConcurrentSkipListMap<>();
+    private final Map<JobField, ConcurrentSkipListMap<String, Set<String>>> indexes = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong nextSweepMillis = new AtomicLong();
+
+    private final long timeToLiveMillis;
+    private final int maximumSize;
+    private final Clock clock;
+
+    /**
+     * Constructor.
+     *
+     * @param indexedFields  The job fields to build secondary indexes on
+     * @param timeToLive  How long a job is kept after it has completed
+     * @param maximumSize  The number of jobs above which the oldest completed jobs are evicted
+     * @param clock  Clock used to age completed jobs
+     */
+    public IndexedJobStore(Collection<JobField> indexedFields, Duration timeToLive, int maximumSize, Clock clock) {
+        this.timeToLiveMillis = timeToLive.toMillis();
+        this.maximumSize = maximumSize;
+        this.clock = clock;
+        indexedFields.forEach(field -> indexes.put(field, new ConcurrentSkipListMap<>()));
+
+        synchronized (STORES) {
+            STORES.add(this);
+        }
+    }
+
+    /**
+     * Constructor, indexing the {@link #DEFAULT_INDEXED_FIELDS}.
+     *
+     * @param timeToLive  How long a job is kept after it has completed
+     * @param maximumSize  The number of jobs above which the oldest completed jobs are evicted
+     * @param clock  Clock used to age completed jobs
+     */
+    public IndexedJobStore(Duration timeToLive, int maximumSize, Clock clock) {
+        this(DEFAULT_INDEXED_FIELDS, timeToLive, maximumSize, clock);
+    }
+
+    @Override
+    public Observable<JobRow> get(String id) {
+        Entry entry = rows.get(id);
+        return entry == null ? Observable.empty() : Observable.just(entry.jobRow);
+    }
+
+    @Override
+    public Observable<JobRow> save(JobRow metadata) {
+        long now = clock.millis();
+        rows.compute(metadata.getId(), (id, previous) -> {
+            if (previous != null) {
+                unindex(previous.jobRow);
+                completed.remove(previous.sequence, previous);
+            }
+            index(metadata);
+            Entry entry = new Entry(
+                    metadata,
+                    previous == null ? sequence.incrementAndGet() : previous.sequence,
+                    isComplete(metadata) ? now : Long.MAX_VALUE
+            );
+            if (entry.completedAtMillis != Long.MAX_VALUE) {
+                completed.put(entry.sequence, entry);
+            }
+            return entry;
+        });
+
+        // Only completed jobs can be evicted, so a store of pending jobs is never scanned
+        if ((rows.size() > maximumSize || now >= nextSweepMillis.get()) && !completed.isEmpty()) {
+            evict();
+        }
+        return Observable.just(metadata);
+    }
+
+    @Override
+    public Observable<JobRow> getAllRows() {
+        return Observable.from(inInsertionOrder(rows.values()));
+    }
+
+    @Override
+    public Observable<JobRow> getFilteredRows(Set<JobRowFilter> jobRowFilters) throws IllegalArgumentException {
+        return Observable.defer(() -> {
+            try (Timer.Context ignored = QUERY_TIMER.time()) {
+                List<JobRow> matches = inInsertionOrder(findCandidates(jobRowFilters)).stream()
+                        .filter(jobRow -> jobRowFilters.stream().allMatch(filter -> filter.isSatisfiedBy(jobRow)))
+                        .collect(Collectors.toList());
+                return Observable.from(matches);
+            } catch (IllegalArgumentException e) {
+                return Observable.error(e);
+            }
+        });
+    }
+
+    /**
+     * Remove the jobs that have been complete for longer than the time to live, then the oldest completed jobs until
+     * the store is back within its maximum size.
+     */
+    public void evict() {
+        long now = clock.millis();
+        nextSweepMillis.set(now + Math.max(1, timeToLiveMillis / 10));
+
+        completed.values().stream()
+                .filter(entry -> now - entry.completedAtMillis > timeToLiveMillis)
+                .collect(Collectors.toList())
+                .forEach(this::remove);
+
+        // Completed jobs are kept in the order they were first saved, so the oldest are evicted first
+        int excess = rows.size() - maximumSize;
+        if (excess > 0) {
+            completed.values().stream()
+                    .limit(excess)
+                    .collect(Collectors.toList())
+                    .forEach(this::remove);
+        }
+    }
+
+    /**
+     * Get the number of jobs in the store.
+     *
+     * @return the number of jobs
+     */
+    public int size() {
+        return rows.size();
+    }
+
+    /**
+     * Find the entries which may satisfy all the filters, using the indexes where possible.
+     *
+     * @param jobRowFilters  The filters being applied
+     *
+     * @return the entries that need to be checked against the filters
+     */
+    private Collection<Entry> findCandidates(Set<JobRowFilter> jobRowFilters) {
+        Set<String> candidateIds = null;
+        for (JobRowFilter filter : jobRowFilters) {
+            Set<String> ids = lookup(filter);
+            if (ids == null) {
+                continue;
+            }
+            if (candidateIds == null) {
+                candidateIds = ids;
+            } else {
+                candidateIds.retainAll(ids);
+            }
+        }
+        if (candidateIds == null) {
+            return rows.values();
+        }
+        return candidateIds.stream().map(rows::get).filter(entry -> entry != null).collect(Collectors.toList());
+    }
+
+    /**
+     * Find the ids of the jobs that may satisfy a filter from the index on its field.
+     *
+     * @param filter  The filter to look up
+     *
+     * @return the ids of the jobs that may satisfy the filter, or null if the filter cannot be answered by an index
+     */
+    private Set<String> lookup(JobRowFilter filter) {
+        ConcurrentSkipListMap<String, Set<String>> index = indexes.get(filter.getJobField());
+        if (index == null || !(filter.getOperation() instanceof DefaultFilterOperation)) {
+            return null;
+        }
+
+        Set<String> ids = new HashSet<>();
+        switch ((DefaultFilterOperation) filter.getOperation()) {
+            case in:
+            case eq:
+                filter.getValues().stream()
+                        .map(index::get)
+                        .filter(bucket -> bucket != null)
+                        .forEach(ids::addAll);
+                return ids;
+            case startswith:
+                for (String prefix : filter.getValues()) {
+                    NavigableMap<String, Set<String>> range = index.tailMap(prefix, true);
+                    for (Map.Entry<String, Set<String>> bucket : range.entrySet()) {
+                        if (!bucket.getKey().startsWith(prefix)) {
+                            break;
+                        }
+                        ids.addAll(bucket.getValue());
+                    }
+                }
+                return ids;
+            case contains:
+                index.forEach((value, bucket) -> {
+                    if (filter.getValues().stream().anyMatch(value::contains)) {
+                        ids.addAll(bucket);
+                    }
+                });
+                return ids;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Add a job to the indexes.
+     * <p>
+     * The id is added within the update of the index, so it never lands in a bucket that another job's removal has
+     * just emptied and dropped. The compute methods of a ConcurrentSkipListMap are not atomic, so the updates of an
+     * index are serialized on the index, while lookups read it without locking.
+     *
+     * @param jobRow  The job to index
+     */
+    private void index(JobRow jobRow) {
+        indexes.forEach((field, index) -> {
+            String value = jobRow.get(field);
+            if (value != null) {
+                synchronized (index) {
+                    index.compute(value, (ignored, ids) -> {
+                        Set<String> bucket = ids == null ? ConcurrentHashMap.newKeySet() : ids;
+                        bucket.add(jobRow.getId());
+                        return bucket;
+                    });
+                }
+            }
+        });
+    }
+
+    /**
+     * Remove a job from the indexes, dropping the buckets it leaves empty.
+     *
+     * @param jobRow  The job to remove
+     */
+    private void unindex(JobRow jobRow) {
+        indexes.forEach((field, index) -> {
+            String value = jobRow.get(field);
+            if (value != null) {
+                synchronized (index) {
+                    index.computeIfPresent(value, (ignored, ids) -> {
+                        ids.remove(jobRow.getId());
+                        return ids.isEmpty() ? null : ids;
+                    });
+                }
+            }
+        });
+    }
+
+    /**
+     * Remove an entry from the store, unless it has been replaced in the meantime.
+     * <p>
+     * The entry is unindexed within the update of its row, as {@link #save(JobRow)} indexes within it, so a concurrent
+     * save of the same job cannot be indexed before the removed entry is unindexed.
+     *
+     * @param entry  The entry to remove
+     */
+    private void remove(Entry entry) {
+        AtomicBoolean removed = new AtomicBoolean();
+        rows.computeIfPresent(entry.jobRow.getId(), (id, current) -> {
+            if (current != entry) {
+                return current;
+            }
+            completed.remove(entry.sequence, entry);
+            unindex(entry.jobRow);
+            removed.set(true);
+            return null;
+        });
+        if (removed.get()) {
+            EVICTIONS.mark();
+            LOG.trace("Evicted job {}", entry.jobRow.getId());
+        }
+    }
+
+    /**
+     * Check whether a job has reached a final status.
+     *
+     * @param jobRow  The job to check
+     *
+     * @return true if the job has a status other than pending
+     */
+    private static boolean isComplete(JobRow jobRow) {
+        String status = jobRow.get(DefaultJobField.STATUS);
+        return status != null && !DefaultJobStatus.PENDING.getName().equals(status);
+    }
+
+    /**
+     * Order entries by the time their jobs were first saved.
+     *
+     * @param entries  The entries to order
+     *
+     * @return the job rows of the entries, oldest first
+     */
+    private static List<JobRow> inInsertionOrder(Collection<Entry> entries) {
+        return entries.stream()
+                .sorted(Comparator.comparingLong(entry -> entry.sequence))
+                .map(entry -> entry.jobRow)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * A stored job, with the bookkeeping needed for ordering and eviction.
+     */
+    private static class Entry {
+        private final JobRow jobRow;
+        private final long sequence;
+        private final long completedAtMillis;
+
+        /**
+         * Constructor.
+         *
+         * @param jobRow  The job
+         * @param sequence  The order in which the job was first saved
+         * @param completedAtMillis  When the job was saved with a final status, or Long.MAX_VALUE if it is pending
+         */
+        Entry(JobRow jobRow, long sequence, long completedAtMillis) {
+            this.jobRow = jobRow;
+            this.sequence = sequence;
+            this.completedAtMillis = completedAtMillis;
+        }
+    }
+}
@@ -9,6 +9,7 @@ import static com.yahoo.bard.webservice.web.ErrorMessageFormat.FILTER_OPERATOR_I
 
 import com.yahoo.bard.webservice.async.jobs.jobrows.DefaultJobField;
 import com.yahoo.bard.webservice.async.jobs.jobrows.JobField;
+import com.yahoo.bard.webservice.async.jobs.jobrows.JobRow;
 import com.yahoo.bard.webservice.util.FilterTokenizer;
 import com.yahoo.bard.webservice.web.BadFilterException;
 import com.yahoo.bard.webservice.web.DefaultFilterOperation;
@@ -133,6 +134,50 @@ public class JobRowFilter {
         return new JobRowFilter(jobField, operation, values);
     }
 
+    /**
+     * This method checks if the given JobRow satisfies this filter and returns true if it does.
+     * If the JobField of the filter is not a part the JobRow, this method throws an IllegalArgumentException.
+     *
+     * @param jobRow  The JobRow which needs to be inspected
+     *
+     * @return true if the JobRow satisfies the filter, false otherwise
+     *
+     * @throws IllegalArgumentException if the JobField of the filter is not a part the JobRow
+     */
+    public boolean isSatisfiedBy(JobRow jobRow) throws IllegalArgumentException {
+        if (!jobRow.containsKey(jobField)) {
+            Set<JobField> actualJobFields = jobRow.keySet();
+            LOG.debug(FILTER_JOBFIELD_UNDEFINED.logFormat(jobField, actualJobFields));
+            throw new IllegalArgumentException(
+                    FILTER_JOBFIELD_UNDEFINED.format(jobField, actualJobFields)
+            );
+        }
+
+        String actualValue = jobRow.get(jobField);
+        if (!(operation instanceof DefaultFilterOperation)) {
+            LOG.debug("Only default filter operations permitted in this class; " +
+                    FILTER_OPERATOR_INVALID.logFormat(operation));
+            throw new IllegalArgumentException("Only default filter operations permitted in this class; " +
+                    FILTER_OPERATOR_INVALID.format(operation));
+        }
+
+        DefaultFilterOperation defaultFilterOperation = (DefaultFilterOperation) operation;
+        switch (defaultFilterOperation) {
+            case notin:
+                return !values.contains(actualValue);
+            case startswith:
+                return values.stream().anyMatch(actualValue::startsWith);
+            case contains :
+                return values.stream().anyMatch(actualValue::contains);
+            case in: // the fall-through is intentional because in is a synonym for eq
+            case eq:
+                return values.contains(actualValue);
+            default:
+                LOG.debug(FILTER_OPERATOR_INVALID.logFormat(defaultFilterOperation));
+                throw new IllegalArgumentException(FILTER_OPERATOR_INVALID.format(defaultFilterOperation));
+        }
+    }
+
     /**
      * Extracts the JobField to be examined from the tokenizedQuery.
      *
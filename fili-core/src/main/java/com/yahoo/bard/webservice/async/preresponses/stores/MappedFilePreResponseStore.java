@@ -0,0 +1,503 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.async.preresponses.stores;
+
+import static com.yahoo.bard.webservice.web.ErrorMessageFormat.LOG_UNABLE_TO_DESERIALIZE;
+import static com.yahoo.bard.webservice.web.ErrorMessageFormat.RESOURCE_STORAGE_FAILURE;
+
+import com.yahoo.bard.webservice.data.PreResponseCodec;
+import com.yahoo.bard.webservice.web.PreResponse;
+
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import rx.Observable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A PreResponseStore that keeps PreResponses on local disk in append-only, memory mapped segment files.
+ * <p>
+ * Each saved PreResponse is appended as a single record to the active segment. Segments are preallocated and mapped
+ * in full, so both writes and reads go through the page cache rather than the heap, and reads hand the mapped bytes
+ * straight to the {@link PreResponseCodec} without copying them. Only the ticket index is kept in memory.
+ * <p>
+ * Records are laid out as {@code [ticket length][ticket][saved at millis][payload length][payload]}. The ticket length
+ * is written last, so a record only becomes visible to recovery once it is completely written. When a store is opened
+ * on a directory that already contains segments, the index is rebuilt by scanning them, so a restarted node keeps
+ * serving the results of jobs that finished before the restart.
+ * <p>
+ * Entries older than the time to live are no longer served, and are physically reclaimed by {@link #compact()}, which
+ * is run whenever the active segment rolls over. Compaction deletes segments that no longer hold live entries, copies
+ * the live entries out of sparsely populated segments, and finally drops the oldest segments until the store fits in
+ * its disk budget.
+ */
+public class MappedFilePreResponseStore implements PreResponseStore, Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MappedFilePreResponseStore.class);
+
+    public static final String SEGMENT_PREFIX = "preresponses-";
+    public static final String SEGMENT_SUFFIX = ".seg";
+
+    /**
+     * Sealed segments whose live bytes fall below this fraction of their written bytes get their entries rewritten.
+     */
+    public static final double COMPACTION_LIVE_RATIO = 0.5;
+
+    private static final int RECORD_OVERHEAD_BYTES = Integer.BYTES + Long.BYTES + Integer.BYTES;
+
+    private final Path directory;
+    private final PreResponseCodec preResponseCodec;
+    private final long segmentSizeBytes;
+    private final long timeToLiveMillis;
+    private final long diskBudgetBytes;
+    private final Clock clock;
+
+    private final Map<String, Location> index = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+
+    private Segment activeSegment;
+
+    /**
+     * Constructor.
+     *
+     * @param directory  Directory holding the segment files, created if it does not exist
+     * @param preResponseCodec  Translates the stored PreResponses to and from bytes
+     * @param segmentSizeBytes  Size of each preallocated segment file
+     * @param timeToLive  How long a saved PreResponse is served for
+     * @param diskBudgetBytes  Upper bound on the total size of the segment files
+     * @param clock  Clock used to age entries
+     *
+     * @throws UncheckedIOException if the directory cannot be created or its existing segments cannot be read
+     */
+    public MappedFilePreResponseStore(
+            Path directory,
+            PreResponseCodec preResponseCodec,
+            long segmentSizeBytes,
+            Duration timeToLive,
+            long diskBudgetBytes,
+            Clock clock
+    ) {
+        this.directory = directory;
+        this.preResponseCodec = preResponseCodec;
+        this.segmentSizeBytes = segmentSizeBytes;
+        this.timeToLiveMillis = timeToLive.toMillis();
+        this.diskBudgetBytes = diskBudgetBytes;
+        this.clock = clock;
+
+        try {
+            Files.createDirectories(directory);
+            recover();
+        } catch (IOException e) {
+            String msg = RESOURCE_STORAGE_FAILURE.format(directory, e.getMessage());
+            LOG.error(msg, e);
+            throw new UncheckedIOException(msg, e);
+        }
+    }
+
+    @Override
+    public Observable<PreResponse> get(String ticket) {
+        Location location = index.get(ticket);
+        if (location == null) {
+            return Observable.empty();
+        }
+        if (isExpired(location)) {
+            evict(ticket, location);
+            return Observable.empty();
+        }
+        try {
+            return Observable.just(preResponseCodec.decode(new ByteBufferBackedInputStream(location.payload())));
+        } catch (IOException | RuntimeException e) {
+            LOG.error(LOG_UNABLE_TO_DESERIALIZE.logFormat(ticket, directory), e);
+            return Observable.error(e);
+        }
+    }
+
+    @Override
+    public Observable<String> save(String ticket, PreResponse preResponse) {
+        try {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            preResponseCodec.encode(preResponse, payload);
+            if (append(ticket, payload.toByteArray(), clock.millis())) {
+                compact();
+            }
+            return Observable.just(ticket);
+        } catch (IOException | RuntimeException e) {
+            LOG.error(RESOURCE_STORAGE_FAILURE.logFormat(ticket, e.getMessage()), e);
+            return Observable.error(e);
+        }
+    }
+
+    /**
+     * Reclaim the disk space held by expired and overwritten entries, and shrink the store to its disk budget.
+     *
+     * @throws UncheckedIOException if a segment cannot be rewritten or deleted
+     */
+    public synchronized void compact() {
+        try {
+            index.forEach((ticket, location) -> {
+                if (isExpired(location)) {
+                    evict(ticket, location);
+                }
+            });
+
+            for (Segment segment : sealedSegments()) {
+                if (segment.liveBytes.get() == 0) {
+                    deleteSegment(segment);
+                } else if (segment.liveBytes.get() < segment.writePosition * COMPACTION_LIVE_RATIO) {
+                    rewriteLiveEntries(segment);
+                    deleteSegment(segment);
+                }
+            }
+
+            for (Segment segment : sealedSegments()) {
+                if (getDiskUsageBytes() <= diskBudgetBytes) {
+                    break;
+                }
+                LOG.warn("Dropping pre-response segment {} to stay within disk budget", segment.path);
+                index.entrySet().removeIf(entry -> entry.getValue().segment == segment);
+                deleteSegment(segment);
+            }
+        } catch (IOException e) {
+            String msg = RESOURCE_STORAGE_FAILURE.format(directory, e.getMessage());
+            LOG.error(msg, e);
+            throw new UncheckedIOException(msg, e);
+        }
+    }
+
+    /**
+     * Get the number of PreResponses currently held by the store.
+     *
+     * @return the number of tickets in the index
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Get the disk space currently allocated to the segment files.
+     *
+     * @return the total size of the segment files in bytes
+     */
+    public long getDiskUsageBytes() {
+        return segments.values().stream().mapToLong(segment -> segment.buffer.capacity()).sum();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (Segment segment : segments.values()) {
+            segment.buffer.force();
+            segment.channel.close();
+        }
+        segments.clear();
+        index.clear();
+        activeSegment = null;
+    }
+
+    /**
+     * Append a record to the active segment, rolling over to a new segment if the record does not fit.
+     *
+     * @param ticket  The ticket of the record
+     * @param payload  The serialized PreResponse
+     * @param savedAtMillis  The time the PreResponse was saved
+     *
+     * @return true if the active segment rolled over to make room for the record
+     *
+     * @throws IOException if a new segment cannot be created
+     */
+    private synchronized boolean append(String ticket, byte[] payload, long savedAtMillis) throws IOException {
+        byte[] ticketBytes = ticket.getBytes(StandardCharsets.UTF_8);
+        int recordLength = RECORD_OVERHEAD_BYTES + ticketBytes.length + payload.length;
+
+        boolean rolled = false;
+        if (activeSegment == null || activeSegment.remaining() < recordLength) {
+            rolled = activeSegment != null;
+            activeSegment = createSegment(Math.max(segmentSizeBytes, recordLength));
+        }
+
+        Segment segment = activeSegment;
+        int recordStart = segment.writePosition;
+        int payloadStart = recordStart + RECORD_OVERHEAD_BYTES + ticketBytes.length;
+
+        ByteBuffer buffer = segment.buffer.duplicate();
+        buffer.position(recordStart + Integer.BYTES);
+        buffer.put(ticketBytes);
+        buffer.putLong(savedAtMillis);
+        buffer.putInt(payload.length);
+        buffer.put(payload);
+        // Writing the ticket length commits the record
+        segment.buffer.putInt(recordStart, ticketBytes.length);
+        segment.writePosition += recordLength;
+
+        index(ticket, new Location(segment, payloadStart, payload.length, savedAtMillis, recordLength));
+        return rolled;
+    }
+
+    /**
+     * Point the ticket at a new location, releasing the location it previously pointed at.
+     *
+     * @param ticket  The ticket being indexed
+     * @param location  The new location of the ticket's record
+     */
+    private void index(String ticket, Location location) {
+        location.segment.liveBytes.addAndGet(location.recordLength);
+        Location previous = index.put(ticket, location);
+        if (previous != null) {
+            previous.segment.liveBytes.addAndGet(-previous.recordLength);
+        }
+    }
+
+    /**
+     * Remove the ticket from the index if it still points at the given location.
+     *
+     * @param ticket  The ticket to remove
+     * @param location  The location the ticket is expected to point at
+     */
+    private void evict(String ticket, Location location) {
+        if (index.remove(ticket, location)) {
+            location.segment.liveBytes.addAndGet(-location.recordLength);
+        }
+    }
+
+    /**
+     * Check whether the entry at the given location has outlived the time to live.
+     *
+     * @param location  The location of the entry
+     *
+     * @return true if the entry should no longer be served
+     */
+    private boolean isExpired(Location location) {
+        return clock.millis() - location.savedAtMillis > timeToLiveMillis;
+    }
+
+    /**
+     * Copy the live entries of a sealed segment to the end of the active segment.
+     *
+     * @param segment  The segment to empty
+     *
+     * @throws IOException if a new segment cannot be created
+     */
+    private void rewriteLiveEntries(Segment segment) throws IOException {
+        List<Map.Entry<String, Location>> live = new ArrayList<>();
+        index.forEach((ticket, location) -> {
+            if (location.segment == segment) {
+                live.add(new AbstractMap.SimpleImmutableEntry<>(ticket, location));
+            }
+        });
+        for (Map.Entry<String, Location> entry : live) {
+            ByteBuffer payload = entry.getValue().payload();
+            byte[] bytes = new byte[payload.remaining()];
+            payload.get(bytes);
+            if (index.get(entry.getKey()) == entry.getValue()) {
+                append(entry.getKey(), bytes, entry.getValue().savedAtMillis);
+            }
+        }
+    }
+
+    /**
+     * Get the segments which are no longer being appended to, oldest first.
+     *
+     * @return the sealed segments
+     */
+    private Collection<Segment> sealedSegments() {
+        List<Segment> sealed = new ArrayList<>(segments.values());
+        sealed.remove(activeSegment);
+        return sealed;
+    }
+
+    /**
+     * Create and map a new, empty segment file.
+     *
+     * @param size  The size to preallocate for the segment
+     *
+     * @return the new segment
+     *
+     * @throws IOException if the file cannot be created or mapped
+     */
+    private Segment createSegment(long size) throws IOException {
+        long id = segments.isEmpty() ? 0 : segments.lastKey() + 1;
+        Path path = directory.resolve(SEGMENT_PREFIX + id + SEGMENT_SUFFIX);
+        Segment segment = new Segment(id, path, size);
+        segments.put(id, segment);
+        return segment;
+    }
+
+    /**
+     * Unregister a segment and remove its file.
+     * <p>
+     * The mapping itself is released once the buffer is garbage collected, so readers that are still decoding from a
+     * deleted segment are unaffected.
+     *
+     * @param segment  The segment to delete
+     *
+     * @throws IOException if the file cannot be deleted
+     */
+    private void deleteSegment(Segment segment) throws IOException {
+        segments.remove(segment.id);
+        segment.channel.close();
+        Files.deleteIfExists(segment.path);
+    }
+
+    /**
+     * Map the segments already present in the directory and rebuild the index from their records.
+     *
+     * @throws IOException if a segment cannot be read
+     */
+    private void recover() throws IOException {
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : paths) {
+                String name = path.getFileName().toString();
+                long id = Long.parseLong(
+                        name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())
+                );
+                segments.put(id, new Segment(id, path, Files.size(path)));
+            }
+        }
+
+        for (Segment segment : segments.values()) {
+            ByteBuffer buffer = segment.buffer.duplicate();
+            int committed = 0;
+            while (buffer.remaining() >= RECORD_OVERHEAD_BYTES) {
+                int recordStart = buffer.position();
+                int ticketLength = buffer.getInt();
+                if (ticketLength <= 0 || buffer.remaining() < ticketLength + Long.BYTES + Integer.BYTES) {
+                    break;
+                }
+                byte[] ticketBytes = new byte[ticketLength];
+                buffer.get(ticketBytes);
+                long savedAtMillis = buffer.getLong();
+                int payloadLength = buffer.getInt();
+                if (payloadLength < 0 || buffer.remaining() < payloadLength) {
+                    break;
+                }
+                int payloadStart = buffer.position();
+                buffer.position(payloadStart + payloadLength);
+
+                Location location = new Location(
+                        segment,
+                        payloadStart,
+                        payloadLength,
+                        savedAtMillis,
+                        payloadStart + payloadLength - recordStart
+                );
+                index(new String(ticketBytes, StandardCharsets.UTF_8), location);
+                committed = buffer.position();
+            }
+            segment.writePosition = committed;
+        }
+
+        if (!segments.isEmpty()) {
+            activeSegment = segments.lastEntry().getValue();
+            compact();
+        }
+        LOG.info("Recovered {} pre-responses from {} segments in {}", index.size(), segments.size(), directory);
+    }
+
+    /**
+     * An append-only, memory mapped segment file.
+     */
+    private static class Segment {
+        private final long id;
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final AtomicLong liveBytes = new AtomicLong();
+        private int writePosition;
+
+        /**
+         * Open (creating if needed) and map a segment file.
+         *
+         * @param id  The sequence number of the segment
+         * @param path  The segment file
+         * @param size  The size to map the segment at
+         *
+         * @throws IOException if the file cannot be opened or mapped
+         */
+        Segment(long id, Path path, long size) throws IOException {
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Segment size " + size + " exceeds the maximum mappable size");
+            }
+            this.id = id;
+            this.path = path;
+            this.channel = FileChannel.open(
+                    path,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.READ,
+                    StandardOpenOption.WRITE
+            );
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+
+        /**
+         * Get the space left for new records.
+         *
+         * @return the number of unwritten bytes in the segment
+         */
+        int remaining() {
+            return buffer.capacity() - writePosition;
+        }
+    }
+
+    /**
+     * The location of a ticket's serialized PreResponse.
+     */
+    private static class Location {
+        private final Segment segment;
+        private final int offset;
+        private final int length;
+        private final long savedAtMillis;
+        private final int recordLength;
+
+        /**
+         * Constructor.
+         *
+         * @param segment  The segment holding the record
+         * @param offset  The offset of the payload within the segment
+         * @param length  The length of the payload
+         * @param savedAtMillis  The time the record was saved
+         * @param recordLength  The length of the whole record, including its header
+         */
+        Location(Segment segment, int offset, int length, long savedAtMillis, int recordLength) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.savedAtMillis = savedAtMillis;
+            this.recordLength = recordLength;
+        }
+
+        /**
+         * Get a read-only view over the payload, backed directly by the mapped segment.
+         *
+         * @return the payload bytes
+         */
+        ByteBuffer payload() {
+            ByteBuffer view = segment.buffer.asReadOnlyBuffer();
+            view.position(offset);
+            view.limit(offset + length);
+            return view.slice();
+        }
+    }
+}
@@ -35,7 +35,19 @@ public enum BardFeatureFlag implements FeatureFlag {
     CASE_SENSITIVE_KEYS("case_sensitive_keys_enabled"),
     DEFAULT_IN_FILTER("default_in_filter_enabled"),
     REQUIRE_METRICS_QUERY("require_metrics_in_query"),
-    POJO_DARI_REQUIRE_ALL_STAGES_CALLED("require_all_data_request_building_stages_called")
+    POJO_DARI_REQUIRE_ALL_STAGES_CALLED("require_all_data_request_building_stages_called"),
+    /** If true, decide weight checks of queries with a confident learned weight estimate without asking Druid. */
+    WEIGHT_ESTIMATE_CACHE("weight_estimate_cache_enabled"),
+    /** If true, look up the dimension rows of results only when fields other than the key are written. */
+    LAZY_DIMENSION_ROWS("lazy_dimension_rows_enabled"),
+    /** If true, the local signature cache stores responses per time bucket and only queries Druid for missing ones. */
+    BUCKETED_CACHE("bucketed_cache_enabled"),
+    /** If true, the local signature cache stores responses as compressed bytes instead of JSON Strings. */
+    COMPRESSED_CACHE_VALUES("compressed_cache_values_enabled"),
+    /** If true, cache keys are fingerprints of the queries instead of their canonical JSON. */
+    QUERY_FINGERPRINT_CACHE_KEYS("query_fingerprint_cache_keys_enabled"),
+    /** If true, large result sets are mapped per time bucket or per row on several threads. */
+    PARALLEL_RESULT_MAPPING("parallel_result_mapping_enabled")
     ;
 
     static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
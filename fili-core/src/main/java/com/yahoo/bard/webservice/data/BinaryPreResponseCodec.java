@@ -0,0 +1,616 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data;
+
+import com.yahoo.bard.webservice.data.dimension.Dimension;
+import com.yahoo.bard.webservice.data.dimension.DimensionColumn;
+import com.yahoo.bard.webservice.data.dimension.DimensionDictionary;
+import com.yahoo.bard.webservice.data.dimension.DimensionRow;
+import com.yahoo.bard.webservice.data.metric.MetricColumn;
+import com.yahoo.bard.webservice.data.metric.MetricColumnWithValueType;
+import com.yahoo.bard.webservice.data.time.GranularityParser;
+import com.yahoo.bard.webservice.table.Column;
+import com.yahoo.bard.webservice.util.DateTimeUtils;
+import com.yahoo.bard.webservice.util.GranularityParseException;
+import com.yahoo.bard.webservice.web.ErrorMessageFormat;
+import com.yahoo.bard.webservice.web.PreResponse;
+import com.yahoo.bard.webservice.web.responseprocessors.ResponseContext;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * A compact, versioned binary PreResponseCodec.
+ * <p>
+ * The schema and the response context are written once in a header, followed by the row count and the rows. Within
+ * the rows:
+ * <ul>
+ *     <li>Integers are written as (zig-zag) varints.</li>
+ *     <li>Timestamps are written as the varint delta of their epoch millis from the previous row.</li>
+ *     <li>Dimension key values and time zones are dictionary encoded: the first occurrence of a value is written
+ *     inline and assigned the next id, later occurrences only write the id. A decoder therefore resolves each
+ *     distinct dimension value against the dimension only once, and can decode rows one at a time.</li>
+ *     <li>Metric values are written as a type tag followed by a primitive encoding of the value. Types without a
+ *     primitive encoding fall back to JSON. Metrics missing from a row are tagged as absent, and stay absent.</li>
+ * </ul>
+ * Use {@link #openReader(InputStream)} to decode rows as they are read instead of materializing the whole ResultSet.
+ */
+public class BinaryPreResponseCodec implements PreResponseCodec {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BinaryPreResponseCodec.class);
+
+    public static final int MAGIC = 0x46505230;
+    public static final int VERSION = 1;
+
+    private static final int NULL_ID = 0;
+    private static final Object ABSENT = new Object();
+
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_BIG_DECIMAL = 1;
+    private static final byte TAG_DOUBLE = 2;
+    private static final byte TAG_LONG = 3;
+    private static final byte TAG_INTEGER = 4;
+    private static final byte TAG_FLOAT = 5;
+    private static final byte TAG_BOOLEAN = 6;
+    private static final byte TAG_STRING = 7;
+    private static final byte TAG_JSON = 8;
+    private static final byte TAG_ABSENT = 9;
+
+    private final DimensionDictionary dimensionDictionary;
+    private final ObjectMapper nonResponseContextMapper;
+    private final ObjectMapper responseContextMapper;
+    private final GranularityParser granularityParser;
+
+    /**
+     * Constructor.
+     *
+     * @param dimensionDictionary  DimensionDictionary used to resolve the dimension columns and rows
+     * @param nonResponseContextMapper  Handles metric values which have no primitive encoding
+     * @param responseContextMapper  Handles the (type preserving) serialization of the response context
+     * @param granularityParser  Time grain provider
+     */
+    public BinaryPreResponseCodec(
+            DimensionDictionary dimensionDictionary,
+            ObjectMapper nonResponseContextMapper,
+            ObjectMapper responseContextMapper,
+            GranularityParser granularityParser
+    ) {
+        this.dimensionDictionary = dimensionDictionary;
+        this.nonResponseContextMapper = nonResponseContextMapper;
+        this.responseContextMapper = responseContextMapper;
+        this.granularityParser = granularityParser;
+    }
+
+    @Override
+    public void encode(PreResponse preResponse, OutputStream outputStream) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream));
+        ResultSet resultSet = preResponse.getResultSet();
+        ResultSetSchema schema = resultSet.getSchema();
+
+        out.writeInt(MAGIC);
+        writeVarInt(out, VERSION);
+        writeBytes(out, responseContextMapper.writeValueAsBytes(preResponse.getResponseContext()));
+
+        List<DimensionColumn> dimensionColumns = new ArrayList<>(schema.getColumns(DimensionColumn.class));
+        List<MetricColumn> metricColumns = new ArrayList<>(schema.getColumns(MetricColumn.class));
+
+        writeString(out, DateTimeUtils.getTimeZone(schema.getGranularity()).getID());
+        writeString(out, schema.getGranularity().getName());
+        writeVarInt(out, dimensionColumns.size());
+        for (DimensionColumn column : dimensionColumns) {
+            writeString(out, column.getName());
+        }
+        writeVarInt(out, metricColumns.size());
+        for (MetricColumn column : metricColumns) {
+            writeString(out, column.getName());
+            writeString(out, getValueType(resultSet, column));
+        }
+
+        writeVarInt(out, resultSet.size());
+        Dictionary<String> zones = new Dictionary<>();
+        List<Dictionary<String>> dimensionValues = new ArrayList<>();
+        dimensionColumns.forEach(ignored -> dimensionValues.add(new Dictionary<>()));
+        long previousMillis = 0;
+        for (Result result : resultSet) {
+            DateTime timestamp = result.getTimeStamp();
+            writeVarLong(out, zigZag(timestamp.getMillis() - previousMillis));
+            previousMillis = timestamp.getMillis();
+            writeDictionaryValue(out, zones, timestamp.getZone().getID());
+
+            for (int i = 0; i < dimensionColumns.size(); i++) {
+                DimensionColumn column = dimensionColumns.get(i);
+                DimensionRow row = result.getDimensionRow(column);
+                String keyValue = row == null ? null : row.get(column.getDimension().getKey());
+                writeDictionaryValue(out, dimensionValues.get(i), keyValue);
+            }
+            for (MetricColumn column : metricColumns) {
+                if (result.getMetricValues().containsKey(column)) {
+                    writeMetricValue(out, result.getMetricValues().get(column));
+                } else {
+                    out.writeByte(TAG_ABSENT);
+                }
+            }
+        }
+        out.flush();
+    }
+
+    @Override
+    public PreResponse decode(InputStream inputStream) throws IOException {
+        ResultReader reader = openReader(inputStream);
+        List<Result> results = new ArrayList<>(reader.getRowCount());
+        reader.forEachRemaining(results::add);
+        return new PreResponse(new ResultSet(reader.getSchema(), results), reader.getResponseContext());
+    }
+
+    /**
+     * Read the header of a serialized PreResponse, and return a reader which decodes its rows on demand.
+     *
+     * @param inputStream  The stream to read the serialized PreResponse from
+     *
+     * @return a reader over the rows of the serialized PreResponse
+     *
+     * @throws IOException if the header cannot be read or was written by an unsupported version
+     */
+    public ResultReader openReader(InputStream inputStream) throws IOException {
+        return new ResultReader(new DataInputStream(new BufferedInputStream(inputStream)));
+    }
+
+    /**
+     * Find the class name of a metric column's values, in the same way as {@link ResultSetSerializationProxy}.
+     *
+     * @param resultSet  The results holding the metric values
+     * @param column  The metric column
+     *
+     * @return the class name of the first non null value, or the default class type if there is none
+     */
+    private static String getValueType(ResultSet resultSet, MetricColumn column) {
+        return resultSet.stream()
+                .map(result -> result.getMetricValues().get(column))
+                .filter(value -> value != null)
+                .findFirst()
+                .map(value -> value.getClass().getName())
+                .orElse(ResultSetSerializationProxy.DEFAULT_CLASS_TYPE);
+    }
+
+    /**
+     * Write a metric value as a type tag followed by its encoding.
+     *
+     * @param out  The stream to write to
+     * @param value  The metric value
+     *
+     * @throws IOException if the stream cannot be written to
+     */
+    private void writeMetricValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(TAG_NULL);
+        } else if (value instanceof BigDecimal) {
+            BigDecimal decimal = (BigDecimal) value;
+            out.writeByte(TAG_BIG_DECIMAL);
+            writeVarLong(out, zigZag(decimal.scale()));
+            writeBytes(out, decimal.unscaledValue().toByteArray());
+        } else if (value instanceof Double) {
+            out.writeByte(TAG_DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Long) {
+            out.writeByte(TAG_LONG);
+            writeVarLong(out, zigZag((Long) value));
+        } else if (value instanceof Integer) {
+            out.writeByte(TAG_INTEGER);
+            writeVarLong(out, zigZag((Integer) value));
+        } else if (value instanceof Float) {
+            out.writeByte(TAG_FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(TAG_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof String) {
+            out.writeByte(TAG_STRING);
+            writeString(out, (String) value);
+        } else {
+            out.writeByte(TAG_JSON);
+            writeString(out, value.getClass().getName());
+            writeBytes(out, nonResponseContextMapper.writeValueAsBytes(value));
+        }
+    }
+
+    /**
+     * Read a metric value written by {@link #writeMetricValue(DataOutputStream, Object)}.
+     *
+     * @param in  The stream to read from
+     *
+     * @return the metric value, or {@link #ABSENT} if the row had no value for the metric
+     *
+     * @throws IOException if the stream cannot be read
+     */
+    private Object readMetricValue(DataInputStream in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_ABSENT:
+                return ABSENT;
+            case TAG_BIG_DECIMAL:
+                int scale = (int) unZigZag(readVarLong(in));
+                return new BigDecimal(new BigInteger(readBytes(in)), scale);
+            case TAG_DOUBLE:
+                return in.readDouble();
+            case TAG_LONG:
+                return unZigZag(readVarLong(in));
+            case TAG_INTEGER:
+                return (int) unZigZag(readVarLong(in));
+            case TAG_FLOAT:
+                return in.readFloat();
+            case TAG_BOOLEAN:
+                return in.readBoolean();
+            case TAG_STRING:
+                return readString(in);
+            case TAG_JSON:
+                String className = readString(in);
+                try {
+                    return nonResponseContextMapper.readValue(readBytes(in), Class.forName(className));
+                } catch (ClassNotFoundException e) {
+                    String msg = ErrorMessageFormat.METRIC_VALUE_CLASS_NOT_FOUND.format(className);
+                    LOG.error(msg, e);
+                    throw new DeserializationException(msg, e);
+                }
+            default:
+                String msg = ErrorMessageFormat.METRIC_VALUE_PARSING_ERROR.format("identify");
+                LOG.error(msg);
+                throw new DeserializationException(msg);
+        }
+    }
+
+    /**
+     * Write a dictionary encoded value: its id, followed by the value itself if this is its first occurrence.
+     *
+     * @param out  The stream to write to
+     * @param dictionary  The values written so far
+     * @param value  The value to write, may be null
+     *
+     * @throws IOException if the stream cannot be written to
+     */
+    private static void writeDictionaryValue(DataOutputStream out, Dictionary<String> dictionary, String value)
+            throws IOException {
+        if (value == null) {
+            writeVarInt(out, NULL_ID);
+            return;
+        }
+        Integer id = dictionary.ids.get(value);
+        if (id != null) {
+            writeVarInt(out, id);
+            return;
+        }
+        writeVarInt(out, dictionary.add(value));
+        writeString(out, value);
+    }
+
+    /**
+     * Write an unsigned varint.
+     *
+     * @param out  The stream to write to
+     * @param value  The non negative value to write
+     *
+     * @throws IOException if the stream cannot be written to
+     */
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        writeVarLong(out, value);
+    }
+
+    /**
+     * Write an unsigned varint, seven bits at a time with the high bit flagging a continuation.
+     *
+     * @param out  The stream to write to
+     * @param value  The value to write, treated as unsigned
+     *
+     * @throws IOException if the stream cannot be written to
+     */
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            out.writeByte((int) ((remaining & 0x7F) | 0x80));
+            remaining >>>= 7;
+        }
+        out.writeByte((int) remaining);
+    }
+
+    /**
+     * Read an unsigned varint.
+     *
+     * @param in  The stream to read from
+     *
+     * @return the value read
+     *
+     * @throws IOException if the stream cannot be read
+     */
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new DeserializationException("Malformed varint in serialized PreResponse");
+    }
+
+    /**
+     * Map a signed value to an unsigned one so that small magnitudes produce short varints.
+     *
+     * @param value  The signed value
+     *
+     * @return the zig-zag encoded value
+     */
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    /**
+     * Reverse {@link #zigZag(long)}.
+     *
+     * @param value  The zig-zag encoded value
+     *
+     * @return the signed value
+     */
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Write a length prefixed byte array.
+     *
+     * @param out  The stream to write to
+     * @param bytes  The bytes to write
+     *
+     * @throws IOException if the stream cannot be written to
+     */
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Read a length prefixed byte array.
+     *
+     * @param in  The stream to read from
+     *
+     * @return the bytes read
+     *
+     * @throws IOException if the stream cannot be read
+     */
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[(int) readVarLong(in)];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * Write a length prefixed UTF-8 string.
+     *
+     * @param out  The stream to write to
+     * @param value  The string to write
+     *
+     * @throws IOException if the stream cannot be written to
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        writeBytes(out, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Read a length prefixed UTF-8 string.
+     *
+     * @param in  The stream to read from
+     *
+     * @return the string read
+     *
+     * @throws IOException if the stream cannot be read
+     */
+    private static String readString(DataInputStream in) throws IOException {
+        return new String(readBytes(in), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Assigns consecutive ids, starting after the null id, to the distinct values written to a column.
+     *
+     * @param <T>  Type of the values
+     */
+    private static class Dictionary<T> {
+        private final Map<T, Integer> ids = new HashMap<>();
+
+        /**
+         * Assign the next id to a value.
+         *
+         * @param value  The value being added
+         *
+         * @return the id of the value
+         */
+        int add(T value) {
+            int id = ids.size() + 1;
+            ids.put(value, id);
+            return id;
+        }
+    }
+
+    /**
+     * Decodes the rows of a serialized PreResponse one at a time.
+     * <p>
+     * The response context and schema are read when the reader is opened. Each distinct dimension value is resolved
+     * against its dimension once, and the resulting DimensionRow is shared by every row that references it.
+     */
+    public class ResultReader implements Iterator<Result> {
+
+        private final DataInputStream in;
+        private final ResponseContext responseContext;
+        private final ResultSetSchema schema;
+        private final List<DimensionColumn> dimensionColumns = new ArrayList<>();
+        private final List<MetricColumn> metricColumns = new ArrayList<>();
+        private final int rowCount;
+
+        private final List<DateTimeZone> zones = new ArrayList<>();
+        private final List<List<DimensionRow>> dimensionRows = new ArrayList<>();
+
+        private int rowsRead;
+        private long previousMillis;
+
+        /**
+         * Read the header of a serialized PreResponse.
+         *
+         * @param in  The stream positioned at the start of the serialized PreResponse
+         *
+         * @throws IOException if the header cannot be read or was written by an unsupported version
+         */
+        ResultReader(DataInputStream in) throws IOException {
+            this.in = in;
+            if (in.readInt() != MAGIC) {
+                throw new DeserializationException("Stream does not hold a binary serialized PreResponse");
+            }
+            int version = (int) readVarLong(in);
+            if (version != VERSION) {
+                throw new DeserializationException("Unsupported binary PreResponse version " + version);
+            }
+
+            responseContext = responseContextMapper.readValue(readBytes(in), ResponseContext.class);
+
+            DateTimeZone timeZone = DateTimeZone.forID(readString(in));
+            String granularity = readString(in);
+
+            LinkedHashSet<Column> columns = new LinkedHashSet<>();
+            int dimensionCount = (int) readVarLong(in);
+            for (int i = 0; i < dimensionCount; i++) {
+                DimensionColumn column = new DimensionColumn(resolveDimensionName(readString(in)));
+                dimensionColumns.add(column);
+                columns.add(column);
+                dimensionRows.add(new ArrayList<>());
+            }
+            int metricCount = (int) readVarLong(in);
+            for (int i = 0; i < metricCount; i++) {
+                MetricColumn column = new MetricColumnWithValueType(readString(in), readString(in));
+                metricColumns.add(column);
+                columns.add(column);
+            }
+
+            try {
+                schema = new ResultSetSchema(granularityParser.parseGranularity(granularity, timeZone), columns);
+            } catch (GranularityParseException e) {
+                String msg = ErrorMessageFormat.GRANULARITY_PARSING_ERROR.format(granularity);
+                LOG.error(msg, e);
+                throw new DeserializationException(msg, e);
+            }
+            rowCount = (int) readVarLong(in);
+        }
+
+        public ResponseContext getResponseContext() {
+            return responseContext;
+        }
+
+        public ResultSetSchema getSchema() {
+            return schema;
+        }
+
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return rowsRead < rowCount;
+        }
+
+        @Override
+        public Result next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            try {
+                rowsRead++;
+                return readResult();
+            } catch (IOException e) {
+                String msg = ErrorMessageFormat.UNABLE_TO_DESERIALIZE.format("PreResponse row");
+                LOG.error(msg, e);
+                throw new DeserializationException(msg, e);
+            }
+        }
+
+        /**
+         * Decode the next row.
+         *
+         * @return the decoded row
+         *
+         * @throws IOException if the stream cannot be read
+         */
+        private Result readResult() throws IOException {
+            previousMillis += unZigZag(readVarLong(in));
+            int zoneId = (int) readVarLong(in);
+            if (zoneId > zones.size()) {
+                zones.add(DateTimeZone.forID(readString(in)));
+            }
+            DateTime timestamp = new DateTime(previousMillis, zones.get(zoneId - 1));
+
+            Map<DimensionColumn, DimensionRow> rows = new LinkedHashMap<>();
+            for (int i = 0; i < dimensionColumns.size(); i++) {
+                DimensionColumn column = dimensionColumns.get(i);
+                List<DimensionRow> known = dimensionRows.get(i);
+                int id = (int) readVarLong(in);
+                if (id == NULL_ID) {
+                    continue;
+                }
+                if (id > known.size()) {
+                    String key = readString(in);
+                    DimensionRow row = column.getDimension().findDimensionRowByKeyValue(key);
+                    // Values no longer in the dimension get an empty row, as when parsing Druid responses
+                    known.add(row == null ? column.getDimension().createEmptyDimensionRow(key) : row);
+                }
+                rows.put(column, known.get(id - 1));
+            }
+
+            Map<MetricColumn, Object> metricValues = new LinkedHashMap<>();
+            for (MetricColumn column : metricColumns) {
+                Object value = readMetricValue(in);
+                if (value != ABSENT) {
+                    metricValues.put(column, value);
+                }
+            }
+            return new Result(rows, metricValues, timestamp);
+        }
+
+        /**
+         * Get the dimension with the given name from the DimensionDictionary.
+         *
+         * @param dimensionName  The api name of the dimension
+         *
+         * @return The dimension with the given name
+         */
+        private Dimension resolveDimensionName(String dimensionName) {
+            Dimension dimension = dimensionDictionary.findByApiName(dimensionName);
+            if (dimension == null) {
+                String msg = ErrorMessageFormat.UNABLE_TO_FIND_DIMENSION_FROM_DICTIONARY.format(dimensionName);
+                LOG.error(msg);
+                throw new DeserializationException(msg);
+            }
+            return dimension;
+        }
+    }
+}
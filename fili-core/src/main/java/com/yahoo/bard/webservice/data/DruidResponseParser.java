@@ -5,11 +5,15 @@ package com.yahoo.bard.webservice.data;
 import static com.yahoo.bard.webservice.web.ErrorMessageFormat.RESULT_SET_ERROR;
 
 import com.yahoo.bard.webservice.data.dimension.DimensionColumn;
+import com.yahoo.bard.webservice.config.BardFeatureFlag;
 import com.yahoo.bard.webservice.data.dimension.DimensionRow;
+import com.yahoo.bard.webservice.data.dimension.LazyDimensionRow;
 import com.yahoo.bard.webservice.data.metric.MetricColumn;
 import com.yahoo.bard.webservice.druid.model.DefaultQueryType;
 import com.yahoo.bard.webservice.druid.model.QueryType;
 import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
+import com.yahoo.bard.webservice.logging.RequestLog;
+import com.yahoo.bard.webservice.logging.TimedPhase;
 import com.yahoo.bard.webservice.table.Column;
 
 import com.fasterxml.jackson.databind.JsonNode;
@@ -20,8 +24,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Stream;
 
@@ -36,8 +43,13 @@ public class DruidResponseParser {
 
     private static final Logger LOG = LoggerFactory.getLogger(DruidResponseParser.class);
 
+    public static final String PARSING_TIMER = "DruidResponseParsing";
+
     /**
      * Parse Druid GroupBy result into ResultSet.
+     * <p>
+     * The rows of a time bucket share the timestamp of the bucket, so each distinct timestamp of the response is parsed
+     * once, and its rows share the same {@link DateTime}. The parsing is timed as its own request log phase.
      *
      * @param jsonResult  Druid results in json
      * @param schema  Schema for results
@@ -67,22 +79,31 @@ public class DruidResponseParser {
         Set<MetricColumn> metricColumns = schema.getColumns(MetricColumn.class);
 
         List<Result> results = null;
-        switch (defaultQueryType) {
-            case GROUP_BY:
-                results = makeGroupByResults(jsonResult, dimensionColumns, metricColumns, dateTimeZone);
-                break;
-            case TOP_N:
-                results = makeTopNResults(jsonResult, dimensionColumns, metricColumns, dateTimeZone);
-                break;
-            case TIMESERIES:
-                results = makeTimeSeriesResults(jsonResult, metricColumns, dateTimeZone);
-                break;
-            case LOOKBACK:
-                results = makeLookbackResults(jsonResult, dimensionColumns, metricColumns, dateTimeZone);
-                break;
-            default:
-                // Throw an exception for unsupported query types
-                unsupportedQueryType(queryType);
+        Map<String, DateTime> timestamps = new HashMap<>();
+        try (TimedPhase timer = RequestLog.startTiming(PARSING_TIMER)) {
+            switch (defaultQueryType) {
+                case GROUP_BY:
+                    results = makeGroupByResults(jsonResult, dimensionColumns, metricColumns, dateTimeZone, timestamps);
+                    break;
+                case TOP_N:
+                    results = makeTopNResults(jsonResult, dimensionColumns, metricColumns, dateTimeZone, timestamps);
+                    break;
+                case TIMESERIES:
+                    results = makeTimeSeriesResults(jsonResult, metricColumns, dateTimeZone, timestamps);
+                    break;
+                case LOOKBACK:
+                    results = makeLookbackResults(
+                            jsonResult,
+                            dimensionColumns,
+                            metricColumns,
+                            dateTimeZone,
+                            timestamps
+                    );
+                    break;
+                default:
+                    // Throw an exception for unsupported query types
+                    unsupportedQueryType(queryType);
+            }
         }
 
         LOG.trace("Parsed druid query {} results: {}", queryType, results);
@@ -107,6 +128,7 @@ public class DruidResponseParser {
      * @param dimensionColumns  set of dimension columns
      * @param metricColumns  set of metric columns
      * @param dateTimeZone  The date time zone to apply to timestamps
+     * @param timestamps  The timestamps of the response parsed so far, by their text
      *
      * @return list of results
      */
@@ -114,15 +136,24 @@ public class DruidResponseParser {
             JsonNode jsonResult,
             Set<DimensionColumn> dimensionColumns,
             Set<MetricColumn> metricColumns,
-            DateTimeZone dateTimeZone
+            DateTimeZone dateTimeZone,
+            Map<String, DateTime> timestamps
     ) {
         List<Result> results = new ArrayList<>();
 
+        List<JsonNode> events = new ArrayList<>(jsonResult.size());
+        jsonResult.forEach(record -> events.add(record.get("event")));
+        Map<DimensionColumn, Map<String, DimensionRow>> resolvedRows = resolveDimensionRows(dimensionColumns, events);
+
         for (JsonNode record : jsonResult) {
-            DateTime timeStamp = new DateTime(record.get("timestamp").asText(), dateTimeZone);
+            DateTime timeStamp = parseTimestamp(record, dateTimeZone, timestamps);
 
             JsonNode event = record.get("event");
-            LinkedHashMap<DimensionColumn, DimensionRow> dimensionRows = extractDimensionRows(dimensionColumns, event);
+            LinkedHashMap<DimensionColumn, DimensionRow> dimensionRows = extractDimensionRows(
+                    dimensionColumns,
+                    event,
+                    resolvedRows
+            );
             LinkedHashMap<MetricColumn, Object> metricValues = extractMetricValues(metricColumns, event);
 
             results.add(new Result(dimensionRows, metricValues, timeStamp));
@@ -138,6 +169,7 @@ public class DruidResponseParser {
      * @param dimensionColumns  set of dimension columns
      * @param metricColumns  set of metric columns
      * @param dateTimeZone  The date time zone to apply to timestamps
+     * @param timestamps  The timestamps of the response parsed so far, by their text
      *
      * @return list of results
      */
@@ -145,20 +177,26 @@ public class DruidResponseParser {
             JsonNode jsonResult,
             Set<DimensionColumn> dimensionColumns,
             Set<MetricColumn> metricColumns,
-            DateTimeZone dateTimeZone
+            DateTimeZone dateTimeZone,
+            Map<String, DateTime> timestamps
     ) {
         List<Result> results = new ArrayList<>();
 
+        List<JsonNode> entries = new ArrayList<>();
+        jsonResult.forEach(record -> record.get("result").forEach(entries::add));
+        Map<DimensionColumn, Map<String, DimensionRow>> resolvedRows = resolveDimensionRows(dimensionColumns, entries);
+
         /* loop over all records */
         for (JsonNode record : jsonResult) {
-            DateTime timeStamp = new DateTime(record.get("timestamp").asText(), dateTimeZone);
+            DateTime timeStamp = parseTimestamp(record, dateTimeZone, timestamps);
             JsonNode result = record.get("result");
 
             /* loop over records per timebucket */
             for (final JsonNode entry : result) {
                 LinkedHashMap<DimensionColumn, DimensionRow> dimensionRows = extractDimensionRows(
                         dimensionColumns,
-                        entry
+                        entry,
+                        resolvedRows
                 );
                 LinkedHashMap<MetricColumn, Object> metricValues = extractMetricValues(metricColumns, entry);
 
@@ -175,19 +213,21 @@ public class DruidResponseParser {
      * @param jsonResult  current record to parse
      * @param metricColumns  set of metric columns
      * @param dateTimeZone  The date time zone to apply to timestamps
+     * @param timestamps  The timestamps of the response parsed so far, by their text
      *
      * @return list of results
      */
     private List<Result> makeTimeSeriesResults(
             JsonNode jsonResult,
             Set<MetricColumn> metricColumns,
-            DateTimeZone dateTimeZone
+            DateTimeZone dateTimeZone,
+            Map<String, DateTime> timestamps
     ) {
         List<Result> results = new ArrayList<>();
 
         /* loop over all records */
         for (JsonNode record : jsonResult) {
-            DateTime timeStamp = new DateTime(record.get("timestamp").asText(), dateTimeZone);
+            DateTime timeStamp = parseTimestamp(record, dateTimeZone, timestamps);
 
             JsonNode result = record.get("result");
             LinkedHashMap<MetricColumn, Object> metricValues = extractMetricValues(metricColumns, result);
@@ -205,6 +245,7 @@ public class DruidResponseParser {
      * @param dimensionColumns  set of dimension columns
      * @param metricColumns  set of metric columns
      * @param dateTimeZone  The date time zone to apply to timestamps
+     * @param timestamps  The timestamps of the response parsed so far, by their text
      *
      * @return list of results
      */
@@ -212,12 +253,20 @@ public class DruidResponseParser {
             JsonNode jsonResult,
             Set<DimensionColumn> dimensionColumns,
             Set<MetricColumn> metricColumns,
-            DateTimeZone dateTimeZone
+            DateTimeZone dateTimeZone,
+            Map<String, DateTime> timestamps
     ) {
         List<Result> results = new ArrayList<>();
 
+        Map<DimensionColumn, Map<String, DimensionRow>> resolvedRows = new HashMap<>();
+        if (dimensionColumns != null) {
+            List<JsonNode> entries = new ArrayList<>(jsonResult.size());
+            jsonResult.forEach(record -> entries.add(record.get("result")));
+            resolvedRows = resolveDimensionRows(dimensionColumns, entries);
+        }
+
         for (JsonNode record : jsonResult) {
-            DateTime timeStamp = new DateTime(record.get("timestamp").asText(), dateTimeZone);
+            DateTime timeStamp = parseTimestamp(record, dateTimeZone, timestamps);
 
             JsonNode result = record.get("result");
             LinkedHashMap<MetricColumn, Object> metricValues = extractMetricValues(metricColumns, result);
@@ -227,7 +276,7 @@ public class DruidResponseParser {
 
             dimensionRows = dimensionColumns == null ?
                     new LinkedHashMap<>() :
-                    extractDimensionRows(dimensionColumns, result);
+                    extractDimensionRows(dimensionColumns, result, resolvedRows);
 
 
             results.add(new Result(dimensionRows, metricValues, timeStamp));
@@ -235,38 +284,97 @@ public class DruidResponseParser {
         return results;
     }
 
+    /**
+     * Parse the timestamp of a record, reusing the timestamp parsed for an earlier record with the same text.
+     *
+     * @param record  The record holding the timestamp
+     * @param dateTimeZone  The date time zone to apply to the timestamp
+     * @param timestamps  The timestamps of the response parsed so far, by their text
+     *
+     * @return the timestamp of the record
+     */
+    private DateTime parseTimestamp(JsonNode record, DateTimeZone dateTimeZone, Map<String, DateTime> timestamps) {
+        return timestamps.computeIfAbsent(record.get("timestamp").asText(), text -> new DateTime(text, dateTimeZone));
+    }
+
+    /**
+     * Find the dimension rows for the distinct dimension values of a response, with one bulk lookup per dimension.
+     * <p>
+     * With lazy dimension rows, nothing is looked up here, and the rows are looked up once they are written.
+     *
+     * @param dimensionColumns  the set of dimension columns
+     * @param entries  the json objects holding the dimension values
+     *
+     * @return map of dimension columns to the rows found for each of their values
+     */
+    private Map<DimensionColumn, Map<String, DimensionRow>> resolveDimensionRows(
+            Set<DimensionColumn> dimensionColumns,
+            List<JsonNode> entries
+    ) {
+        Map<DimensionColumn, Map<String, DimensionRow>> resolvedRows = new HashMap<>();
+
+        if (BardFeatureFlag.LAZY_DIMENSION_ROWS.isOn()) {
+            dimensionColumns.forEach(dc -> resolvedRows.put(dc, new HashMap<>()));
+            return resolvedRows;
+        }
+
+        for (DimensionColumn dc : dimensionColumns) {
+            Set<String> fieldValues = new LinkedHashSet<>();
+            for (JsonNode entry : entries) {
+                fieldValues.add(getDimensionValue(dc, entry));
+            }
+            resolvedRows.put(dc, new HashMap<>(dc.getDimension().findDimensionRowsByKeyValues(fieldValues)));
+        }
+
+        return resolvedRows;
+    }
+
     /**
      * Extract the dimension rows for a json object given the set of all available dimension columns and the json
      * object.
+     * <p>
+     * Values with no dimension row get an empty row, which is shared by the other entries with that value. With lazy
+     * dimension rows, every value gets a lazy row, which is shared the same way.
      *
      * @param dimensionColumns  the set of dimension columns
      * @param entry  the json object
+     * @param resolvedRows  the dimension rows of the response's dimension values, by dimension column
      *
      * @return map of dimension columns to dimension rows
      */
     private LinkedHashMap<DimensionColumn, DimensionRow> extractDimensionRows(
             Set<DimensionColumn> dimensionColumns,
-            JsonNode entry
+            JsonNode entry,
+            Map<DimensionColumn, Map<String, DimensionRow>> resolvedRows
     ) {
         LinkedHashMap<DimensionColumn, DimensionRow> dimensionRows = new LinkedHashMap<>();
 
         for (DimensionColumn dc : dimensionColumns) {
-            JsonNode fieldNode = entry.get(dc.getName());
-            String fieldValue = "";
-            if (fieldNode != null) {
-                fieldValue = fieldNode.asText("");
-            }
-
-            DimensionRow drow = dc.getDimension().findDimensionRowByKeyValue(fieldValue);
-            if (drow == null) {
-                drow = dc.getDimension().createEmptyDimensionRow(fieldValue);
-            }
+            DimensionRow drow = resolvedRows.get(dc).computeIfAbsent(
+                    getDimensionValue(dc, entry),
+                    value -> BardFeatureFlag.LAZY_DIMENSION_ROWS.isOn()
+                            ? new LazyDimensionRow(dc.getDimension(), value)
+                            : dc.getDimension().createEmptyDimensionRow(value)
+            );
             dimensionRows.put(dc, drow);
         }
 
         return dimensionRows;
     }
 
+    /**
+     * Extract the value of a dimension from a json object.
+     *
+     * @param dimensionColumn  the dimension column
+     * @param entry  the json object
+     *
+     * @return the value of the dimension, or the empty string if the object has none
+     */
+    private String getDimensionValue(DimensionColumn dimensionColumn, JsonNode entry) {
+        JsonNode fieldNode = entry.get(dimensionColumn.getName());
+        return fieldNode == null ? "" : fieldNode.asText("");
+    }
+
     /**
      * Extract the metric values for a json object given the set of all available metric columns and the json object.
      *
@@ -0,0 +1,40 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data;
+
+import com.yahoo.bard.webservice.web.PreResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A PreResponseCodec using the JSON format of {@link PreResponseSerializationProxy} and
+ * {@link PreResponseDeserializer}.
+ */
+public class JsonPreResponseCodec implements PreResponseCodec {
+
+    private final PreResponseDeserializer preResponseDeserializer;
+
+    /**
+     * Constructor.
+     *
+     * @param preResponseDeserializer  Deserializer whose object mappers are also used for serialization
+     */
+    public JsonPreResponseCodec(PreResponseDeserializer preResponseDeserializer) {
+        this.preResponseDeserializer = preResponseDeserializer;
+    }
+
+    @Override
+    public void encode(PreResponse preResponse, OutputStream outputStream) throws IOException {
+        preResponseDeserializer.getNonResponseContextMapper().writeValue(
+                outputStream,
+                new PreResponseSerializationProxy(preResponse, preResponseDeserializer.getResponseContextMapper())
+        );
+    }
+
+    @Override
+    public PreResponse decode(InputStream inputStream) throws IOException {
+        return preResponseDeserializer.deserialize(inputStream);
+    }
+}
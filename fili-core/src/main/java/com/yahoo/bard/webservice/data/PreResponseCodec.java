@@ -0,0 +1,36 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data;
+
+import com.yahoo.bard.webservice.web.PreResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Translates PreResponses to and from bytes, so that they can be stored outside the process that built them.
+ */
+public interface PreResponseCodec {
+
+    /**
+     * Write the serialized form of a PreResponse to a stream.
+     *
+     * @param preResponse  The PreResponse to serialize
+     * @param outputStream  The stream to write the serialized PreResponse to
+     *
+     * @throws IOException if the stream cannot be written to
+     */
+    void encode(PreResponse preResponse, OutputStream outputStream) throws IOException;
+
+    /**
+     * Read a PreResponse written by {@link #encode(PreResponse, OutputStream)} back from a stream.
+     *
+     * @param inputStream  The stream to read the serialized PreResponse from
+     *
+     * @return the deserialized PreResponse
+     *
+     * @throws IOException if the stream cannot be read or does not hold a PreResponse
+     */
+    PreResponse decode(InputStream inputStream) throws IOException;
+}
@@ -43,6 +43,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -176,8 +177,36 @@ public class PreResponseDeserializer {
      * @throws IOException in case of deserialization of ResponseContext fails
      */
     public PreResponse deserialize(String preResponse) throws IOException {
-         JsonNode serializedPreResponse = nonResponseContextMapper.readTree(preResponse);
-         return new PreResponse(
+        return getPreResponse(nonResponseContextMapper.readTree(preResponse));
+    }
+
+    /**
+     * Deserialize the custom serialized PreResponse from a stream of UTF-8 encoded bytes.
+     * <p>
+     * This allows stores that keep the serialized PreResponse off heap (i.e. in a memory mapped file) to hand the
+     * bytes to the parser without first materializing them as a String.
+     *
+     * @param preResponse  Stream over the custom serialized PreResponse
+     *
+     * @return De-serialized PreResponse object
+     *
+     * @throws IOException in case of deserialization of ResponseContext fails
+     */
+    public PreResponse deserialize(InputStream preResponse) throws IOException {
+        return getPreResponse(nonResponseContextMapper.readTree(preResponse));
+    }
+
+    /**
+     * Rebuild the PreResponse from the JsonNode of the serialized PreResponse.
+     *
+     * @param serializedPreResponse  JsonNode which contains the serialized PreResponse
+     *
+     * @return De-serialized PreResponse object
+     *
+     * @throws IOException in case of deserialization of ResponseContext fails
+     */
+    private PreResponse getPreResponse(JsonNode serializedPreResponse) throws IOException {
+        return new PreResponse(
                 getResultSet(serializedPreResponse.get(RESULT_SET_KEY)),
                 getResponseContext(serializedPreResponse.get(RESPONSE_CONTEXT_KEY))
         );
@@ -0,0 +1,266 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.cache;
+
+import static com.yahoo.bard.webservice.config.BardFeatureFlag.COMPRESSED_CACHE_VALUES;
+
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+/**
+ * Encodes query responses into cache values and decodes them back.
+ * <p>
+ * Responses are cached as JSON Strings, or, when compressed cache values are enabled, as byte arrays holding a small
+ * header followed by the deflated UTF-8 JSON of the response. The header holds the format version, the segment set id
+ * the response was cached with and the size of the uncompressed response. Compressed values are written straight from
+ * the response tree into the compressing stream, and inflated in one pass into a buffer of the uncompressed size read
+ * from the header, without building the JSON String of the response on either side. Since the header is read from the
+ * cache, a value longer than the largest response length to cache, or whose uncompressed size is above what Deflate can
+ * reach from its compressed bytes, is rejected before that buffer is allocated.
+ * <p>
+ * Values of both kinds are decoded, so entries cached before compression was turned on or off are still read.
+ */
+public class CacheValueCodec {
+
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+
+    public static final byte FORMAT_VERSION = 1;
+
+    /**
+     * The largest ratio of uncompressed to compressed size that Deflate can reach.
+     */
+    public static final int MAX_COMPRESSION_RATIO = 1032;
+
+    /**
+     * Format version, segment set id presence, segment set id and uncompressed size.
+     */
+    public static final int HEADER_SIZE = Byte.BYTES + Byte.BYTES + Long.BYTES + Integer.BYTES;
+
+    private final ObjectMapper mapper;
+    private final ObjectWriter writer;
+    private final long maxValueSize;
+
+    /**
+     * Constructor, bounding the size of the values decoded by the largest response length to cache.
+     *
+     * @param mapper  The mapper writing and reading the JSON of the responses
+     */
+    public CacheValueCodec(ObjectMapper mapper) {
+        this(
+                mapper,
+                SYSTEM_CONFIG.getLongProperty(
+                        SYSTEM_CONFIG.getPackageVariableName("druid_max_response_length_to_cache"),
+                        Long.MAX_VALUE
+                )
+        );
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param mapper  The mapper writing and reading the JSON of the responses
+     * @param maxValueSize  The largest size of the compressed values to decode, as measured by {@link #size}
+     */
+    public CacheValueCodec(ObjectMapper mapper, long maxValueSize) {
+        this.mapper = mapper;
+        this.writer = mapper.writer();
+        this.maxValueSize = maxValueSize;
+    }
+
+    /**
+     * Encode a response into a cache value.
+     *
+     * @param json  The response to encode
+     * @param segmentSetId  The segment set id the response is cached with, or null if there is none
+     *
+     * @return a compressed byte array if compressed cache values are enabled, the JSON String of the response otherwise
+     *
+     * @throws IOException if the response cannot be written
+     */
+    public Serializable encode(JsonNode json, Long segmentSetId) throws IOException {
+        return COMPRESSED_CACHE_VALUES.isOn() ? compress(json, segmentSetId) : writer.writeValueAsString(json);
+    }
+
+    /**
+     * Decode a cache value into a response.
+     *
+     * @param value  A compressed byte array or a JSON String
+     * @param segmentSetId  The segment set id the response is expected to be cached with, or null if there is none
+     *
+     * @return the response
+     *
+     * @throws IOException if the value is not a valid response, or is a compressed value cached with another segment
+     * set id
+     */
+    public JsonNode decode(Serializable value, Long segmentSetId) throws IOException {
+        if (value instanceof byte[]) {
+            return decompress((byte[]) value, segmentSetId);
+        }
+        if (value instanceof String) {
+            return mapper.readTree((String) value);
+        }
+        throw new IOException("Unsupported cache value type " + (value == null ? null : value.getClass()));
+    }
+
+    /**
+     * Get the size of a cache value, which is checked against the largest value to cache.
+     *
+     * @param value  A compressed byte array or a JSON String
+     *
+     * @return the number of compressed bytes, or the number of characters of a JSON String
+     */
+    public static int size(Serializable value) {
+        return value instanceof byte[] ? ((byte[]) value).length : String.valueOf(value).length();
+    }
+
+    /**
+     * Read the segment set id from the header of a compressed value.
+     *
+     * @param value  The compressed value
+     *
+     * @return the segment set id the value was cached with, or null if it was cached without one
+     */
+    public static Long getSegmentSetId(byte[] value) {
+        ByteBuffer header = readHeader(value);
+        boolean present = header.get(Byte.BYTES) != 0;
+        return present ? header.getLong(Byte.BYTES + Byte.BYTES) : null;
+    }
+
+    /**
+     * Read the size of the uncompressed response from the header of a compressed value.
+     *
+     * @param value  The compressed value
+     *
+     * @return the number of bytes of the uncompressed JSON of the response
+     */
+    public static int getUncompressedSize(byte[] value) {
+        return readHeader(value).getInt(Byte.BYTES + Byte.BYTES + Long.BYTES);
+    }
+
+    /**
+     * Write a response into a compressed value.
+     *
+     * @param json  The response to compress
+     * @param segmentSetId  The segment set id the response is cached with, or null if there is none
+     *
+     * @return the header followed by the deflated JSON of the response
+     *
+     * @throws IOException if the response cannot be written
+     */
+    private byte[] compress(JsonNode json, Long segmentSetId) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(new byte[HEADER_SIZE]);
+
+        // Favor speed over ratio, the value is compressed on every cache write
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            try (OutputStream out = new DeflaterOutputStream(bytes, deflater)) {
+                writer.writeValue(out, json);
+            }
+
+            byte[] value = bytes.toByteArray();
+            ByteBuffer.wrap(value)
+                    .put(FORMAT_VERSION)
+                    .put((byte) (segmentSetId == null ? 0 : 1))
+                    .putLong(segmentSetId == null ? 0L : segmentSetId)
+                    .putInt(Math.toIntExact(deflater.getBytesRead()));
+            return value;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Read a response from a compressed value.
+     *
+     * @param value  The compressed value
+     * @param segmentSetId  The segment set id the response is expected to be cached with, or null if there is none
+     *
+     * @return the response
+     *
+     * @throws IOException if the value is not a valid compressed response or was cached with another segment set id
+     */
+    private JsonNode decompress(byte[] value, Long segmentSetId) throws IOException {
+        int uncompressedSize;
+        Long cachedSegmentSetId;
+        try {
+            uncompressedSize = getUncompressedSize(value);
+            cachedSegmentSetId = getSegmentSetId(value);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        if (!Objects.equals(cachedSegmentSetId, segmentSetId)) {
+            throw new IOException(String.format(
+                    "Compressed cache value was cached with segment set id %s instead of %s",
+                    cachedSegmentSetId,
+                    segmentSetId
+            ));
+        }
+        // The size is read from the cache, check it before allocating a buffer of that size
+        long compressedSize = value.length - HEADER_SIZE;
+        if (value.length > maxValueSize
+                || uncompressedSize < 0
+                || uncompressedSize > compressedSize * MAX_COMPRESSION_RATIO) {
+            throw new IOException(String.format(
+                    "Compressed cache value of %d bytes cannot have an uncompressed size of %d",
+                    compressedSize,
+                    uncompressedSize
+            ));
+        }
+
+        byte[] json = new byte[uncompressedSize];
+        int inflated = 0;
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(value, HEADER_SIZE, value.length - HEADER_SIZE);
+            while (inflated < uncompressedSize && !inflater.finished() && !inflater.needsInput()) {
+                inflated += inflater.inflate(json, inflated, uncompressedSize - inflated);
+            }
+            if (inflated != uncompressedSize || !inflater.finished()) {
+                throw new IOException(
+                        "Compressed cache value does not inflate to its uncompressed size of " + uncompressedSize
+                );
+            }
+        } catch (DataFormatException e) {
+            throw new IOException(e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+        return mapper.readTree(json);
+    }
+
+    /**
+     * Check the header of a compressed value.
+     *
+     * @param value  The compressed value
+     *
+     * @return the value as a buffer positioned at its header
+     *
+     * @throws IllegalArgumentException if the value is too short or written in an unknown format version
+     */
+    private static ByteBuffer readHeader(byte[] value) {
+        if (value.length < HEADER_SIZE) {
+            throw new IllegalArgumentException("Compressed cache value is shorter than its header");
+        }
+        ByteBuffer header = ByteBuffer.wrap(value);
+        if (header.get(0) != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unknown compressed cache value format version " + header.get(0));
+        }
+        return header;
+    }
+}
@@ -0,0 +1,130 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.cache;
+
+import com.yahoo.bard.webservice.application.MetricRegistryFactory;
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded thread pool that writes query responses to the data cache behind the response, so that a cache miss does
+ * not wait for the response to be serialized and written to the cache before it is answered.
+ * <p>
+ * Cache writes are best effort: when the queue of waiting writes is full, new writes are dropped rather than slowing
+ * the responses down, and the response is simply not cached.
+ * <p>
+ * The pool reports the number of waiting writes, the number of dropped writes, and the time from a write being handed
+ * off to it being written.
+ */
+public class CacheWriteExecutor extends ThreadPoolExecutor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CacheWriteExecutor.class);
+    private static final MetricRegistry REGISTRY = MetricRegistryFactory.getRegistry();
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+
+    public static final String QUEUE_SIZE_GAUGE = "cache.write.executor.gauge.queue";
+    public static final Timer WRITE_TIMER = REGISTRY.timer("cache.write.executor.timer.write");
+    public static final Meter DROPPED = REGISTRY.meter("cache.write.executor.meter.dropped");
+
+    /**
+     * Number of threads writing responses to the cache. 0 writes them before the response is processed.
+     */
+    private static final int THREADS = SYSTEM_CONFIG.getIntProperty(
+            SYSTEM_CONFIG.getPackageVariableName("cache_write_threads"),
+            0
+    );
+
+    /**
+     * Number of cache writes that may wait for a writing thread.
+     */
+    private static final int QUEUE_SIZE = SYSTEM_CONFIG.getIntProperty(
+            SYSTEM_CONFIG.getPackageVariableName("cache_write_queue_size"),
+            1024
+    );
+
+    /**
+     * Constructor.
+     *
+     * @param threads  The number of threads writing to the cache
+     * @param queueSize  The number of writes that may wait for a thread
+     */
+    public CacheWriteExecutor(int threads, int queueSize) {
+        super(
+                threads,
+                threads,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                new CacheWriteThreadFactory(),
+                (task, executor) -> {
+                    DROPPED.mark();
+                    LOG.debug("Cache write dropped, {} writes are already waiting", executor.getQueue().size());
+                }
+        );
+
+        REGISTRY.remove(QUEUE_SIZE_GAUGE);
+        REGISTRY.register(QUEUE_SIZE_GAUGE, (Gauge<Integer>) () -> getQueue().size());
+        LOG.info("Started cache write executor with {} threads and a queue of {}", threads, queueSize);
+    }
+
+    /**
+     * Get the executor configured for writing responses to the data cache, shared by all the caching response
+     * processors.
+     *
+     * @return the shared executor, or an executor writing on the submitting thread if no cache write threads are
+     * configured
+     */
+    public static Executor getDefault() {
+        return DefaultHolder.EXECUTOR;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        long handedOffNanos = System.nanoTime();
+        super.execute(() -> {
+            try {
+                command.run();
+            } finally {
+                WRITE_TIMER.update(System.nanoTime() - handedOffNanos, TimeUnit.NANOSECONDS);
+            }
+        });
+    }
+
+    /**
+     * Lazily builds the shared executor, so that no threads are started unless a caching response processor is used.
+     */
+    private static class DefaultHolder {
+        private static final Executor EXECUTOR = THREADS > 0
+                ? new CacheWriteExecutor(THREADS, QUEUE_SIZE)
+                : Runnable::run;
+    }
+
+    /**
+     * Builds named daemon threads, so the pool neither hides in thread dumps nor keeps the JVM alive.
+     */
+    private static class CacheWriteThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "cache-write-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
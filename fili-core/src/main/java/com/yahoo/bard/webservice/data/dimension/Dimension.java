@@ -9,6 +9,8 @@ import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 
 import org.joda.time.DateTime;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
@@ -111,6 +113,26 @@ public interface Dimension {
      */
     DimensionRow findDimensionRowByKeyValue(String value);
 
+    /**
+     * Get the dimension rows for several ids.
+     * <p>
+     * Dimensions whose rows live in a remote store should override this to fetch the rows in bulk.
+     *
+     * @param values  key values
+     *
+     * @return the dimension rows by key value. Values with no matching row are absent from the map.
+     */
+    default Map<String, DimensionRow> findDimensionRowsByKeyValues(Collection<String> values) {
+        Map<String, DimensionRow> dimensionRows = new LinkedHashMap<>(values.size());
+        for (String value : values) {
+            DimensionRow dimensionRow = findDimensionRowByKeyValue(value);
+            if (dimensionRow != null) {
+                dimensionRows.put(value, dimensionRow);
+            }
+        }
+        return dimensionRows;
+    }
+
     /**
      * Get primary key field for this dimension.
      *
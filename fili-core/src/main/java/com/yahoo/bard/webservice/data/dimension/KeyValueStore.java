@@ -5,6 +5,8 @@ package com.yahoo.bard.webservice.data.dimension;
 import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import javax.validation.constraints.NotNull;
@@ -49,6 +51,31 @@ public interface KeyValueStore extends Closeable {
      */
     String get(@NotNull String key);
 
+    /**
+     * Get the values for several keys from store.
+     * <p>
+     * Stores that can fetch several keys at once should override this, so that callers resolving many keys pay for one
+     * round trip instead of one per key.
+     *
+     * @param keys  Keys to get the values for
+     *
+     * @return the values of the keys that are set, by key. Keys that are not set are absent from the map.
+     */
+    default Map<String, String> getAll(@NotNull Collection<String> keys) {
+        if (keys == null) {
+            throw new IllegalArgumentException("Cannot get null keys");
+        }
+
+        Map<String, String> values = new LinkedHashMap<>(keys.size());
+        for (String key : keys) {
+            String value = get(key);
+            if (value != null) {
+                values.put(key, value);
+            }
+        }
+        return values;
+    }
+
     /**
      * Get the value for a key from store or provide a default.
      *
@@ -0,0 +1,149 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.dimension;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+
+/**
+ * A dimension row that only knows its key value until one of its other fields is read.
+ * <p>
+ * Building a result set with lazy rows avoids looking up the rows of every dimension value in a response, when the
+ * request only shows the key field or most rows are dropped before the response is written. The first read of a
+ * non-key field looks the row up in its dimension, and {@link #resolveAll} looks up many rows with one bulk lookup.
+ * Values with no row in the dimension keep empty fields, like the empty rows made for them when rows are looked up
+ * eagerly.
+ */
+public class LazyDimensionRow extends DimensionRow {
+
+    private final Dimension dimension;
+    private volatile boolean resolved;
+
+    /**
+     * Constructor.
+     *
+     * @param dimension  The dimension the row belongs to
+     * @param keyValue  The value of the dimension's key field
+     */
+    public LazyDimensionRow(Dimension dimension, String keyValue) {
+        super(dimension.getKey(), emptyFields(dimension, keyValue));
+        this.dimension = dimension;
+    }
+
+    /**
+     * Build a map of every field of a dimension to an empty value, except for the key field.
+     *
+     * @param dimension  The dimension whose fields are mapped
+     * @param keyValue  The value of the key field
+     *
+     * @return the map of fields to values
+     */
+    private static Map<DimensionField, String> emptyFields(Dimension dimension, String keyValue) {
+        Map<DimensionField, String> fields = new LinkedHashMap<>();
+        dimension.getDimensionFields().forEach(field -> fields.put(field, ""));
+        fields.put(dimension.getKey(), keyValue);
+        return fields;
+    }
+
+    /**
+     * Check if the row's fields have been looked up.
+     *
+     * @return true if the row's fields have been looked up
+     */
+    public boolean isResolved() {
+        return resolved;
+    }
+
+    /**
+     * Look up the row's fields in its dimension, unless they have been looked up already.
+     */
+    public void resolve() {
+        if (!resolved) {
+            resolveWith(dimension.findDimensionRowByKeyValue(getKeyValue()));
+        }
+    }
+
+    /**
+     * Fill in the row's fields from a row looked up in the dimension, unless they have been filled in already.
+     *
+     * @param row  The row looked up for the key value, or null if the dimension has no row for it
+     */
+    private synchronized void resolveWith(DimensionRow row) {
+        if (resolved) {
+            return;
+        }
+        if (row != null) {
+            super.putAll(row);
+        }
+        resolved = true;
+    }
+
+    /**
+     * Look up the fields of the unresolved rows of a dimension with one bulk lookup.
+     *
+     * @param dimension  The dimension the rows belong to
+     * @param rows  The rows to resolve
+     */
+    public static void resolveAll(Dimension dimension, Collection<LazyDimensionRow> rows) {
+        Set<String> keyValues = rows.stream()
+                .filter(row -> !row.isResolved())
+                .map(DimensionRow::getKeyValue)
+                .collect(Collectors.toSet());
+        if (keyValues.isEmpty()) {
+            return;
+        }
+        Map<String, DimensionRow> found = dimension.findDimensionRowsByKeyValues(keyValues);
+        rows.forEach(row -> row.resolveWith(found.get(row.getKeyValue())));
+    }
+
+    @Override
+    public String get(Object field) {
+        if (!dimension.getKey().equals(field)) {
+            resolve();
+        }
+        return super.get(field);
+    }
+
+    @Override
+    public String getOrDefault(Object field, String defaultValue) {
+        if (!dimension.getKey().equals(field)) {
+            resolve();
+        }
+        return super.getOrDefault(field, defaultValue);
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        resolve();
+        return super.containsValue(value);
+    }
+
+    @Override
+    public Set<Map.Entry<DimensionField, String>> entrySet() {
+        resolve();
+        return super.entrySet();
+    }
+
+    @Override
+    public Collection<String> values() {
+        resolve();
+        return super.values();
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super DimensionField, ? super String> action) {
+        resolve();
+        super.forEach(action);
+    }
+
+    @Override
+    public void replaceAll(BiFunction<? super DimensionField, ? super String, ? extends String> function) {
+        resolve();
+        super.replaceAll(function);
+    }
+}
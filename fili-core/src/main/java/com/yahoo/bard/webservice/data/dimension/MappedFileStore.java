@@ -0,0 +1,789 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.dimension;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * A KeyValueStore kept on local disk in an append-only log of memory mapped segment files.
+ * <p>
+ * Every put or remove appends a record to the active segment. Records are laid out as
+ * {@code [key length][value length][key][value]}, with a value length of -1 marking a removed key. The key length is
+ * written last, so a record only becomes visible to recovery once it is completely written.
+ * <p>
+ * Keys are found through an open addressing hash table held off heap in direct buffers. Each slot holds the hash of a
+ * key and the location of its latest record, and the key itself is compared against the mapped record, so neither
+ * keys nor values live on the heap between requests.
+ * <p>
+ * When the store is opened on a directory that already holds segments, the index is rebuilt by replaying them in
+ * order, so a restarted node serves the rows it had before the restart without reloading them. Once overwritten and
+ * removed records outweigh the live ones, {@link #compact()} copies the live records to new segments and deletes the
+ * old segments oldest first, so a crash part way through compaction still replays to the same contents.
+ * <p>
+ * Writes reach the page cache immediately and survive a crash of the process. Call {@link #flush()} to also survive a
+ * crash of the host.
+ */
+public class MappedFileStore implements KeyValueStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MappedFileStore.class);
+
+    public static final String SEGMENT_PREFIX = "kv-";
+    public static final String SEGMENT_SUFFIX = ".seg";
+    public static final long DEFAULT_SEGMENT_SIZE_BYTES = 64L * 1024 * 1024;
+
+    private static final int RECORD_HEADER_BYTES = 2 * Integer.BYTES;
+    private static final int TOMBSTONE_LENGTH = -1;
+
+    private final Path directory;
+    private final long segmentSizeBytes;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+
+    private Segment activeSegment;
+    private IndexTable index;
+    private long liveBytes;
+    private long writtenBytes;
+    private boolean isOpen;
+
+    /**
+     * Constructor.
+     *
+     * @param directory  Directory holding the segment files, created if it does not exist
+     * @param segmentSizeBytes  Size of each preallocated segment file
+     *
+     * @throws UncheckedIOException if the directory cannot be created or its existing segments cannot be read
+     */
+    public MappedFileStore(Path directory, long segmentSizeBytes) {
+        if (segmentSizeBytes < RECORD_HEADER_BYTES || segmentSizeBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Segment size out of range: " + segmentSizeBytes);
+        }
+        this.directory = directory;
+        this.segmentSizeBytes = segmentSizeBytes;
+        open();
+    }
+
+    @Override
+    public void open() {
+        lock.writeLock().lock();
+        try {
+            if (!isOpen) {
+                Files.createDirectories(directory);
+                recover();
+                isOpen = true;
+            }
+        } catch (IOException e) {
+            throw storageFailure("Unable to open key value store in " + directory, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            for (Segment segment : segments.values()) {
+                segment.buffer.force();
+                segment.channel.close();
+            }
+        } catch (IOException e) {
+            throw storageFailure("Unable to close key value store in " + directory, e);
+        } finally {
+            segments.clear();
+            activeSegment = null;
+            index = null;
+            isOpen = false;
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        lock.readLock().lock();
+        try {
+            return isOpen;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isHealthy() {
+        return isOpen();
+    }
+
+    @Override
+    public String remove(@NotNull String key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Cannot remove null key");
+        }
+        return put(key, null);
+    }
+
+    @Override
+    public String get(@NotNull String key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Cannot get null key");
+        }
+
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            return find(key.getBytes(StandardCharsets.UTF_8));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Map<String, String> getAll(@NotNull Collection<String> keys) {
+        if (keys == null) {
+            throw new IllegalArgumentException("Cannot get null keys");
+        }
+
+        Map<String, String> values = new LinkedHashMap<>(keys.size());
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            for (String key : keys) {
+                if (key == null) {
+                    throw new IllegalArgumentException("Cannot get null key");
+                }
+                String value = find(key.getBytes(StandardCharsets.UTF_8));
+                if (value != null) {
+                    values.put(key, value);
+                }
+            }
+            return values;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public String put(@NotNull String key, String value) {
+        return putAll(Collections.singletonMap(key, value)).get(key);
+    }
+
+    @Override
+    public Map<String, String> putAll(@NotNull Map<String, String> entries) {
+        if (entries == null) {
+            throw new IllegalArgumentException("Cannot set null entries");
+        }
+
+        Map<String, String> oldValues = new HashMap<>(entries.size());
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                if (entry.getKey() == null) {
+                    throw new IllegalArgumentException("Cannot set null key");
+                }
+                if (entry.getKey().isEmpty()) {
+                    // A key length of 0 marks the end of the records of a segment during recovery
+                    throw new IllegalArgumentException("Cannot set empty key");
+                }
+                oldValues.put(entry.getKey(), write(entry.getKey(), entry.getValue()));
+            }
+            if (writtenBytes - liveBytes > Math.max(liveBytes, segmentSizeBytes)) {
+                compact();
+            }
+            return oldValues;
+        } catch (IOException e) {
+            throw storageFailure("Unable to put keys into key value store in " + directory, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Rewrite the live records to new segments and delete the old ones, reclaiming the space of overwritten and
+     * removed records.
+     *
+     * @throws UncheckedIOException if the live records cannot be rewritten or the old segments deleted
+     */
+    public void compact() {
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            List<Segment> oldSegments = new ArrayList<>(segments.values());
+            IndexTable oldIndex = index;
+
+            activeSegment = null;
+            index = new IndexTable(IndexTable.capacityFor(oldIndex.size));
+            liveBytes = 0;
+            writtenBytes = 0;
+            for (int slot = 0; slot < oldIndex.capacity; slot++) {
+                long location = oldIndex.locations.get(slot);
+                if (location != IndexTable.EMPTY && location != IndexTable.DELETED) {
+                    byte[] keyBytes = readKey(location);
+                    byte[] valueBytes = readValue(location);
+                    long newLocation = append(keyBytes, valueBytes);
+                    index.insert(oldIndex.hashes.get(slot), newLocation);
+                    liveBytes += recordLength(newLocation);
+                    writtenBytes += recordLength(newLocation);
+                }
+            }
+
+            // The new records must be durable before the records they replace are deleted
+            for (Segment segment : segments.values()) {
+                if (!oldSegments.contains(segment)) {
+                    segment.buffer.force();
+                }
+            }
+            for (Segment segment : oldSegments) {
+                segments.remove(segment.id);
+                segment.channel.close();
+                Files.deleteIfExists(segment.path);
+            }
+            LOG.debug("Compacted key value store in {} to {} keys", directory, index.size);
+        } catch (IOException e) {
+            throw storageFailure("Unable to compact key value store in " + directory, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Force the written records to disk.
+     *
+     * @throws IllegalStateException if the store is closed
+     */
+    public void flush() {
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            segments.values().forEach(segment -> segment.buffer.force());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the number of keys held by the store.
+     *
+     * @return the number of keys
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            return index.size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the disk space currently allocated to the segment files.
+     *
+     * @return the total size of the segment files in bytes
+     */
+    public long getDiskUsageBytes() {
+        lock.readLock().lock();
+        try {
+            return segments.values().stream().mapToLong(segment -> segment.buffer.capacity()).sum();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Look up the value of a key. Must be called holding the lock.
+     *
+     * @param keyBytes  The UTF-8 bytes of the key
+     *
+     * @return the value of the key, or null if the key is not set
+     */
+    private String find(byte[] keyBytes) {
+        int slot = findSlot(keyBytes, hash(keyBytes));
+        return slot < 0 ? null : new String(readValue(index.locations.get(slot)), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Append a record setting or removing a key, and point the index at it. Must be called holding the write lock.
+     *
+     * @param key  The key to set
+     * @param value  The value to set, or null to remove the key
+     *
+     * @return the previous value of the key, or null if the key was not set
+     *
+     * @throws IOException if a new segment cannot be created
+     */
+    private String write(String key, String value) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(keyBytes);
+        int slot = findSlot(keyBytes, hash);
+        if (slot < 0 && value == null) {
+            return null;
+        }
+
+        String previous = null;
+        if (slot >= 0) {
+            long previousLocation = index.locations.get(slot);
+            previous = new String(readValue(previousLocation), StandardCharsets.UTF_8);
+            liveBytes -= recordLength(previousLocation);
+        }
+
+        long location = append(keyBytes, value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+        applyRecord(slot, hash, location, value == null);
+        writtenBytes += recordLength(location);
+        return previous;
+    }
+
+    /**
+     * Point the index at a newly written or replayed record.
+     *
+     * @param slot  The slot currently holding the record's key, or a negative number if the key is not indexed
+     * @param hash  The hash of the record's key
+     * @param location  The location of the record
+     * @param isTombstone  Whether the record removes its key
+     */
+    private void applyRecord(int slot, int hash, long location, boolean isTombstone) {
+        if (isTombstone) {
+            if (slot >= 0) {
+                index.delete(slot);
+            }
+            return;
+        }
+        if (slot >= 0) {
+            index.locations.put(slot, location);
+        } else {
+            if (index.needsRehash()) {
+                index = index.rehash();
+            }
+            index.insert(hash, location);
+        }
+        liveBytes += recordLength(location);
+    }
+
+    /**
+     * Find the index slot holding a key.
+     *
+     * @param keyBytes  The UTF-8 bytes of the key
+     * @param hash  The hash of the key
+     *
+     * @return the slot, or -1 if the key is not indexed
+     */
+    private int findSlot(byte[] keyBytes, int hash) {
+        int mask = index.capacity - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            long location = index.locations.get(slot);
+            if (location == IndexTable.EMPTY) {
+                return -1;
+            }
+            if (location != IndexTable.DELETED && index.hashes.get(slot) == hash && keyEquals(location, keyBytes)) {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * Check whether the record at a location is for the given key, without copying the stored key.
+     *
+     * @param location  The location of the record
+     * @param keyBytes  The UTF-8 bytes of the key
+     *
+     * @return true if the record's key is the given key
+     */
+    private boolean keyEquals(long location, byte[] keyBytes) {
+        ByteBuffer buffer = segmentAt(location).buffer;
+        int offset = offsetOf(location);
+        if (buffer.getInt(offset) != keyBytes.length) {
+            return false;
+        }
+        int keyStart = offset + RECORD_HEADER_BYTES;
+        for (int i = 0; i < keyBytes.length; i++) {
+            if (buffer.get(keyStart + i) != keyBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copy the key of the record at a location.
+     *
+     * @param location  The location of the record
+     *
+     * @return the UTF-8 bytes of the key
+     */
+    private byte[] readKey(long location) {
+        ByteBuffer buffer = segmentAt(location).buffer.duplicate();
+        int offset = offsetOf(location);
+        byte[] keyBytes = new byte[buffer.getInt(offset)];
+        buffer.position(offset + RECORD_HEADER_BYTES);
+        buffer.get(keyBytes);
+        return keyBytes;
+    }
+
+    /**
+     * Copy the value of the record at a location.
+     *
+     * @param location  The location of a record that sets its key
+     *
+     * @return the UTF-8 bytes of the value
+     */
+    private byte[] readValue(long location) {
+        ByteBuffer buffer = segmentAt(location).buffer.duplicate();
+        int offset = offsetOf(location);
+        int keyLength = buffer.getInt(offset);
+        byte[] valueBytes = new byte[buffer.getInt(offset + Integer.BYTES)];
+        buffer.position(offset + RECORD_HEADER_BYTES + keyLength);
+        buffer.get(valueBytes);
+        return valueBytes;
+    }
+
+    /**
+     * Get the length of the record at a location, including its header.
+     *
+     * @param location  The location of the record
+     *
+     * @return the length of the record in bytes
+     */
+    private int recordLength(long location) {
+        ByteBuffer buffer = segmentAt(location).buffer;
+        int offset = offsetOf(location);
+        return RECORD_HEADER_BYTES + buffer.getInt(offset) + Math.max(0, buffer.getInt(offset + Integer.BYTES));
+    }
+
+    /**
+     * Append a record to the active segment, rolling over to a new segment if the record does not fit.
+     *
+     * @param keyBytes  The UTF-8 bytes of the key
+     * @param valueBytes  The UTF-8 bytes of the value, or null to remove the key
+     *
+     * @return the location of the new record
+     *
+     * @throws IOException if a new segment cannot be created
+     */
+    private long append(byte[] keyBytes, byte[] valueBytes) throws IOException {
+        int valueLength = valueBytes == null ? TOMBSTONE_LENGTH : valueBytes.length;
+        int recordLength = RECORD_HEADER_BYTES + keyBytes.length + Math.max(0, valueLength);
+
+        if (activeSegment == null || activeSegment.remaining() < recordLength) {
+            activeSegment = createSegment(Math.max(segmentSizeBytes, recordLength));
+        }
+
+        Segment segment = activeSegment;
+        int recordStart = segment.writePosition;
+        ByteBuffer buffer = segment.buffer.duplicate();
+        buffer.position(recordStart + Integer.BYTES);
+        buffer.putInt(valueLength);
+        buffer.put(keyBytes);
+        if (valueBytes != null) {
+            buffer.put(valueBytes);
+        }
+        // Writing the key length commits the record
+        segment.buffer.putInt(recordStart, keyBytes.length);
+        segment.writePosition += recordLength;
+
+        return locationOf(segment.id, recordStart);
+    }
+
+    /**
+     * Create and map a new, empty segment file after the existing ones.
+     *
+     * @param size  The size to preallocate for the segment
+     *
+     * @return the new segment
+     *
+     * @throws IOException if the file cannot be created or mapped
+     */
+    private Segment createSegment(long size) throws IOException {
+        int id = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+        Segment segment = new Segment(id, directory.resolve(SEGMENT_PREFIX + id + SEGMENT_SUFFIX), size);
+        segments.put(id, segment);
+        return segment;
+    }
+
+    /**
+     * Map the segments already present in the directory and rebuild the index by replaying their records in order.
+     *
+     * @throws IOException if a segment cannot be read
+     */
+    private void recover() throws IOException {
+        index = new IndexTable(IndexTable.capacityFor(0));
+        liveBytes = 0;
+        writtenBytes = 0;
+
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : paths) {
+                String name = path.getFileName().toString();
+                int id = Integer.parseInt(
+                        name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())
+                );
+                segments.put(id, new Segment(id, path, Files.size(path)));
+            }
+        }
+
+        for (Segment segment : segments.values()) {
+            ByteBuffer buffer = segment.buffer;
+            int position = 0;
+            while (buffer.capacity() - position >= RECORD_HEADER_BYTES) {
+                int keyLength = buffer.getInt(position);
+                int valueLength = buffer.getInt(position + Integer.BYTES);
+                if (keyLength <= 0 || valueLength < TOMBSTONE_LENGTH) {
+                    break;
+                }
+                int recordLength = RECORD_HEADER_BYTES + keyLength + Math.max(0, valueLength);
+                if (buffer.capacity() - position < recordLength) {
+                    break;
+                }
+
+                long location = locationOf(segment.id, position);
+                byte[] keyBytes = readKey(location);
+                int hash = hash(keyBytes);
+                int slot = findSlot(keyBytes, hash);
+                if (slot >= 0) {
+                    liveBytes -= recordLength(index.locations.get(slot));
+                }
+                applyRecord(slot, hash, location, valueLength == TOMBSTONE_LENGTH);
+                writtenBytes += recordLength;
+                position += recordLength;
+            }
+            segment.writePosition = position;
+        }
+
+        activeSegment = segments.isEmpty() ? null : segments.lastEntry().getValue();
+        LOG.info("Recovered {} keys from {} segments in {}", index.size, segments.size(), directory);
+    }
+
+    /**
+     * Fail if the store has been closed.
+     */
+    private void checkOpen() {
+        if (!isOpen) {
+            throw new IllegalStateException("Key value store in " + directory + " is closed");
+        }
+    }
+
+    /**
+     * Log a storage failure and wrap it in an unchecked exception.
+     *
+     * @param message  Description of the failed operation
+     * @param cause  The cause of the failure
+     *
+     * @return the exception to throw
+     */
+    private UncheckedIOException storageFailure(String message, IOException cause) {
+        LOG.error(message, cause);
+        return new UncheckedIOException(message, cause);
+    }
+
+    /**
+     * Get the segment holding the record at a location.
+     *
+     * @param location  The location of the record
+     *
+     * @return the segment
+     */
+    private Segment segmentAt(long location) {
+        return segments.get((int) (location >>> 32));
+    }
+
+    /**
+     * Get the offset within its segment of the record at a location.
+     *
+     * @param location  The location of the record
+     *
+     * @return the offset of the record
+     */
+    private static int offsetOf(long location) {
+        return (int) location;
+    }
+
+    /**
+     * Pack the segment and offset of a record into a location. Segment ids start at 1, so no location is 0.
+     *
+     * @param segmentId  The id of the segment holding the record
+     * @param offset  The offset of the record within the segment
+     *
+     * @return the location of the record
+     */
+    private static long locationOf(int segmentId, int offset) {
+        return ((long) segmentId << 32) | (offset & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Hash the UTF-8 bytes of a key, spreading the high bits into the low bits used to pick a slot.
+     *
+     * @param keyBytes  The UTF-8 bytes of the key
+     *
+     * @return the hash of the key
+     */
+    private static int hash(byte[] keyBytes) {
+        int hash = 1;
+        for (byte keyByte : keyBytes) {
+            hash = 31 * hash + keyByte;
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * An append-only, memory mapped segment file.
+     */
+    private static class Segment {
+        private final int id;
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int writePosition;
+
+        /**
+         * Open (creating if needed) and map a segment file.
+         *
+         * @param id  The sequence number of the segment
+         * @param path  The segment file
+         * @param size  The size to map the segment at
+         *
+         * @throws IOException if the file cannot be opened or mapped
+         */
+        Segment(int id, Path path, long size) throws IOException {
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Segment size " + size + " exceeds the maximum mappable size");
+            }
+            this.id = id;
+            this.path = path;
+            this.channel = FileChannel.open(
+                    path,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.READ,
+                    StandardOpenOption.WRITE
+            );
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+
+        /**
+         * Get the space left for new records.
+         *
+         * @return the number of unwritten bytes in the segment
+         */
+        int remaining() {
+            return buffer.capacity() - writePosition;
+        }
+    }
+
+    /**
+     * An open addressing, linear probing hash table from key hashes to record locations, held in direct buffers.
+     */
+    private static class IndexTable {
+        private static final long EMPTY = 0L;
+        private static final long DELETED = -1L;
+        private static final double MAX_LOAD_FACTOR = 0.6;
+        private static final int MIN_CAPACITY = 1024;
+
+        private final int capacity;
+        private final LongBuffer locations;
+        private final IntBuffer hashes;
+        private int size;
+        private int used;
+
+        /**
+         * Constructor.
+         *
+         * @param capacity  The number of slots, a power of two
+         */
+        IndexTable(int capacity) {
+            this.capacity = capacity;
+            this.locations = ByteBuffer.allocateDirect(capacity * Long.BYTES).asLongBuffer();
+            this.hashes = ByteBuffer.allocateDirect(capacity * Integer.BYTES).asIntBuffer();
+        }
+
+        /**
+         * Get a table capacity that holds the given number of keys below the maximum load factor.
+         *
+         * @param keys  The number of keys to hold
+         *
+         * @return the capacity, a power of two
+         */
+        static int capacityFor(int keys) {
+            int capacity = MIN_CAPACITY;
+            while (capacity * MAX_LOAD_FACTOR <= keys + 1) {
+                capacity <<= 1;
+            }
+            return capacity;
+        }
+
+        /**
+         * Check whether inserting another key would exceed the maximum load factor, counting deleted slots.
+         *
+         * @return true if the table should be rehashed before the next insertion
+         */
+        boolean needsRehash() {
+            return used + 1 > capacity * MAX_LOAD_FACTOR;
+        }
+
+        /**
+         * Copy the live slots into a new table sized for them, dropping deleted slots.
+         *
+         * @return the new table
+         */
+        IndexTable rehash() {
+            IndexTable rehashed = new IndexTable(capacityFor(size * 2));
+            for (int slot = 0; slot < capacity; slot++) {
+                long location = locations.get(slot);
+                if (location != EMPTY && location != DELETED) {
+                    rehashed.insert(hashes.get(slot), location);
+                }
+            }
+            return rehashed;
+        }
+
+        /**
+         * Insert a key that is not in the table.
+         *
+         * @param hash  The hash of the key
+         * @param location  The location of the key's record
+         */
+        void insert(int hash, long location) {
+            int mask = capacity - 1;
+            int slot = hash & mask;
+            while (locations.get(slot) != EMPTY && locations.get(slot) != DELETED) {
+                slot = (slot + 1) & mask;
+            }
+            if (locations.get(slot) == EMPTY) {
+                used++;
+            }
+            locations.put(slot, location);
+            hashes.put(slot, hash);
+            size++;
+        }
+
+        /**
+         * Mark a slot as deleted, keeping the probe sequences that run through it intact.
+         *
+         * @param slot  The slot to delete
+         */
+        void delete(int slot) {
+            locations.put(slot, DELETED);
+            size--;
+        }
+    }
+}
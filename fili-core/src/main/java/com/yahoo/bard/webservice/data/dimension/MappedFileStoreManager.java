@@ -0,0 +1,68 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.dimension;
+
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Mapped File Store instance manager.
+ * <p>
+ * Each named instance keeps its segments in a subdirectory, named after the store, of the configured directory.
+ */
+public class MappedFileStoreManager {
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+
+    // Parent directory of the store directories
+    private static final String STORE_PATH = SYSTEM_CONFIG.getPackageVariableName("mapped_file_store_path");
+
+    // Size of each preallocated segment file
+    private static final long SEGMENT_SIZE_BYTES = SYSTEM_CONFIG.getLongProperty(
+            SYSTEM_CONFIG.getPackageVariableName("mapped_file_store_segment_size_bytes"),
+            MappedFileStore.DEFAULT_SEGMENT_SIZE_BYTES
+    );
+
+    // Hold singleton instances by name
+    private static final Map<String, MappedFileStore> MAPPED_FILE_STORES = new HashMap<>();
+
+    /**
+     * Factory for singleton instances by name.
+     * <p>
+     * Only a single instance can exist for each name. A new instance serves whatever an earlier process left in its
+     * directory.
+     *
+     * @param storeName Name for the singleton instance
+     *
+     * @return The singleton instance for the given name
+     */
+    public static synchronized MappedFileStore getInstance(String storeName) {
+        MappedFileStore mappedFileStore = MAPPED_FILE_STORES.get(storeName);
+
+        if (mappedFileStore == null) {
+            Path directory = Paths.get(SYSTEM_CONFIG.getStringProperty(STORE_PATH), storeName);
+            mappedFileStore = new MappedFileStore(directory, SEGMENT_SIZE_BYTES);
+            MAPPED_FILE_STORES.put(storeName, mappedFileStore);
+        }
+
+        return mappedFileStore;
+    }
+
+    /**
+     * Close and forget the named singleton instance.
+     * <p>
+     * The segment files are left on disk, to be served again by the next instance with that name.
+     *
+     * @param storeName Name of the singleton instance to remove
+     */
+    public static synchronized void removeInstance(String storeName) {
+        MappedFileStore mappedFileStore = MAPPED_FILE_STORES.remove(storeName);
+        if (mappedFileStore != null) {
+            mappedFileStore.close();
+        }
+    }
+}
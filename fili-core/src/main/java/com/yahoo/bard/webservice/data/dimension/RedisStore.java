@@ -7,10 +7,16 @@ import org.slf4j.LoggerFactory;
 
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
 import redis.clients.jedis.exceptions.JedisException;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -18,14 +24,19 @@ import javax.validation.constraints.NotNull;
 
 /**
  * A Redis-based implementation of KeyValueStore.
+ * <p>
+ * Multi-key operations are sent in batches, each batch costing a single round trip to Redis.
  */
 public class RedisStore implements KeyValueStore {
     private static final Logger LOG = LoggerFactory.getLogger(RedisStore.class);
 
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
     private boolean redisIsHealthy;
     private final JedisPool pool;
     private final String storeName;
     private final String redisNamespace;
+    private final int batchSize;
 
     /**
      * Build a connection to a Redis provider.
@@ -35,10 +46,26 @@ public class RedisStore implements KeyValueStore {
      * @param redisNamespace  The first part of the prefix to the keyspace names for this store
      */
     public RedisStore(String storeName, JedisPool pool, String redisNamespace) {
+        this(storeName, pool, redisNamespace, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Build a connection to a Redis provider.
+     *
+     * @param storeName  The second part of the prefix to keyspace names for this store
+     * @param pool  A pool of Jedis connection instances
+     * @param redisNamespace  The first part of the prefix to the keyspace names for this store
+     * @param batchSize  The number of keys read or written per round trip by the multi-key operations
+     */
+    public RedisStore(String storeName, JedisPool pool, String redisNamespace, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Redis batch size must be positive: " + batchSize);
+        }
         this.pool = pool;
         this.storeName = storeName;
         this.redisIsHealthy = true;
         this.redisNamespace = redisNamespace;
+        this.batchSize = batchSize;
         open();
     }
 
@@ -105,6 +132,31 @@ public class RedisStore implements KeyValueStore {
         }
     }
 
+    @Override
+    public Map<String, String> getAll(@NotNull Collection<String> keys) {
+        if (keys == null) {
+            throw new IllegalArgumentException("Cannot get null keys");
+        }
+
+        Map<String, String> values = new LinkedHashMap<>(keys.size());
+        try (Jedis jedis = pool.getResource()) {
+            for (List<String> batch : batches(keys)) {
+                List<String> batchValues = jedis.mget(redisKeys(batch));
+                for (int i = 0; i < batch.size(); i++) {
+                    if (batchValues.get(i) != null) {
+                        values.put(batch.get(i), batchValues.get(i));
+                    }
+                }
+            }
+            return values;
+        } catch (JedisException e) {
+            redisIsHealthy = false;
+            String msg = "Unable to get keys from Redis";
+            LOG.error(msg);
+            throw new RuntimeException(msg, e);
+        }
+    }
+
     @Override
     public boolean isHealthy() {
         // If we know we're not healthy, don't bother pinging.
@@ -130,30 +182,40 @@ public class RedisStore implements KeyValueStore {
         try (Jedis jedis = pool.getResource()) {
 
             Map<String, String> oldValues = new HashMap<>(entries.size());
-            for (String key : entries.keySet()) {
-                if (key == null) {
-                    throw new IllegalArgumentException("Cannot set null key");
+            for (List<String> batch : batches(entries.keySet())) {
+                String[] rKeys = redisKeys(batch);
+                List<String> keysAndValues = new ArrayList<>(2 * batch.size());
+                List<String> removedKeys = new ArrayList<>();
+                for (int i = 0; i < batch.size(); i++) {
+                    String newValue = entries.get(batch.get(i));
+                    if (newValue == null) {
+                        removedKeys.add(rKeys[i]);
+                    } else {
+                        keysAndValues.add(rKeys[i]);
+                        keysAndValues.add(newValue);
+                    }
                 }
 
-                String rKey = redisKey(storeName, key);
-
-                String oldValue = jedis.get(rKey);
-                String newValue = entries.get(key);
-
-                oldValues.put(key, oldValue);
+                // Read the old values and write the new ones in one round trip. Redis runs pipelined commands in
+                // order, so the read sees the values from before the write.
+                Pipeline pipeline = jedis.pipelined();
+                Response<List<String>> batchOldValues = pipeline.mget(rKeys);
+                Response<String> setResult = keysAndValues.isEmpty()
+                        ? null
+                        : pipeline.mset(keysAndValues.toArray(new String[keysAndValues.size()]));
+                if (!removedKeys.isEmpty()) {
+                    pipeline.del(removedKeys.toArray(new String[removedKeys.size()]));
+                }
+                pipeline.sync();
 
-                if (newValue == null) {
-                    if (oldValue != null) {
-                        jedis.del(rKey);
-                    }
-                } else {
-                    String result = jedis.set(rKey, entries.get(key));
-                    if (!"OK".equals(result)) {
-                        redisIsHealthy = false;
-                        String msg = "Redis failed to store key";
-                        LOG.error(msg);
-                        throw new RuntimeException(msg);
-                    }
+                if (setResult != null && !"OK".equals(setResult.get())) {
+                    redisIsHealthy = false;
+                    String msg = "Redis failed to store keys";
+                    LOG.error(msg);
+                    throw new RuntimeException(msg);
+                }
+                for (int i = 0; i < batch.size(); i++) {
+                    oldValues.put(batch.get(i), batchOldValues.get().get(i));
                 }
             }
             return oldValues;
@@ -166,6 +228,47 @@ public class RedisStore implements KeyValueStore {
         }
     }
 
+    /**
+     * Split keys into batches of at most the batch size, rejecting null keys.
+     *
+     * @param keys  The keys to split
+     *
+     * @return the batches of keys, in iteration order
+     */
+    private List<List<String>> batches(Collection<String> keys) {
+        List<List<String>> batches = new ArrayList<>(keys.size() / batchSize + 1);
+        List<String> batch = new ArrayList<>(Math.min(batchSize, keys.size()));
+        for (String key : keys) {
+            if (key == null) {
+                throw new IllegalArgumentException("Cannot use null key");
+            }
+            if (batch.size() == batchSize) {
+                batches.add(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+            batch.add(key);
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    /**
+     * Build the namespace- and store-specific redis keys for a batch of keys.
+     *
+     * @param keys  Names of the keys to generate the names for
+     *
+     * @return the prefixed keys, in the order of the given keys
+     */
+    private String[] redisKeys(List<String> keys) {
+        String[] rKeys = new String[keys.size()];
+        for (int i = 0; i < rKeys.length; i++) {
+            rKeys[i] = redisKey(storeName, keys.get(i));
+        }
+        return rKeys;
+    }
+
     /**
      * Ping the Redis server and update redisIsHealthy.
      */
@@ -22,11 +22,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
@@ -441,6 +444,15 @@ public class KeyValueStoreDimension implements Dimension {
         Map<String, String> storeRows = new LinkedHashMap<>(dimensionRows.size());
         Map<String, Pair<DimensionRow, DimensionRow>> indexRows = new LinkedHashMap<>(dimensionRows.size());
 
+        // fetch the rows already in the store in bulk, rather than one round trip per row
+        String keyName = getKey().getName();
+        Map<String, String> existingRows = keyValueStore.getAll(
+                dimensionRows.stream()
+                        .filter(dimensionRow -> !dimensionRow.isEmpty() && dimensionRow.get(getKey()) != null)
+                        .map(dimensionRow -> DimensionStoreKeyUtils.getRowKey(keyName, dimensionRow.get(getKey())))
+                        .collect(Collectors.toSet())
+        );
+
         for (DimensionRow dimensionRow : dimensionRows) {
             try {
                 if (dimensionRow.isEmpty()) {
@@ -456,13 +468,9 @@ public class KeyValueStoreDimension implements Dimension {
 
                 // check if the dimension row already exists in store
                 DimensionRow dimensionRowOld = null;
-                String row = keyValueStore.get(rowIdKey);
+                String row = existingRows.get(rowIdKey);
                 if (row != null) {
-                    LinkedHashMap<String, String> fieldNameValueMap = objectMapper.readValue(
-                            row,
-                            new TypeReference<LinkedHashMap<String, String>>() { }
-                    );
-                    dimensionRowOld = parseDimensionRow(fieldNameValueMap);
+                    dimensionRowOld = readDimensionRow(row);
                     if (dimensionRow.equals(dimensionRowOld)) {
                         continue;
                     }
@@ -514,11 +522,7 @@ public class KeyValueStoreDimension implements Dimension {
         try {
             String dimRowJson = keyValueStore.get(rowKey);
             if (dimRowJson != null) {
-                Map<String, String> dimensionRowMap = objectMapper.readValue(
-                        dimRowJson,
-                        new TypeReference<LinkedHashMap<String, String>>() { }
-                );
-                drByKey = parseDimensionRow(dimensionRowMap);
+                drByKey = readDimensionRow(dimRowJson);
             }
         } catch (IOException e) {
             LOG.error("Cannot map string to DimensionRow object. {}", e);
@@ -527,6 +531,49 @@ public class KeyValueStoreDimension implements Dimension {
         return drByKey;
     }
 
+    @Override
+    public Map<String, DimensionRow> findDimensionRowsByKeyValues(Collection<String> values) {
+        // Values differing only by case share a row key unless row keys are case sensitive
+        Map<String, List<String>> valuesByRowKey = new LinkedHashMap<>(values.size());
+        for (String value : values) {
+            valuesByRowKey.computeIfAbsent(
+                    DimensionStoreKeyUtils.getRowKey(getKey().getName(), value),
+                    rowKey -> new ArrayList<>(1)
+            ).add(value);
+        }
+
+        Map<String, DimensionRow> dimensionRows = new LinkedHashMap<>(values.size());
+        try {
+            for (Map.Entry<String, String> row : keyValueStore.getAll(valuesByRowKey.keySet()).entrySet()) {
+                DimensionRow dimensionRow = readDimensionRow(row.getValue());
+                for (String value : valuesByRowKey.get(row.getKey())) {
+                    dimensionRows.put(value, dimensionRow);
+                }
+            }
+        } catch (IOException e) {
+            LOG.error("Cannot map string to DimensionRow object. {}", e);
+            throw new RuntimeException(e);
+        }
+        return dimensionRows;
+    }
+
+    /**
+     * Deserialize a dimension row from its representation in the key value store.
+     *
+     * @param dimRowJson  The serialized dimension row
+     *
+     * @return the dimension row
+     *
+     * @throws IOException if the serialized row cannot be read
+     */
+    private DimensionRow readDimensionRow(String dimRowJson) throws IOException {
+        Map<String, String> dimensionRowMap = objectMapper.readValue(
+                dimRowJson,
+                new TypeReference<LinkedHashMap<String, String>>() { }
+        );
+        return parseDimensionRow(dimensionRowMap);
+    }
+
 
     /**
      * Internal method for cleaning the dimension rows.
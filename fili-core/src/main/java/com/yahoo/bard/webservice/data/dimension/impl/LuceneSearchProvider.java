@@ -27,18 +27,29 @@ import com.yahoo.bard.webservice.web.util.PaginationParameters;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.ngram.NGramTokenizer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.SortedDocValuesField;
 import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.index.SortedDocValues;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.PhraseQuery;
 import org.apache.lucene.search.PrefixQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
@@ -48,24 +59,37 @@ import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.WildcardQuery;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.StringReader;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collector;
 import java.util.stream.Collectors;
@@ -82,6 +106,22 @@ public class LuceneSearchProvider implements SearchProvider {
     protected static final Analyzer STANDARD_LUCENE_ANALYZER = new StandardAnalyzer();
     private static final double BUFFER_SIZE = 48;
 
+    /**
+     * Name of the doc values field holding the key value of each document, read to hydrate search hits.
+     */
+    private static final String KEY_DOC_VALUES_FIELD = "__key_doc_values";
+
+    /**
+     * Suffix of the name of the field indexing the n-grams of each dimension field, used to answer contains filters.
+     */
+    private static final String NGRAM_FIELD_SUFFIX = "_ngram";
+    private static final int NGRAM_SIZE = 3;
+
+    /**
+     * Key of the commit user data marking an index whose documents were all written with n-grams, holding their size.
+     */
+    private static final String NGRAM_INDEX_MARKER = "ngram_size";
+
     public static final int LUCENE_SEARCH_TIMEOUT_MS = SYSTEM_CONFIG.getIntProperty(
             SYSTEM_CONFIG.getPackageVariableName("lucene_search_timeout_ms"),
             600000
@@ -93,9 +133,43 @@ public class LuceneSearchProvider implements SearchProvider {
             1.2f
     );
 
+    /**
+     * Number of changed rows in one index refresh from which the index is rebuilt instead of updated. 0 always updates.
+     */
+    public static final int LUCENE_REBUILD_THRESHOLD = SYSTEM_CONFIG.getIntProperty(
+            SYSTEM_CONFIG.getPackageVariableName("lucene_rebuild_threshold"),
+            0
+    );
+
+    private static final int LUCENE_REBUILD_THREADS = SYSTEM_CONFIG.getIntProperty(
+            SYSTEM_CONFIG.getPackageVariableName("lucene_rebuild_threads"),
+            Runtime.getRuntime().availableProcessors()
+    );
+
+    private static final double LUCENE_REBUILD_RAM_BUFFER_MB = SYSTEM_CONFIG.getDoubleProperty(
+            SYSTEM_CONFIG.getPackageVariableName("lucene_rebuild_ram_buffer_mb"),
+            256
+    );
+
+    /**
+     * Whether the n-grams of every dimension field are indexed, so contains filters are answered with phrase queries
+     * on the n-grams instead of leading wildcard queries, which scan every term of the field. The index needs to be
+     * rebuilt when this changes.
+     */
+    public static final boolean LUCENE_NGRAM_CONTAINS_ENABLED = SYSTEM_CONFIG.getBooleanProperty(
+            SYSTEM_CONFIG.getPackageVariableName("lucene_ngram_contains_enabled"),
+            false
+    );
+
     protected Analyzer analyzer;
 
     protected final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Held while the index is written, so that a rebuild, which does not hold the write lock while it builds the new
+     * index, does not lose updates made at the same time.
+     */
+    private final ReentrantLock indexUpdateLock = new ReentrantLock();
     private final String luceneIndexPath;
 
     public static final String TOO_MANY_DOCUMENTS = "Unexpectedly large response from search provider.  Found %l hits.";
@@ -111,6 +185,8 @@ public class LuceneSearchProvider implements SearchProvider {
     private boolean luceneIndexIsHealthy;
     protected IndexSearcher luceneIndexSearcher;
     private int searchTimeout;
+    private int rebuildThreshold = LUCENE_REBUILD_THRESHOLD;
+    private boolean ngramContains = LUCENE_NGRAM_CONTAINS_ENABLED;
 
     /**
      * Constructor.
@@ -346,32 +422,71 @@ public class LuceneSearchProvider implements SearchProvider {
         refreshIndex(Collections.singletonMap(rowId, new Pair<>(dimensionRow, dimensionRowOld)));
     }
 
+    /**
+     * Refresh the lucene index with changed rows.
+     * <p>
+     * Batches of at least {@code bard__lucene_rebuild_threshold} rows, such as full dimension reloads, rebuild the
+     * index in the background with {@link #rebuildIndex(Collection)}, from the rows already indexed and the changed
+     * rows. Smaller batches, and all batches of providers whose index cannot be rebuilt from the dimension rows, update
+     * the index in place while holding the write lock.
+     *
+     * @param changedRows  Collection of newRow / oldRow pairs keyed by rowId to update the index with
+     */
     @Override
     public void refreshIndex(Map<String, Pair<DimensionRow, DimensionRow>> changedRows) {
+        indexUpdateLock.lock();
+        try {
+            if (isRebuildable() && rebuildThreshold > 0 && changedRows.size() >= rebuildThreshold) {
+                Map<String, DimensionRow> rows = new LinkedHashMap<>(findIndexedDimensionRows());
+                changedRows.values().forEach(pair -> rows.put(pair.getKey().getKeyValue(), pair.getKey()));
+                rebuildIndex(rows.values());
+            } else {
+                updateIndex(changedRows);
+            }
+        } finally {
+            indexUpdateLock.unlock();
+        }
+    }
+
+    /**
+     * Check if the index can be rebuilt from the dimension rows alone, so that large refreshes may rebuild it.
+     * <p>
+     * A rebuilt index only holds the fields of the dimension. Subclasses searching other fields of the index, which
+     * cannot be derived from the dimension rows, return false so that refreshes keep updating the index in place.
+     *
+     * @return true if refreshes may rebuild the index
+     */
+    protected boolean isRebuildable() {
+        return true;
+    }
+
+    /**
+     * Update the lucene index in place with changed rows, holding the write lock.
+     *
+     * @param changedRows  Collection of newRow / oldRow pairs keyed by rowId to update the index with
+     */
+    private void updateIndex(Map<String, Pair<DimensionRow, DimensionRow>> changedRows) {
         // Make a single Document instance to hold field data being updated to Lucene
         // Creating documents is costly and so Document will be reused for each record being processed due to
         // performance best practices.
-        Document doc = new Document();
         Map<DimensionField, Field> dimFieldToLuceneField = new HashMap<>(dimension.getDimensionFields().size());
-
-        // Create the document fields for this dimension and add them to the document
-        for (DimensionField dimensionField : dimension.getDimensionFields()) {
-            Field luceneField = new StringField(
-                    DimensionStoreKeyUtils.getColumnKey(dimensionField.getName()),
-                    "",
-                    dimensionField.equals(dimension.getKey()) ? Field.Store.YES : Field.Store.NO
-            );
-
-            // Store the lucene field in the doc and in our lookup map
-            dimFieldToLuceneField.put(dimensionField, luceneField);
-            doc.add(luceneField);
-        }
+        Document doc = buildDocument(dimFieldToLuceneField);
 
         // Write the rows to the document
         IndexWriterConfig indexWriterConfig = new IndexWriterConfig(analyzer).setRAMBufferSizeMB(BUFFER_SIZE);
         writeLock();
         try {
             try (IndexWriter luceneIndexWriter = new IndexWriter(luceneDirectory, indexWriterConfig)) {
+                // The documents not updated keep how they were written, so n-grams only cover an index that was empty
+                // or already covered
+                markNgramIndexed(
+                        luceneIndexWriter,
+                        ngramContains && (
+                                luceneIndexWriter.numDocs() == 0
+                                        || isNgramIndexed(luceneIndexWriter.getLiveCommitData())
+                        )
+                );
+
                 // Update the document fields for each row and update the document
                 for (String rowId : changedRows.keySet()) {
                     // Get the new row from the pair
@@ -396,6 +511,69 @@ public class LuceneSearchProvider implements SearchProvider {
         }
     }
 
+    /**
+     * Set the fields of a reusable document to the values of a dimension row.
+     *
+     * @param doc  The document to set the values of
+     * @param fieldMap  Mapping of DimensionFields to the Document's fields
+     * @param row  The row whose values are set
+     */
+    private void setFieldValues(Document doc, Map<DimensionField, Field> fieldMap, DimensionRow row) {
+        // Update the document fields with each field from the new dimension row
+        for (DimensionField field : dimension.getDimensionFields()) {
+            // Get the field to update from the lookup map
+            Field fieldToUpdate = fieldMap.get(field);
+
+            // Set field value to updated value
+            String value = row.getOrDefault(field, "");
+            fieldToUpdate.setStringValue(value);
+
+            if (ngramContains) {
+                // The tokenizer is closed after each document is indexed, so it takes the next value as a new reader
+                Field ngramField = (Field) doc.getField(fieldToUpdate.name() + NGRAM_FIELD_SUFFIX);
+                ((Tokenizer) ngramField.tokenStreamValue()).setReader(new StringReader(value));
+            }
+        }
+        Field keyDocValues = (Field) doc.getField(KEY_DOC_VALUES_FIELD);
+        keyDocValues.setBytesValue(new BytesRef(row.getOrDefault(dimension.getKey(), "")));
+    }
+
+    /**
+     * Build a reusable document holding a field for each field of the dimension.
+     *
+     * @param fieldMap  Map to fill with the document's field for each dimension field
+     *
+     * @return the document
+     */
+    private Document buildDocument(Map<DimensionField, Field> fieldMap) {
+        Document doc = new Document();
+
+        // Create the document fields for this dimension and add them to the document
+        for (DimensionField dimensionField : dimension.getDimensionFields()) {
+            Field luceneField = new StringField(
+                    DimensionStoreKeyUtils.getColumnKey(dimensionField.getName()),
+                    "",
+                    dimensionField.equals(dimension.getKey()) ? Field.Store.YES : Field.Store.NO
+            );
+
+            // Store the lucene field in the doc and in our lookup map
+            fieldMap.put(dimensionField, luceneField);
+            doc.add(luceneField);
+
+            if (ngramContains) {
+                doc.add(new Field(
+                        luceneField.name() + NGRAM_FIELD_SUFFIX,
+                        new NGramTokenizer(NGRAM_SIZE, NGRAM_SIZE),
+                        TextField.TYPE_NOT_STORED
+                ));
+            }
+        }
+
+        // Index the key as doc values too, so the keys of search hits are read without loading stored fields
+        doc.add(new SortedDocValuesField(KEY_DOC_VALUES_FIELD, new BytesRef()));
+        return doc;
+    }
+
     /**
      * Update the dimension row in the index.
      *
@@ -412,14 +590,7 @@ public class LuceneSearchProvider implements SearchProvider {
             IndexWriter writer,
             DimensionRow newRow
     ) throws IOException {
-        // Update the document fields with each field from the new dimension row
-        for (DimensionField field : dimension.getDimensionFields()) {
-            // Get the field to update from the lookup map
-            Field fieldToUpdate = fieldMap.get(field);
-
-            // Set field value to updated value
-            fieldToUpdate.setStringValue(newRow.getOrDefault(field, ""));
-        }
+        setFieldValues(luceneDimensionRowDoc, fieldMap, newRow);
 
         // Build the term to delete the old document by the key value (which should be unique)
         Term keyTerm = new Term(fieldMap.get(dimension.getKey()).name(), newRow.getOrDefault(dimension.getKey(), ""));
@@ -428,6 +599,146 @@ public class LuceneSearchProvider implements SearchProvider {
         writer.updateDocument(keyTerm, luceneDimensionRowDoc);
     }
 
+    /**
+     * Replace the whole lucene index with an index of the given rows, without blocking searches while it is built.
+     * <p>
+     * The new index is built in a sibling directory of the index by several threads sharing one index writer with a
+     * large RAM buffer. Searches then switch to the new index with a brief swap under the write lock, which waits for
+     * in-flight searches on the old index to finish before its reader is released. The new index is copied over the
+     * index directory while searches use it, and searches swap back, so that the index directory always holds the
+     * current index for restarts.
+     *
+     * @param dimensionRows  All the rows of the dimension
+     */
+    public void rebuildIndex(Collection<DimensionRow> dimensionRows) {
+        Path indexPath = Paths.get(luceneIndexPath);
+        String rebuildPath = indexPath.resolveSibling(indexPath.getFileName() + "_rebuild").toString();
+        LOG.debug("Rebuilding Lucene index of dimension {} with {} rows", dimension.getApiName(), dimensionRows.size());
+
+        indexUpdateLock.lock();
+        try {
+            deleteDir(rebuildPath);
+            try (Directory rebuildDirectory = new MMapDirectory(Paths.get(rebuildPath))) {
+                writeIndex(rebuildDirectory, dimensionRows);
+                swapIndexSearcher(rebuildDirectory);
+
+                IndexWriterConfig indexWriterConfig = new IndexWriterConfig(analyzer)
+                        .setOpenMode(IndexWriterConfig.OpenMode.CREATE);
+                try (IndexWriter writer = new IndexWriter(luceneDirectory, indexWriterConfig)) {
+                    writer.addIndexes(rebuildDirectory);
+                    markNgramIndexed(writer, ngramContains);
+                }
+                swapIndexSearcher(luceneDirectory);
+            } catch (IOException e) {
+                luceneIndexIsHealthy = false;
+                LOG.error("Failed to rebuild index for dimension rows", e);
+                throw new RuntimeException(e);
+            }
+            deleteDir(rebuildPath);
+            refreshCardinality();
+        } finally {
+            indexUpdateLock.unlock();
+        }
+    }
+
+    /**
+     * Write a new index of dimension rows to a directory, with several threads adding rows to one index writer.
+     *
+     * @param directory  The directory to write the index to
+     * @param dimensionRows  The rows to index
+     *
+     * @throws IOException if the index cannot be written
+     */
+    private void writeIndex(Directory directory, Collection<DimensionRow> dimensionRows) throws IOException {
+        List<DimensionRow> rows = new ArrayList<>(dimensionRows);
+        int threads = Math.max(1, Math.min(LUCENE_REBUILD_THREADS, rows.size()));
+        IndexWriterConfig indexWriterConfig = new IndexWriterConfig(analyzer)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE)
+                .setRAMBufferSizeMB(LUCENE_REBUILD_RAM_BUFFER_MB);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (IndexWriter writer = new IndexWriter(directory, indexWriterConfig)) {
+            List<Future<?>> slices = new ArrayList<>(threads);
+            for (int slice = 0; slice < threads; slice++) {
+                int first = slice;
+                slices.add(executor.submit(() -> {
+                    // Each thread reuses its own document for its slice of the rows
+                    Map<DimensionField, Field> fieldMap = new HashMap<>(dimension.getDimensionFields().size());
+                    Document doc = buildDocument(fieldMap);
+                    for (int i = first; i < rows.size(); i += threads) {
+                        setFieldValues(doc, fieldMap, rows.get(i));
+                        writer.addDocument(doc);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> slice : slices) {
+                slice.get();
+            }
+            markNgramIndexed(writer, ngramContains);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Switch searches to a new reader on an index directory, and release the reader they used before.
+     * <p>
+     * Taking the write lock waits for the searches using the old reader to finish, and only blocks new searches for
+     * the swap itself.
+     *
+     * @param directory  The directory of the index to search
+     *
+     * @throws IOException if the index cannot be opened
+     */
+    private void swapIndexSearcher(Directory directory) throws IOException {
+        IndexSearcher newSearcher = new IndexSearcher(DirectoryReader.open(directory));
+        IndexSearcher oldSearcher;
+        writeLock();
+        try {
+            oldSearcher = luceneIndexSearcher;
+            luceneIndexSearcher = newSearcher;
+        } finally {
+            writeUnlock();
+        }
+        if (oldSearcher != null) {
+            oldSearcher.getIndexReader().decRef();
+        }
+    }
+
+    /**
+     * Find the rows of every key in the index.
+     *
+     * @return the rows by key value
+     */
+    private Map<String, DimensionRow> findIndexedDimensionRows() {
+        initializeIndexSearcher();
+        String idKey = DimensionStoreKeyUtils.getColumnKey(dimension.getKey().getName());
+        Set<String> fieldsToLoad = Collections.singleton(idKey);
+        Set<String> keyValues = new HashSet<>();
+        readLock();
+        try {
+            IndexReader reader = luceneIndexSearcher.getIndexReader();
+            Bits liveDocs = MultiFields.getLiveDocs(reader);
+            for (int i = 0; i < reader.maxDoc(); i++) {
+                if (liveDocs == null || liveDocs.get(i)) {
+                    keyValues.add(reader.document(i, fieldsToLoad).get(idKey));
+                }
+            }
+        } catch (IOException e) {
+            LOG.error("Unable to read the keys of the index", e);
+            throw new RuntimeException(e);
+        } finally {
+            readUnlock();
+        }
+        return dimension.findDimensionRowsByKeyValues(keyValues);
+    }
+
     @Override
     public void replaceIndex(String newLuceneIndexPathString) {
         LOG.debug(
@@ -437,6 +748,7 @@ public class LuceneSearchProvider implements SearchProvider {
                 newLuceneIndexPathString
         );
 
+        indexUpdateLock.lock();
         writeLock();
         try {
             Path oldLuceneIndexPath = Paths.get(luceneIndexPath);
@@ -460,6 +772,7 @@ public class LuceneSearchProvider implements SearchProvider {
             reopenIndexSearcher(false);
         } finally {
             writeUnlock();
+            indexUpdateLock.unlock();
         }
     }
 
@@ -536,6 +849,7 @@ public class LuceneSearchProvider implements SearchProvider {
     public void clearDimension() {
         Set<DimensionRow> dimensionRows = findAllDimensionRows();
         IndexWriterConfig indexWriterConfig = new IndexWriterConfig(analyzer).setRAMBufferSizeMB(BUFFER_SIZE);
+        indexUpdateLock.lock();
         writeLock();
         try {
             try (IndexWriter writer = new IndexWriter(luceneDirectory, indexWriterConfig)) {
@@ -569,6 +883,7 @@ public class LuceneSearchProvider implements SearchProvider {
             refreshCardinality();
         } finally {
             writeUnlock();
+            indexUpdateLock.unlock();
         }
     }
 
@@ -590,6 +905,42 @@ public class LuceneSearchProvider implements SearchProvider {
                 DimensionStoreKeyUtils.getCardinalityKey(),
                 Integer.toString(numDocs)
         );
+        if (ngramContains) {
+            LOG.debug("N-gram index of dimension {} holds {} n-grams", dimension.getApiName(), getNgramIndexSize());
+        }
+    }
+
+    /**
+     * Get the size of the n-gram index kept to answer contains filters, as the number of n-grams indexed over all the
+     * fields of the dimension.
+     *
+     * @return the number of indexed n-grams, 0 if n-grams are not indexed
+     */
+    public long getNgramIndexSize() {
+        if (!ngramContains) {
+            return 0;
+        }
+        initializeIndexSearcher();
+        readLock();
+        try {
+            IndexReader reader = luceneIndexSearcher.getIndexReader();
+            long size = 0;
+            for (DimensionField field : dimension.getDimensionFields()) {
+                Terms terms = MultiFields.getTerms(
+                        reader,
+                        DimensionStoreKeyUtils.getColumnKey(field.getName()) + NGRAM_FIELD_SUFFIX
+                );
+                if (terms != null) {
+                    size += terms.getSumTotalTermFreq();
+                }
+            }
+            return size;
+        } catch (IOException e) {
+            LOG.error("Unable to read the size of the n-gram index", e);
+            throw new RuntimeException(e);
+        } finally {
+            readUnlock();
+        }
     }
 
     @Override
@@ -672,13 +1023,103 @@ public class LuceneSearchProvider implements SearchProvider {
      * @return A builder that knows how to build the appropriate BooleanQuery
      */
     private BooleanQuery containsFilterQuery(String luceneFieldName, ApiFilter filter) {
+        boolean ngramIndexed = ngramContains && isNgramIndexed();
         return filter.getValues().stream()
-                .map(value -> new Term(luceneFieldName, "*" + value + "*"))
-                .map(WildcardQuery::new)
+                .map(value -> containsValueQuery(luceneFieldName, value, ngramIndexed))
                 .collect(getBooleanQueryCollector(BooleanClause.Occur.SHOULD))
                 .build();
     }
 
+    /**
+     * Build the query matching the values of a field that contain a value.
+     * <p>
+     * When n-grams are indexed, a value of at least the n-gram size is matched by the phrase of its n-grams at
+     * consecutive positions, which only matches fields containing the exact value. Shorter values, values holding
+     * wildcard characters, and values searched in an index holding documents written without n-grams, are matched with
+     * a wildcard query.
+     *
+     * @param luceneFieldName  Name of the lucene field to filter on
+     * @param value  The value to search for
+     * @param ngramIndexed  Whether every document of the index was written with n-grams
+     *
+     * @return the query
+     */
+    private Query containsValueQuery(String luceneFieldName, String value, boolean ngramIndexed) {
+        int[] codePoints = value.codePoints().toArray();
+        boolean hasWildcards = value.indexOf('*') >= 0 || value.indexOf('?') >= 0 || value.indexOf('\\') >= 0;
+        if (!ngramIndexed || codePoints.length < NGRAM_SIZE || hasWildcards) {
+            return new WildcardQuery(new Term(luceneFieldName, "*" + value + "*"));
+        }
+
+        PhraseQuery.Builder phrase = new PhraseQuery.Builder();
+        for (int position = 0; position + NGRAM_SIZE <= codePoints.length; position++) {
+            phrase.add(
+                    new Term(luceneFieldName + NGRAM_FIELD_SUFFIX, new String(codePoints, position, NGRAM_SIZE)),
+                    position
+            );
+        }
+        return phrase.build();
+    }
+
+    /**
+     * Check if every document of the index was written with n-grams, from the marker in the user data of its commit.
+     * <p>
+     * Indexes written before n-grams were enabled, or updated in place while they were disabled, have no marker, even
+     * if some of their documents hold n-grams.
+     *
+     * @return true if the index is marked as holding the n-grams of all its documents
+     */
+    private boolean isNgramIndexed() {
+        initializeIndexSearcher();
+        readLock();
+        try {
+            IndexReader reader = luceneIndexSearcher.getIndexReader();
+            return reader instanceof DirectoryReader
+                    && isNgramIndexed(((DirectoryReader) reader).getIndexCommit().getUserData().entrySet());
+        } catch (IOException e) {
+            LOG.error("Unable to read the commit of the index of dimension {}", dimension.getApiName(), e);
+            throw new RuntimeException(e);
+        } finally {
+            readUnlock();
+        }
+    }
+
+    /**
+     * Check if the user data of a commit marks every document of the index as written with n-grams.
+     *
+     * @param commitData  The user data of the commit
+     *
+     * @return true if the commit holds the n-gram marker for the current n-gram size
+     */
+    private static boolean isNgramIndexed(Iterable<Map.Entry<String, String>> commitData) {
+        for (Map.Entry<String, String> entry : commitData) {
+            if (NGRAM_INDEX_MARKER.equals(entry.getKey())) {
+                return String.valueOf(NGRAM_SIZE).equals(entry.getValue());
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Set or clear the n-gram marker in the user data of the next commit of an index writer.
+     *
+     * @param writer  The index writer
+     * @param ngramIndexed  Whether every document of the index is written with n-grams once the writer commits
+     */
+    private static void markNgramIndexed(IndexWriter writer, boolean ngramIndexed) {
+        Map<String, String> commitData = new HashMap<>();
+        Iterable<Map.Entry<String, String>> liveCommitData = writer.getLiveCommitData();
+        if (liveCommitData != null) {
+            liveCommitData.forEach(entry -> commitData.put(entry.getKey(), entry.getValue()));
+        }
+        if (ngramIndexed) {
+            commitData.put(NGRAM_INDEX_MARKER, String.valueOf(NGRAM_SIZE));
+        } else {
+            commitData.remove(NGRAM_INDEX_MARKER);
+        }
+        writer.setLiveCommitData(commitData.entrySet());
+    }
+
     /**
      * Get query with filter parameters.
      *
@@ -828,22 +1269,7 @@ public class LuceneSearchProvider implements SearchProvider {
 
             // convert hits to dimension rows
             try (TimedPhase timer = RequestLog.startTiming("LuceneHydratingDimensionRows")) {
-                String idKey = DimensionStoreKeyUtils.getColumnKey(dimension.getKey().getName());
-                filteredDimRows = Arrays.stream(hits)
-                        .map(
-                                hit -> {
-                                    try {
-                                        return luceneIndexSearcher.doc(hit.doc);
-                                    } catch (IOException e) {
-                                        LOG.error("Unable to convert hit " + hit);
-                                        throw new RuntimeException(e);
-                                    }
-                                }
-                        )
-                        .map(document -> document.get(idKey))
-                        .map(dimension::findDimensionRowByKeyValue)
-                        .filter(it -> it != null)
-                        .collect(Collectors.toCollection(TreeSet::new));
+                filteredDimRows = new TreeSet<>(dimension.findDimensionRowsByKeyValues(readKeyValues(hits)).values());
             }
         } finally {
             readUnlock();
@@ -855,6 +1281,45 @@ public class LuceneSearchProvider implements SearchProvider {
         );
     }
 
+    /**
+     * Read the key values of search hits from the key doc values of the index.
+     * <p>
+     * Hits are read in document order, so the doc values of each segment are read forwards. Documents indexed before
+     * the key was indexed as doc values fall back to the stored key field.
+     *
+     * @param hits  The search hits
+     *
+     * @return the key values of the hits
+     */
+    private List<String> readKeyValues(ScoreDoc[] hits) {
+        String idKey = DimensionStoreKeyUtils.getColumnKey(dimension.getKey().getName());
+        Set<String> fieldsToLoad = Collections.singleton(idKey);
+        List<LeafReaderContext> leaves = luceneIndexSearcher.getIndexReader().leaves();
+        int[] docs = Arrays.stream(hits).mapToInt(hit -> hit.doc).sorted().toArray();
+
+        List<String> keyValues = new ArrayList<>(docs.length);
+        LeafReaderContext leaf = null;
+        SortedDocValues values = null;
+        try {
+            for (int doc : docs) {
+                LeafReaderContext docLeaf = leaves.get(ReaderUtil.subIndex(doc, leaves));
+                if (docLeaf != leaf) {
+                    leaf = docLeaf;
+                    values = leaf.reader().getSortedDocValues(KEY_DOC_VALUES_FIELD);
+                }
+                if (values != null && values.advanceExact(doc - leaf.docBase)) {
+                    keyValues.add(values.binaryValue().utf8ToString());
+                } else {
+                    keyValues.add(luceneIndexSearcher.doc(doc, fieldsToLoad).get(idKey));
+                }
+            }
+        } catch (IOException e) {
+            LOG.error("Unable to read the keys of {} hits", docs.length);
+            throw new RuntimeException(e);
+        }
+        return keyValues;
+    }
+
     /**
      * Check if perPage exceeds limit of max number of rows to be returned.
      *
@@ -114,6 +114,16 @@ public class NormalizedLuceneSearchProvider extends LuceneSearchProvider impleme
         }
     }
 
+    /**
+     * The search column is indexed outside of this provider, and a rebuilt index would lose it.
+     *
+     * @return false, so that refreshes keep the search column of the rows they do not change
+     */
+    @Override
+    protected boolean isRebuildable() {
+        return false;
+    }
+
     protected Analyzer getAnalyzer() {
         return analyzer;
     }
@@ -36,6 +36,9 @@ public class DateTimeSortMapper extends ResultSetMapper {
 
     /**
      *  Sorting the resultSet based on dateTime column sort direction.
+     * <p>
+     * Large result sets are grouped into time buckets on several threads, keeping the order of the results of each
+     * bucket.
      *
      * @param resultSet  The result set need to be sorted in ascending or descending order
      *
@@ -48,8 +51,13 @@ public class DateTimeSortMapper extends ResultSetMapper {
 
         RequestLog.startTiming("sortResultSet");
         try {
-            for (Result result : resultSet) {
-                bucketizedResultsMap.computeIfAbsent(result.getTimeStamp(), ignored -> new ArrayList<>()).add(result);
+            if (ParallelResultMapping.isParallel(resultSet.size())) {
+                bucketizedResultsMap = resultSet.parallelStream().collect(Collectors.groupingBy(Result::getTimeStamp));
+            } else {
+                for (Result result : resultSet) {
+                    bucketizedResultsMap.computeIfAbsent(result.getTimeStamp(), ignored -> new ArrayList<>())
+                            .add(result);
+                }
             }
 
             List<DateTime> dateTimeList = new ArrayList<>(bucketizedResultsMap.keySet());
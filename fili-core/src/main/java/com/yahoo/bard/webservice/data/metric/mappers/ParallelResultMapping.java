@@ -0,0 +1,101 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.metric.mappers;
+
+import com.yahoo.bard.webservice.config.BardFeatureFlag;
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
+import com.yahoo.bard.webservice.data.Result;
+
+import org.joda.time.DateTime;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Helpers for result set mappers that map large result sets on the fork/join common pool.
+ * <p>
+ * Result sets are mapped in parallel only with {@link BardFeatureFlag#PARALLEL_RESULT_MAPPING} on, when they have at
+ * least {@code bard__parallel_result_mapping_min_rows} rows, and when the machine has at least
+ * {@code bard__parallel_result_mapping_min_cores} cores. Smaller result sets are mapped faster on the thread of the
+ * request than by handing them to other threads.
+ */
+public class ParallelResultMapping {
+
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+
+    public static final String MIN_ROWS_KEY = SYSTEM_CONFIG.getPackageVariableName(
+            "parallel_result_mapping_min_rows"
+    );
+    public static final String MIN_CORES_KEY = SYSTEM_CONFIG.getPackageVariableName(
+            "parallel_result_mapping_min_cores"
+    );
+
+    private static final int DEFAULT_MIN_ROWS = 100000;
+    private static final int DEFAULT_MIN_CORES = 4;
+
+    /**
+     * Private constructor, this class only has static methods.
+     */
+    private ParallelResultMapping() {
+    }
+
+    /**
+     * Check if a result set is large enough, and the machine has enough cores, to map it in parallel.
+     *
+     * @param rows  The number of rows of the result set
+     *
+     * @return true if the result set is to be mapped in parallel
+     */
+    public static boolean isParallel(int rows) {
+        return BardFeatureFlag.PARALLEL_RESULT_MAPPING.isOn()
+                && rows >= SYSTEM_CONFIG.getIntProperty(MIN_ROWS_KEY, DEFAULT_MIN_ROWS)
+                && Runtime.getRuntime().availableProcessors()
+                >= SYSTEM_CONFIG.getIntProperty(MIN_CORES_KEY, DEFAULT_MIN_CORES);
+    }
+
+    /**
+     * Split results into time buckets, which are the runs of consecutive results sharing a timestamp.
+     *
+     * @param results  The results to split, ordered by time bucket as Druid returns them
+     *
+     * @return views of the results of each time bucket, in the order of the results
+     */
+    public static List<List<Result>> splitByTime(List<Result> results) {
+        List<List<Result>> buckets = new ArrayList<>();
+        int start = 0;
+        DateTime bucketTime = null;
+        for (int i = 0; i < results.size(); i++) {
+            DateTime timestamp = results.get(i).getTimeStamp();
+            if (i > 0 && !timestamp.equals(bucketTime)) {
+                buckets.add(results.subList(start, i));
+                start = i;
+            }
+            bucketTime = timestamp;
+        }
+        if (start < results.size()) {
+            buckets.add(results.subList(start, results.size()));
+        }
+        return buckets;
+    }
+
+    /**
+     * Map time buckets on the fork/join common pool, and concatenate the mapped buckets in the order of the buckets.
+     *
+     * @param buckets  The results of each time bucket
+     * @param bucketMapper  The mapping of the results of one bucket, which must be safe to run concurrently
+     *
+     * @return the concatenated results of the mapped buckets
+     */
+    public static List<Result> mapBuckets(
+            List<List<Result>> buckets,
+            Function<List<Result>, List<Result>> bucketMapper
+    ) {
+        return buckets.parallelStream()
+                .map(bucketMapper)
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+    }
+}
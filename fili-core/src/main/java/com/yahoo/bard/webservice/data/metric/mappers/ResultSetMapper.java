@@ -11,6 +11,8 @@ import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
 
 /**
  * ResultSetMapper is an abstract class for walking a result set.
@@ -21,20 +23,34 @@ abstract public class ResultSetMapper {
 
     /**
      * Take a complete result set and replace it with one altered according to the rules of the concrete mapper.
+     * <p>
+     * Large result sets are mapped on several threads if the mapper is thread safe, keeping the order of the results.
      *
      * @param resultSet  The unmapped result set
      *
      * @return The mapped result set
+     *
+     * @see ParallelResultMapping
      */
     public ResultSet map(ResultSet resultSet) {
 
-        List<Result> newResults = new ArrayList<>();
-        Result newResult;
+        List<Result> newResults;
+
+        if (isThreadSafe() && ParallelResultMapping.isParallel(resultSet.size())) {
+            ResultSetSchema schema = resultSet.getSchema();
+            newResults = resultSet.parallelStream()
+                    .map(r -> map(r, schema))
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList());
+        } else {
+            newResults = new ArrayList<>();
+            Result newResult;
 
-        for (Result r: resultSet) {
-            newResult = map(r, resultSet.getSchema());
-            if (newResult != null) {
-                newResults.add(newResult);
+            for (Result r: resultSet) {
+                newResult = map(r, resultSet.getSchema());
+                if (newResult != null) {
+                    newResults.add(newResult);
+                }
             }
         }
 
@@ -55,6 +71,17 @@ abstract public class ResultSetMapper {
      */
     abstract protected Result map(Result result, ResultSetSchema schema);
 
+    /**
+     * Check if the rows of a result set may be mapped concurrently by this mapper.
+     * <p>
+     * Mappers keeping no mutable state across rows can override this to let large result sets be mapped in parallel.
+     *
+     * @return true if {@link #map(Result, ResultSetSchema)} is safe to call from several threads at once
+     */
+    protected boolean isThreadSafe() {
+        return false;
+    }
+
     /**
      * Returns a transformed schema.
      *
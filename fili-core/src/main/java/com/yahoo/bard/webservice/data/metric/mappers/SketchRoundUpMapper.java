@@ -60,6 +60,11 @@ public class SketchRoundUpMapper extends ResultSetMapper {
         return schema;
     }
 
+    @Override
+    protected boolean isThreadSafe() {
+        return true;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) { return true; }
@@ -5,18 +5,32 @@ package com.yahoo.bard.webservice.data.metric.mappers;
 import com.yahoo.bard.webservice.data.Result;
 import com.yahoo.bard.webservice.data.ResultSet;
 import com.yahoo.bard.webservice.data.ResultSetSchema;
+import com.yahoo.bard.webservice.data.metric.MetricColumn;
+import com.yahoo.bard.webservice.druid.model.orderby.OrderByColumn;
+import com.yahoo.bard.webservice.druid.model.orderby.SortDirection;
 
 import org.joda.time.DateTime;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Optional;
+import java.util.PriorityQueue;
 import java.util.function.Consumer;
 
 /**
  * Mapper to truncate a result set produced by a groupby druid query to the requested top N rows.
+ * <p>
+ * With sorts, each time bucket keeps its N first rows in the order of the sorts, using a heap bounded to N rows, so
+ * the rows of a bucket never need to be sorted or kept beyond N at once. Rows tied by the sorts keep their order in
+ * the result set. Without sorts, each time bucket keeps its N first rows.
  */
 public class TopNResultSetMapper extends ResultSetMapper {
     private final int topN;
+    private final List<OrderByColumn> sorts;
 
     /**
      * Constructor.
@@ -24,15 +38,42 @@ public class TopNResultSetMapper extends ResultSetMapper {
      * @param topN  The N to use when truncating to the top N in a bucket
      */
     public TopNResultSetMapper(int topN) {
+        this(topN, Collections.emptyList());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param topN  The N to use when truncating to the top N in a bucket
+     * @param sorts  The metric sorts ranking the rows of a bucket, first sort first
+     */
+    public TopNResultSetMapper(int topN, Iterable<OrderByColumn> sorts) {
         this.topN = topN;
+        this.sorts = new ArrayList<>();
+        sorts.forEach(this.sorts::add);
     }
 
     @Override
     public ResultSet map(ResultSet resultSet) {
-        // TODO: Use only native stream operations in RxJava: GroupByTime -> Sort -> Take N -> Concat streams by time
-        TopNAccumulator acc = new TopNAccumulator();
+        Comparator<Result> order = buildOrder(resultSet.getSchema());
+
+        if (ParallelResultMapping.isParallel(resultSet.size())) {
+            return new ResultSet(
+                    resultSet.getSchema(),
+                    ParallelResultMapping.mapBuckets(
+                            ParallelResultMapping.splitByTime(resultSet),
+                            bucket -> {
+                                TopNAccumulator acc = new TopNAccumulator(order);
+                                bucket.forEach(acc);
+                                return acc.finish();
+                            }
+                    )
+            );
+        }
+
+        TopNAccumulator acc = new TopNAccumulator(order);
         resultSet.stream().forEachOrdered(acc);
-        return new ResultSet(resultSet.getSchema(), acc.data);
+        return new ResultSet(resultSet.getSchema(), acc.finish());
     }
 
     @Override
@@ -45,26 +86,171 @@ public class TopNResultSetMapper extends ResultSetMapper {
         return schema;
     }
 
+    /**
+     * Build the order of the rows of a bucket from the sorts on the metric columns of a schema.
+     *
+     * @param schema  The schema of the result set
+     *
+     * @return the comparator ranking the best rows first, which ranks all the rows the same without sorts
+     */
+    private Comparator<Result> buildOrder(ResultSetSchema schema) {
+        Comparator<Result> order = (first, second) -> 0;
+        for (OrderByColumn sort : sorts) {
+            Optional<MetricColumn> column = schema.getColumn(sort.getDimension(), MetricColumn.class);
+            if (!column.isPresent()) {
+                continue;
+            }
+            Comparator<Result> byColumn = (first, second) -> compareValues(
+                    first.getMetricValue(column.get()),
+                    second.getMetricValue(column.get())
+            );
+            order = order.thenComparing(sort.getDirection() == SortDirection.DESC ? byColumn.reversed() : byColumn);
+        }
+        return order;
+    }
+
+    /**
+     * Compare metric values, numbers by value, nulls before any value and other values by their natural order.
+     *
+     * @param first  The first value
+     * @param second  The second value
+     *
+     * @return a negative number, zero or a positive number as the first value is lower, equal or higher
+     */
+    @SuppressWarnings("unchecked")
+    private static int compareValues(Object first, Object second) {
+        if (first == null || second == null) {
+            return first == null ? (second == null ? 0 : -1) : 1;
+        }
+        if (first instanceof Comparable && first.getClass().equals(second.getClass())) {
+            return ((Comparable<Object>) first).compareTo(second);
+        }
+        if (first instanceof Number && second instanceof Number) {
+            return compareNumbers((Number) first, (Number) second);
+        }
+        return first.toString().compareTo(second.toString());
+    }
+
+    /**
+     * Compare numbers of different types by value, exactly unless one of them is not a finite decimal.
+     *
+     * @param first  The first number
+     * @param second  The second number
+     *
+     * @return a negative number, zero or a positive number as the first number is lower, equal or higher
+     */
+    private static int compareNumbers(Number first, Number second) {
+        BigDecimal firstDecimal = toBigDecimal(first);
+        BigDecimal secondDecimal = toBigDecimal(second);
+        return firstDecimal == null || secondDecimal == null
+                ? Double.compare(first.doubleValue(), second.doubleValue())
+                : firstDecimal.compareTo(secondDecimal);
+    }
+
+    /**
+     * Get the exact decimal value of a number.
+     *
+     * @param number  The number
+     *
+     * @return the decimal value of the number, or null if it has none, such as infinities and NaN
+     */
+    private static BigDecimal toBigDecimal(Number number) {
+        if (number instanceof BigDecimal) {
+            return (BigDecimal) number;
+        }
+        if (number instanceof BigInteger) {
+            return new BigDecimal((BigInteger) number);
+        }
+        if (number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte) {
+            return BigDecimal.valueOf(number.longValue());
+        }
+        try {
+            return new BigDecimal(number.toString());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
     /**
      * Prunes the result set to at most top N rows per time bucket. It's designed to execute in order on a sequential
      * stream (i.e. using forEachOrdered)
      */
     private class TopNAccumulator implements Consumer<Result> {
-        private int filledBuckets = 0;
+        private final Comparator<RankedResult> rank;
+        private final PriorityQueue<RankedResult> heap;
         private DateTime recentTimeStamp = null;
+        private long sequence = 0;
         private final List<Result> data = new ArrayList<>();
 
+        /**
+         * Constructor.
+         *
+         * @param order  The order of the rows of a bucket, best first
+         */
+        TopNAccumulator(Comparator<Result> order) {
+            // Ties go to the row seen first, so without sorts the first N rows are kept
+            rank = Comparator.comparing((RankedResult ranked) -> ranked.result, order)
+                    .thenComparingLong(ranked -> ranked.sequence);
+            // The worst kept row is at the head of the heap, to be replaced by a better row
+            heap = new PriorityQueue<>(rank.reversed());
+        }
+
         @Override
         public void accept(Result result) {
             DateTime timestamp = result.getTimeStamp();
             if (!timestamp.equals(recentTimeStamp)) {
-                filledBuckets = 0;
+                drainBucket();
                 recentTimeStamp = timestamp;
             }
 
-            if (filledBuckets++ < topN) {
-                data.add(result);
+            RankedResult ranked = new RankedResult(result, sequence++);
+            if (heap.size() < topN) {
+                heap.add(ranked);
+            } else if (!heap.isEmpty() && rank.compare(ranked, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(ranked);
+            }
+        }
+
+        /**
+         * Get the kept rows once every row has been accepted.
+         *
+         * @return the top N rows of each bucket, buckets in the order they were seen
+         */
+        List<Result> finish() {
+            drainBucket();
+            return data;
+        }
+
+        /**
+         * Add the rows kept for the current bucket to the data, best first.
+         */
+        private void drainBucket() {
+            List<Result> bucket = new ArrayList<>(heap.size());
+            while (!heap.isEmpty()) {
+                bucket.add(heap.poll().result);
             }
+            Collections.reverse(bucket);
+            data.addAll(bucket);
+        }
+    }
+
+    /**
+     * A row with its position in the result set.
+     */
+    private static class RankedResult {
+        private final Result result;
+        private final long sequence;
+
+        /**
+         * Constructor.
+         *
+         * @param result  The row
+         * @param sequence  The position of the row in the result set
+         */
+        RankedResult(Result result, long sequence) {
+            this.result = result;
+            this.sequence = sequence;
         }
     }
 }
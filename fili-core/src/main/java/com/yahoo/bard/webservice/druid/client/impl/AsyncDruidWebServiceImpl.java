@@ -45,6 +45,7 @@ import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
@@ -93,6 +94,7 @@ public class AsyncDruidWebServiceImpl implements DruidWebService {
     private final DruidServiceConfig serviceConfig;
 
     private final Function<Response, JsonNode> jsonNodeBuilderStrategy;
+    private final Executor responseExecutor;
 
     /**
      * Friendly non-DI constructor useful for manual tests.
@@ -214,6 +216,34 @@ public class AsyncDruidWebServiceImpl implements DruidWebService {
             ObjectMapper mapper,
             Supplier<Map<String, String>> headersToAppend,
             Function<Response, JsonNode> jsonNodeBuilderStrategy
+    ) {
+        this(
+                config,
+                asyncHttpClient,
+                mapper,
+                headersToAppend,
+                jsonNodeBuilderStrategy,
+                DruidResponseExecutor.getDefault()
+        );
+    }
+
+    /**
+     * IOC constructor.
+     *
+     * @param config  the configuration for this druid service
+     * @param asyncHttpClient  the HTTP client
+     * @param mapper  A shared jackson object mapper resource
+     * @param headersToAppend Supplier for map of headers for Druid requests
+     * @param jsonNodeBuilderStrategy A function to build JSON nodes from the response
+     * @param responseExecutor  The executor that parses and processes completed responses
+     */
+    public AsyncDruidWebServiceImpl(
+            DruidServiceConfig config,
+            AsyncHttpClient asyncHttpClient,
+            ObjectMapper mapper,
+            Supplier<Map<String, String>> headersToAppend,
+            Function<Response, JsonNode> jsonNodeBuilderStrategy,
+            Executor responseExecutor
     ) {
         this.serviceConfig = config;
 
@@ -231,6 +261,7 @@ public class AsyncDruidWebServiceImpl implements DruidWebService {
         this.exceptionMeter = REGISTRY.meter("druid.errors.exceptions");
 
         this.jsonNodeBuilderStrategy = jsonNodeBuilderStrategy;
+        this.responseExecutor = responseExecutor;
     }
 
     /**
@@ -294,16 +325,20 @@ public class AsyncDruidWebServiceImpl implements DruidWebService {
                         Status status = Status.fromStatusCode(response.getStatusCode());
                         logRequest(logCtx, timerName, outstanding, druidQueryId, status);
 
-                        if (hasError(status)) {
-                            markError(status, response, druidQueryId, error);
-                        } else {
-                            try {
-                                success.invoke(jsonNodeBuilderStrategy.apply(response));
-                            } catch (RuntimeException e) {
-                                failure.invoke(e);
+                        // Parse and process the response off the I/O thread, carrying the request log along
+                        RequestLog processingCtx = RequestLog.dump();
+                        responseExecutor.execute(() -> {
+                            RequestLog.restore(processingCtx);
+                            if (hasError(status)) {
+                                markError(status, response, druidQueryId, error);
+                            } else {
+                                try {
+                                    success.invoke(jsonNodeBuilderStrategy.apply(response));
+                                } catch (RuntimeException e) {
+                                    failure.invoke(e);
+                                }
                             }
-
-                        }
+                        });
 
                         // we consumed this response, so pass null to any chains
                         return null;
@@ -0,0 +1,134 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.druid.client.impl;
+
+import com.yahoo.bard.webservice.application.MetricRegistryFactory;
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded thread pool that processes completed Druid responses, so that the HTTP client's I/O threads only do I/O.
+ * <p>
+ * Parsing a response and running the response processors can take much longer than reading it, and while it runs on
+ * an I/O thread every other Druid request multiplexed on that thread waits. Completed responses are handed to this
+ * pool instead. When the queue of waiting responses is full, or once the pool is shut down, the response is processed
+ * on the submitting thread, which slows the I/O thread down rather than dropping the response.
+ * <p>
+ * The pool reports the number of waiting responses, the time between a response being handed off and its processing
+ * starting, the processing time, and the number of responses processed on the submitting thread.
+ */
+public class DruidResponseExecutor extends ThreadPoolExecutor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DruidResponseExecutor.class);
+    private static final MetricRegistry REGISTRY = MetricRegistryFactory.getRegistry();
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+
+    public static final String QUEUE_SIZE_GAUGE = "druid.response.executor.gauge.queue";
+    public static final Timer HANDOFF_TIMER = REGISTRY.timer("druid.response.executor.timer.handoff");
+    public static final Timer PROCESSING_TIMER = REGISTRY.timer("druid.response.executor.timer.processing");
+    public static final Meter CALLER_RUNS = REGISTRY.meter("druid.response.executor.meter.caller_runs");
+
+    /**
+     * Number of threads processing Druid responses. 0 processes responses on the HTTP client's I/O threads.
+     */
+    private static final int THREADS = SYSTEM_CONFIG.getIntProperty(
+            SYSTEM_CONFIG.getPackageVariableName("druid_response_processing_threads"),
+            Runtime.getRuntime().availableProcessors()
+    );
+
+    /**
+     * Number of completed responses that may wait for a processing thread.
+     */
+    private static final int QUEUE_SIZE = SYSTEM_CONFIG.getIntProperty(
+            SYSTEM_CONFIG.getPackageVariableName("druid_response_processing_queue_size"),
+            1024
+    );
+
+    /**
+     * Constructor.
+     *
+     * @param threads  The number of threads processing responses
+     * @param queueSize  The number of responses that may wait for a thread
+     */
+    public DruidResponseExecutor(int threads, int queueSize) {
+        super(
+                threads,
+                threads,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                new ResponseThreadFactory(),
+                (task, executor) -> {
+                    CALLER_RUNS.mark();
+                    if (executor.isShutdown()) {
+                        LOG.warn("Druid response executor is shut down, processing the response on the caller");
+                    }
+                    // The response has already been read, so it is processed here rather than lost
+                    task.run();
+                }
+        );
+
+        REGISTRY.remove(QUEUE_SIZE_GAUGE);
+        REGISTRY.register(QUEUE_SIZE_GAUGE, (Gauge<Integer>) () -> getQueue().size());
+        LOG.info("Started Druid response executor with {} threads and a queue of {}", threads, queueSize);
+    }
+
+    /**
+     * Get the executor configured for processing Druid responses, shared by all the Druid web services.
+     *
+     * @return the shared executor, or an executor running responses on the submitting thread if no response
+     * processing threads are configured
+     */
+    public static Executor getDefault() {
+        return DefaultHolder.EXECUTOR;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        long handedOffNanos = System.nanoTime();
+        super.execute(() -> {
+            HANDOFF_TIMER.update(System.nanoTime() - handedOffNanos, TimeUnit.NANOSECONDS);
+            try (Timer.Context ignored = PROCESSING_TIMER.time()) {
+                command.run();
+            }
+        });
+    }
+
+    /**
+     * Lazily builds the shared executor, so that no threads are started unless a Druid web service is used.
+     */
+    private static class DefaultHolder {
+        private static final Executor EXECUTOR = THREADS > 0
+                ? new DruidResponseExecutor(THREADS, QUEUE_SIZE)
+                : Runnable::run;
+    }
+
+    /**
+     * Builds named daemon threads, so the pool neither hides in thread dumps nor keeps the JVM alive.
+     */
+    private static class ResponseThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "druid-response-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.druid.model.query;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.primitives.UnsignedBytes;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Computes a stable fingerprint of a Druid query, to use as its cache key.
+ * <p>
+ * The fingerprint identifies the same queries as the canonical JSON of the query does, that is the JSON of the query
+ * with the fields of every object sorted and every context emptied, without building that JSON. The query is
+ * serialized into a buffer of JSON tokens, which is hashed as it is read: each object hashes the sorted hashes of its
+ * fields, so that it does not depend on the order its fields are written in, while arrays keep the order of their
+ * elements.
+ * <p>
+ * The fingerprint is computed from the serialized query rather than from the query objects themselves, so that it
+ * takes every field Druid sees into account, including the ones whose serialization depends on the enclosing query.
+ */
+public class QueryFingerprinter {
+
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+    private static final String CONTEXT = "context";
+    private static final byte OBJECT = '{';
+    private static final byte ARRAY = '[';
+
+    /**
+     * Hash of an object without any field, which stands for every context.
+     */
+    private static final HashCode EMPTY_OBJECT = HASH_FUNCTION.newHasher().putByte(OBJECT).putInt(0).hash();
+
+    private final ObjectMapper mapper;
+
+    /**
+     * Constructor.
+     *
+     * @param mapper  The mapper serializing the queries as they are sent to Druid
+     */
+    public QueryFingerprinter(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    /**
+     * Compute the fingerprint of a query, from all of its fields besides the contexts.
+     *
+     * @param druidQuery  The query to fingerprint
+     *
+     * @return the fingerprint of the query, as a hex String
+     *
+     * @throws JsonProcessingException if the query cannot be serialized
+     */
+    public String fingerprint(DruidQuery<?> druidQuery) throws JsonProcessingException {
+        TokenBuffer buffer = new TokenBuffer(mapper, false);
+        try {
+            mapper.writeValue(buffer, druidQuery);
+            try (JsonParser parser = buffer.asParser()) {
+                parser.nextToken();
+                return hashValue(parser).toString();
+            }
+        } catch (JsonProcessingException e) {
+            throw e;
+        } catch (IOException e) {
+            throw JsonMappingException.fromUnexpectedIOE(e);
+        }
+    }
+
+    /**
+     * Hash the value starting at the current token, leaving the parser at the last token of the value.
+     *
+     * @param parser  The parser positioned at the first token of the value
+     *
+     * @return the hash of the value
+     *
+     * @throws IOException if the tokens cannot be read
+     */
+    private static HashCode hashValue(JsonParser parser) throws IOException {
+        switch (parser.currentToken()) {
+            case START_OBJECT:
+                return hashObject(parser);
+            case START_ARRAY:
+                Hasher array = HASH_FUNCTION.newHasher().putByte(ARRAY);
+                int elements = 0;
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    array.putBytes(hashValue(parser).asBytes());
+                    elements++;
+                }
+                return array.putInt(elements).hash();
+            case VALUE_EMBEDDED_OBJECT:
+                return hashScalar(parser.currentToken(), String.valueOf(parser.getEmbeddedObject()));
+            default:
+                return hashScalar(parser.currentToken(), parser.getText());
+        }
+    }
+
+    /**
+     * Hash an object from the hashes of its fields in sorted order, hashing its contexts as empty objects.
+     *
+     * @param parser  The parser positioned at the start of the object
+     *
+     * @return the hash of the object
+     *
+     * @throws IOException if the tokens cannot be read
+     */
+    private static HashCode hashObject(JsonParser parser) throws IOException {
+        List<byte[]> fields = new ArrayList<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            parser.nextToken();
+            HashCode value;
+            if (CONTEXT.equals(name)) {
+                parser.skipChildren();
+                value = EMPTY_OBJECT;
+            } else {
+                value = hashValue(parser);
+            }
+            fields.add(
+                    HASH_FUNCTION.newHasher()
+                            .putInt(name.length())
+                            .putUnencodedChars(name)
+                            .putBytes(value.asBytes())
+                            .hash()
+                            .asBytes()
+            );
+        }
+
+        fields.sort(UnsignedBytes.lexicographicalComparator());
+        Hasher object = HASH_FUNCTION.newHasher().putByte(OBJECT).putInt(fields.size());
+        fields.forEach(object::putBytes);
+        return object.hash();
+    }
+
+    /**
+     * Hash a scalar value along with its token, so that a string is not mistaken for the number it spells.
+     *
+     * @param token  The token of the value
+     * @param text  The text of the value
+     *
+     * @return the hash of the value
+     */
+    private static HashCode hashScalar(JsonToken token, String text) {
+        return HASH_FUNCTION.newHasher()
+                .putInt(token.id())
+                .putInt(text.length())
+                .putUnencodedChars(text)
+                .hash();
+    }
+}
@@ -0,0 +1,128 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.logging;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+/**
+ * An immutable list that is extended by building a new list sharing all the elements of the list it extends.
+ * <p>
+ * Extending the list and handing it to another thread take constant time, and lists extended from the same list on
+ * different threads never see each other's elements, so request log contexts can be handed from thread to thread and
+ * forked into split queries without copying their timers and thread names.
+ *
+ * @param <T>  The type of the elements
+ */
+final class AppendOnlyList<T> implements Iterable<T> {
+
+    private static final AppendOnlyList<?> EMPTY = new AppendOnlyList<>(null, null, 0);
+
+    private final T last;
+    private final AppendOnlyList<T> previous;
+    private final int size;
+
+    /**
+     * Constructor.
+     *
+     * @param last  The last element of the list
+     * @param previous  The list of the elements before the last one
+     * @param size  The number of elements of the list
+     */
+    private AppendOnlyList(T last, AppendOnlyList<T> previous, int size) {
+        this.last = last;
+        this.previous = previous;
+        this.size = size;
+    }
+
+    /**
+     * Get the empty list.
+     *
+     * @param <T>  The type of the elements
+     *
+     * @return the empty list
+     */
+    @SuppressWarnings("unchecked")
+    static <T> AppendOnlyList<T> empty() {
+        return (AppendOnlyList<T>) EMPTY;
+    }
+
+    /**
+     * Build the list of the elements of this list followed by an element.
+     *
+     * @param element  The element to append
+     *
+     * @return the extended list, leaving this list unchanged
+     */
+    AppendOnlyList<T> with(T element) {
+        return new AppendOnlyList<>(element, this, size + 1);
+    }
+
+    /**
+     * Find the last element matching a predicate.
+     *
+     * @param predicate  The predicate to match
+     *
+     * @return the last matching element, or null if no element matches
+     */
+    T findLast(Predicate<? super T> predicate) {
+        for (T element : this) {
+            if (predicate.test(element)) {
+                return element;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the number of elements of the list.
+     *
+     * @return the number of elements
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Copy the elements of the list in the order they were appended.
+     *
+     * @return the elements, first appended first
+     */
+    List<T> toList() {
+        List<T> elements = new ArrayList<>(size);
+        forEach(elements::add);
+        Collections.reverse(elements);
+        return elements;
+    }
+
+    /**
+     * Iterate over the elements from the last appended to the first appended.
+     *
+     * @return an iterator starting at the last element
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private AppendOnlyList<T> next = AppendOnlyList.this;
+
+            @Override
+            public boolean hasNext() {
+                return next.size > 0;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                T element = next.last;
+                next = next.previous;
+                return element;
+            }
+        };
+    }
+}
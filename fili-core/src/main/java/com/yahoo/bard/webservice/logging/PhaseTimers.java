@@ -0,0 +1,80 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.logging;
+
+import com.yahoo.bard.webservice.application.MetricRegistryFactory;
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
+
+import com.codahale.metrics.MetricRegistry;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Aggregates the durations of the timed phases of requests into latency timers of the metric registry, one per phase
+ * and optionally one per phase and logical table, so that percentiles of every phase across requests are exposed by
+ * the metrics servlet rather than only written in the request log lines.
+ * <p>
+ * Phases timed once per Druid query or per serialization are numbered, like {@code DruidProcessing_Q_0001}. Their
+ * numbers are dropped from the timer names, so all the Druid queries share the {@code DruidProcessing_Q_} timer.
+ */
+public class PhaseTimers {
+
+    private static final MetricRegistry REGISTRY = MetricRegistryFactory.getRegistry();
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+
+    public static final String PREFIX = "requestlog.phase.timer";
+
+    /**
+     * Whether the durations of the phases of every request are aggregated into timers.
+     */
+    public static final boolean ENABLED = SYSTEM_CONFIG.getBooleanProperty(
+            SYSTEM_CONFIG.getPackageVariableName("requestlog_phase_timers_enabled"),
+            true
+    );
+
+    /**
+     * Whether the durations are also aggregated per logical table.
+     */
+    public static final boolean BY_TABLE = SYSTEM_CONFIG.getBooleanProperty(
+            SYSTEM_CONFIG.getPackageVariableName("requestlog_phase_timers_by_table_enabled"),
+            false
+    );
+
+    private static final Pattern SEQUENCE_NUMBER = Pattern.compile("\\d+$");
+
+    /**
+     * Private constructor, this class only has static methods.
+     */
+    private PhaseTimers() {
+    }
+
+    /**
+     * Add the durations of the phases of a request to the timers of the phases.
+     *
+     * @param durations  The duration in nanoseconds of each phase of the request
+     * @param table  The logical table of the request, or null to only update the timers across tables
+     */
+    public static void update(Map<String, Long> durations, String table) {
+        durations.forEach((phase, nanos) -> {
+            String phaseName = getPhaseName(phase);
+            REGISTRY.timer(MetricRegistry.name(PREFIX, phaseName)).update(nanos, TimeUnit.NANOSECONDS);
+            if (table != null) {
+                REGISTRY.timer(MetricRegistry.name(PREFIX, table, phaseName)).update(nanos, TimeUnit.NANOSECONDS);
+            }
+        });
+    }
+
+    /**
+     * Get the name of the timer of a phase, without the sequence number of numbered phases.
+     *
+     * @param phase  The name of the timed phase
+     *
+     * @return the name of the phase timer
+     */
+    public static String getPhaseName(String phase) {
+        return SEQUENCE_NUMBER.matcher(phase).replaceFirst("");
+    }
+}
@@ -12,6 +12,7 @@ import static com.yahoo.bard.webservice.web.handlers.workflow.DruidWorkflow.RESP
 import com.yahoo.bard.webservice.application.MetricRegistryFactory;
 import com.yahoo.bard.webservice.config.SystemConfig;
 import com.yahoo.bard.webservice.config.SystemConfigProvider;
+import com.yahoo.bard.webservice.logging.blocks.DataRequest;
 import com.yahoo.bard.webservice.logging.blocks.Durations;
 import com.yahoo.bard.webservice.logging.blocks.Preface;
 import com.yahoo.bard.webservice.logging.blocks.Threads;
@@ -24,6 +25,7 @@ import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
 
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -44,7 +46,7 @@ public class RequestLog {
     private static final Logger LOG = LoggerFactory.getLogger(RequestLog.class);
     private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
 
-    private static final String ID_KEY = "logid";
+    static final String ID_KEY = "logid";
     private static final long MS_PER_NS = 1000000;
     private static final MetricRegistry REGISTRY = MetricRegistryFactory.getRegistry();
     private static final ThreadLocal<RequestLog> RLOG = ThreadLocal.withInitial(RequestLog::new);
@@ -57,8 +59,8 @@ public class RequestLog {
     private LogBlock info;
     @Deprecated
     private TimedPhase mostRecentTimer;
-    private final Map<String, TimedPhase> times;
-    private final Set<String> threadIds;
+    private AppendOnlyList<TimedPhase> times;
+    private AppendOnlyList<String> threadIds;
 
     /**
      * This class has only static methods and is not supposed to be directly instantiated.
@@ -67,13 +69,16 @@ public class RequestLog {
         logId = null;
         info = null;
         mostRecentTimer = null;
-        times = new LinkedHashMap<>();
-        threadIds = new LinkedHashSet<>();
+        times = AppendOnlyList.empty();
+        threadIds = AppendOnlyList.empty();
         MDC.remove(ID_KEY);
     }
 
     /**
      * Copy constructor is also private.
+     * <p>
+     * The timers and thread names are immutable lists, so the copy shares them with the original in constant time, and
+     * neither sees the timers or thread names added to the other afterwards.
      *
      * @param  rl request log object to copy from
      */
@@ -81,8 +86,8 @@ public class RequestLog {
         logId = rl.logId;
         info = rl.info;
         mostRecentTimer = rl.mostRecentTimer;
-        times = new LinkedHashMap<>(rl.times);
-        threadIds = new LinkedHashSet<>(rl.threadIds);
+        times = rl.times;
+        threadIds = rl.threadIds;
         MDC.put(ID_KEY, logId);
     }
 
@@ -93,8 +98,8 @@ public class RequestLog {
         logId = null;
         info = null;
         mostRecentTimer = null;
-        times.clear();
-        threadIds.clear();
+        times = AppendOnlyList.empty();
+        threadIds = AppendOnlyList.empty();
         MDC.remove(ID_KEY);
     }
 
@@ -120,12 +125,42 @@ public class RequestLog {
                     }
                 }
         );
-        times.clear();
-        threadIds.clear();
-        threadIds.add(Thread.currentThread().getName());
+        times = AppendOnlyList.empty();
+        threadIds = AppendOnlyList.<String>empty().with(Thread.currentThread().getName());
         MDC.put(ID_KEY, logId);
     }
 
+    /**
+     * Find the timer of a phase.
+     *
+     * @param timePhaseName  The name of the phase
+     *
+     * @return the last timer registered for the phase, or null if there is none
+     */
+    private TimedPhase getTimer(String timePhaseName) {
+        return times.findLast(phase -> phase.getName().equals(timePhaseName));
+    }
+
+    /**
+     * Add the name of a thread that worked on the request, unless it is already known.
+     *
+     * @param threadId  The name of the thread
+     */
+    private void addThreadId(String threadId) {
+        if (threadIds.findLast(threadId::equals) == null) {
+            threadIds = threadIds.with(threadId);
+        }
+    }
+
+    /**
+     * Get the names of the threads that worked on the request.
+     *
+     * @return the thread names, in the order the threads joined the request
+     */
+    private Set<String> getThreadIds() {
+        return new LinkedHashSet<>(threadIds.toList());
+    }
+
     /**
      * Get the aggregate durations for this request.
      *
@@ -142,7 +177,10 @@ public class RequestLog {
      * @return the map containing all the recorded times per phase in milliseconds
      */
     private Map<String, Long> durations() {
-        return times.values().stream().collect(Collectors.toMap(TimedPhase::getName, TimedPhase::getDuration));
+        // A timer appended later replaces an earlier timer of the same phase
+        Map<String, Long> durations = new LinkedHashMap<>();
+        times.toList().forEach(phase -> durations.put(phase.getName(), phase.getDuration()));
+        return durations;
     }
 
     /**
@@ -199,7 +237,7 @@ public class RequestLog {
      */
     public static boolean isRunning(String timePhaseName) {
         RequestLog current = RLOG.get();
-        TimedPhase timePhase = current.times.get(timePhaseName);
+        TimedPhase timePhase = current.getTimer(timePhaseName);
         return timePhase != null && timePhase.isRunning();
     }
 
@@ -225,7 +263,7 @@ public class RequestLog {
      */
     public static TimedPhase startTiming(String timePhaseName) {
         RequestLog current = RLOG.get();
-        TimedPhase timePhase = current.times.get(timePhaseName);
+        TimedPhase timePhase = current.getTimer(timePhaseName);
         if (timePhase == null) {
             // If it was the first phase in general, create logging context as well
             if (current.info == null) {
@@ -233,7 +271,7 @@ public class RequestLog {
             }
 
             timePhase = new TimedPhase(timePhaseName);
-            current.times.put(timePhaseName, timePhase);
+            current.times = current.times.with(timePhase);
         }
         current.mostRecentTimer = timePhase;
         return timePhase.start();
@@ -279,7 +317,7 @@ public class RequestLog {
      * @param timePhaseName  the name of this stopwatch
      */
     public static void stopTiming(String timePhaseName) {
-        TimedPhase timePhase = RLOG.get().times.get(timePhaseName);
+        TimedPhase timePhase = RLOG.get().getTimer(timePhaseName);
         if (timePhase == null) {
             LOG.warn("Tried to stop non-existent phase: {}", timePhaseName);
             return;
@@ -365,7 +403,8 @@ public class RequestLog {
     }
 
     /**
-     * Write the request log object of the current thread as JSON.
+     * Write the request log object of the current thread as JSON, through the {@link RequestLogWriter}, and add the
+     * durations of its phases to the {@link PhaseTimers}.
      * The thread's request log is cleared after a call to this method.
      */
     public static void log() {
@@ -374,7 +413,19 @@ public class RequestLog {
             LOG.warn("Attempted to log while request log object was uninitialized");
             return;
         }
-        LOG.info(export());
+        if (PhaseTimers.ENABLED) {
+            LogInfo dataRequest = current.info.get(DataRequest.class.getSimpleName());
+            PhaseTimers.update(
+                    current.durations(),
+                    PhaseTimers.BY_TABLE && dataRequest instanceof DataRequest
+                            ? ((DataRequest) dataRequest).getTable()
+                            : null
+            );
+        }
+        Map<String, Float> durations = current.aggregateDurations();
+        record(new Durations(durations));
+        record(new Threads(current.getThreadIds()));
+        RequestLogWriter.getInstance().write(current.info, durations);
         current.clear();
     }
 
@@ -440,9 +491,9 @@ public class RequestLog {
         current.logId = ctx.logId;
         current.info = ctx.info;
         current.mostRecentTimer = ctx.mostRecentTimer;
-        current.times.putAll(ctx.times);
-        current.threadIds.addAll(ctx.threadIds);
-        current.threadIds.add(Thread.currentThread().getName());
+        current.times = ctx.times;
+        current.threadIds = ctx.threadIds;
+        current.addThreadId(Thread.currentThread().getName());
         MDC.put(ID_KEY, current.logId);
     }
 
@@ -464,18 +515,20 @@ public class RequestLog {
             return;
         }
         // Accumulate all the timers that are not currently running
-        current.times.putAll(
-                ctx.times.entrySet()
-                        .stream()
-                        .filter(
-                                e -> e.getKey().contains(DRUID_QUERY_TIMER) ||
-                                        (e.getKey().equals(REQUEST_WORKFLOW_TIMER) && !e.getValue().isRunning()) ||
-                                        (e.getKey().equals(RESPONSE_WORKFLOW_TIMER) && e.getValue().isRunning())
-                        )
-                        .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue))
-        );
-        current.threadIds.addAll(ctx.threadIds);
-        current.threadIds.add(Thread.currentThread().getName());
+        Set<String> accumulated = new HashSet<>();
+        for (TimedPhase phase : ctx.times) {
+            String name = phase.getName();
+            // Only the last timer of each phase counts, as it replaced the earlier ones
+            if (accumulated.add(name) && (
+                    name.contains(DRUID_QUERY_TIMER) ||
+                            (name.equals(REQUEST_WORKFLOW_TIMER) && !phase.isRunning()) ||
+                            (name.equals(RESPONSE_WORKFLOW_TIMER) && phase.isRunning())
+            )) {
+                current.times = current.times.with(phase);
+            }
+        }
+        ctx.threadIds.toList().forEach(current::addThreadId);
+        current.addThreadId(Thread.currentThread().getName());
     }
 
     /**
@@ -486,7 +539,7 @@ public class RequestLog {
     public static String export() {
         RequestLog current = RLOG.get();
         record(new Durations(current.aggregateDurations()));
-        record(new Threads(current.threadIds));
+        record(new Threads(current.getThreadIds()));
         return LogFormatterProvider.getInstance().format(current.info);
     }
 
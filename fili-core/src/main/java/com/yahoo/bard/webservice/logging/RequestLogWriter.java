@@ -0,0 +1,294 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.logging;
+
+import com.yahoo.bard.webservice.application.MetricRegistryFactory;
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
+import com.yahoo.bard.webservice.logging.blocks.Epilogue;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Writes the mega log lines of finished requests.
+ * <p>
+ * Successful requests faster than the slow request threshold are sampled at the configured rate, while failed and slow
+ * requests are always written. With a queue configured, the log blocks of the sampled requests are handed to a
+ * bounded lock-free queue, and a background thread formats and writes them in batches, so the response thread does
+ * not pay for serializing its log line. When the queue is full, the log line is dropped rather than slowing the
+ * response down. Without a queue, log lines are formatted and written on the thread of the request, as before.
+ * <p>
+ * The writer reports the number of waiting log lines, the number of dropped and sampled out log lines, and the lag
+ * between a log line being handed off and it being written.
+ */
+public class RequestLogWriter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RequestLogWriter.class);
+    private static final Logger REQUEST_LOG = LoggerFactory.getLogger(RequestLog.class);
+    private static final MetricRegistry REGISTRY = MetricRegistryFactory.getRegistry();
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+
+    public static final String QUEUE_SIZE_GAUGE = "requestlog.writer.gauge.queue";
+    public static final Timer LAG_TIMER = REGISTRY.timer("requestlog.writer.timer.lag");
+    public static final Meter DROPPED = REGISTRY.meter("requestlog.writer.meter.dropped");
+    public static final Meter SAMPLED_OUT = REGISTRY.meter("requestlog.writer.meter.sampled_out");
+
+    /**
+     * Number of log lines that may wait for the background writer. 0 writes them on the thread of the request.
+     */
+    private static final int QUEUE_SIZE = SYSTEM_CONFIG.getIntProperty(
+            SYSTEM_CONFIG.getPackageVariableName("requestlog_async_queue_size"),
+            0
+    );
+
+    /**
+     * Largest number of log lines the background writer writes before checking the queue again.
+     */
+    private static final int BATCH_SIZE = SYSTEM_CONFIG.getIntProperty(
+            SYSTEM_CONFIG.getPackageVariableName("requestlog_async_batch_size"),
+            256
+    );
+
+    /**
+     * Fraction of the successful fast requests that are logged.
+     */
+    private static final double SAMPLE_RATE = SYSTEM_CONFIG.getDoubleProperty(
+            SYSTEM_CONFIG.getPackageVariableName("requestlog_sample_rate"),
+            1.0
+    );
+
+    /**
+     * Duration from which a request is always logged, in milliseconds.
+     */
+    private static final long SLOW_REQUEST_MS = SYSTEM_CONFIG.getLongProperty(
+            SYSTEM_CONFIG.getPackageVariableName("requestlog_slow_request_threshold_ms"),
+            1000L
+    );
+
+    /**
+     * Longest time the background writer sleeps while the queue is empty.
+     */
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private static final String TOTAL_TIMER = "TotalTime";
+    private static final int FIRST_ERROR_CODE = 400;
+
+    private final int queueSize;
+    private final int batchSize;
+    private final double sampleRate;
+    private final long slowRequestMs;
+    private final Consumer<String> sink;
+
+    private final Queue<QueuedLogBlock> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private volatile Thread writerThread;
+
+    /**
+     * Constructor.
+     *
+     * @param queueSize  The number of log lines that may wait for the background writer, 0 to write them synchronously
+     * @param batchSize  The largest number of log lines written before checking the queue again
+     * @param sampleRate  The fraction of the successful fast requests that are logged
+     * @param slowRequestMs  The duration from which a request is always logged, in milliseconds
+     */
+    public RequestLogWriter(int queueSize, int batchSize, double sampleRate, long slowRequestMs) {
+        this(queueSize, batchSize, sampleRate, slowRequestMs, REQUEST_LOG::info);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param queueSize  The number of log lines that may wait for the background writer, 0 to write them synchronously
+     * @param batchSize  The largest number of log lines written before checking the queue again
+     * @param sampleRate  The fraction of the successful fast requests that are logged
+     * @param slowRequestMs  The duration from which a request is always logged, in milliseconds
+     * @param sink  The destination of the formatted log lines
+     */
+    protected RequestLogWriter(
+            int queueSize,
+            int batchSize,
+            double sampleRate,
+            long slowRequestMs,
+            Consumer<String> sink
+    ) {
+        this.queueSize = queueSize;
+        this.batchSize = Math.max(1, batchSize);
+        this.sampleRate = sampleRate;
+        this.slowRequestMs = slowRequestMs;
+        this.sink = sink;
+    }
+
+    /**
+     * Get the writer configured for the mega log lines of requests.
+     *
+     * @return the shared writer, whose background thread is started if a queue is configured
+     */
+    public static RequestLogWriter getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    /**
+     * Start the background thread writing the queued log lines, if a queue is configured.
+     *
+     * @return this writer
+     */
+    public synchronized RequestLogWriter start() {
+        if (queueSize > 0 && writerThread == null) {
+            REGISTRY.remove(QUEUE_SIZE_GAUGE);
+            REGISTRY.register(QUEUE_SIZE_GAUGE, (Gauge<Integer>) queued::get);
+
+            writerThread = new Thread(this::run, "request-log-writer");
+            writerThread.setDaemon(true);
+            writerThread.start();
+            // Write what is still queued when the service stops
+            Runtime.getRuntime().addShutdownHook(new Thread(this::writeQueued, "request-log-writer-shutdown"));
+            LOG.info("Started request log writer with a queue of {}", queueSize);
+        }
+        return this;
+    }
+
+    /**
+     * Write the log block of a finished request, unless it is sampled out.
+     *
+     * @param logBlock  The log block of the request, which must no longer be changed
+     * @param durations  The durations of the phases of the request in milliseconds
+     */
+    public void write(LogBlock logBlock, Map<String, Float> durations) {
+        if (!isSampled(logBlock, durations)) {
+            SAMPLED_OUT.mark();
+            return;
+        }
+
+        if (queueSize <= 0) {
+            sink.accept(LogFormatterProvider.getInstance().format(logBlock));
+            return;
+        }
+
+        // Reserve a slot before queueing, so the queue never grows past its size
+        if (queued.incrementAndGet() > queueSize) {
+            queued.decrementAndGet();
+            DROPPED.mark();
+            return;
+        }
+        queue.offer(new QueuedLogBlock(logBlock, System.nanoTime()));
+        Thread thread = writerThread;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Check if the log line of a request is written, always writing the failed and the slow requests.
+     *
+     * @param logBlock  The log block of the request
+     * @param durations  The durations of the phases of the request in milliseconds
+     *
+     * @return true if the log line is to be written
+     */
+    protected boolean isSampled(LogBlock logBlock, Map<String, Float> durations) {
+        if (sampleRate >= 1.0) {
+            return true;
+        }
+
+        LogInfo epilogue = logBlock.get(Epilogue.class.getSimpleName());
+        if (!(epilogue instanceof Epilogue) || ((Epilogue) epilogue).getCode() >= FIRST_ERROR_CODE) {
+            return true;
+        }
+
+        double totalMs = durations.containsKey(TOTAL_TIMER)
+                ? durations.get(TOTAL_TIMER)
+                : durations.values().stream().mapToDouble(Float::doubleValue).max().orElse(0);
+        return totalMs >= slowRequestMs || ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+
+    /**
+     * Write the queued log lines in batches until the writer thread is interrupted.
+     */
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            if (writeBatch() == 0) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Write every queued log line.
+     */
+    protected void writeQueued() {
+        int written;
+        do {
+            written = writeBatch();
+        } while (written > 0);
+    }
+
+    /**
+     * Format and write up to a batch of queued log lines, with the log id of each request in the logging context.
+     *
+     * @return the number of log lines taken from the queue
+     */
+    private int writeBatch() {
+        int written = 0;
+        while (written < batchSize) {
+            QueuedLogBlock next = queue.poll();
+            if (next == null) {
+                break;
+            }
+            queued.decrementAndGet();
+            written++;
+            MDC.put(RequestLog.ID_KEY, next.logBlock.uuid);
+            try {
+                sink.accept(LogFormatterProvider.getInstance().format(next.logBlock));
+            } catch (RuntimeException e) {
+                LOG.warn("Unable to write request log line {}", next.logBlock.uuid, e);
+            } finally {
+                MDC.remove(RequestLog.ID_KEY);
+                LAG_TIMER.update(System.nanoTime() - next.queuedNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+        return written;
+    }
+
+    /**
+     * A log block waiting for the background writer, with the time it was handed off.
+     */
+    private static class QueuedLogBlock {
+        private final LogBlock logBlock;
+        private final long queuedNanos;
+
+        /**
+         * Constructor.
+         *
+         * @param logBlock  The log block to write
+         * @param queuedNanos  The time the log block was handed off, in nanoseconds
+         */
+        QueuedLogBlock(LogBlock logBlock, long queuedNanos) {
+            this.logBlock = logBlock;
+            this.queuedNanos = queuedNanos;
+        }
+    }
+
+    /**
+     * Lazily builds the shared writer, so that no thread is started unless requests are logged.
+     */
+    private static class InstanceHolder {
+        private static final RequestLogWriter INSTANCE =
+                new RequestLogWriter(QUEUE_SIZE, BATCH_SIZE, SAMPLE_RATE, SLOW_REQUEST_MS).start();
+    }
+}
@@ -12,8 +12,9 @@ import java.util.concurrent.TimeUnit;
  * TimedPhase is used to associate a Timer located in the registry with the exact duration of such a phase for a
  * specific request. Times are in nanoseconds.
  * <p>
- * Note: This class is NOT thread-safe. Timers are intended to be started once by one thread, and stopped once by
- * one thread (though those threads are not necessarily the same).
+ * Timers are intended to be started once by one thread, and stopped once by one thread (though those threads are not
+ * necessarily the same). As the timers of a request are shared by the contexts handed to the threads working on it,
+ * starting, stopping and reading a timer are synchronized.
  */
 public class TimedPhase implements AutoCloseable {
     private static final Logger LOG = LoggerFactory.getLogger(TimedPhase.class);
@@ -36,7 +37,7 @@ public class TimedPhase implements AutoCloseable {
      *
      * @return This phase after being started
      */
-    public TimedPhase start() {
+    public synchronized TimedPhase start() {
         if (isRunning()) {
             LOG.warn("Tried to start timer that is already running: {}", name);
         } else {
@@ -55,7 +56,7 @@ public class TimedPhase implements AutoCloseable {
      * @see TimedPhase#registerTime()
      * @see TimedPhase#close()
      */
-    public void stop() {
+    public synchronized void stop() {
         if (!isRunning()) {
             LOG.warn("Tried to stop timer that has not been started: {}", name);
             return;
@@ -82,7 +83,7 @@ public class TimedPhase implements AutoCloseable {
      *
      * @return The duration of the timer in nanoseconds
      */
-    public long getDuration() {
+    public synchronized long getDuration() {
         if (isRunning()) {
             LOG.warn("Timer '{}' is still running. Timings may be incorrect.", getName());
         }
@@ -97,7 +98,7 @@ public class TimedPhase implements AutoCloseable {
         return TimeUnit.NANOSECONDS;
     }
 
-    public boolean isRunning() {
+    public synchronized boolean isRunning() {
         return start != 0;
     }
 
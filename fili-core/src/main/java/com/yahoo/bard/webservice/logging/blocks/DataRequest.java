@@ -92,4 +92,8 @@ public class DataRequest implements LogInfo {
         this.skipCache = !readCache;
         this.format = format;
     }
+
+    public String getTable() {
+        return table;
+    }
 }
@@ -42,6 +42,10 @@ public class Epilogue implements LogInfo {
         this.responseLengthObserver = responseLengthObserver;
     }
 
+    public int getCode() {
+        return code;
+    }
+
     public long getResponseLength() {
         return responseLengthObserver.getLastMessageReceived().orElse(LENGTH_UNKNOWN);
     }
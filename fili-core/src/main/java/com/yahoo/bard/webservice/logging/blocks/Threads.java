@@ -7,6 +7,7 @@ import com.yahoo.bard.webservice.logging.LogInfo;
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.JsonValue;
 
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 /**
@@ -18,11 +19,14 @@ public class Threads implements LogInfo {
 
     /**
      * Constructor.
+     * <p>
+     * The thread names are copied, since the block may be formatted on another thread after the request log that
+     * collected them has been cleared.
      *
      * @param threadNames  The threads that a request got processed on
      */
     public Threads(Set<String> threadNames) {
-        threads = threadNames;
+        threads = new LinkedHashSet<>(threadNames);
     }
 
     @JsonValue
@@ -22,6 +22,7 @@ import java.util.Set;
 import java.util.SortedMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collector;
 import java.util.stream.Collectors;
@@ -43,6 +44,11 @@ public class DataSourceMetadataService {
     private final Map<DataSourceName, AtomicReference<ImmutableMap<String, SimplifiedIntervalList>>>
             allSegmentsByColumn;
 
+    /**
+     * The number of metadata updates, so that derived views of the metadata can tell when to rebuild.
+     */
+    private final AtomicLong updateCount = new AtomicLong();
+
     /**
      * The collector that accumulates partitions of a segment.
      */
@@ -109,6 +115,17 @@ public class DataSourceMetadataService {
                 .set(currentByTime);
         allSegmentsByColumn.computeIfAbsent(dataSourceName, ignored -> new AtomicReference<>())
                 .set(ImmutableMap.copyOf(currentByColumn));
+        updateCount.incrementAndGet();
+    }
+
+    /**
+     * Get the number of metadata updates so far. The availability derived from this service may have changed whenever
+     * the count changes.
+     *
+     * @return the number of updates
+     */
+    public long getUpdateCount() {
+        return updateCount.get();
     }
 
     /**
@@ -144,6 +144,7 @@ public enum ErrorMessageFormat implements MessageFormatter {
     GRANULARITY_PARSING_ERROR("No granularity can be parsed from this name: %s"),
     UNKNOWN_TIMEZONE_ID("Unable to recognize the timeZoneId: %s"),
     UNABLE_TO_SERIALIZE("Unable to serialize the %s object"),
+    UNABLE_TO_DESERIALIZE("Unable to deserialize the %s object"),
     METRIC_VALUE_CLASS_NOT_FOUND("Metric value type class %s is not found"),
 
     UNAUTHORIZED_WITH_RETRY("Not authorized to access the resource for given id %s. Retrying again %s more times"),
@@ -8,6 +8,7 @@ import com.yahoo.bard.webservice.data.dimension.Dimension;
 import com.yahoo.bard.webservice.data.dimension.DimensionColumn;
 import com.yahoo.bard.webservice.data.dimension.DimensionField;
 import com.yahoo.bard.webservice.data.dimension.DimensionRow;
+import com.yahoo.bard.webservice.data.dimension.LazyDimensionRow;
 import com.yahoo.bard.webservice.data.metric.LogicalMetric;
 import com.yahoo.bard.webservice.data.metric.MetricColumn;
 import com.yahoo.bard.webservice.util.DateTimeFormatterFactory;
@@ -23,7 +24,9 @@ import org.slf4j.LoggerFactory;
 
 import java.net.URI;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -53,6 +56,8 @@ public class ResponseData {
     protected final Pagination pagination;
     protected final Map<String, URI> paginationLinks;
 
+    private boolean dimensionRowsResolved;
+
     /**
      * Constructor.
      *
@@ -187,6 +192,7 @@ public class ResponseData {
      * @return map of result row
      */
     public Map<String, Object> buildResultRow(Result result) {
+        resolveDimensionRows();
         Map<String, Object> row = new LinkedHashMap<>();
         row.put("dateTime", result.getTimeStamp().toString(DateTimeFormatterFactory.getOutputFormatter()));
 
@@ -228,6 +234,7 @@ public class ResponseData {
             Result result,
             Map<Dimension, Set<Map<DimensionField, String>>> sidecars
     ) {
+        resolveDimensionRows();
 
         Map<String, Object> row = new LinkedHashMap<>();
         row.put("dateTime", result.getTimeStamp().toString(DateTimeFormatterFactory.getOutputFormatter()));
@@ -266,6 +273,40 @@ public class ResponseData {
         return row;
     }
 
+    /**
+     * Look up the lazy dimension rows of the result set whose fields other than the key field are written, with one
+     * bulk lookup per dimension.
+     * <p>
+     * The result set has been paginated and truncated by now, so only the rows that are written are looked up. Rows
+     * of dimensions showing only their key field are not looked up at all.
+     */
+    protected void resolveDimensionRows() {
+        if (dimensionRowsResolved || resultSet == null) {
+            return;
+        }
+        dimensionRowsResolved = true;
+
+        Map<Dimension, Set<LazyDimensionRow>> unresolved = new HashMap<>();
+        for (Result result : resultSet) {
+            for (Entry<DimensionColumn, DimensionRow> entry : result.getDimensionRows().entrySet()) {
+                if (!(entry.getValue() instanceof LazyDimensionRow)
+                        || ((LazyDimensionRow) entry.getValue()).isResolved()) {
+                    continue;
+                }
+                Dimension dimension = entry.getKey().getDimension();
+                Set<DimensionField> fields = requestedApiDimensionFields.get(dimension);
+                if (fields != null && fields.stream().anyMatch(field -> !field.equals(dimension.getKey()))) {
+                    // Rows are shared by results and compare by their fields, so collect them by identity
+                    unresolved.computeIfAbsent(
+                            dimension,
+                            ignored -> Collections.newSetFromMap(new IdentityHashMap<>())
+                    ).add((LazyDimensionRow) entry.getValue());
+                }
+            }
+        }
+        unresolved.forEach(LazyDimensionRow::resolveAll);
+    }
+
     /**
      * Build a list of interval strings. Format of interval string: yyyy-MM-dd' 'HH:mm:ss/yyyy-MM-dd' 'HH:mm:ss
      *
@@ -50,6 +50,7 @@ import com.yahoo.bard.webservice.web.DimensionFieldSpecifierKeywords;
 import com.yahoo.bard.webservice.web.ErrorMessageFormat;
 import com.yahoo.bard.webservice.web.MetricParser;
 import com.yahoo.bard.webservice.web.ResponseFormatType;
+import com.yahoo.bard.webservice.web.apirequest.binders.BindingCache;
 import com.yahoo.bard.webservice.web.apirequest.binders.FilterBinders;
 import com.yahoo.bard.webservice.web.apirequest.binders.FilterGenerator;
 import com.yahoo.bard.webservice.web.apirequest.binders.HavingGenerator;
@@ -110,6 +111,8 @@ public class DataApiRequestImpl extends ApiRequestImpl implements DataApiRequest
 
     protected FilterGenerator filterGenerator = FilterBinders.getInstance()::generateFilters;
 
+    protected BindingCache bindingCache = BindingCache.getInstance();
+
     @Deprecated
     private final DruidFilterBuilder filterBuilder;
 
@@ -957,7 +960,12 @@ public class DataApiRequestImpl extends ApiRequestImpl implements DataApiRequest
             LogicalTable logicalTable,
             DimensionDictionary dimensionDictionary
     ) throws BadApiRequestException {
-        return generateDimensions(rawGroupingDimensions, dimensionDictionary);
+        return bindingCache.bind(
+                Arrays.asList("dimensions", getClass(), BindingCache.pathSegmentsKey(rawGroupingDimensions)),
+                () -> generateDimensions(rawGroupingDimensions, dimensionDictionary),
+                bound -> isCurrent(bound, dimensionDictionary),
+                LinkedHashSet::new
+        );
     }
 
     /**
@@ -998,7 +1006,15 @@ public class DataApiRequestImpl extends ApiRequestImpl implements DataApiRequest
             LogicalTable logicalTable,
             DimensionDictionary dimensionDictionary
     ) {
-        return generateDimensionFields(apiDimensionPathSegments, dimensionDictionary);
+        return bindingCache.bind(
+                Arrays.asList("dimensionFields", getClass(), BindingCache.pathSegmentsKey(apiDimensionPathSegments)),
+                () -> generateDimensionFields(apiDimensionPathSegments, dimensionDictionary),
+                bound -> isCurrent(bound.keySet(), dimensionDictionary),
+                bound -> bound.entrySet().stream().collect(StreamUtils.toLinkedMap(
+                        Map.Entry::getKey,
+                        entry -> new LinkedHashSet<>(entry.getValue())
+                ))
+        );
     }
 
     /**
@@ -1041,7 +1057,17 @@ public class DataApiRequestImpl extends ApiRequestImpl implements DataApiRequest
             MetricDictionary metricDictionary,
             DimensionDictionary dimensionDictionary
     ) throws BadApiRequestException {
-        return generateLogicalMetrics(apiMetricExpression, metricDictionary, dimensionDictionary, logicalTable);
+        // Filtered metrics are built for this request, and an empty expression is validated against a feature flag
+        if (BardFeatureFlag.INTERSECTION_REPORTING.isOn() || apiMetricExpression == null
+                || apiMetricExpression.isEmpty()) {
+            return generateLogicalMetrics(apiMetricExpression, metricDictionary, dimensionDictionary, logicalTable);
+        }
+        return bindingCache.bind(
+                Arrays.asList("metrics", getClass(), logicalTable.getName(), apiMetricExpression),
+                () -> generateLogicalMetrics(apiMetricExpression, metricDictionary, dimensionDictionary, logicalTable),
+                bound -> bound.stream().allMatch(metric -> metricDictionary.get(metric.getName()) == metric),
+                LinkedHashSet::new
+        );
     }
 
     /**
@@ -1080,7 +1106,27 @@ public class DataApiRequestImpl extends ApiRequestImpl implements DataApiRequest
             LogicalTable logicalTable,
             DimensionDictionary dimensionDictionary
     ) throws BadApiRequestException {
-        return filterGenerator.generate(filterQuery, logicalTable, dimensionDictionary);
+        if (filterQuery == null || filterQuery.isEmpty()) {
+            return filterGenerator.generate(filterQuery, logicalTable, dimensionDictionary);
+        }
+        return bindingCache.bind(
+                Arrays.asList(
+                        "filters",
+                        getClass(),
+                        logicalTable.getName(),
+                        logicalTable.getGranularity().getName(),
+                        BardFeatureFlag.DATA_FILTER_SUBSTRING_OPERATIONS.isOn(),
+                        filterQuery
+                ),
+                () -> filterGenerator.generate(filterQuery, logicalTable, dimensionDictionary),
+                bound -> isCurrent(bound.keySet(), dimensionDictionary),
+                bound -> new ApiFilters(
+                        bound.entrySet().stream().collect(StreamUtils.toLinkedMap(
+                                Map.Entry::getKey,
+                                entry -> new LinkedHashSet<>(entry.getValue())
+                        ))
+                )
+        );
     }
 
     /**
@@ -1169,7 +1215,32 @@ public class DataApiRequestImpl extends ApiRequestImpl implements DataApiRequest
             HavingGenerator havingGenerator,
             Set<LogicalMetric> logicalMetrics
     ) {
-        return havingGenerator.apply(requestHavings, logicalMetrics);
+        if (requestHavings == null || requestHavings.isEmpty()) {
+            return havingGenerator.apply(requestHavings, logicalMetrics);
+        }
+        return bindingCache.bind(
+                Arrays.asList("havings", getClass(), havingGenerator, requestHavings),
+                () -> havingGenerator.apply(requestHavings, logicalMetrics),
+                bound -> logicalMetrics.containsAll(bound.keySet()),
+                bound -> bound.entrySet().stream().collect(StreamUtils.toLinkedMap(
+                        Map.Entry::getKey,
+                        entry -> new LinkedHashSet<>(entry.getValue())
+                ))
+        );
+    }
+
+    /**
+     * Check that bound dimensions are still the dimensions their names resolve to in the dimension dictionary.
+     *
+     * @param dimensions  The bound dimensions
+     * @param dimensionDictionary  The dimension dictionary of this request
+     *
+     * @return true if every dimension is still in the dictionary
+     */
+    private static boolean isCurrent(Set<Dimension> dimensions, DimensionDictionary dimensionDictionary) {
+        return dimensions.stream().allMatch(dimension ->
+                dimensionDictionary.findByApiName(dimension.getApiName()) == dimension
+        );
     }
 
     /**
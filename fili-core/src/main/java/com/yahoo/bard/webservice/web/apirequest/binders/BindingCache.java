@@ -0,0 +1,173 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.web.apirequest.binders;
+
+import com.yahoo.bard.webservice.application.MetricRegistryFactory;
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import javax.ws.rs.core.PathSegment;
+
+/**
+ * A bounded cache of the components bound from the query parameters of data requests.
+ * <p>
+ * Dashboards send the same request shapes over and over, and binding the same metric, dimension, filter and having
+ * strings again parses them again. The cache keeps the bound components keyed by the raw parameter strings, so a
+ * repeated request reuses them.
+ * <p>
+ * Bound components refer to dimensions and metrics from the dictionaries. A cached component is only reused while the
+ * dictionaries still resolve to the objects it refers to, so replacing a dimension or metric rebinds the components
+ * using it. Each request gets its own copy of the cached collections, since requests hold them in mutable
+ * collections, while the immutable bound objects inside them are shared.
+ * <p>
+ * The cache is off unless {@code bard__data_request_binding_cache_size} is positive.
+ */
+public class BindingCache {
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+    private static final MetricRegistry REGISTRY = MetricRegistryFactory.getRegistry();
+
+    public static final Meter HITS = REGISTRY.meter("binding.cache.meter.hits");
+    public static final Meter MISSES = REGISTRY.meter("binding.cache.meter.misses");
+    public static final Counter NANOS_SAVED = REGISTRY.counter("binding.cache.counter.nanos_saved");
+
+    private static BindingCache instance = new BindingCache(
+            SYSTEM_CONFIG.getIntProperty(SYSTEM_CONFIG.getPackageVariableName("data_request_binding_cache_size"), 0)
+    );
+
+    private final int maximumSize;
+    private final Map<List<Object>, Binding<?>> bindings;
+
+    /**
+     * Constructor.
+     *
+     * @param maximumSize  The number of bound components to keep, the least recently used are dropped first. 0
+     * disables the cache.
+     */
+    public BindingCache(int maximumSize) {
+        this.maximumSize = maximumSize;
+        this.bindings = Collections.synchronizedMap(
+                new LinkedHashMap<List<Object>, Binding<?>>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<List<Object>, Binding<?>> eldest) {
+                        return size() > maximumSize;
+                    }
+                }
+        );
+    }
+
+    /**
+     * Get a component bound from the raw parameters in the key, binding it if it is not cached or out of date.
+     * <p>
+     * Binding errors are not cached, they are thrown by every request that makes them.
+     *
+     * @param key  The kind of component and the raw parameters and settings it is bound from
+     * @param binder  Binds the component
+     * @param isCurrent  Tests if a cached component still matches the dictionaries
+     * @param copier  Copies the cached component for one request
+     * @param <T>  The type of the bound component
+     *
+     * @return the bound component
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T bind(List<Object> key, Supplier<T> binder, Predicate<T> isCurrent, Function<T, T> copier) {
+        if (maximumSize <= 0) {
+            return binder.get();
+        }
+
+        Binding<T> cached = (Binding<T>) bindings.get(key);
+        if (cached != null && isCurrent.test(cached.value)) {
+            HITS.mark();
+            NANOS_SAVED.inc(cached.bindNanos);
+            return copier.apply(cached.value);
+        }
+
+        MISSES.mark();
+        long start = System.nanoTime();
+        T value = binder.get();
+        bindings.put(key, new Binding<>(value, System.nanoTime() - start));
+        return copier.apply(value);
+    }
+
+    /**
+     * Drop every cached component.
+     */
+    public void clear() {
+        bindings.clear();
+    }
+
+    /**
+     * Get the number of cached components.
+     *
+     * @return the number of cached components
+     */
+    public int size() {
+        return bindings.size();
+    }
+
+    /**
+     * Describe path segments, including their matrix parameters, as a cache key.
+     *
+     * @param pathSegments  The path segments to describe
+     *
+     * @return a string that is equal for equal path segments
+     */
+    public static String pathSegmentsKey(List<PathSegment> pathSegments) {
+        return pathSegments == null
+                ? ""
+                : pathSegments.stream()
+                        .map(segment -> segment.getPath() + ";" + segment.getMatrixParameters())
+                        .collect(Collectors.joining("/"));
+    }
+
+    /**
+     * Get the binding cache shared by data requests.
+     *
+     * @return the shared binding cache
+     */
+    public static BindingCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Replace the binding cache shared by data requests.
+     *
+     * @param instance  The binding cache to share
+     */
+    public static void setInstance(BindingCache instance) {
+        BindingCache.instance = instance;
+    }
+
+    /**
+     * A bound component and the time it took to bind it.
+     *
+     * @param <T>  The type of the bound component
+     */
+    private static class Binding<T> {
+        private final T value;
+        private final long bindNanos;
+
+        /**
+         * Constructor.
+         *
+         * @param value  The bound component
+         * @param bindNanos  The time it took to bind the component
+         */
+        Binding(T value, long bindNanos) {
+            this.value = value;
+            this.bindNanos = bindNanos;
+        }
+    }
+}
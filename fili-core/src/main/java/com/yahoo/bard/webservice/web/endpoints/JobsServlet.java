@@ -9,6 +9,7 @@ import static javax.ws.rs.core.Response.Status.OK;
 import com.yahoo.bard.webservice.application.ObjectMappersSuite;
 import com.yahoo.bard.webservice.async.ResponseException;
 import com.yahoo.bard.webservice.async.broadcastchannels.BroadcastChannel;
+import com.yahoo.bard.webservice.async.broadcastchannels.TicketNotificationRegistry;
 import com.yahoo.bard.webservice.async.jobs.payloads.JobPayloadBuilder;
 import com.yahoo.bard.webservice.async.jobs.stores.ApiJobStore;
 import com.yahoo.bard.webservice.async.preresponses.stores.PreResponseStore;
@@ -48,7 +49,6 @@ import org.slf4j.LoggerFactory;
 
 import rx.Observable;
 import rx.exceptions.Exceptions;
-import rx.observables.ConnectableObservable;
 
 import java.net.URI;
 import java.util.Arrays;
@@ -90,7 +90,7 @@ public class JobsServlet extends EndpointServlet {
     private final RequestMapper requestMapper;
     private final JobPayloadBuilder jobPayloadBuilder;
     private final PreResponseStore preResponseStore;
-    private final BroadcastChannel<String> broadcastChannel;
+    private final TicketNotificationRegistry ticketNotifications;
     private final ObjectWriter writer;
     private final HttpResponseMaker httpResponseMaker;
 
@@ -126,7 +126,7 @@ public class JobsServlet extends EndpointServlet {
         this.apiJobStore = apiJobStore;
         this.jobPayloadBuilder = jobPayloadBuilder;
         this.preResponseStore = preResponseStore;
-        this.broadcastChannel = broadcastChannel;
+        this.ticketNotifications = new TicketNotificationRegistry(broadcastChannel);
         this.writer = objectMappers.getMapper().writer();
         this.httpResponseMaker = httpResponseMaker;
         this.formatResolver = formatResolver;
@@ -382,11 +382,10 @@ public class JobsServlet extends EndpointServlet {
     }
 
     /**
-     * Get an Observable wrapping a PreResponse. We first connect to the BroadcastChannel to ensure that we do not
-     * miss any notifications. We then check the PreResponseStore for the PreResponse. If no PreResponse is available,
-     * we check to see if we got a notification from the BroadcastChannel before the async timeout. If we get a
-     * notification before timeout, we retrieve the PreResponse from the PreResponseStore else we return an empty
-     * Observable.
+     * Get an Observable wrapping a PreResponse. We first register for the ticket's notification to ensure that we do
+     * not miss it. We then check the PreResponseStore for the PreResponse. If no PreResponse is available, we check to
+     * see if we got a notification from the BroadcastChannel before the async timeout. If we get a notification before
+     * timeout, we retrieve the PreResponse from the PreResponseStore else we return an empty Observable.
      *
      * @param ticket  The ticket for which the PreResponse needs to be retrieved.
      * @param asyncAfter  The minimum duration the request is allowed to last before becoming asynchronous
@@ -402,15 +401,10 @@ public class JobsServlet extends EndpointServlet {
         }
         /*
          * BroadCastChannel is a hot observable i.e. it emits notification irrespective of whether it has any
-         * subscribers. We use the replay operator so that the preResponseObservable upon connection, will begin
-         * collecting values.
-         * Once a new observer subscribes to the observable, it will have all the collected values replayed to it.
+         * subscribers. The registry is the only subscriber to it, and keeps the notification for our ticket once we
+         * have registered, so that it can be replayed to us after we have checked the store.
          */
-        ConnectableObservable<String> broadcastChannelNotifications = broadcastChannel.getNotifications()
-                .filter(ticket::equals)
-                .take(1)
-                .replay(1);
-        broadcastChannelNotifications.connect();
+        TicketNotificationRegistry.Registration registration = ticketNotifications.register(ticket);
         /*
          * In the cases where we may get a synchronous response (asyncAfter is a number, or
          * ApiRequest.SYNCHRONOUS_ASYNC_AFTER_VALUE ), then we start the timer, and
@@ -421,9 +415,11 @@ public class JobsServlet extends EndpointServlet {
          * If the results are already in the response store, then return them to me. Otherwise, very quickly
          * send back the asynchronous payload.
          */
-        return preResponseStore.get(ticket).switchIfEmpty(
-                applyTimeoutIfNeeded(broadcastChannelNotifications, asyncAfter).flatMap(preResponseStore::get)
-        );
+        return preResponseStore.get(ticket)
+                .switchIfEmpty(
+                        applyTimeoutIfNeeded(registration.getNotification(), asyncAfter).flatMap(preResponseStore::get)
+                )
+                .doOnUnsubscribe(registration::cancel);
     }
 
     /**
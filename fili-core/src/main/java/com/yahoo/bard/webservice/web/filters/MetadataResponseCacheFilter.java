@@ -0,0 +1,355 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.web.filters;
+
+import com.yahoo.bard.webservice.application.MetricRegistryFactory;
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
+import com.yahoo.bard.webservice.metadata.DataSourceMetadataService;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Principal;
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+import javax.annotation.Priority;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+/**
+ * Serves repeated requests to the /tables, /metrics and /dimensions metadata endpoints from serialized copies of their
+ * earlier responses, and answers conditional requests for unchanged responses with 304 Not Modified.
+ * <p>
+ * The metadata endpoints rebuild their views from the dictionaries on every request, which is costly for large
+ * configurations that clients poll. Successful responses are serialized to bytes once and tagged with a strong ETag
+ * computed from those bytes, so a rebuilt response with the same content keeps its ETag. Responses are cached per
+ * absolute request URI, Accept header and user, since request mappers may tailor metadata to the user.
+ * <p>
+ * Cached responses are dropped when the data source metadata is updated, since table views show availability, and
+ * once they are older than {@code bard__metadata_response_cache_ttl_seconds}, which bounds how long changes to the
+ * dictionaries go unseen. Dimension values are not cached.
+ */
+@Singleton
+@Priority(7)
+public class MetadataResponseCacheFilter implements ContainerRequestFilter, ContainerResponseFilter {
+    private static final Logger LOG = LoggerFactory.getLogger(MetadataResponseCacheFilter.class);
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+    private static final MetricRegistry REGISTRY = MetricRegistryFactory.getRegistry();
+
+    public static final Meter HITS = REGISTRY.meter("metadata.response.cache.meter.hits");
+    public static final Meter MISSES = REGISTRY.meter("metadata.response.cache.meter.misses");
+    public static final Meter NOT_MODIFIED = REGISTRY.meter("metadata.response.cache.meter.not_modified");
+
+    /**
+     * Number of metadata responses to cache. 0 turns the cache off, and the filter is then not registered.
+     */
+    public static final int CACHE_SIZE = SYSTEM_CONFIG.getIntProperty(
+            SYSTEM_CONFIG.getPackageVariableName("metadata_response_cache_size"),
+            0
+    );
+
+    private static final long TTL_MILLIS = 1000L * SYSTEM_CONFIG.getIntProperty(
+            SYSTEM_CONFIG.getPackageVariableName("metadata_response_cache_ttl_seconds"),
+            60
+    );
+
+    /**
+     * The metadata endpoints served from the cache: everything under /tables and /metrics, and /dimensions without
+     * dimension values.
+     */
+    protected static final Pattern CACHED_PATHS = Pattern.compile(
+            "^/?(v1/)?(tables(/.*)?|metrics(/.*)?|dimensions(/[^/]+)?)/?$"
+    );
+
+    private static final String CACHE_KEY = MetadataResponseCacheFilter.class.getName() + ".key";
+
+    private static final List<String> UNCACHED_HEADERS = Arrays.asList(
+            HttpHeaders.CONTENT_LENGTH,
+            HttpHeaders.DATE,
+            HttpHeaders.SET_COOKIE,
+            HttpHeaders.ETAG
+    );
+
+    private final DataSourceMetadataService dataSourceMetadataService;
+    private final long ttlMillis;
+    private final Clock clock;
+    private final Map<List<Object>, CachedResponse> responses;
+
+    /**
+     * Constructor.
+     *
+     * @param dataSourceMetadataService  The service whose updates change the availability shown by the endpoints
+     */
+    @Inject
+    public MetadataResponseCacheFilter(DataSourceMetadataService dataSourceMetadataService) {
+        this(dataSourceMetadataService, CACHE_SIZE, TTL_MILLIS, Clock.systemUTC());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param dataSourceMetadataService  The service whose updates change the availability shown by the endpoints
+     * @param maximumSize  The number of responses to cache, the least recently used are dropped first
+     * @param ttlMillis  How long a cached response may be served
+     * @param clock  The clock to age responses by
+     */
+    public MetadataResponseCacheFilter(
+            DataSourceMetadataService dataSourceMetadataService,
+            int maximumSize,
+            long ttlMillis,
+            Clock clock
+    ) {
+        this.dataSourceMetadataService = dataSourceMetadataService;
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+        this.responses = Collections.synchronizedMap(
+                new LinkedHashMap<List<Object>, CachedResponse>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<List<Object>, CachedResponse> eldest) {
+                        return size() > maximumSize;
+                    }
+                }
+        );
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) throws IOException {
+        if (!HttpMethod.GET.equals(requestContext.getMethod())
+                || !CACHED_PATHS.matcher(requestContext.getUriInfo().getPath()).matches()) {
+            return;
+        }
+
+        Principal user = requestContext.getSecurityContext() == null
+                ? null
+                : requestContext.getSecurityContext().getUserPrincipal();
+        List<Object> key = Arrays.asList(
+                requestContext.getUriInfo().getRequestUri().toString(),
+                requestContext.getHeaderString(HttpHeaders.ACCEPT),
+                user == null ? null : user.getName()
+        );
+
+        CachedResponse cached = responses.get(key);
+        if (cached != null && isCurrent(cached)) {
+            HITS.mark();
+            requestContext.abortWith(cached.toResponse(requestContext));
+            return;
+        }
+
+        MISSES.mark();
+        requestContext.setProperty(CACHE_KEY, key);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext)
+            throws IOException {
+        List<Object> key = (List<Object>) requestContext.getProperty(CACHE_KEY);
+        if (key == null || responseContext.getStatus() != Response.Status.OK.getStatusCode()) {
+            return;
+        }
+
+        // Read the generation before serializing, so an update during serialization makes the response stale
+        long generation = getGeneration();
+        byte[] body = serialize(responseContext.getEntity());
+        if (body == null) {
+            return;
+        }
+
+        MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+        responseContext.getHeaders().forEach((name, values) -> {
+            if (UNCACHED_HEADERS.stream().noneMatch(name::equalsIgnoreCase)) {
+                headers.put(name, values);
+            }
+        });
+        CachedResponse cached = new CachedResponse(
+                body,
+                responseContext.getMediaType(),
+                headers,
+                entityTag(body),
+                generation,
+                clock.millis()
+        );
+        responses.put(key, cached);
+
+        responseContext.getHeaders().putSingle(HttpHeaders.ETAG, cached.entityTag);
+        if (cached.matches(requestContext)) {
+            NOT_MODIFIED.mark();
+            responseContext.setStatus(Response.Status.NOT_MODIFIED.getStatusCode());
+            responseContext.setEntity(null);
+        } else {
+            responseContext.setEntity(body, null, responseContext.getMediaType());
+        }
+    }
+
+    /**
+     * Drop every cached response.
+     */
+    public void clear() {
+        responses.clear();
+    }
+
+    /**
+     * Check that a cached response may still be served.
+     *
+     * @param cached  The cached response
+     *
+     * @return true if the metadata has not been updated and the response has not expired since it was cached
+     */
+    private boolean isCurrent(CachedResponse cached) {
+        return cached.generation == getGeneration() && clock.millis() - cached.createdMillis < ttlMillis;
+    }
+
+    /**
+     * Get the current generation of the data source metadata.
+     *
+     * @return the number of data source metadata updates
+     */
+    private long getGeneration() {
+        return dataSourceMetadataService == null ? 0 : dataSourceMetadataService.getUpdateCount();
+    }
+
+    /**
+     * Serialize a response entity to bytes.
+     *
+     * @param entity  The response entity
+     *
+     * @return the serialized entity, or null if the entity is not of a type that can be cached
+     */
+    private static byte[] serialize(Object entity) {
+        try {
+            if (entity instanceof byte[]) {
+                return (byte[]) entity;
+            } else if (entity instanceof String) {
+                return ((String) entity).getBytes(StandardCharsets.UTF_8);
+            } else if (entity instanceof StreamingOutput) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                ((StreamingOutput) entity).write(out);
+                return out.toByteArray();
+            }
+        } catch (IOException e) {
+            LOG.warn("Unable to serialize metadata response for caching", e);
+        }
+        return null;
+    }
+
+    /**
+     * Build a strong entity tag from a response body.
+     *
+     * @param body  The serialized response body
+     *
+     * @return the entity tag
+     */
+    private static EntityTag entityTag(byte[] body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 16; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return new EntityTag(hex.toString());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * A serialized metadata response.
+     */
+    private static class CachedResponse {
+        private final byte[] body;
+        private final MediaType mediaType;
+        private final MultivaluedMap<String, Object> headers;
+        private final EntityTag entityTag;
+        private final long generation;
+        private final long createdMillis;
+
+        /**
+         * Constructor.
+         *
+         * @param body  The serialized response body
+         * @param mediaType  The media type of the body
+         * @param headers  The response headers to replay
+         * @param entityTag  The entity tag of the body
+         * @param generation  The data source metadata generation the response was built from
+         * @param createdMillis  When the response was cached
+         */
+        CachedResponse(
+                byte[] body,
+                MediaType mediaType,
+                MultivaluedMap<String, Object> headers,
+                EntityTag entityTag,
+                long generation,
+                long createdMillis
+        ) {
+            this.body = body;
+            this.mediaType = mediaType;
+            this.headers = headers;
+            this.entityTag = entityTag;
+            this.generation = generation;
+            this.createdMillis = createdMillis;
+        }
+
+        /**
+         * Check whether a conditional request already has this response.
+         *
+         * @param requestContext  The request
+         *
+         * @return true if the request's If-None-Match header names this response's entity tag
+         */
+        boolean matches(ContainerRequestContext requestContext) {
+            String ifNoneMatch = requestContext.getHeaderString(HttpHeaders.IF_NONE_MATCH);
+            if (ifNoneMatch == null) {
+                return false;
+            }
+            String tag = entityTag.toString();
+            return Arrays.stream(ifNoneMatch.split(","))
+                    .map(String::trim)
+                    .anyMatch(candidate -> candidate.equals("*") || Objects.equals(candidate, tag));
+        }
+
+        /**
+         * Build the response to a request from the cached copy.
+         *
+         * @param requestContext  The request
+         *
+         * @return a 304 Not Modified response if the request already has this response, otherwise the response
+         */
+        Response toResponse(ContainerRequestContext requestContext) {
+            if (matches(requestContext)) {
+                NOT_MODIFIED.mark();
+                return Response.notModified(entityTag).build();
+            }
+            Response.ResponseBuilder builder = Response.ok(body, mediaType).tag(entityTag);
+            headers.forEach((name, values) -> values.forEach(value -> builder.header(name, value)));
+            return builder.build();
+        }
+    }
+}
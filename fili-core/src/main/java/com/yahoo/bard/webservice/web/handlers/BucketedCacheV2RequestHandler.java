@@ -0,0 +1,219 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.web.handlers;
+
+import com.yahoo.bard.webservice.application.MetricRegistryFactory;
+import com.yahoo.bard.webservice.data.cache.DataCache;
+import com.yahoo.bard.webservice.data.cache.TupleDataCache;
+import com.yahoo.bard.webservice.data.time.AllGranularity;
+import com.yahoo.bard.webservice.druid.model.DefaultQueryType;
+import com.yahoo.bard.webservice.druid.model.QueryType;
+import com.yahoo.bard.webservice.druid.model.orderby.LimitSpec;
+import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
+import com.yahoo.bard.webservice.druid.model.query.GroupByQuery;
+import com.yahoo.bard.webservice.logging.RequestLog;
+import com.yahoo.bard.webservice.metadata.QuerySigningService;
+import com.yahoo.bard.webservice.util.IntervalUtils;
+import com.yahoo.bard.webservice.util.SimplifiedIntervalList;
+import com.yahoo.bard.webservice.web.apirequest.DataApiRequest;
+import com.yahoo.bard.webservice.web.responseprocessors.BucketedCacheV2ResponseProcessor;
+import com.yahoo.bard.webservice.web.responseprocessors.LoggingContext;
+import com.yahoo.bard.webservice.web.responseprocessors.ResponseProcessor;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.joda.time.Interval;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * Request handler caching query responses per time bucket of the query grain.
+ * <p>
+ * A request whose intervals slide by a bucket, like a dashboard showing the last 30 days, shares all but one of its
+ * buckets with the request before it. Each bucket is cached under the key of the query restricted to that bucket, and
+ * signed with the segment set of that bucket. The buckets found in the cache with their current signature are read
+ * from the cache, only the missing buckets are queried from Druid, in one query over their coalesced intervals, and
+ * the {@link BucketedCacheV2ResponseProcessor} caches the new buckets and stitches all buckets together in time order.
+ * <p>
+ * Responses that can't be split by time bucket, of queries at the all grain, group by queries with a row limit and
+ * other query types, are cached whole like {@link CacheV2RequestHandler} does.
+ */
+public class BucketedCacheV2RequestHandler extends CacheV2RequestHandler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BucketedCacheV2RequestHandler.class);
+    private static final MetricRegistry REGISTRY = MetricRegistryFactory.getRegistry();
+    public static final Meter BUCKET_HITS = REGISTRY.meter("queries.meter.cache.bucket.hits");
+    public static final Meter BUCKET_MISSES = REGISTRY.meter("queries.meter.cache.bucket.misses");
+    public static final Meter PARTIAL_HITS = REGISTRY.meter("queries.meter.cache.partial_hits");
+
+    /**
+     * Build a bucketed cache request handler.
+     *
+     * @param next  The next handler in the chain
+     * @param dataCache  The cache instance
+     * @param querySigningService The service to generate query signatures
+     * @param mapper  The mapper for all JSON processing
+     */
+    public BucketedCacheV2RequestHandler(
+            DataRequestHandler next,
+            @NotNull DataCache<?> dataCache,
+            QuerySigningService<?> querySigningService,
+            ObjectMapper mapper
+    ) {
+        super(next, dataCache, querySigningService, mapper);
+    }
+
+    @Override
+    public boolean handleRequest(
+            final RequestContext context,
+            final DataApiRequest request,
+            final DruidAggregationQuery<?> druidQuery,
+            final ResponseProcessor response
+    ) {
+        if (!isBucketable(druidQuery)) {
+            return super.handleRequest(context, request, druidQuery, response);
+        }
+
+        List<Interval> buckets = new ArrayList<>(
+                IntervalUtils.getSlicedIntervals(druidQuery.getIntervals(), druidQuery.getGranularity()).keySet()
+        );
+        if (buckets.isEmpty()) {
+            // Let the rest of the chain report the empty intervals
+            return super.handleRequest(context, request, druidQuery, response);
+        }
+
+        List<String> keys = new ArrayList<>(buckets.size());
+        List<JsonNode> cachedBuckets = new ArrayList<>(buckets.size());
+        try {
+            for (Interval bucket : buckets) {
+                DruidAggregationQuery<?> bucketQuery = druidQuery.withAllIntervals(Collections.singletonList(bucket));
+                String key = getKey(bucketQuery);
+                keys.add(key);
+                cachedBuckets.add(context.isReadCache() ? readBucket(key, bucketQuery) : null);
+            }
+        } catch (Exception e) {
+            LOG.warn("Cache key cannot be built: ", e);
+            return next.handleRequest(context, request, druidQuery, response);
+        }
+
+        List<Interval> missingBuckets = IntStream.range(0, buckets.size())
+                .filter(i -> cachedBuckets.get(i) == null)
+                .mapToObj(buckets::get)
+                .collect(Collectors.toList());
+
+        if (context.isReadCache()) {
+            CACHE_REQUESTS.mark(1);
+            if (missingBuckets.isEmpty()) {
+                markCacheHit(context);
+                RequestLog logCtx = RequestLog.dump();
+                response.processResponse(
+                        BucketedCacheV2ResponseProcessor.stitch(cachedBuckets, Collections.emptyList()),
+                        druidQuery,
+                        new LoggingContext(logCtx)
+                );
+                return true;
+            }
+            CACHE_MISSES.mark(1);
+            if (missingBuckets.size() < buckets.size()) {
+                PARTIAL_HITS.mark(1);
+            }
+        }
+
+        // Query the missing buckets only, coalesced into as few intervals as possible
+        DruidAggregationQuery<?> missingQuery = missingBuckets.size() == buckets.size()
+                ? druidQuery
+                : druidQuery.withAllIntervals(new SimplifiedIntervalList(missingBuckets));
+
+        ResponseProcessor nextResponse = new BucketedCacheV2ResponseProcessor(
+                response,
+                druidQuery,
+                buckets,
+                keys,
+                cachedBuckets,
+                dataCache,
+                querySigningService,
+                mapper
+        );
+
+        return next.handleRequest(context, request, missingQuery, nextResponse);
+    }
+
+    /**
+     * Read the cached response of one bucket, if it is cached with the current segment set of the bucket.
+     *
+     * @param key  The cache key of the bucket
+     * @param bucketQuery  The query restricted to the bucket
+     *
+     * @return the cached response of the bucket, or null if there is no current cached response
+     */
+    private JsonNode readBucket(String key, DruidAggregationQuery<?> bucketQuery) {
+        TupleDataCache.DataEntry<String, Long, Serializable> cacheEntry = dataCache.get(key);
+        if (cacheEntry != null) {
+            if (
+                    querySigningService.getSegmentSetId(bucketQuery)
+                            .map(id -> Objects.equals(cacheEntry.getMeta(), id))
+                            .orElse(false)
+            ) {
+                try {
+                    JsonNode json = cacheValueCodec.decode(cacheEntry.getValue(), cacheEntry.getMeta());
+                    if (json.isArray()) {
+                        BUCKET_HITS.mark(1);
+                        return json;
+                    }
+                    LOG.warn("Cached value of a bucket is not an array");
+                } catch (IOException e) {
+                    LOG.warn("Error processing cached value: ", e);
+                }
+            } else {
+                CACHE_POTENTIAL_HITS.mark(1);
+            }
+        }
+        BUCKET_MISSES.mark(1);
+        return null;
+    }
+
+    /**
+     * Check if the response of a query is the concatenation of the responses of the query restricted to each of its
+     * time buckets, so that it can be cached and queried by bucket.
+     * <p>
+     * Group by queries are only split when neither they nor their inner queries limit the number of rows, since the
+     * limit applies to all the buckets together. Top N and timeseries queries compute each bucket independently.
+     *
+     * @param druidQuery  The query to check
+     *
+     * @return true if the query can be split by time bucket
+     */
+    protected boolean isBucketable(DruidAggregationQuery<?> druidQuery) {
+        if (druidQuery.getGranularity() instanceof AllGranularity) {
+            return false;
+        }
+
+        QueryType queryType = druidQuery.getQueryType();
+        if (queryType == DefaultQueryType.GROUP_BY) {
+            LimitSpec limitSpec = ((GroupByQuery) druidQuery).getLimitSpec();
+            if (limitSpec != null && limitSpec.getLimit().isPresent()) {
+                return false;
+            }
+        } else if (queryType != DefaultQueryType.TOP_N && queryType != DefaultQueryType.TIMESERIES) {
+            return false;
+        }
+
+        return druidQuery.getInnerQuery()
+                .map(innerQuery -> isBucketable((DruidAggregationQuery<?>) innerQuery))
+                .orElse(true);
+    }
+}
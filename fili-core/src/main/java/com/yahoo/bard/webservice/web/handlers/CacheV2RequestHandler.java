@@ -2,14 +2,16 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.web.handlers;
 
-
+import static com.yahoo.bard.webservice.config.BardFeatureFlag.QUERY_FINGERPRINT_CACHE_KEYS;
 import static com.yahoo.bard.webservice.web.handlers.workflow.DruidWorkflow.REQUEST_WORKFLOW_TIMER;
 import static com.yahoo.bard.webservice.web.handlers.workflow.DruidWorkflow.RESPONSE_WORKFLOW_TIMER;
 
 import com.yahoo.bard.webservice.application.MetricRegistryFactory;
+import com.yahoo.bard.webservice.data.cache.CacheValueCodec;
 import com.yahoo.bard.webservice.data.cache.DataCache;
 import com.yahoo.bard.webservice.data.cache.TupleDataCache;
 import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
+import com.yahoo.bard.webservice.druid.model.query.QueryFingerprinter;
 import com.yahoo.bard.webservice.logging.RequestLog;
 import com.yahoo.bard.webservice.logging.blocks.BardQueryInfo;
 import com.yahoo.bard.webservice.metadata.QuerySigningService;
@@ -29,6 +31,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.Serializable;
 import java.util.Objects;
 
 import javax.validation.constraints.NotNull;
@@ -49,8 +52,10 @@ public class CacheV2RequestHandler extends BaseDataRequestHandler {
     public static final Meter CACHE_REQUESTS = REGISTRY.meter("queries.meter.cache.total");
 
     protected final @NotNull DataRequestHandler next;
-    protected final @NotNull TupleDataCache<String, Long, String> dataCache;
+    protected final @NotNull TupleDataCache<String, Long, Serializable> dataCache;
     protected final @NotNull QuerySigningService<Long> querySigningService;
+    protected final CacheValueCodec cacheValueCodec;
+    protected final QueryFingerprinter fingerprinter;
 
     /**
      * Build a Cache request handler.
@@ -68,9 +73,11 @@ public class CacheV2RequestHandler extends BaseDataRequestHandler {
             ObjectMapper mapper
     ) {
         super(mapper);
+        this.fingerprinter = new QueryFingerprinter(mapper);
         this.next = next;
-        this.dataCache = (TupleDataCache<String, Long, String>) dataCache;
+        this.dataCache = (TupleDataCache<String, Long, Serializable>) dataCache;
         this.querySigningService = (QuerySigningService<Long>) querySigningService;
+        this.cacheValueCodec = new CacheValueCodec(mapper);
     }
 
     @Override
@@ -87,7 +94,7 @@ public class CacheV2RequestHandler extends BaseDataRequestHandler {
             cacheKey = getKey(druidQuery);
 
             if (context.isReadCache()) {
-                final TupleDataCache.DataEntry<String, Long, String> cacheEntry = dataCache.get(cacheKey);
+                final TupleDataCache.DataEntry<String, Long, Serializable> cacheEntry = dataCache.get(cacheKey);
                 CACHE_REQUESTS.mark(1);
 
                 if (cacheEntry != null) {
@@ -99,26 +106,17 @@ public class CacheV2RequestHandler extends BaseDataRequestHandler {
                                     .orElse(false)
                     ) {
                         try {
-                            if (context.getNumberOfOutgoing().decrementAndGet() == 0) {
-                                RequestLog.stopTiming(REQUEST_WORKFLOW_TIMER);
-                            }
-
-                            if (context.getNumberOfIncoming().decrementAndGet() == 0) {
-                                RequestLog.startTiming(RESPONSE_WORKFLOW_TIMER);
-                            }
-                            CACHE_HITS.mark(1);
-                            BardQueryInfo.getBardQueryInfo().incrementCountCacheHits();
+                            // Decoded before the hit is marked, so an unreadable entry is handled as a miss
+                            JsonNode json = cacheValueCodec.decode(cacheEntry.getValue(), cacheEntry.getMeta());
+                            markCacheHit(context);
                             RequestLog logCtx = RequestLog.dump();
-                            nextResponse.processResponse(
-                                    mapper.readTree(cacheEntry.getValue()),
-                                    druidQuery,
-                                    new LoggingContext(logCtx)
-                            );
+                            nextResponse.processResponse(json, druidQuery, new LoggingContext(logCtx));
 
                             return true;
 
                         } catch (IOException e) {
                             LOG.warn("Error processing cached value: ", e);
+                            CACHE_MISSES.mark(1);
                         }
                     } else {
                         LOG.debug("Cache entry present but invalid for query with id: {}", RequestLog.getId());
@@ -145,9 +143,27 @@ public class CacheV2RequestHandler extends BaseDataRequestHandler {
         return next.handleRequest(context, request, druidQuery, nextResponse);
     }
 
+    /**
+     * Record that a query is answered from the cache instead of being sent, before its cached response is processed.
+     *
+     * @param context  The context of the request
+     */
+    protected void markCacheHit(RequestContext context) {
+        if (context.getNumberOfOutgoing().decrementAndGet() == 0) {
+            RequestLog.stopTiming(REQUEST_WORKFLOW_TIMER);
+        }
+
+        if (context.getNumberOfIncoming().decrementAndGet() == 0) {
+            RequestLog.startTiming(RESPONSE_WORKFLOW_TIMER);
+        }
+        CACHE_HITS.mark(1);
+        BardQueryInfo.getBardQueryInfo().incrementCountCacheHits();
+    }
+
     /**
      * Construct the cache key.
-     * Current implementation includes all the fields of the druidQuery besides the context.
+     * Current implementation includes all the fields of the druidQuery besides the context, either as canonical JSON
+     * or, if query fingerprint cache keys are enabled, as a {@link QueryFingerprinter} fingerprint.
      *
      * @param druidQuery  The druid query.
      *
@@ -155,6 +171,9 @@ public class CacheV2RequestHandler extends BaseDataRequestHandler {
      * @throws JsonProcessingException if the druid query cannot be serialized to JSON
      */
     protected String getKey(DruidAggregationQuery<?> druidQuery) throws JsonProcessingException {
+        if (QUERY_FINGERPRINT_CACHE_KEYS.isOn()) {
+            return fingerprinter.fingerprint(druidQuery);
+        }
         JsonNode root = mapper.valueToTree(druidQuery);
         Utils.canonicalize(root , mapper, false);
         return writer.writeValueAsString(root);
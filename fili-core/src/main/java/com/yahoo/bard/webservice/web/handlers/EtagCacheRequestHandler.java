@@ -2,12 +2,14 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.web.handlers;
 
+import static com.yahoo.bard.webservice.config.BardFeatureFlag.QUERY_FINGERPRINT_CACHE_KEYS;
 import static com.yahoo.bard.webservice.web.handlers.workflow.DruidWorkflow.REQUEST_WORKFLOW_TIMER;
 import static com.yahoo.bard.webservice.web.handlers.workflow.DruidWorkflow.RESPONSE_WORKFLOW_TIMER;
 
 import com.yahoo.bard.webservice.application.MetricRegistryFactory;
 import com.yahoo.bard.webservice.data.cache.TupleDataCache;
 import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
+import com.yahoo.bard.webservice.druid.model.query.QueryFingerprinter;
 import com.yahoo.bard.webservice.logging.RequestLog;
 import com.yahoo.bard.webservice.logging.blocks.BardQueryInfo;
 import com.yahoo.bard.webservice.util.Utils;
@@ -45,6 +47,7 @@ public class EtagCacheRequestHandler extends BaseDataRequestHandler {
 
     protected final DataRequestHandler next;
     protected final TupleDataCache<String, String, String> dataCache;
+    protected final QueryFingerprinter fingerprinter;
 
     /**
      * Build a Cache request handler.
@@ -59,6 +62,7 @@ public class EtagCacheRequestHandler extends BaseDataRequestHandler {
             @NotNull ObjectMapper mapper
     ) {
         super(mapper);
+        this.fingerprinter = new QueryFingerprinter(mapper);
         this.next = next;
         this.dataCache = dataCache;
     }
@@ -125,7 +129,8 @@ public class EtagCacheRequestHandler extends BaseDataRequestHandler {
 
     /**
      * Construct the cache key.
-     * Current implementation includes all the fields of the druidQuery besides the context.
+     * Current implementation includes all the fields of the druidQuery besides the context, either as canonical JSON
+     * or, if query fingerprint cache keys are enabled, as a {@link QueryFingerprinter} fingerprint.
      *
      * @param druidQuery  The druid query.
      *
@@ -133,6 +138,9 @@ public class EtagCacheRequestHandler extends BaseDataRequestHandler {
      * @throws JsonProcessingException if the druid query cannot be serialized to JSON
      */
     private String getKey(DruidAggregationQuery<?> druidQuery) throws JsonProcessingException {
+        if (QUERY_FINGERPRINT_CACHE_KEYS.isOn()) {
+            return fingerprinter.fingerprint(druidQuery);
+        }
         JsonNode root = mapper.valueToTree(druidQuery);
         Utils.canonicalize(root, mapper, false);
         return writer.writeValueAsString(root);
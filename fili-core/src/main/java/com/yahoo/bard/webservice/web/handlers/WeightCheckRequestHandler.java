@@ -2,6 +2,8 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.web.handlers;
 
+import static com.yahoo.bard.webservice.config.BardFeatureFlag.WEIGHT_ESTIMATE_CACHE;
+
 import com.yahoo.bard.webservice.data.time.Granularity;
 import com.yahoo.bard.webservice.druid.client.DruidWebService;
 import com.yahoo.bard.webservice.druid.client.FailureCallback;
@@ -14,6 +16,7 @@ import com.yahoo.bard.webservice.web.apirequest.DataApiRequest;
 import com.yahoo.bard.webservice.web.responseprocessors.ResponseProcessor;
 import com.yahoo.bard.webservice.web.responseprocessors.WeightCheckResponseProcessor;
 import com.yahoo.bard.webservice.web.util.QueryWeightUtil;
+import com.yahoo.bard.webservice.web.util.WeightEstimateCache;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
@@ -22,6 +25,8 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.OptionalLong;
+
 import javax.validation.constraints.NotNull;
 
 /**
@@ -32,6 +37,8 @@ import javax.validation.constraints.NotNull;
  * results.
  *     <li>If the cost is too high, return an error, otherwise subsequently submit the data request.
  * </ul>
+ * When the weight estimate cache is enabled, queries whose weight has been learned confidently from earlier weight
+ * checks and results are accepted or refused without the weight check query.
  */
 public class WeightCheckRequestHandler extends BaseDataRequestHandler {
     private static final Logger LOG = LoggerFactory.getLogger(WeightCheckRequestHandler.class);
@@ -72,11 +79,30 @@ public class WeightCheckRequestHandler extends BaseDataRequestHandler {
             return next.handleRequest(context, request, druidQuery, response);
         }
 
-        BardQueryInfo.getBardQueryInfo().incrementCountWeightCheck();
-        final WeightCheckResponseProcessor weightCheckResponse = new WeightCheckResponseProcessor(response);
-        final DruidAggregationQuery<?> weightEvaluationQuery = queryWeightUtil.makeWeightEvaluationQuery(druidQuery);
         Granularity granularity = druidQuery.getInnermostQuery().getGranularity();
         final long queryRowLimit = queryWeightUtil.getQueryWeightThreshold(granularity);
+        WeightEstimateCache weightEstimates = WEIGHT_ESTIMATE_CACHE.isOn()
+                ? queryWeightUtil.getWeightEstimateCache()
+                : null;
+        final WeightCheckResponseProcessor weightCheckResponse = new WeightCheckResponseProcessor(
+                response,
+                weightEstimates
+        );
+
+        // Decide locally if the weight of the query has been learned well enough
+        if (weightEstimates != null) {
+            OptionalLong estimate = weightEstimates.getConfidentEstimate(druidQuery, queryRowLimit);
+            if (estimate.isPresent()) {
+                if (estimate.getAsLong() > queryRowLimit) {
+                    rejectRequest(druidQuery, weightCheckResponse, estimate.getAsLong(), queryRowLimit);
+                    return true;
+                }
+                return next.handleRequest(context, request, druidQuery, weightCheckResponse);
+            }
+        }
+
+        BardQueryInfo.getBardQueryInfo().incrementCountWeightCheck();
+        final DruidAggregationQuery<?> weightEvaluationQuery = queryWeightUtil.makeWeightEvaluationQuery(druidQuery);
 
         try {
             LOG.debug("Weight query {}", writer.writeValueAsString(weightEvaluationQuery));
@@ -125,26 +151,15 @@ public class WeightCheckRequestHandler extends BaseDataRequestHandler {
                     LOG.debug("{}", writer.writeValueAsString(jsonResult));
 
                     JsonNode row = jsonResult.get(0);
+                    int rowCount = row == null ? 0 : row.get("event").get("count").asInt();
+                    if (WEIGHT_ESTIMATE_CACHE.isOn()) {
+                        queryWeightUtil.getWeightEstimateCache().observeWeight(druidQuery, rowCount);
+                    }
+
                     // If the weight limit query is empty or reports acceptable rows, run the full query
-                    if (row != null) {
-                        int rowCount = row.get("event").get("count").asInt();
-
-                        if (rowCount > queryRowLimit) {
-                            String reason = String.format(
-                                    ErrorMessageFormat.WEIGHT_CHECK_FAILED.logFormat(rowCount, queryRowLimit),
-                                    rowCount,
-                                    queryRowLimit
-                            );
-                            String description = ErrorMessageFormat.WEIGHT_CHECK_FAILED.format();
-
-                            LOG.debug(reason);
-                            response.getErrorCallback(druidQuery).dispatch(
-                                507, //  Insufficient Storage
-                                reason,
-                                description
-                            );
-                            return;
-                        }
+                    if (rowCount > queryRowLimit) {
+                        rejectRequest(druidQuery, response, rowCount, queryRowLimit);
+                        return;
                     }
                     next.handleRequest(context, request, druidQuery, response);
                 } catch (Throwable e) {
@@ -154,4 +169,33 @@ public class WeightCheckRequestHandler extends BaseDataRequestHandler {
             }
         };
     }
+
+    /**
+     * Refuse a request with an HTTP INSUFFICIENT_STORAGE (507) status because its weight is over the limit.
+     *
+     * @param druidQuery  The query being processed
+     * @param response  the response handler
+     * @param weight  The measured or estimated weight of the query
+     * @param queryRowLimit  The number of aggregating lines allowed
+     */
+    protected void rejectRequest(
+            final DruidAggregationQuery<?> druidQuery,
+            final ResponseProcessor response,
+            final long weight,
+            final long queryRowLimit
+    ) {
+        String reason = String.format(
+                ErrorMessageFormat.WEIGHT_CHECK_FAILED.logFormat(weight, queryRowLimit),
+                weight,
+                queryRowLimit
+        );
+        String description = ErrorMessageFormat.WEIGHT_CHECK_FAILED.format();
+
+        LOG.debug(reason);
+        response.getErrorCallback(druidQuery).dispatch(
+                507, //  Insufficient Storage
+                reason,
+                description
+        );
+    }
 }
@@ -0,0 +1,239 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.web.responseprocessors;
+
+import static com.yahoo.bard.webservice.config.BardFeatureFlag.CACHE_PARTIAL_DATA;
+import static com.yahoo.bard.webservice.web.handlers.PartialDataRequestHandler.getPartialIntervalsWithDefault;
+import static com.yahoo.bard.webservice.web.handlers.VolatileDataRequestHandler.getVolatileIntervalsWithDefault;
+
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
+import com.yahoo.bard.webservice.data.cache.CacheValueCodec;
+import com.yahoo.bard.webservice.data.cache.CacheWriteExecutor;
+import com.yahoo.bard.webservice.data.cache.TupleDataCache;
+import com.yahoo.bard.webservice.druid.client.FailureCallback;
+import com.yahoo.bard.webservice.druid.client.HttpErrorCallback;
+import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
+import com.yahoo.bard.webservice.metadata.QuerySigningService;
+import com.yahoo.bard.webservice.util.SimplifiedIntervalList;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+
+import org.joda.time.DateTime;
+import org.joda.time.Interval;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * Response processor of a query for the time buckets missing from the cache.
+ * <p>
+ * It splits the Druid response by the timestamps of its rows into the missing buckets, caches each bucket that does
+ * not hold partial or volatile data with the segment set signature of the bucket, and passes the response of the whole
+ * query, stitched together from the cached and the new buckets in time order, to the next response processor.
+ */
+public class BucketedCacheV2ResponseProcessor implements ResponseProcessor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BucketedCacheV2ResponseProcessor.class);
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+    private static final JsonNodeFactory FACTORY = new JsonNodeFactory(true);
+
+    private final long maxDruidResponseLengthToCache = SYSTEM_CONFIG.getLongProperty(
+            SYSTEM_CONFIG.getPackageVariableName(
+                    "druid_max_response_length_to_cache"
+            ),
+            Long.MAX_VALUE
+    );
+
+    private final ResponseProcessor next;
+    private final DruidAggregationQuery<?> druidQuery;
+    private final List<Interval> buckets;
+    private final List<String> keys;
+    private final List<JsonNode> cachedBuckets;
+    private final @NotNull TupleDataCache<String, Long, Serializable> dataCache;
+    private final @NotNull QuerySigningService<Long> querySigningService;
+    private final Executor cacheWriteExecutor = CacheWriteExecutor.getDefault();
+
+    protected final CacheValueCodec cacheValueCodec;
+
+    /**
+     * Constructor.
+     *
+     * @param next  Next ResponseProcessor in the chain
+     * @param druidQuery  The query over all the buckets, whose response is passed to the next processor
+     * @param buckets  The time buckets of the query, in time order
+     * @param keys  The cache key of each bucket
+     * @param cachedBuckets  The cached response of each bucket, null for the buckets missing from the cache
+     * @param dataCache  The cache into which to write the new buckets
+     * @param querySigningService  Service to use for signing the buckets with their segment sets
+     * @param mapper  An object mapper to use for processing Json
+     */
+    @SuppressWarnings("unchecked")
+    public BucketedCacheV2ResponseProcessor(
+            ResponseProcessor next,
+            DruidAggregationQuery<?> druidQuery,
+            List<Interval> buckets,
+            List<String> keys,
+            List<JsonNode> cachedBuckets,
+            TupleDataCache<String, Long, ? extends Serializable> dataCache,
+            QuerySigningService<Long> querySigningService,
+            ObjectMapper mapper
+    ) {
+        this.next = next;
+        this.druidQuery = druidQuery;
+        this.buckets = buckets;
+        this.keys = keys;
+        this.cachedBuckets = cachedBuckets;
+        this.dataCache = (TupleDataCache<String, Long, Serializable>) dataCache;
+        this.querySigningService = querySigningService;
+        this.cacheValueCodec = new CacheValueCodec(mapper);
+    }
+
+    @Override
+    public ResponseContext getResponseContext() {
+        return next.getResponseContext();
+    }
+
+    @Override
+    public FailureCallback getFailureCallback(DruidAggregationQuery<?> druidQuery) {
+        return next.getFailureCallback(this.druidQuery);
+    }
+
+    @Override
+    public HttpErrorCallback getErrorCallback(DruidAggregationQuery<?> druidQuery) {
+        return next.getErrorCallback(this.druidQuery);
+    }
+
+    @Override
+    public void processResponse(JsonNode json, DruidAggregationQuery<?> druidQuery, LoggingContext metadata) {
+        if (!json.isArray()) {
+            LOG.warn("Unable to split a response that is not an array by time bucket, passing it on uncached");
+            next.processResponse(json, this.druidQuery, metadata);
+            return;
+        }
+
+        List<ArrayNode> newBuckets = splitByBucket(json);
+        SimplifiedIntervalList unavailableIntervals = getPartialIntervalsWithDefault(getResponseContext())
+                .union(getVolatileIntervalsWithDefault(getResponseContext()));
+        for (int i = 0; i < buckets.size(); i++) {
+            Interval bucket = buckets.get(i);
+            boolean cacheable = CACHE_PARTIAL_DATA.isOn()
+                    || unavailableIntervals.stream().noneMatch(bucket::overlaps);
+            if (newBuckets.get(i) == null || !cacheable) {
+                continue;
+            }
+            // Signed now, so a segment set change before the write runs cannot sign the bucket as current
+            Optional<Long> segmentSetId = querySigningService.getSegmentSetId(
+                    this.druidQuery.withAllIntervals(Collections.singletonList(bucket))
+            );
+            if (!segmentSetId.isPresent()) {
+                // A bucket cached without a signature could never be read
+                continue;
+            }
+            int index = i;
+            cacheWriteExecutor.execute(() -> cacheBucket(index, newBuckets.get(index), segmentSetId.get()));
+        }
+
+        next.processResponse(stitch(cachedBuckets, newBuckets), this.druidQuery, metadata);
+    }
+
+    /**
+     * Split the rows of a response into the buckets missing from the cache, by their timestamps.
+     * <p>
+     * Rows whose timestamps are missing, invalid or before the first missing bucket, are kept in the first missing
+     * bucket, so the stitched response holds every row of the response.
+     *
+     * @param json  The response to the query for the missing buckets
+     *
+     * @return the rows of each missing bucket, null for the buckets read from the cache
+     */
+    private List<ArrayNode> splitByBucket(JsonNode json) {
+        List<ArrayNode> newBuckets = new ArrayList<>(Collections.nCopies(buckets.size(), null));
+        NavigableMap<Long, Integer> missingBucketStarts = new TreeMap<>();
+        for (int i = 0; i < buckets.size(); i++) {
+            if (cachedBuckets.get(i) == null) {
+                missingBucketStarts.put(buckets.get(i).getStartMillis(), i);
+                newBuckets.set(i, FACTORY.arrayNode());
+            }
+        }
+
+        for (JsonNode row : json) {
+            Map.Entry<Long, Integer> bucket = null;
+            JsonNode timestamp = row.get("timestamp");
+            if (timestamp != null && timestamp.isTextual()) {
+                try {
+                    bucket = missingBucketStarts.floorEntry(new DateTime(timestamp.asText()).getMillis());
+                } catch (IllegalArgumentException e) {
+                    LOG.debug("Unable to parse row timestamp {}", timestamp.asText(), e);
+                }
+            }
+            if (bucket == null) {
+                bucket = missingBucketStarts.firstEntry();
+            }
+            newBuckets.get(bucket.getValue()).add(row);
+        }
+        return newBuckets;
+    }
+
+    /**
+     * Cache the rows of one bucket with the segment set signature of the bucket.
+     *
+     * @param index  The index of the bucket
+     * @param rows  The rows of the bucket
+     * @param segmentSetId  The segment set id of the bucket when the response was received
+     */
+    private void cacheBucket(int index, ArrayNode rows, long segmentSetId) {
+        Serializable value = null;
+        try {
+            value = cacheValueCodec.encode(rows, segmentSetId);
+            int valueLength = CacheValueCodec.size(value);
+            if (valueLength <= maxDruidResponseLengthToCache) {
+                dataCache.set(keys.get(index), segmentSetId, value);
+            } else {
+                LOG.debug(
+                        "Bucket not cached. Length of {} exceeds max value length of {}",
+                        valueLength,
+                        maxDruidResponseLengthToCache
+                );
+            }
+        } catch (Exception e) {
+            LOG.warn(
+                    "Unable to cache {}value of size: {}",
+                    value == null ? "null " : "",
+                    value == null ? "N/A" : CacheValueCodec.size(value),
+                    e
+            );
+        }
+    }
+
+    /**
+     * Concatenate the rows of each bucket in bucket order, taking each bucket from the cached or the new buckets.
+     *
+     * @param cachedBuckets  The rows of the buckets read from the cache, null for missing buckets
+     * @param newBuckets  The rows of the buckets queried from Druid, or an empty list if no bucket was queried
+     *
+     * @return the rows of all the buckets
+     */
+    public static ArrayNode stitch(List<JsonNode> cachedBuckets, List<? extends JsonNode> newBuckets) {
+        ArrayNode result = FACTORY.arrayNode();
+        for (int i = 0; i < cachedBuckets.size(); i++) {
+            JsonNode rows = cachedBuckets.get(i) != null ? cachedBuckets.get(i) : newBuckets.get(i);
+            result.addAll((ArrayNode) rows);
+        }
+        return result;
+    }
+}
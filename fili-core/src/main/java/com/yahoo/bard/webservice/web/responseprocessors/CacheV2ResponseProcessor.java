@@ -8,6 +8,8 @@ import static com.yahoo.bard.webservice.web.handlers.VolatileDataRequestHandler.
 
 import com.yahoo.bard.webservice.config.SystemConfig;
 import com.yahoo.bard.webservice.config.SystemConfigProvider;
+import com.yahoo.bard.webservice.data.cache.CacheValueCodec;
+import com.yahoo.bard.webservice.data.cache.CacheWriteExecutor;
 import com.yahoo.bard.webservice.data.cache.TupleDataCache;
 import com.yahoo.bard.webservice.druid.client.FailureCallback;
 import com.yahoo.bard.webservice.druid.client.HttpErrorCallback;
@@ -22,6 +24,9 @@ import com.fasterxml.jackson.databind.ObjectWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Serializable;
+import java.util.concurrent.Executor;
+
 import javax.validation.constraints.NotNull;
 
 /**
@@ -41,32 +46,58 @@ public class CacheV2ResponseProcessor implements ResponseProcessor {
 
     private final ResponseProcessor next;
     private final String cacheKey;
-    private final @NotNull TupleDataCache<String, Long, String> dataCache;
+    private final @NotNull TupleDataCache<String, Long, Serializable> dataCache;
     private final @NotNull QuerySigningService<Long> querySigningService;
+    private final Executor cacheWriteExecutor;
 
     protected final ObjectWriter writer;
+    protected final CacheValueCodec cacheValueCodec;
 
     /**
      * Constructor.
      *
      * @param next  Next ResponseProcessor in the chain
      * @param cacheKey  Key into which to write a cache entry
-     * @param dataCache  The cache into which to write a cache entry
+     * @param dataCache  The cache into which to write a cache entry, holding values of any {@link CacheValueCodec} kind
      * @param querySigningService  Service to use for signing the queries in the cache key with their metadata
      * @param mapper  An object mapper to use for processing Json
      */
     public CacheV2ResponseProcessor(
             ResponseProcessor next,
             String cacheKey,
-            TupleDataCache<String, Long, String> dataCache,
+            TupleDataCache<String, Long, ? extends Serializable> dataCache,
             QuerySigningService<Long> querySigningService,
             ObjectMapper mapper
+    ) {
+        this(next, cacheKey, dataCache, querySigningService, mapper, CacheWriteExecutor.getDefault());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param next  Next ResponseProcessor in the chain
+     * @param cacheKey  Key into which to write a cache entry
+     * @param dataCache  The cache into which to write a cache entry, holding values of any {@link CacheValueCodec} kind
+     * @param querySigningService  Service to use for signing the queries in the cache key with their metadata
+     * @param mapper  An object mapper to use for processing Json
+     * @param cacheWriteExecutor  Executor serializing and writing the cache entry, behind the response
+     */
+    @SuppressWarnings("unchecked")
+    public CacheV2ResponseProcessor(
+            ResponseProcessor next,
+            String cacheKey,
+            TupleDataCache<String, Long, ? extends Serializable> dataCache,
+            QuerySigningService<Long> querySigningService,
+            ObjectMapper mapper,
+            Executor cacheWriteExecutor
     ) {
         this.next = next;
         this.cacheKey = cacheKey;
-        this.dataCache = dataCache;
+        this.dataCache = (TupleDataCache<String, Long, Serializable>) dataCache;
         this.querySigningService = querySigningService;
         this.writer = mapper.writer();
+        this.cacheValueCodec = new CacheValueCodec(mapper);
+        this.cacheWriteExecutor = cacheWriteExecutor;
     }
 
     @Override
@@ -87,36 +118,44 @@ public class CacheV2ResponseProcessor implements ResponseProcessor {
     @Override
     public void processResponse(JsonNode json, DruidAggregationQuery<?> druidQuery, LoggingContext metadata) {
         if (CACHE_PARTIAL_DATA.isOn() || isCacheable()) {
-            String valueString = null;
-            try {
-                valueString = writer.writeValueAsString(json);
-                int valueLength = valueString.length();
-                if (valueLength <= maxDruidResponseLengthToCache) {
-                    dataCache.set(
-                            cacheKey,
-                            querySigningService.getSegmentSetId(druidQuery).orElse(null),
-                            valueString
-                    );
-                } else {
-                    LOG.debug(
-                            "Response not cached. Length of {} exceeds max value length of {}",
-                            valueLength,
-                            maxDruidResponseLengthToCache
-                    );
-                }
-            } catch (Exception e) {
-                LOG.warn(
-                        "Unable to cache {}value of size: {}",
-                        valueString == null ? "null " : "",
-                        valueString == null ? "N/A" : valueString.length(),
-                        e
-                );
-            }
+            // Signed now, so a segment set change before the write runs cannot sign the response as current
+            Long segmentSetId = querySigningService.getSegmentSetId(druidQuery).orElse(null);
+            cacheWriteExecutor.execute(() -> cacheResponse(json, segmentSetId));
         }
 
         next.processResponse(json, druidQuery, metadata);
     }
 
+    /**
+     * Encode a response and write it to the cache, signed with the segment set of its query.
+     *
+     * @param json  The response to cache
+     * @param segmentSetId  The segment set id of the query of the response when the response was received
+     */
+    private void cacheResponse(JsonNode json, Long segmentSetId) {
+        Serializable value = null;
+        try {
+            value = cacheValueCodec.encode(json, segmentSetId);
+            int valueLength = CacheValueCodec.size(value);
+            if (valueLength <= maxDruidResponseLengthToCache) {
+                dataCache.set(cacheKey, segmentSetId, value);
+            } else {
+                LOG.debug(
+                        "Response not cached. Length of {} exceeds max value length of {}",
+                        valueLength,
+                        maxDruidResponseLengthToCache
+                );
+            }
+        } catch (Exception e) {
+            LOG.warn(
+                    "Unable to cache {}value of size: {}",
+                    value == null ? "null " : "",
+                    value == null ? "N/A" : CacheValueCodec.size(value),
+                    e
+            );
+        }
+    }
+
     /**
      * A request is cacheable if it does not refer to partial data.
      *
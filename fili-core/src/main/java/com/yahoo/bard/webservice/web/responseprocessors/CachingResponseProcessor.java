@@ -7,6 +7,7 @@ import static com.yahoo.bard.webservice.web.handlers.VolatileDataRequestHandler.
 
 import com.yahoo.bard.webservice.config.SystemConfig;
 import com.yahoo.bard.webservice.config.SystemConfigProvider;
+import com.yahoo.bard.webservice.data.cache.CacheWriteExecutor;
 import com.yahoo.bard.webservice.data.cache.DataCache;
 import com.yahoo.bard.webservice.druid.client.FailureCallback;
 import com.yahoo.bard.webservice.druid.client.HttpErrorCallback;
@@ -20,6 +21,8 @@ import com.fasterxml.jackson.databind.ObjectWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.Executor;
+
 import javax.validation.constraints.NotNull;
 
 /**
@@ -40,6 +43,7 @@ public class CachingResponseProcessor implements ResponseProcessor {
     private final ResponseProcessor next;
     private final String cacheKey;
     private final @NotNull DataCache<String> dataCache;
+    private final Executor cacheWriteExecutor = CacheWriteExecutor.getDefault();
 
     protected final ObjectWriter writer;
 
@@ -81,29 +85,38 @@ public class CachingResponseProcessor implements ResponseProcessor {
     @Override
     public void processResponse(JsonNode json, DruidAggregationQuery<?> druidQuery, LoggingContext metadata) {
         if (isCacheable()) {
-            String valueString = null;
-            try {
-                valueString = writer.writeValueAsString(json);
-                int valueLength = valueString.length();
-                if (valueLength <= maxDruidResponseLengthToCache) {
-                    dataCache.set(cacheKey, valueString);
-                } else {
-                    LOG.debug(
-                            "Response not cached. Length of {} exceeds max value length of {}",
-                            valueLength,
-                            maxDruidResponseLengthToCache
-                    );
-                }
-            } catch (Exception e) {
-                LOG.warn(
-                        "Unable to cache {}value of size: {}",
-                        valueString == null ? "null " : "",
-                        valueString == null ? "N/A" : valueString.length(),
-                        e
+            cacheWriteExecutor.execute(() -> cacheResponse(json));
+        }
+        next.processResponse(json, druidQuery, metadata);
+    }
+
+    /**
+     * Serialize a response and write it to the cache.
+     *
+     * @param json  The response to cache
+     */
+    private void cacheResponse(JsonNode json) {
+        String valueString = null;
+        try {
+            valueString = writer.writeValueAsString(json);
+            int valueLength = valueString.length();
+            if (valueLength <= maxDruidResponseLengthToCache) {
+                dataCache.set(cacheKey, valueString);
+            } else {
+                LOG.debug(
+                        "Response not cached. Length of {} exceeds max value length of {}",
+                        valueLength,
+                        maxDruidResponseLengthToCache
                 );
             }
+        } catch (Exception e) {
+            LOG.warn(
+                    "Unable to cache {}value of size: {}",
+                    valueString == null ? "null " : "",
+                    valueString == null ? "N/A" : valueString.length(),
+                    e
+            );
         }
-        next.processResponse(json, druidQuery, metadata);
     }
 
     /**
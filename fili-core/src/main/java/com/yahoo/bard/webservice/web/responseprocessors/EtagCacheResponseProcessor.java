@@ -6,13 +6,13 @@ import static javax.ws.rs.core.Response.Status.INTERNAL_SERVER_ERROR;
 import static javax.ws.rs.core.Response.Status.NOT_MODIFIED;
 import static javax.ws.rs.core.Response.Status.OK;
 
+import com.yahoo.bard.webservice.data.cache.CacheWriteExecutor;
 import com.yahoo.bard.webservice.data.cache.TupleDataCache;
 import com.yahoo.bard.webservice.druid.client.FailureCallback;
 import com.yahoo.bard.webservice.druid.client.HttpErrorCallback;
 import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
 import com.yahoo.bard.webservice.web.ErrorMessageFormat;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
@@ -22,6 +22,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.concurrent.Executor;
 
 import javax.validation.constraints.NotNull;
 
@@ -37,6 +38,7 @@ public class EtagCacheResponseProcessor implements FullResponseProcessor {
     private final ResponseProcessor next;
     private final String cacheKey;
     private final TupleDataCache<String, String, String> dataCache;
+    private final Executor cacheWriteExecutor = CacheWriteExecutor.getDefault();
 
     /**
      * Constructor.
@@ -100,16 +102,15 @@ public class EtagCacheResponseProcessor implements FullResponseProcessor {
             if (!json.has(DruidJsonResponseContentKeys.ETAG.getName())) {
                 LOG.warn(ErrorMessageFormat.ETAG_MISSING_FROM_RESPONSE.format());
             } else {
-                try {
-                    dataCache.set(
-                            cacheKey,
-                            json.get(DruidJsonResponseContentKeys.ETAG.getName()).asText(),
-                            writer.writeValueAsString(json.get(DruidJsonResponseContentKeys.RESPONSE.getName()))
-                    );
-                } catch (JsonProcessingException exception) {
-                    logAndGetErrorCallback("Unable to parse JSON response while caching", druidQuery);
-                    return;
-                }
+                String etag = json.get(DruidJsonResponseContentKeys.ETAG.getName()).asText();
+                JsonNode response = json.get(DruidJsonResponseContentKeys.RESPONSE.getName());
+                cacheWriteExecutor.execute(() -> {
+                    try {
+                        dataCache.set(cacheKey, etag, writer.writeValueAsString(response));
+                    } catch (Exception exception) {
+                        LOG.warn("Unable to cache JSON response", exception);
+                    }
+                });
             }
         }
 
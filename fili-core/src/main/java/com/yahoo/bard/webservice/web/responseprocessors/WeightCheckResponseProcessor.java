@@ -8,16 +8,20 @@ import com.yahoo.bard.webservice.druid.client.FailureCallback;
 import com.yahoo.bard.webservice.druid.client.HttpErrorCallback;
 import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
 import com.yahoo.bard.webservice.logging.RequestLog;
+import com.yahoo.bard.webservice.web.util.WeightEstimateCache;
 
 import com.fasterxml.jackson.databind.JsonNode;
 
 /**
  * A response processor which wraps a timer around the outer most response processor only in the event of an error
  * response.
+ * <p>
+ * When given a weight estimate cache, the processor also teaches it the number of rows of each response.
  */
 public class WeightCheckResponseProcessor implements ResponseProcessor {
 
     private final ResponseProcessor next;
+    private final WeightEstimateCache weightEstimates;
 
     /**
      * Constructor.
@@ -25,7 +29,18 @@ public class WeightCheckResponseProcessor implements ResponseProcessor {
      * @param next  The next ResponseProcessor in the chain to call
      */
     public WeightCheckResponseProcessor(ResponseProcessor next) {
+        this(next, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param next  The next ResponseProcessor in the chain to call
+     * @param weightEstimates  The cache to record the size of responses in, or null to not record them
+     */
+    public WeightCheckResponseProcessor(ResponseProcessor next, WeightEstimateCache weightEstimates) {
         this.next = next;
+        this.weightEstimates = weightEstimates;
     }
 
     @Override
@@ -61,6 +76,9 @@ public class WeightCheckResponseProcessor implements ResponseProcessor {
 
     @Override
     public void processResponse(JsonNode json, DruidAggregationQuery<?> druidQuery, LoggingContext metadata) {
+        if (weightEstimates != null && json.isArray()) {
+            weightEstimates.observeResultRows(druidQuery, json.size());
+        }
         next.processResponse(json, druidQuery, metadata);
     }
 }
@@ -55,6 +55,15 @@ public class QueryWeightUtil {
     private static final @NotNull String DEFAULT_SEGMENTATION_FACTOR_KEY = SYSTEM_CONFIG
             .getPackageVariableName("weight_segmentation_factor_default");
 
+    private static final @NotNull String WEIGHT_ESTIMATE_CACHE_SIZE_KEY = SYSTEM_CONFIG
+            .getPackageVariableName("weight_estimate_cache_size");
+
+    private static final @NotNull String WEIGHT_ESTIMATE_CACHE_MIN_SAMPLES_KEY = SYSTEM_CONFIG
+            .getPackageVariableName("weight_estimate_cache_min_samples");
+
+    private static final @NotNull String WEIGHT_ESTIMATE_CACHE_MARGIN_KEY = SYSTEM_CONFIG
+            .getPackageVariableName("weight_estimate_cache_margin");
+
     // The default weight limit for queries
     private static final long QUERY_WEIGHT_LIMIT_DEFAULT = 10000;
 
@@ -81,8 +90,26 @@ public class QueryWeightUtil {
         WEIGHT_CHECK_BYPASS_FACTOR_KEY,
         WEIGHT_CHECK_BYPASS_FACTOR_DEFAULT);
 
+    // The default number of query shapes whose weight is estimated
+    private static final int WEIGHT_ESTIMATE_CACHE_SIZE_DEFAULT = 10000;
+
+    // The default number of observations of a query shape before its weight estimate is used
+    private static final int WEIGHT_ESTIMATE_CACHE_MIN_SAMPLES_DEFAULT = 3;
+
+    // The default fraction by which a weight estimate must clear the weight threshold to skip the weight check
+    private static final double WEIGHT_ESTIMATE_CACHE_MARGIN_DEFAULT = 0.5;
+
     private final Map<ReadablePeriod, Long> weightLimitTimeMap;
 
+    private final WeightEstimateCache weightEstimateCache = new WeightEstimateCache(
+            SYSTEM_CONFIG.getIntProperty(WEIGHT_ESTIMATE_CACHE_SIZE_KEY, WEIGHT_ESTIMATE_CACHE_SIZE_DEFAULT),
+            SYSTEM_CONFIG.getIntProperty(
+                    WEIGHT_ESTIMATE_CACHE_MIN_SAMPLES_KEY,
+                    WEIGHT_ESTIMATE_CACHE_MIN_SAMPLES_DEFAULT
+            ),
+            SYSTEM_CONFIG.getDoubleProperty(WEIGHT_ESTIMATE_CACHE_MARGIN_KEY, WEIGHT_ESTIMATE_CACHE_MARGIN_DEFAULT)
+    );
+
     private final Long defaultRowLimit;
     private final Long allTimeRowLimit;
 
@@ -175,4 +202,13 @@ public class QueryWeightUtil {
     public WeightEvaluationQuery makeWeightEvaluationQuery(DruidAggregationQuery<?> druidQuery) {
         return WeightEvaluationQuery.makeWeightEvaluationQuery(druidQuery);
     }
+
+    /**
+     * Get the cache of weights learned from earlier weight checks, used to skip weight checks of familiar queries.
+     *
+     * @return the weight estimate cache
+     */
+    public WeightEstimateCache getWeightEstimateCache() {
+        return weightEstimateCache;
+    }
 }
@@ -0,0 +1,270 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.web.util;
+
+import com.yahoo.bard.webservice.application.MetricRegistryFactory;
+import com.yahoo.bard.webservice.application.ObjectMappersSuite;
+import com.yahoo.bard.webservice.data.dimension.Dimension;
+import com.yahoo.bard.webservice.druid.model.DefaultQueryType;
+import com.yahoo.bard.webservice.druid.model.aggregation.SketchAggregation;
+import com.yahoo.bard.webservice.druid.model.orderby.LimitSpec;
+import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
+import com.yahoo.bard.webservice.druid.model.query.GroupByQuery;
+import com.yahoo.bard.webservice.util.IntervalUtils;
+import com.yahoo.bard.webservice.util.Utils;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Learns the weight of queries from earlier weight checks and results, so that the weight of a familiar query can be
+ * judged without sending a weight evaluation query to Druid.
+ * <p>
+ * Queries are grouped by shape: the data sources, grouping dimensions, filter, granularity and limit of the innermost
+ * query. Queries of the same shape over different intervals or with different sketch aggregations differ in weight
+ * roughly in proportion to the number of time buckets times the number of sketches, so the cache keeps a smoothed
+ * weight per bucket and per sketch for each shape and scales it to the query being checked.
+ * <p>
+ * An estimate is only used once a shape has been observed a minimum number of times, and only when it is clearly
+ * below or clearly above the weight limit by the configured margin. Queries close to the limit are always checked.
+ */
+public class WeightEstimateCache {
+    private static final Logger LOG = LoggerFactory.getLogger(WeightEstimateCache.class);
+    private static final MetricRegistry REGISTRY = MetricRegistryFactory.getRegistry();
+    private static final ObjectWriter WRITER = new ObjectMappersSuite().getMapper().writer();
+
+    public static final Meter HITS = REGISTRY.meter("weight.estimate.cache.meter.hits");
+    public static final Meter MISSES = REGISTRY.meter("weight.estimate.cache.meter.misses");
+    public static final String HIT_RATIO_GAUGE = "weight.estimate.cache.gauge.hit_ratio";
+
+    /**
+     * Weight given to the newest observation when updating the smoothed weight of a shape.
+     */
+    private static final double SMOOTHING = 0.5;
+
+    static {
+        if (!REGISTRY.getMetrics().containsKey(HIT_RATIO_GAUGE)) {
+            REGISTRY.register(
+                    HIT_RATIO_GAUGE,
+                    new RatioGauge() {
+                        @Override
+                        protected Ratio getRatio() {
+                            long lookups = HITS.getCount() + MISSES.getCount();
+                            return lookups != 0 ? Ratio.of(HITS.getCount(), lookups) : Ratio.of(0, 1);
+                        }
+                    }
+            );
+        }
+    }
+
+    private final int minimumSamples;
+    private final double margin;
+    private final Map<String, Estimate> estimates;
+
+    /**
+     * Constructor.
+     *
+     * @param maximumSize  The number of query shapes to remember, the least recently used shapes are forgotten first
+     * @param minimumSamples  The number of observations of a shape needed before its estimate is used
+     * @param margin  The fraction by which an estimate must clear the weight limit for the query to be judged locally
+     */
+    public WeightEstimateCache(int maximumSize, int minimumSamples, double margin) {
+        this.minimumSamples = minimumSamples;
+        this.margin = margin;
+        this.estimates = Collections.synchronizedMap(
+                new LinkedHashMap<String, Estimate>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, Estimate> eldest) {
+                        return size() > maximumSize;
+                    }
+                }
+        );
+    }
+
+    /**
+     * Get the estimated weight of a query, if the estimate is trusted to decide the weight check on its own.
+     *
+     * @param query  The query being weight checked
+     * @param weightLimit  The weight the query may not exceed
+     *
+     * @return the estimated weight, or empty if the query must be weight checked by Druid
+     */
+    public OptionalLong getConfidentEstimate(DruidAggregationQuery<?> query, long weightLimit) {
+        QueryShape shape = QueryShape.of(query);
+        Estimate estimate = shape == null ? null : estimates.get(shape.key);
+        if (estimate != null && estimate.samples >= minimumSamples) {
+            long weight = (long) Math.ceil(estimate.weightPerUnit * shape.units);
+            if (weight * (1 + margin) <= weightLimit || weight * (1 - margin) > weightLimit) {
+                HITS.mark();
+                LOG.debug("Weight estimate {} from {} samples against {}", weight, estimate.samples, weightLimit);
+                return OptionalLong.of(weight);
+            }
+        }
+        MISSES.mark();
+        return OptionalLong.empty();
+    }
+
+    /**
+     * Record the weight Druid reported for a query in its weight evaluation query.
+     *
+     * @param query  The query that was weight checked
+     * @param weight  The weight reported by the weight evaluation query
+     */
+    public void observeWeight(DruidAggregationQuery<?> query, long weight) {
+        QueryShape shape = QueryShape.of(query);
+        if (shape != null) {
+            observe(shape, weight);
+        }
+    }
+
+    /**
+     * Record the number of rows Druid returned for a query.
+     * <p>
+     * Only the results of group by queries without nesting or a having clause have as many rows as the weight
+     * evaluation query counts, so other results are ignored.
+     *
+     * @param query  The query that was run
+     * @param rows  The number of rows in the result of the query
+     */
+    public void observeResultRows(DruidAggregationQuery<?> query, long rows) {
+        if (query.getInnermostQuery() != query
+                || query.getQueryType() != DefaultQueryType.GROUP_BY
+                || ((GroupByQuery) query).getHaving() != null
+        ) {
+            return;
+        }
+        QueryShape shape = QueryShape.of(query);
+        if (shape != null) {
+            observe(shape, rows * shape.sketches);
+        }
+    }
+
+    /**
+     * Fold an observed weight into the estimate for a query shape.
+     *
+     * @param shape  The shape of the observed query
+     * @param weight  The observed weight of the query
+     */
+    private void observe(QueryShape shape, long weight) {
+        estimates.merge(shape.key, new Estimate((double) weight / shape.units, 1), Estimate::update);
+    }
+
+    /**
+     * Forget every estimate.
+     */
+    public void clear() {
+        estimates.clear();
+    }
+
+    /**
+     * The smoothed weight of a query shape per time bucket and per sketch.
+     */
+    private static class Estimate {
+        private final double weightPerUnit;
+        private final int samples;
+
+        /**
+         * Constructor.
+         *
+         * @param weightPerUnit  The weight per time bucket and per sketch
+         * @param samples  The number of observations the weight was learned from
+         */
+        Estimate(double weightPerUnit, int samples) {
+            this.weightPerUnit = weightPerUnit;
+            this.samples = samples;
+        }
+
+        /**
+         * Combine an estimate with a newer observation.
+         *
+         * @param older  The estimate learned so far
+         * @param newer  The new observation
+         *
+         * @return the updated estimate
+         */
+        static Estimate update(Estimate older, Estimate newer) {
+            return new Estimate(
+                    older.weightPerUnit + SMOOTHING * (newer.weightPerUnit - older.weightPerUnit),
+                    older.samples + newer.samples
+            );
+        }
+    }
+
+    /**
+     * The parts of a query that its weight per time bucket and per sketch depends on.
+     */
+    private static class QueryShape {
+        private final String key;
+        private final long sketches;
+        private final long units;
+
+        /**
+         * Constructor.
+         *
+         * @param key  The signature of the shape
+         * @param sketches  The number of sketch aggregations in the query
+         * @param units  The number of time buckets times the number of sketches
+         */
+        QueryShape(String key, long sketches, long units) {
+            this.key = key;
+            this.sketches = sketches;
+            this.units = units;
+        }
+
+        /**
+         * Get the shape of a query.
+         *
+         * @param query  The query to describe
+         *
+         * @return the shape of the query, or null if the query has no weight to learn
+         */
+        static QueryShape of(DruidAggregationQuery<?> query) {
+            DruidAggregationQuery<?> innerQuery = query.getInnermostQuery();
+            long sketches = Utils.getSubsetByType(innerQuery.getAggregations(), SketchAggregation.class).size();
+            long periods = IntervalUtils.countSlicedIntervals(innerQuery.getIntervals(), innerQuery.getGranularity());
+            if (sketches == 0 || periods == 0) {
+                return null;
+            }
+
+            String filter;
+            try {
+                filter = WRITER.writeValueAsString(innerQuery.getFilter());
+            } catch (JsonProcessingException e) {
+                LOG.debug("Unable to serialize filter for weight estimate", e);
+                return null;
+            }
+
+            Optional<Integer> limit = innerQuery instanceof GroupByQuery
+                    ? Optional.ofNullable(((GroupByQuery) innerQuery).getLimitSpec()).flatMap(LimitSpec::getLimit)
+                    : Optional.empty();
+
+            String key = String.join(
+                    "|",
+                    String.valueOf(innerQuery.getQueryType()),
+                    String.join(",", new TreeSet<>(innerQuery.getDataSource().getNames())),
+                    innerQuery.getDimensions().stream()
+                            .map(Dimension::getApiName)
+                            .sorted()
+                            .collect(Collectors.joining(",")),
+                    innerQuery.getGranularity().getName(),
+                    String.valueOf(limit.orElse(null)),
+                    filter
+            );
+            return new QueryShape(key, sketches, sketches * periods);
+        }
+    }
+}
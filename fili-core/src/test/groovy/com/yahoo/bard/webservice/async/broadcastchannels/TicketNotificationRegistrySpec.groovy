@@ -0,0 +1,88 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.async.broadcastchannels
+
+import rx.observers.TestSubscriber
+import rx.subjects.PublishSubject
+import spock.lang.Specification
+
+class TicketNotificationRegistrySpec extends Specification {
+
+    BroadcastChannel<String> broadcastChannel = new SimpleBroadcastChannel<>(PublishSubject.create())
+    TicketNotificationRegistry registry = new TicketNotificationRegistry(broadcastChannel)
+
+    def cleanup() {
+        registry.close()
+        broadcastChannel.close()
+    }
+
+    def "A notification published after registration is replayed to a later subscriber"() {
+        given:
+        TicketNotificationRegistry.Registration registration = registry.register("ticket1")
+        TestSubscriber<String> subscriber = new TestSubscriber<>()
+
+        when:
+        broadcastChannel.publish("ticket1")
+        registration.getNotification().subscribe(subscriber)
+
+        then:
+        subscriber.assertValue("ticket1")
+        subscriber.assertCompleted()
+    }
+
+    def "Only the waiters for the published ticket are woken"() {
+        given:
+        TestSubscriber<String> first = new TestSubscriber<>()
+        TestSubscriber<String> second = new TestSubscriber<>()
+        TestSubscriber<String> other = new TestSubscriber<>()
+        registry.register("ticket1").getNotification().subscribe(first)
+        registry.register("ticket1").getNotification().subscribe(second)
+        registry.register("ticket2").getNotification().subscribe(other)
+
+        when:
+        broadcastChannel.publish("ticket1")
+
+        then:
+        first.assertValue("ticket1")
+        second.assertValue("ticket1")
+        other.assertNoValues()
+        other.assertNotCompleted()
+
+        and: "The woken ticket no longer has waiters"
+        registry.waitingTicketCount == 1
+    }
+
+    def "Cancelled registrations are not woken and are removed from the registry"() {
+        given:
+        TicketNotificationRegistry.Registration registration = registry.register("ticket1")
+        TestSubscriber<String> subscriber = new TestSubscriber<>()
+        registration.getNotification().subscribe(subscriber)
+
+        when:
+        registration.cancel()
+        registration.cancel()
+
+        then:
+        registry.waitingTicketCount == 0
+
+        when:
+        broadcastChannel.publish("ticket1")
+
+        then:
+        subscriber.assertNoValues()
+    }
+
+    def "Closing the registry completes the remaining waiters without a notification"() {
+        given:
+        TestSubscriber<String> subscriber = new TestSubscriber<>()
+        registry.register("ticket1").getNotification().subscribe(subscriber)
+
+        when:
+        registry.close()
+
+        then:
+        subscriber.assertNoValues()
+        subscriber.assertCompleted()
+        registry.waitingTicketCount == 0
+    }
+}
@@ -0,0 +1,255 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.async.jobs.stores
+
+import static com.yahoo.bard.webservice.async.jobs.jobrows.DefaultJobField.DATE_CREATED
+import static com.yahoo.bard.webservice.async.jobs.jobrows.DefaultJobField.JOB_TICKET
+import static com.yahoo.bard.webservice.async.jobs.jobrows.DefaultJobField.QUERY
+import static com.yahoo.bard.webservice.async.jobs.jobrows.DefaultJobField.STATUS
+import static com.yahoo.bard.webservice.async.jobs.jobrows.DefaultJobField.USER_ID
+
+import com.yahoo.bard.webservice.application.MetricRegistryFactory
+import com.yahoo.bard.webservice.async.jobs.JobTestUtils
+import com.yahoo.bard.webservice.async.jobs.jobrows.DefaultJobStatus
+import com.yahoo.bard.webservice.async.jobs.jobrows.JobRow
+import com.yahoo.bard.webservice.web.DefaultFilterOperation
+
+import com.codahale.metrics.Gauge
+
+import rx.observers.TestSubscriber
+import spock.lang.Unroll
+
+import java.time.Clock
+import java.time.Duration
+import java.time.Instant
+import java.time.ZoneId
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * Verifies that the IndexedJobStore satisfies the ApiJobStore interface, and checks its indexed filtering and
+ * eviction. The interface tests may be found in {@link ApiJobStoreSpec}.
+ */
+class IndexedJobStoreSpec extends ApiJobStoreSpec {
+
+    Instant now = Instant.parse("2016-04-29T00:00:00Z")
+    Clock clock = Stub(Clock) {
+        millis() >> { now.toEpochMilli() }
+        getZone() >> ZoneId.of("UTC")
+    }
+
+    JobRow userFooJobRow1 = JobTestUtils.buildJobRow([(JOB_TICKET): "1", (USER_ID): "Foo"])
+    JobRow userFooJobRow2 = JobTestUtils.buildJobRow([(JOB_TICKET): "2", (USER_ID): "Foo"])
+    JobRow userBarJobRow1 = JobTestUtils.buildJobRow(
+            [(JOB_TICKET): "3", (USER_ID): "Bar", (STATUS): DefaultJobStatus.SUCCESS.getName()]
+    )
+
+    @Override
+    ApiJobStore getStore() {
+        new IndexedJobStore(Duration.ofHours(1), 1000, clock)
+    }
+
+    IndexedJobStore buildFooBarStore() {
+        IndexedJobStore indexedJobStore = new IndexedJobStore(Duration.ofHours(1), 1000, clock)
+        [userFooJobRow1, userFooJobRow2, userBarJobRow1].each { indexedJobStore.save(it).subscribe() }
+        return indexedJobStore
+    }
+
+    @Unroll
+    def "getFilteredRows returns the jobs #expectedIds that satisfy #filters"() {
+        given:
+        TestSubscriber<JobRow> testSubscriber = new TestSubscriber<>()
+
+        when:
+        buildFooBarStore().getFilteredRows(filters.collect { new JobRowFilter(it) } as Set).subscribe(testSubscriber)
+
+        then:
+        testSubscriber.onNextEvents*.getId() == expectedIds
+
+        where:
+        filters                                      | expectedIds
+        ["userId-startswith[Fo]"]                    | ["1", "2"]
+        ["userId-startswith[Fo]", "jobTicket-eq[1]"] | ["1"]
+        ["userId-notin[Foo]"]                        | ["3"]
+        ["userId-in[Foo,Bar]"]                       | ["1", "2", "3"]
+        ["userId-contains[oo]"]                      | ["1", "2"]
+        ["status-eq[success]"]                       | ["3"]
+        ["status-eq[pending]", "userId-eq[Bar]"]     | []
+        ["dateCreated-startswith[2016-04]"]          | ["1", "2", "3"]
+        ["query-contains[metric]"]                   | ["1", "2", "3"]
+    }
+
+    def "Updating a job moves it between index buckets"() {
+        given:
+        IndexedJobStore indexedJobStore = buildFooBarStore()
+        TestSubscriber<JobRow> testSubscriber = new TestSubscriber<>()
+
+        when:
+        indexedJobStore.save(userFooJobRow1.withFieldValue(STATUS, DefaultJobStatus.FAILURE.getName())).subscribe()
+        indexedJobStore.getFilteredRows([new JobRowFilter("status-eq[pending]")] as Set).subscribe(testSubscriber)
+
+        then:
+        testSubscriber.onNextEvents*.getId() == ["2"]
+    }
+
+    def "getFilteredRows fails if we try to filter on a field not present in the JobRow"() {
+        given:
+        IndexedJobStore indexedJobStore = new IndexedJobStore([QUERY], Duration.ofHours(1), 10, clock)
+        indexedJobStore.save(new JobRow(JOB_TICKET, [(JOB_TICKET): "1"])).subscribe()
+        TestSubscriber<JobRow> testSubscriber = new TestSubscriber<>()
+
+        when:
+        indexedJobStore.getFilteredRows([new JobRowFilter("userId-eq[Foo]")] as Set).subscribe(testSubscriber)
+
+        then:
+        testSubscriber.assertError(IllegalArgumentException.class)
+    }
+
+    def "Completed jobs are evicted after the time to live, pending jobs are kept"() {
+        given:
+        IndexedJobStore indexedJobStore = buildFooBarStore()
+
+        when:
+        now = now.plus(Duration.ofHours(2))
+        indexedJobStore.evict()
+
+        then:
+        indexedJobStore.size() == 2
+        indexedJobStore.get("3").toList().toBlocking().single() == []
+        indexedJobStore.getFilteredRows([new JobRowFilter("userId-eq[Bar]")] as Set).toList().toBlocking()
+                .single() == []
+    }
+
+    def "The oldest completed jobs are evicted when the store outgrows its maximum size"() {
+        given:
+        IndexedJobStore indexedJobStore = new IndexedJobStore(Duration.ofDays(1), 3, clock)
+        indexedJobStore.save(JobTestUtils.buildJobRow([(JOB_TICKET): "pending"])).subscribe()
+
+        when:
+        (1..5).each {
+            indexedJobStore.save(
+                    JobTestUtils.buildJobRow([(JOB_TICKET): "$it".toString(), (STATUS): "success"])
+            ).subscribe()
+        }
+
+        then:
+        indexedJobStore.getAllRows().toList().toBlocking().single()*.getId() == ["pending", "4", "5"]
+    }
+
+    def "Concurrent saves and queries see a consistent index"() {
+        given:
+        IndexedJobStore indexedJobStore = new IndexedJobStore(Duration.ofDays(1), 100000, clock)
+        def executor = Executors.newFixedThreadPool(8)
+
+        when:
+        (0..<2000).each { int id ->
+            executor.submit {
+                indexedJobStore.save(
+                        JobTestUtils.buildJobRow([(JOB_TICKET): "$id".toString(), (USER_ID): "u${id % 4}".toString()])
+                )
+                indexedJobStore.getFilteredRows([new JobRowFilter("userId-eq[u0]")] as Set).toList().toBlocking()
+                        .single()
+            }
+        }
+        executor.shutdown()
+        executor.awaitTermination(30, TimeUnit.SECONDS)
+
+        then:
+        indexedJobStore.size() == 2000
+        indexedJobStore.getFilteredRows([new JobRowFilter("userId-eq[u0]")] as Set).toList().toBlocking()
+                .single().size() == 500
+    }
+
+    def "Concurrently indexing and unindexing jobs sharing a field value loses no index entry"() {
+        given:
+        IndexedJobStore indexedJobStore = new IndexedJobStore(Duration.ofDays(1), 100000, clock)
+        def executor = Executors.newFixedThreadPool(8)
+
+        when: "Every job joins the shared user, and the odd jobs leave it again"
+        (0..<2000).each { int id ->
+            executor.submit {
+                String ticket = "$id".toString()
+                indexedJobStore.save(JobTestUtils.buildJobRow([(JOB_TICKET): ticket, (USER_ID): "shared"]))
+                if (id % 2 == 1) {
+                    indexedJobStore.save(JobTestUtils.buildJobRow([(JOB_TICKET): ticket, (USER_ID): "other"]))
+                }
+            }
+        }
+        executor.shutdown()
+        executor.awaitTermination(30, TimeUnit.SECONDS)
+
+        then:
+        indexedJobStore.getFilteredRows([new JobRowFilter("userId-eq[shared]")] as Set).toList().toBlocking()
+                .single()*.getId() as Set == (0..<2000).findAll { it % 2 == 0 }.collect { "$it".toString() } as Set
+        indexedJobStore.getFilteredRows([new JobRowFilter("userId-eq[other]")] as Set).toList().toBlocking()
+                .single().size() == 1000
+    }
+
+    def "A job saved again while its previous row is being evicted stays indexed"() {
+        given: "A completed job that another thread saves again while its eviction unindexes it"
+        IndexedJobStore indexedJobStore = new IndexedJobStore(Duration.ZERO, 100, clock)
+        JobRow replacement = JobTestUtils.buildJobRow([(JOB_TICKET): "1", (USER_ID): "Foo"])
+        Thread saver = new Thread({ indexedJobStore.save(replacement) } as Runnable)
+        AtomicBoolean evicting = new AtomicBoolean()
+        JobRow expiring = new JobRow(
+                JOB_TICKET,
+                JobTestUtils.buildJobRow([(JOB_TICKET): "1", (USER_ID): "Foo", (STATUS): "success"])
+        ) {
+            @Override
+            String get(Object field) {
+                if (field == USER_ID && evicting.compareAndSet(true, false)) {
+                    // Give the other save the chance to run before the expiring row is unindexed
+                    saver.start()
+                    saver.join(500)
+                }
+                return super.get(field)
+            }
+        }
+        indexedJobStore.save(expiring)
+        now = now.plusMillis(1)
+        evicting.set(true)
+
+        when:
+        indexedJobStore.evict()
+        saver.join()
+
+        then:
+        indexedJobStore.get("1").toBlocking().single() == replacement
+        indexedJobStore.getFilteredRows([new JobRowFilter("userId-eq[Foo]")] as Set).toList().toBlocking()
+                .single() == [replacement]
+    }
+
+    def "The size gauge reports the jobs of every live store"() {
+        given:
+        Gauge<Integer> gauge = MetricRegistryFactory.getRegistry().getGauges().get(IndexedJobStore.SIZE_GAUGE)
+        int before = gauge.getValue()
+        IndexedJobStore first = new IndexedJobStore(Duration.ofDays(1), 100, clock)
+        IndexedJobStore second = new IndexedJobStore(Duration.ofDays(1), 100, clock)
+
+        when:
+        first.save(userFooJobRow1).subscribe()
+        first.save(userFooJobRow2).subscribe()
+        second.save(userBarJobRow1).subscribe()
+
+        then:
+        gauge.getValue() == before + 3
+    }
+
+    def "Saving pending jobs beyond the maximum size keeps them all"() {
+        given:
+        IndexedJobStore indexedJobStore = new IndexedJobStore(Duration.ofDays(1), 2, clock)
+
+        when:
+        (1..5).each { indexedJobStore.save(JobTestUtils.buildJobRow([(JOB_TICKET): "$it".toString()])).subscribe() }
+
+        then:
+        indexedJobStore.size() == 5
+
+        when: "A job completes"
+        indexedJobStore.save(JobTestUtils.buildJobRow([(JOB_TICKET): "3", (STATUS): "success"])).subscribe()
+
+        then: "Only the completed job can be evicted"
+        indexedJobStore.getAllRows().toList().toBlocking().single()*.getId() == ["1", "2", "4", "5"]
+    }
+}
@@ -0,0 +1,173 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.async.preresponses.stores
+
+import com.yahoo.bard.webservice.application.ObjectMappersSuite
+import com.yahoo.bard.webservice.data.JsonPreResponseCodec
+import com.yahoo.bard.webservice.data.PreResponseDeserializer
+import com.yahoo.bard.webservice.data.dimension.DimensionDictionary
+import com.yahoo.bard.webservice.data.time.StandardGranularityParser
+import com.yahoo.bard.webservice.web.PreResponse
+
+import com.fasterxml.jackson.databind.DeserializationFeature
+import com.fasterxml.jackson.databind.ObjectMapper
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.time.Clock
+import java.time.Duration
+import java.time.Instant
+import java.time.ZoneId
+
+/**
+ * Verifies that the MappedFilePreResponseStore satisfies the PreResponseStore interface, and checks its expiry,
+ * recovery and disk budget behavior. The interface tests may be found in {@link PreResponseStoreSpec}.
+ */
+class MappedFilePreResponseStoreSpec extends PreResponseStoreSpec {
+
+    static final long SEGMENT_SIZE = 4096
+
+    Path directory
+    MutableClock clock
+    List<MappedFilePreResponseStore> openStores = []
+
+    @Override
+    PreResponseStore getStore() {
+        directory = Files.createTempDirectory("preresponses")
+        clock = new MutableClock()
+        return openStore(directory, Duration.ofHours(1), Long.MAX_VALUE)
+    }
+
+    @Override
+    def childCleanup() {
+        openStores.each { it.close() }
+        directory.toFile().deleteDir()
+    }
+
+    MappedFilePreResponseStore openStore(Path storeDirectory, Duration timeToLive, long diskBudget) {
+        ObjectMapper typePreservingMapper = new ObjectMappersSuite().getMapper()
+        typePreservingMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+                .enableDefaultTyping(ObjectMapper.DefaultTyping.NON_FINAL)
+        PreResponseDeserializer deserializer = new PreResponseDeserializer(
+                new DimensionDictionary(),
+                new ObjectMappersSuite().getMapper(),
+                typePreservingMapper,
+                new StandardGranularityParser()
+        )
+        MappedFilePreResponseStore store = new MappedFilePreResponseStore(
+                storeDirectory,
+                new JsonPreResponseCodec(deserializer),
+                SEGMENT_SIZE,
+                timeToLive,
+                diskBudget,
+                clock
+        )
+        openStores.add(store)
+        return store
+    }
+
+    PreResponse getSingle(PreResponseStore store, String ticket) {
+        return store.get(ticket).toBlocking().firstOrDefault(null)
+    }
+
+    def "A reopened store serves the pre-responses saved before it was closed"() {
+        given:
+        PreResponse preResponse = PreResponseTestingUtils.buildPreResponse("2016-04-25T00:00:00.000-05:00")
+        preResponseStore.save("reopened", preResponse).toBlocking().first()
+        preResponseStore.close()
+
+        when:
+        MappedFilePreResponseStore reopened = openStore(directory, Duration.ofHours(1), Long.MAX_VALUE)
+
+        then:
+        reopened.size() == 3
+        getSingle(reopened, "reopened") == preResponse
+        getSingle(reopened, "0") == PreResponseTestingUtils.buildPreResponse("2016-04-20T00:00:00.000-05:00")
+    }
+
+    def "Pre-responses older than the time to live are not served"() {
+        when:
+        clock.advance(Duration.ofHours(2))
+
+        then:
+        getSingle(preResponseStore, "0") == null
+        preResponseStore.size() == 1
+    }
+
+    def "Compaction reclaims segments whose entries have all expired"() {
+        given: "enough saves to roll over several segments"
+        (0..40).each {
+            preResponseStore.save("ticket$it", PreResponseTestingUtils.buildPreResponse("2016-04-20T00:00:00.000Z"))
+                    .toBlocking().first()
+        }
+        long usedBeforeExpiry = preResponseStore.diskUsageBytes
+
+        when:
+        clock.advance(Duration.ofHours(2))
+        preResponseStore.save("fresh", PreResponseTestingUtils.buildPreResponse("2016-04-20T00:00:00.000Z"))
+                .toBlocking().first()
+        preResponseStore.compact()
+
+        then:
+        usedBeforeExpiry > SEGMENT_SIZE
+        preResponseStore.diskUsageBytes == SEGMENT_SIZE
+        preResponseStore.size() == 1
+        getSingle(preResponseStore, "fresh") != null
+    }
+
+    def "Compaction drops the oldest segments to stay within the disk budget"() {
+        given:
+        MappedFilePreResponseStore budgeted = openStore(
+                directory.resolve("budgeted"),
+                Duration.ofHours(1),
+                SEGMENT_SIZE * 2
+        )
+
+        when:
+        (0..80).each {
+            budgeted.save("ticket$it", PreResponseTestingUtils.buildPreResponse("2016-04-20T00:00:00.000Z"))
+                    .toBlocking().first()
+        }
+
+        then:
+        budgeted.diskUsageBytes <= SEGMENT_SIZE * 2
+        getSingle(budgeted, "ticket80") != null
+        getSingle(budgeted, "ticket0") == null
+    }
+
+    /**
+     * A clock that only moves when told to.
+     */
+    static class MutableClock extends Clock {
+        Instant now = Instant.parse("2016-04-20T00:00:00Z")
+
+        void advance(Duration duration) {
+            now = now.plus(duration)
+        }
+
+        @Override
+        ZoneId getZone() {
+            return ZoneId.of("UTC")
+        }
+
+        @Override
+        Clock withZone(ZoneId zone) {
+            return this
+        }
+
+        @Override
+        Instant instant() {
+            return now
+        }
+
+        @Override
+        boolean equals(Object other) {
+            return other instanceof MutableClock && now == other.now
+        }
+
+        @Override
+        int hashCode() {
+            return now.hashCode()
+        }
+    }
+}
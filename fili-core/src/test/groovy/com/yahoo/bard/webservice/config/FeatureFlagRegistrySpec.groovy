@@ -42,7 +42,10 @@ class FeatureFlagRegistrySpec extends Specification {
                    "updated_metadata_collection_names_enabled", "druid_coordinator_metadata_enabled",
                    "druid_lookup_metadata_enabled", "druid_dimensions_loader_enabled",
                    "case_sensitive_keys_enabled", "default_in_filter_enabled", "require_metrics_in_query",
-                   "adjust_current_by_timezone", "require_all_data_request_building_stages_called"] as Set
+                   "adjust_current_by_timezone", "require_all_data_request_building_stages_called",
+                   "weight_estimate_cache_enabled", "lazy_dimension_rows_enabled", "bucketed_cache_enabled",
+                   "compressed_cache_values_enabled", "query_fingerprint_cache_keys_enabled",
+                   "parallel_result_mapping_enabled"] as Set
     }
 
     @Unroll
@@ -0,0 +1,157 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data
+
+import com.yahoo.bard.webservice.application.ObjectMappersSuite
+import com.yahoo.bard.webservice.data.dimension.DimensionColumn
+import com.yahoo.bard.webservice.data.dimension.DimensionRow
+import com.yahoo.bard.webservice.data.time.StandardGranularityParser
+import com.yahoo.bard.webservice.util.GroovyTestUtils
+import com.yahoo.bard.webservice.web.PreResponse
+
+import com.fasterxml.jackson.databind.DeserializationFeature
+import com.fasterxml.jackson.databind.ObjectMapper
+
+import spock.lang.Specification
+
+/**
+ * Test the binary PreResponse serialization round trip.
+ */
+class BinaryPreResponseCodecSpec extends Specification {
+
+    SerializationResources resources
+    ObjectMapper typePreservingMapper
+    BinaryPreResponseCodec codec
+
+    def setup() {
+        resources = new SerializationResources().init()
+        typePreservingMapper = new ObjectMappersSuite().getMapper()
+        typePreservingMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+                .enableDefaultTyping(ObjectMapper.DefaultTyping.NON_FINAL)
+        codec = new BinaryPreResponseCodec(
+                resources.dimensionDictionary,
+                new ObjectMappersSuite().getMapper(),
+                typePreservingMapper,
+                new StandardGranularityParser()
+        )
+    }
+
+    byte[] encode(PreResponse preResponse) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream()
+        codec.encode(preResponse, out)
+        return out.toByteArray()
+    }
+
+    def "A PreResponse survives the binary round trip"() {
+        when:
+        PreResponse decoded = codec.decode(new ByteArrayInputStream(encode(resources.preResponse)))
+
+        then:
+        GroovyTestUtils.compareObjects(decoded.resultSet, resources.resultSet)
+        decoded.resultSet.schema.getColumns(DimensionColumn.class) ==
+                resources.resultSet.schema.getColumns(DimensionColumn.class)
+        decoded.responseContext == resources.responseContext
+    }
+
+    def "Metric values keep their types, including nulls and values without a primitive encoding"() {
+        given:
+        PreResponse preResponse = new PreResponse(
+                new ResultSet(resources.schema3, [resources.result3, resources.result4]),
+                resources.responseContext
+        )
+
+        when:
+        List<Result> decoded = codec.decode(new ByteArrayInputStream(encode(preResponse))).resultSet
+
+        then:
+        decoded*.metricValues*.collectEntries { [(it.key.name): it.value] } == [
+                resources.result3, resources.result4
+        ]*.metricValues*.collectEntries { [(it.key.name): it.value] }
+    }
+
+    def "The reader decodes rows on demand"() {
+        when:
+        BinaryPreResponseCodec.ResultReader reader = codec.openReader(
+                new ByteArrayInputStream(encode(resources.preResponse))
+        )
+
+        then:
+        reader.rowCount == 2
+        reader.schema.getColumns(DimensionColumn.class).size() == 3
+
+        when:
+        Result first = reader.next()
+        Result second = reader.next()
+
+        then:
+        !reader.hasNext()
+        first == resources.result1
+        second == resources.result2
+    }
+
+    def "Decoded rows with the same dimension values share the decoded dimension rows"() {
+        given:
+        PreResponse preResponse = new PreResponse(
+                new ResultSet(resources.schema, [resources.result1, resources.result2, resources.result1]),
+                resources.responseContext
+        )
+
+        when:
+        List<Result> decoded = codec.decode(new ByteArrayInputStream(encode(preResponse))).resultSet
+
+        then:
+        decoded[0].dimensionRows.keySet().every { decoded[0].getDimensionRow(it).is(decoded[2].getDimensionRow(it)) }
+        decoded[0].dimensionRows.keySet().every { !decoded[0].getDimensionRow(it).is(decoded[1].getDimensionRow(it)) }
+    }
+
+    def "Dimension values missing from the dimension are decoded as empty dimension rows"() {
+        given: "A result whose age bracket is not a row of the dimension"
+        DimensionColumn ageBracket = resources.result1.dimensionRows.keySet().find {
+            it.dimension.apiName == "ageBracket"
+        }
+        Map<DimensionColumn, DimensionRow> rows = new LinkedHashMap<>(resources.result1.dimensionRows)
+        rows.put(ageBracket, ageBracket.dimension.createEmptyDimensionRow("missing"))
+        Result result = new Result(rows, resources.result1.metricValues, resources.result1.timeStamp)
+        PreResponse preResponse = new PreResponse(
+                new ResultSet(resources.schema, [result]),
+                resources.responseContext
+        )
+
+        when:
+        List<Result> decoded = codec.decode(new ByteArrayInputStream(encode(preResponse))).resultSet
+
+        then:
+        decoded[0].getDimensionRow(ageBracket) == ageBracket.dimension.createEmptyDimensionRow("missing")
+    }
+
+    def "Binary serialization is smaller than the JSON serialization"() {
+        given:
+        List<Result> results = (0..<1000).collect {
+            it % 2 == 0 ? resources.result1 : resources.result2
+        }
+        PreResponse preResponse = new PreResponse(
+                new ResultSet(resources.schema, results),
+                resources.responseContext
+        )
+        ByteArrayOutputStream json = new ByteArrayOutputStream()
+        new JsonPreResponseCodec(
+                new PreResponseDeserializer(
+                        resources.dimensionDictionary,
+                        new ObjectMappersSuite().getMapper(),
+                        typePreservingMapper,
+                        new StandardGranularityParser()
+                )
+        ).encode(preResponse, json)
+
+        expect:
+        encode(preResponse).length * 5 < json.size()
+    }
+
+    def "Streams that were not written by the codec are rejected"() {
+        when:
+        codec.decode(new ByteArrayInputStream("{}{}{}{}".bytes))
+
+        then:
+        thrown(DeserializationException)
+    }
+}
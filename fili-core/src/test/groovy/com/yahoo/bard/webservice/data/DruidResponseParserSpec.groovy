@@ -5,10 +5,14 @@ package com.yahoo.bard.webservice.data
 import static com.yahoo.bard.webservice.data.time.DefaultTimeGrain.DAY
 
 import com.yahoo.bard.webservice.application.ObjectMappersSuite
+import com.yahoo.bard.webservice.config.BardFeatureFlag
 import com.yahoo.bard.webservice.data.dimension.BardDimensionField
+import com.yahoo.bard.webservice.data.dimension.Dimension
 import com.yahoo.bard.webservice.data.dimension.DimensionColumn
 import com.yahoo.bard.webservice.data.dimension.DimensionDictionary
 import com.yahoo.bard.webservice.data.dimension.DimensionField
+import com.yahoo.bard.webservice.data.dimension.DimensionRow
+import com.yahoo.bard.webservice.data.dimension.LazyDimensionRow
 import com.yahoo.bard.webservice.data.dimension.MapStoreManager
 import com.yahoo.bard.webservice.data.dimension.impl.KeyValueStoreDimension
 import com.yahoo.bard.webservice.data.dimension.impl.ScanSearchProviderManager
@@ -16,6 +20,7 @@ import com.yahoo.bard.webservice.data.metric.MetricColumn
 import com.yahoo.bard.webservice.druid.model.DefaultQueryType
 import com.yahoo.bard.webservice.druid.model.QueryType
 import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery
+import com.yahoo.bard.webservice.logging.RequestLog
 import com.yahoo.bard.webservice.table.Column
 import com.yahoo.bard.webservice.table.Schema
 
@@ -397,6 +402,98 @@ class DruidResponseParserSpec extends Specification {
         queryType << [DefaultQueryType.GROUP_BY, DefaultQueryType.TOP_N, DefaultQueryType.TIMESERIES]
     }
 
+    def "The distinct values of each dimension are resolved with a single bulk lookup"() {
+        given:
+        Dimension dimension = Mock(Dimension)
+        dimension.getApiName() >> "ageBracket"
+        DimensionColumn column = new DimensionColumn(dimension)
+        DimensionRow four = BardDimensionField.makeDimensionRow(ageColumn.dimension, "4", "4")
+        DimensionRow empty = BardDimensionField.makeDimensionRow(ageColumn.dimension, "1", "")
+        ResultSetSchema schema = new ResultSetSchema(DAY, [column, new MetricColumn("pageViews")] as Set)
+        JsonNode jsonResult = MAPPER.readTree("""
+        [
+            { "timestamp" : "2012-01-01T00:00:00.000Z", "event" : { "ageBracket" : "4", "pageViews" : 1 } },
+            { "timestamp" : "2012-01-01T00:00:00.000Z", "event" : { "ageBracket" : "1", "pageViews" : 2 } },
+            { "timestamp" : "2012-01-02T00:00:00.000Z", "event" : { "ageBracket" : "4", "pageViews" : 3 } },
+            { "timestamp" : "2012-01-02T00:00:00.000Z", "event" : { "ageBracket" : "1", "pageViews" : 4 } }
+        ]
+        """)
+
+        when:
+        ResultSet resultSet = responseParser.parse(jsonResult, schema, DefaultQueryType.GROUP_BY, DateTimeZone.UTC)
+
+        then: "Each distinct value is looked up once, and missing values get one empty row"
+        1 * dimension.findDimensionRowsByKeyValues({ it as List == ["4", "1"] }) >> ["4": four]
+        1 * dimension.createEmptyDimensionRow("1") >> empty
+        0 * dimension.findDimensionRowByKeyValue(_)
+
+        and:
+        resultSet*.getDimensionRow(column) == [four, empty, four, empty]
+    }
+
+    def "Results of the same time bucket share one parsed timestamp, and parsing is timed"() {
+        given:
+        RequestLog.dump()
+        ResultSetSchema schema = new ResultSetSchema(DAY, [new MetricColumn("pageViews")] as Set)
+        JsonNode jsonResult = MAPPER.readTree("""
+        [
+            { "timestamp" : "2012-01-01T00:00:00.000Z", "event" : { "pageViews" : 1 } },
+            { "timestamp" : "2012-01-01T00:00:00.000Z", "event" : { "pageViews" : 2 } },
+            { "timestamp" : "2012-01-02T00:00:00.000Z", "event" : { "pageViews" : 3 } }
+        ]
+        """)
+
+        when:
+        ResultSet resultSet = responseParser.parse(jsonResult, schema, DefaultQueryType.GROUP_BY, DateTimeZone.UTC)
+
+        then:
+        resultSet*.timeStamp == [
+                new DateTime("2012-01-01T00:00:00.000Z", DateTimeZone.UTC),
+                new DateTime("2012-01-01T00:00:00.000Z", DateTimeZone.UTC),
+                new DateTime("2012-01-02T00:00:00.000Z", DateTimeZone.UTC)
+        ]
+        resultSet[0].timeStamp.is(resultSet[1].timeStamp)
+
+        and:
+        RequestLog.getDurations().containsKey(DruidResponseParser.PARSING_TIMER)
+
+        cleanup:
+        RequestLog.dump()
+    }
+
+    def "With lazy dimension rows, no rows are looked up while parsing"() {
+        given:
+        BardFeatureFlag.LAZY_DIMENSION_ROWS.setOn(true)
+        Dimension dimension = Mock(Dimension)
+        dimension.getApiName() >> "ageBracket"
+        dimension.getKey() >> BardDimensionField.ID
+        dimension.getDimensionFields() >> ([BardDimensionField.ID, BardDimensionField.DESC] as LinkedHashSet)
+        DimensionColumn column = new DimensionColumn(dimension)
+        ResultSetSchema schema = new ResultSetSchema(DAY, [column, new MetricColumn("pageViews")] as Set)
+        JsonNode jsonResult = MAPPER.readTree("""
+        [
+            { "timestamp" : "2012-01-01T00:00:00.000Z", "event" : { "ageBracket" : "4", "pageViews" : 1 } },
+            { "timestamp" : "2012-01-02T00:00:00.000Z", "event" : { "ageBracket" : "4", "pageViews" : 3 } }
+        ]
+        """)
+
+        when:
+        ResultSet resultSet = responseParser.parse(jsonResult, schema, DefaultQueryType.GROUP_BY, DateTimeZone.UTC)
+
+        then:
+        0 * dimension.findDimensionRowsByKeyValues(_)
+        0 * dimension.findDimensionRowByKeyValue(_)
+        0 * dimension.createEmptyDimensionRow(_)
+
+        and: "Results with the same value share one unresolved row"
+        resultSet*.getDimensionRow(column).every { it instanceof LazyDimensionRow && !it.isResolved() }
+        resultSet[0].getDimensionRow(column).is(resultSet[1].getDimensionRow(column))
+        resultSet[0].getDimensionRow(column).getKeyValue() == "4"
+
+        cleanup:
+        BardFeatureFlag.LAZY_DIMENSION_ROWS.reset()
+    }
+
     def "Attempting to parse an unknown query type throws an UnsupportedOperationException"() {
         given:
         QueryType mysteryType = Mock(QueryType)
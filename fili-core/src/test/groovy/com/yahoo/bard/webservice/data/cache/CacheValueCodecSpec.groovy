@@ -0,0 +1,137 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.cache
+
+import static com.yahoo.bard.webservice.config.BardFeatureFlag.COMPRESSED_CACHE_VALUES
+
+import com.yahoo.bard.webservice.application.ObjectMappersSuite
+
+import com.fasterxml.jackson.databind.JsonNode
+import com.fasterxml.jackson.databind.ObjectMapper
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.ByteBuffer
+
+class CacheValueCodecSpec extends Specification {
+
+    ObjectMapper mapper = new ObjectMappersSuite().getMapper()
+    CacheValueCodec codec = new CacheValueCodec(mapper)
+
+    JsonNode json = mapper.valueToTree(
+            (1..200).collect { [timestamp: "2019-01-01T00:00:00.000Z", result: [pageViews: it, gender: "unknown"]] }
+    )
+    String jsonString = mapper.writeValueAsString(json)
+
+    def cleanup() {
+        COMPRESSED_CACHE_VALUES.reset()
+    }
+
+    def "Responses are encoded as JSON Strings when compressed cache values are disabled"() {
+        given:
+        COMPRESSED_CACHE_VALUES.setOn(false)
+
+        expect:
+        codec.encode(json, 1234L) == jsonString
+        CacheValueCodec.size(jsonString) == jsonString.length()
+    }
+
+    @Unroll
+    def "Compressed values hold their header and decode to the response with segment set id #segmentSetId"() {
+        given:
+        COMPRESSED_CACHE_VALUES.setOn(true)
+
+        when:
+        byte[] value = codec.encode(json, segmentSetId) as byte[]
+
+        then:
+        value[0] == CacheValueCodec.FORMAT_VERSION
+        CacheValueCodec.getSegmentSetId(value) == segmentSetId
+        CacheValueCodec.getUncompressedSize(value) == jsonString.getBytes("UTF-8").length
+        CacheValueCodec.size(value) < jsonString.length()
+        codec.decode(value, segmentSetId) == json
+
+        where:
+        segmentSetId << [1234L, null]
+    }
+
+    def "Values of both kinds are decoded whatever the current setting"() {
+        given:
+        COMPRESSED_CACHE_VALUES.setOn(true)
+        Serializable compressed = codec.encode(json, 1234L)
+
+        when:
+        COMPRESSED_CACHE_VALUES.setOn(false)
+
+        then:
+        codec.decode(compressed, 1234L) == json
+        codec.decode(jsonString, 1234L) == json
+    }
+
+    @Unroll
+    def "An invalid compressed value of #value.length bytes is reported as an IOException"() {
+        when:
+        codec.decode(value, 1234L)
+
+        then:
+        thrown(IOException)
+
+        where:
+        value << [[1, 0, 0] as byte[], ([2] * CacheValueCodec.HEADER_SIZE) as byte[]]
+    }
+
+    @Unroll
+    def "A compressed value whose header holds #description uncompressed size is reported as an IOException"() {
+        given:
+        COMPRESSED_CACHE_VALUES.setOn(true)
+        byte[] value = codec.encode(json, 1234L) as byte[]
+        ByteBuffer.wrap(value).putInt(Byte.BYTES + Byte.BYTES + Long.BYTES, resize(jsonString.length()) as int)
+
+        when:
+        codec.decode(value, 1234L)
+
+        then:
+        thrown(IOException)
+
+        where:
+        description      | resize
+        "a smaller"      | { it - 1 }
+        "a larger"       | { it + 1 }
+        "a negative"     | { -1 }
+        "an unreachable" | { Integer.MAX_VALUE }
+    }
+
+    def "A compressed value is only decoded with the segment set id it was cached with"() {
+        given:
+        COMPRESSED_CACHE_VALUES.setOn(true)
+        byte[] value = codec.encode(json, 1234L) as byte[]
+
+        when:
+        codec.decode(value, 5678L)
+
+        then:
+        thrown(IOException)
+
+        when:
+        codec.decode(value, null)
+
+        then:
+        thrown(IOException)
+    }
+
+    def "A compressed value longer than the largest value size is reported as an IOException"() {
+        given:
+        COMPRESSED_CACHE_VALUES.setOn(true)
+        byte[] value = codec.encode(json, 1234L) as byte[]
+
+        expect:
+        new CacheValueCodec(mapper, value.length).decode(value, 1234L) == json
+
+        when:
+        new CacheValueCodec(mapper, value.length - 1).decode(value, 1234L)
+
+        then:
+        thrown(IOException)
+    }
+}
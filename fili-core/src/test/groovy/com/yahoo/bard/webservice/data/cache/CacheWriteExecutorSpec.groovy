@@ -0,0 +1,60 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.cache
+
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class CacheWriteExecutorSpec extends Specification {
+
+    CacheWriteExecutor executor = new CacheWriteExecutor(1, 1)
+
+    def cleanup() {
+        executor.shutdownNow()
+    }
+
+    def "Cache writes run on a named pool thread and are timed"() {
+        given:
+        long writes = CacheWriteExecutor.WRITE_TIMER.count
+        String threadName = null
+        CountDownLatch done = new CountDownLatch(1)
+
+        when:
+        executor.execute({ threadName = Thread.currentThread().name; done.countDown() })
+        executor.shutdown()
+        executor.awaitTermination(5, TimeUnit.SECONDS)
+
+        then:
+        done.count == 0
+        threadName.startsWith("cache-write-")
+        CacheWriteExecutor.WRITE_TIMER.count == writes + 1
+    }
+
+    def "A cache write that does not fit in the queue is dropped"() {
+        given: "The only thread is busy and the queue is full"
+        CountDownLatch release = new CountDownLatch(1)
+        CountDownLatch started = new CountDownLatch(1)
+        executor.execute({ started.countDown(); release.await() })
+        started.await(5, TimeUnit.SECONDS)
+        executor.execute({})
+        long dropped = CacheWriteExecutor.DROPPED.count
+        boolean written = false
+
+        when:
+        executor.execute({ written = true })
+        release.countDown()
+        executor.shutdown()
+        executor.awaitTermination(5, TimeUnit.SECONDS)
+
+        then:
+        !written
+        CacheWriteExecutor.DROPPED.count == dropped + 1
+    }
+
+    def "The shared executor is a single instance"() {
+        expect:
+        CacheWriteExecutor.getDefault().is(CacheWriteExecutor.getDefault())
+    }
+}
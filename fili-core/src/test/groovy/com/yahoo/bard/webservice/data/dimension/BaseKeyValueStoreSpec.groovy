@@ -119,6 +119,16 @@ abstract class BaseKeyValueStoreSpec extends Specification {
         "value1" == store1.get("key1")
     }
 
+    def "getAll returns the values of the keys that are set"() {
+        given:
+        store1.putAll(["key1": "value1", "key3": "value3"])
+        store1.remove("key2")
+
+        expect:
+        store1.getAll(["key1", "key2", "key3"]) == ["key1": "value1", "key3": "value3"]
+        store1.getAll([]) == [:]
+    }
+
     def "putAll puts all keys"() {
         Map<String, String> entries = [
             "key1": "value1",
@@ -0,0 +1,87 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.dimension
+
+import static com.yahoo.bard.webservice.data.dimension.BardDimensionField.DESC
+import static com.yahoo.bard.webservice.data.dimension.BardDimensionField.ID
+
+import spock.lang.Specification
+
+class LazyDimensionRowSpec extends Specification {
+
+    Dimension dimension = Mock(Dimension) {
+        getKey() >> ID
+        getDimensionFields() >> ([ID, DESC] as LinkedHashSet)
+    }
+
+    DimensionRow row(String id, String desc) {
+        return new DimensionRow(ID, [(ID): id, (DESC): desc])
+    }
+
+    def "Reading the key field does not look up the row"() {
+        when:
+        LazyDimensionRow lazy = new LazyDimensionRow(dimension, "1")
+
+        then:
+        lazy.getKeyValue() == "1"
+        lazy.get(ID) == "1"
+        !lazy.isResolved()
+        0 * dimension.findDimensionRowByKeyValue(_)
+    }
+
+    def "Reading another field looks up the row once"() {
+        given:
+        LazyDimensionRow lazy = new LazyDimensionRow(dimension, "1")
+
+        when:
+        String desc = lazy.get(DESC)
+        Map<String, String> rowMap = lazy.getRowMap()
+
+        then:
+        1 * dimension.findDimensionRowByKeyValue("1") >> row("1", "one")
+        desc == "one"
+        rowMap == [id: "1", desc: "one"]
+        lazy == row("1", "one")
+    }
+
+    def "Values without a row keep empty fields"() {
+        given:
+        LazyDimensionRow lazy = new LazyDimensionRow(dimension, "9")
+
+        when:
+        String desc = lazy.get(DESC)
+
+        then:
+        1 * dimension.findDimensionRowByKeyValue("9") >> null
+        desc == ""
+        lazy.isResolved()
+    }
+
+    def "Copies of a lazy row have its looked up fields"() {
+        given:
+        dimension.findDimensionRowByKeyValue("1") >> row("1", "one")
+
+        expect:
+        DimensionRow.copyWithReplace(new LazyDimensionRow(dimension, "1"), { field, value -> value.toUpperCase() }) ==
+                row("1", "ONE")
+    }
+
+    def "Unresolved rows are resolved with one bulk lookup"() {
+        given:
+        LazyDimensionRow one = new LazyDimensionRow(dimension, "1")
+        LazyDimensionRow two = new LazyDimensionRow(dimension, "2")
+        LazyDimensionRow resolved = new LazyDimensionRow(dimension, "3")
+        dimension.findDimensionRowByKeyValue("3") >> row("3", "three")
+        resolved.resolve()
+
+        when:
+        LazyDimensionRow.resolveAll(dimension, [one, two, resolved])
+
+        then:
+        1 * dimension.findDimensionRowsByKeyValues({ it as Set == ["1", "2"] as Set }) >> ["1": row("1", "one")]
+        0 * dimension.findDimensionRowByKeyValue(_)
+        one.get(DESC) == "one"
+        two.get(DESC) == ""
+        resolved.get(DESC) == "three"
+    }
+}
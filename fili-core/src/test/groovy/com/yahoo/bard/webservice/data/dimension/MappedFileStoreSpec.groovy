@@ -0,0 +1,162 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.dimension
+
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+
+class MappedFileStoreSpec extends BaseKeyValueStoreSpec {
+
+    Path root = Files.createTempDirectory("mappedFileStore")
+    Map<String, MappedFileStore> stores = [:]
+
+    @Override
+    KeyValueStore getInstance(String storeName) {
+        return stores.computeIfAbsent(storeName, { new MappedFileStore(root.resolve(it), 4096) })
+    }
+
+    @Override
+    void removeInstance(String storeName) {
+        stores.remove(storeName)?.close()
+    }
+
+    def cleanup() {
+        stores.values().each { it.close() }
+        root.toFile().deleteDir()
+    }
+
+    MappedFileStore reopen(MappedFileStore store) {
+        store.close()
+        stores.remove("test_store1")
+        return getInstance("test_store1") as MappedFileStore
+    }
+
+    def "A reopened store serves the values written before it was closed"() {
+        given:
+        store1.putAll(["key1": "value1", "key2": "value2", "key3": "value3"])
+        store1.put("key2", "value2b")
+        store1.remove("key3")
+
+        when:
+        MappedFileStore reopened = reopen(store1 as MappedFileStore)
+
+        then:
+        reopened.size() == 2
+        reopened.getAll(["key1", "key2", "key3"]) == ["key1": "value1", "key2": "value2b"]
+
+        when: "Writes continue after the recovered records"
+        reopened.put("key4", "value4")
+
+        then:
+        reopen(reopened).get("key4") == "value4"
+    }
+
+    def "An empty key is rejected, and the keys put after it survive a reopen"() {
+        given:
+        store1.put("key1", "value1")
+
+        when:
+        store1.put("", "empty")
+
+        then:
+        thrown(IllegalArgumentException)
+
+        when:
+        store1.putAll(["key2": "value2", "key3": "value3"])
+        MappedFileStore reopened = reopen(store1 as MappedFileStore)
+
+        then:
+        reopened.size() == 3
+        reopened.getAll(["", "key1", "key2", "key3"]) == ["key1": "value1", "key2": "value2", "key3": "value3"]
+    }
+
+    def "Recovery ignores a record that was not completely written"() {
+        given:
+        store1.put("key1", "value1")
+        store1.close()
+        Path segment = root.resolve("test_store1").resolve(MappedFileStore.SEGMENT_PREFIX + "1" + MappedFileStore.SEGMENT_SUFFIX)
+
+        and: "A second record whose key length, which commits it, was never written"
+        int recordStart = 2 * Integer.BYTES + "key1".length() + "value1".length()
+        FileChannel.open(segment, StandardOpenOption.WRITE).withCloseable {
+            ByteBuffer valueLength = ByteBuffer.allocate(Integer.BYTES).putInt(6)
+            valueLength.flip()
+            it.write(valueLength, recordStart + Integer.BYTES)
+        }
+
+        when:
+        stores.remove("test_store1")
+        store1 = getInstance("test_store1")
+
+        then:
+        (store1 as MappedFileStore).size() == 1
+        store1.get("key1") == "value1"
+
+        when: "The partial record is overwritten by the next write"
+        store1.put("key2", "value2")
+
+        then:
+        reopen(store1 as MappedFileStore).getAll(["key1", "key2"]) == ["key1": "value1", "key2": "value2"]
+    }
+
+    def "Compaction reclaims overwritten records and keeps the live ones across a reopen"() {
+        given:
+        MappedFileStore store = store1 as MappedFileStore
+        (1..50).each { round -> store.putAll((1..20).collectEntries { ["key$it" as String, "value$it-$round" as String] }) }
+        store.remove("key20")
+
+        when:
+        store.compact()
+
+        then:
+        store.size() == 19
+        store.getDiskUsageBytes() == 4096
+        store.get("key1") == "value1-50"
+        store.get("key20") == null
+
+        and:
+        MappedFileStore reopened = reopen(store)
+        reopened.size() == 19
+        reopened.get("key19") == "value19-50"
+        reopened.get("key20") == null
+    }
+
+    def "The index grows to hold many keys, and records larger than a segment get their own segment"() {
+        given:
+        MappedFileStore store = store1 as MappedFileStore
+        Map<String, String> entries = (1..5000).collectEntries { ["key$it" as String, "value$it" as String] }
+        String large = "x" * 10000
+
+        when:
+        store.putAll(entries)
+        store.put("large", large)
+
+        then:
+        store.size() == 5001
+        store.getAll(entries.keySet()) == entries
+        store.get("large") == large
+        reopen(store).get("large") == large
+    }
+
+    def "A closed store rejects reads until it is opened again"() {
+        given:
+        store1.put("key1", "value1")
+        store1.close()
+
+        when:
+        store1.get("key1")
+
+        then:
+        thrown(IllegalStateException)
+
+        when:
+        store1.open()
+
+        then:
+        store1.isOpen()
+        store1.get("key1") == "value1"
+    }
+}
@@ -2,11 +2,13 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.data.dimension.impl
 
+import com.yahoo.bard.webservice.config.BardFeatureFlag
 import com.yahoo.bard.webservice.data.config.dimension.DimensionBackend
 import com.yahoo.bard.webservice.data.dimension.BardDimensionField
 import com.yahoo.bard.webservice.data.dimension.DimensionField
 import com.yahoo.bard.webservice.data.dimension.DimensionRow
 import com.yahoo.bard.webservice.data.dimension.KeyValueStore
+import com.yahoo.bard.webservice.data.dimension.LazyDimensionRow
 import com.yahoo.bard.webservice.data.dimension.MapStoreManager
 import com.yahoo.bard.webservice.data.dimension.RedisStoreManager
 import com.yahoo.bard.webservice.data.dimension.SearchProvider
@@ -102,6 +104,32 @@ class KeyValueStoreDimensionSpec extends Specification {
         searchProvider.findAllDimensionRows() == [dimensionRow1, dimensionRow2, dimensionRow3] as Set
     }
 
+    def "findDimensionRowsByKeyValues returns the rows found by key value"() {
+        expect:
+        kvsDimension.findDimensionRowsByKeyValues(["row1", "row3", "missing"]) == [
+                row1: dimensionRow1,
+                row3: dimensionRow3
+        ]
+    }
+
+    def "findDimensionRowsByKeyValues finds the row for every value differing only by case"() {
+        given:
+        boolean caseSensitiveKeys = BardFeatureFlag.CASE_SENSITIVE_KEYS.isOn()
+        BardFeatureFlag.CASE_SENSITIVE_KEYS.setOn(false)
+        List<LazyDimensionRow> lazyRows = ["ROW1", "row1"].collect { new LazyDimensionRow(kvsDimension, it) }
+
+        when:
+        Map<String, DimensionRow> found = kvsDimension.findDimensionRowsByKeyValues(["ROW1", "row1", "Row3"])
+        LazyDimensionRow.resolveAll(kvsDimension, lazyRows)
+
+        then:
+        found == [ROW1: dimensionRow1, row1: dimensionRow1, Row3: dimensionRow3]
+        lazyRows*.get(BardDimensionField.DESC) == ["this is a row", "this is a row"]
+
+        cleanup:
+        BardFeatureFlag.CASE_SENSITIVE_KEYS.setOn(caseSensitiveKeys)
+    }
+
     def "getDimensionCardinality returns cardinality count"() {
         expect:
         searchProvider.getDimensionCardinality() == 3
@@ -3,6 +3,7 @@
 package com.yahoo.bard.webservice.data.dimension.impl
 
 import com.yahoo.bard.webservice.data.dimension.BardDimensionField
+import com.yahoo.bard.webservice.data.dimension.Dimension
 import com.yahoo.bard.webservice.data.dimension.DimensionRow
 import com.yahoo.bard.webservice.data.dimension.KeyValueStore
 import com.yahoo.bard.webservice.data.dimension.TimeoutException
@@ -16,6 +17,7 @@ import org.apache.lucene.store.FSDirectory
 
 import spock.lang.Ignore
 import spock.lang.Timeout
+import spock.lang.Unroll
 
 import java.nio.file.Files
 import java.nio.file.Path
@@ -70,6 +72,8 @@ class LuceneSearchProviderSpec extends SearchProviderSpec<LuceneSearchProvider>
     void childCleanup() {
         searchProvider.maxResults = rowLimit
         searchProvider.searchTimeout = searchTimeout
+        searchProvider.rebuildThreshold = LuceneSearchProvider.LUCENE_REBUILD_THRESHOLD
+        searchProvider.ngramContains = LuceneSearchProvider.LUCENE_NGRAM_CONTAINS_ENABLED
 
         FileUtils.deleteDirectory(new File(sourceDir))
     }
@@ -276,6 +280,150 @@ class LuceneSearchProviderSpec extends SearchProviderSpec<LuceneSearchProvider>
         Files.exists(destinationPath.resolve("subDir").resolve("subDirFile"))
     }
 
+    def "rebuildIndex replaces the index with an index of the given rows"() {
+        given:
+        Path rebuildPath = destinationPath.resolveSibling("lucene_indexes_rebuild")
+
+        when:
+        searchProvider.rebuildIndex([dimensionRow1, dimensionRow2])
+
+        then:
+        searchProvider.findAllDimensionRows() == [dimensionRow1, dimensionRow2] as Set
+        searchProvider.getDimensionCardinality() == 2
+        searchProvider.findFilteredDimensionRows(
+                [filterBinders.generateApiFilter("animal|desc-in[this is a raptor]", spaceIdDictionary)] as Set
+        ) == [dimensionRow2] as TreeSet
+
+        and: "The rebuilt index is kept in the index directory and the side directory is removed"
+        (searchProvider.luceneDirectory as FSDirectory).getDirectory().toAbsolutePath() == destinationPath
+        !Files.exists(rebuildPath)
+    }
+
+    def "Refreshing the index with at least the rebuild threshold of rows rebuilds it with all rows"() {
+        given:
+        searchProvider.rebuildThreshold = 2
+        DimensionRow changedOwl = BardDimensionField.makeDimensionRow(keyValueStoreDimension, "owl", "a wise bird")
+        DimensionRow badger = BardDimensionField.makeDimensionRow(keyValueStoreDimension, "badger", "a mustelid")
+
+        when:
+        keyValueStoreDimension.addAllDimensionRows([changedOwl, badger] as Set)
+
+        then:
+        searchProvider.findAllDimensionRows() == ((dimensionRows - dimensionRow1) + [changedOwl, badger]) as Set
+        searchProvider.getDimensionCardinality() == dimensionRows.size() + 1
+        searchProvider.findFilteredDimensionRows(
+                [filterBinders.generateApiFilter("animal|desc-in[a wise bird]", spaceIdDictionary)] as Set
+        ) == [changedOwl] as TreeSet
+
+        when: "Smaller refreshes still update the rebuilt index in place"
+        DimensionRow mole = BardDimensionField.makeDimensionRow(keyValueStoreDimension, "mole", "digs")
+        keyValueStoreDimension.addDimensionRow(mole)
+
+        then:
+        searchProvider.findAllDimensionRows().contains(mole)
+        searchProvider.getDimensionCardinality() == dimensionRows.size() + 2
+    }
+
+    def "Search hits are hydrated from the key doc values with one bulk lookup"() {
+        given: "A dimension that hydrates rows from the animal dimension"
+        Dimension hydrating = Mock(Dimension)
+        hydrating.getKey() >> BardDimensionField.ID
+        hydrating.getDimensionFields() >> keyValueStoreDimension.getDimensionFields()
+        searchProvider.dimension = hydrating
+
+        when:
+        Set<DimensionRow> rows = searchProvider.findAllDimensionRows()
+
+        then:
+        1 * hydrating.findDimensionRowsByKeyValues({ it.size() == dimensionRows.size() }) >> { args ->
+            keyValueStoreDimension.findDimensionRowsByKeyValues(args[0])
+        }
+        0 * hydrating.findDimensionRowByKeyValue(_)
+        rows == dimensionRows as Set
+
+        cleanup:
+        searchProvider.dimension = keyValueStoreDimension
+    }
+
+    @Unroll
+    def "Contains filter on #value finds the same rows from the n-gram index as from a wildcard scan"() {
+        given:
+        Set filters = [filterBinders.generateApiFilter("animal|$field-contains[$value]", spaceIdDictionary)] as Set
+        Set<DimensionRow> scanned = searchProvider.findFilteredDimensionRows(filters)
+
+        when:
+        searchProvider.ngramContains = true
+        searchProvider.rebuildIndex(dimensionRows)
+
+        then:
+        searchProvider.findFilteredDimensionRows(filters) == scanned
+        scanned.size() == matches
+
+        where:
+        field  | value             | matches
+        "id"   | "monkey"          | 1
+        "id"   | "spider"          | 2
+        "desc" | "have e"          | 3
+        "desc" | "is a raptor"     | 2
+        "desc" | "raptor is"       | 0
+        "id"   | "完成关卡"          | 1
+        "id"   | "ow"              | 2
+        "desc" | "secret agent's"  | 3
+    }
+
+    def "Contains filters fall back to a wildcard scan on an index built before n-grams were enabled"() {
+        given:
+        Set filters = [filterBinders.generateApiFilter("animal|id-contains[spider]", spaceIdDictionary)] as Set
+        Set<DimensionRow> scanned = searchProvider.findFilteredDimensionRows(filters)
+
+        when:
+        searchProvider.ngramContains = true
+
+        then:
+        searchProvider.findFilteredDimensionRows(filters) == scanned
+        scanned.size() == 2
+    }
+
+    def "An index partly written with n-grams falls back to a wildcard scan until it is rebuilt"() {
+        given: "An index written without n-grams, then updated in place with n-grams"
+        Set filters = [filterBinders.generateApiFilter("animal|id-contains[spider]", spaceIdDictionary)] as Set
+        searchProvider.ngramContains = true
+        DimensionRow spiderCrab = BardDimensionField.makeDimensionRow(keyValueStoreDimension, "spider crab", "claws")
+        keyValueStoreDimension.addDimensionRow(spiderCrab)
+
+        expect:
+        searchProvider.findFilteredDimensionRows(filters).size() == 3
+        !searchProvider.getFilterQuery(filters).toString().contains("_ngram")
+
+        when:
+        searchProvider.rebuildIndex(searchProvider.findAllDimensionRows())
+
+        then:
+        searchProvider.findFilteredDimensionRows(filters).size() == 3
+        searchProvider.getFilterQuery(filters).toString().contains("_ngram")
+
+        when: "The rebuilt index is updated in place with n-grams"
+        keyValueStoreDimension.addDimensionRow(
+                BardDimensionField.makeDimensionRow(keyValueStoreDimension, "spider wasp", "stings")
+        )
+
+        then:
+        searchProvider.findFilteredDimensionRows(filters).size() == 4
+        searchProvider.getFilterQuery(filters).toString().contains("_ngram")
+    }
+
+    def "The size of the n-gram index is reported once n-grams are indexed"() {
+        expect:
+        searchProvider.getNgramIndexSize() == 0
+
+        when:
+        searchProvider.ngramContains = true
+        searchProvider.rebuildIndex([dimensionRow1])
+
+        then: "owl has 1 trigram and this is an owl has 12"
+        searchProvider.getNgramIndexSize() == 13
+    }
+
     @Override
     boolean indicesHaveBeenCleared() {
         //A file is a Lucene index file iff it has one of the following extensions
@@ -2,9 +2,11 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.data.dimension.impl
 
+import com.yahoo.bard.webservice.data.cache.HashDataCache.Pair
 import com.yahoo.bard.webservice.data.dimension.Dimension
 import com.yahoo.bard.webservice.data.dimension.DimensionField
 import com.yahoo.bard.webservice.data.dimension.DimensionRow
+import com.yahoo.bard.webservice.data.dimension.MapStoreManager
 import com.yahoo.bard.webservice.util.DimensionStoreKeyUtils
 import com.yahoo.bard.webservice.web.util.PaginationParameters
 
@@ -198,6 +200,9 @@ class NormalizedLuceneSearchProviderSpec extends Specification {
         searchProvider.setDimension(dim)
 
         dim.findDimensionRowByKeyValue(_) >> { String value -> dimSearchMapping.get(value)}
+        dim.findDimensionRowsByKeyValues(_) >> { List<Collection<String>> args ->
+            args[0].findAll { dimSearchMapping.containsKey(it) }.collectEntries { [(it): dimSearchMapping.get(it)] }
+        }
     }
 
     /* Setting up a lucene index to test against is finicky and a little difficult to understand. this test just
@@ -244,6 +249,34 @@ class NormalizedLuceneSearchProviderSpec extends Specification {
 
     }
 
+    def "Refreshing at least the rebuild threshold of rows keeps the search column"() {
+        given: "A rebuild threshold of 2 rows, set on the field of the base provider"
+        LuceneSearchProvider.getDeclaredField("rebuildThreshold").with {
+            accessible = true
+            setInt(searchProvider, 2)
+        }
+        searchProvider.setKeyValueStore(MapStoreManager.getInstance("normalized_search_refresh"))
+        DimensionRow changedRow = new DimensionRow(dim.getKey(), [(dim.getKey()): DOC2_KEY])
+        DimensionRow newRow = new DimensionRow(dim.getKey(), [(dim.getKey()): "7"])
+
+        when:
+        searchProvider.refreshIndex([
+                (DOC2_KEY): new Pair<>(changedRow, dimRow_key2),
+                "7": new Pair<>(newRow, null)
+        ])
+        List<DimensionRow> result = searchProvider.findSearchRowsPaged(
+                "promocao",
+                PaginationParameters.EVERYTHING_IN_ONE_PAGE
+        ).getPageOfData()
+
+        then:
+        result*.getKeyValue() as Set == [DOC1_KEY, DOC3_KEY, DOC6_KEY] as Set
+        searchProvider.getDimensionCardinality() == 7
+
+        cleanup:
+        MapStoreManager.removeInstance("normalized_search_refresh")
+    }
+
     def "test simple case for lucene search provider"() {
         when:
         List<DimensionRow> result = searchProvider.findSearchRowsPaged("promocao", PaginationParameters.EVERYTHING_IN_ONE_PAGE).getPageOfData()
@@ -0,0 +1,128 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.metric.mappers
+
+import com.yahoo.bard.webservice.config.BardFeatureFlag
+import com.yahoo.bard.webservice.config.SystemConfig
+import com.yahoo.bard.webservice.config.SystemConfigProvider
+import com.yahoo.bard.webservice.data.Result
+import com.yahoo.bard.webservice.data.ResultSet
+import com.yahoo.bard.webservice.data.ResultSetSchema
+import com.yahoo.bard.webservice.data.metric.MetricColumn
+import com.yahoo.bard.webservice.data.time.DefaultTimeGrain
+import com.yahoo.bard.webservice.druid.model.orderby.SortDirection
+
+import org.joda.time.DateTime
+import org.joda.time.DateTimeZone
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class ParallelResultMappingSpec extends Specification {
+
+    static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance()
+
+    MetricColumn column = new MetricColumn("value")
+    ResultSetSchema schema = new ResultSetSchema(DefaultTimeGrain.DAY, [column] as Set)
+
+    def setup() {
+        SYSTEM_CONFIG.setProperty(ParallelResultMapping.MIN_ROWS_KEY, "10")
+        SYSTEM_CONFIG.setProperty(ParallelResultMapping.MIN_CORES_KEY, "1")
+    }
+
+    def cleanup() {
+        BardFeatureFlag.PARALLEL_RESULT_MAPPING.reset()
+        SYSTEM_CONFIG.clearProperty(ParallelResultMapping.MIN_ROWS_KEY)
+        SYSTEM_CONFIG.clearProperty(ParallelResultMapping.MIN_CORES_KEY)
+    }
+
+    /**
+     * Build a result set of days, each day holding rows with decreasing values.
+     */
+    ResultSet resultSet(int days, int rowsPerDay) {
+        List<Result> results = []
+        (0..<days).each { day ->
+            DateTime timestamp = new DateTime(2019, 1, 1, 0, 0, DateTimeZone.UTC).plusDays(day)
+            (0..<rowsPerDay).each { row ->
+                results << new Result([:], [(column): (rowsPerDay - row + 0.5) as BigDecimal], timestamp)
+            }
+        }
+        return new ResultSet(schema, results)
+    }
+
+    /**
+     * Map a result set sequentially and in parallel.
+     */
+    List<ResultSet> mapBothWays(ResultSetMapper mapper, ResultSet resultSet) {
+        BardFeatureFlag.PARALLEL_RESULT_MAPPING.setOn(false)
+        ResultSet sequential = mapper.map(resultSet)
+        BardFeatureFlag.PARALLEL_RESULT_MAPPING.setOn(true)
+        ResultSet parallel = mapper.map(resultSet)
+        return [sequential, parallel]
+    }
+
+    @Unroll
+    def "#rows rows are mapped in parallel: #parallel"() {
+        given:
+        BardFeatureFlag.PARALLEL_RESULT_MAPPING.setOn(flag)
+
+        expect:
+        ParallelResultMapping.isParallel(rows) == parallel
+
+        where:
+        flag  | rows | parallel
+        true  | 10   | true
+        true  | 9    | false
+        false | 10   | false
+    }
+
+    def "Results are split into runs of consecutive results sharing a timestamp"() {
+        given:
+        ResultSet results = resultSet(3, 4)
+
+        when:
+        List<List<Result>> buckets = ParallelResultMapping.splitByTime(results)
+
+        then:
+        buckets.size() == 3
+        buckets.every { it.size() == 4 && it*.timeStamp.unique().size() == 1 }
+        buckets.flatten() == results
+    }
+
+    def "Top N keeps the same rows of each bucket in parallel"() {
+        when:
+        List<ResultSet> mapped = mapBothWays(new TopNResultSetMapper(3), resultSet(20, 10))
+
+        then:
+        mapped[0].size() == 60
+        mapped[1] == mapped[0]
+    }
+
+    @Unroll
+    def "Sorting by time #direction keeps the order of each bucket in parallel"() {
+        given: "Days in a shuffled order"
+        ResultSet results = resultSet(20, 5)
+        List<List<Result>> days = ParallelResultMapping.splitByTime(results)
+        Collections.shuffle(days, new Random(42))
+        ResultSet shuffled = new ResultSet(schema, days.flatten() as List<Result>)
+
+        when:
+        List<ResultSet> mapped = mapBothWays(new DateTimeSortMapper(direction), shuffled)
+
+        then:
+        mapped[0] == (direction == SortDirection.ASC ? results : days.sort { -it[0].timeStamp.millis }.flatten())
+        mapped[1] == mapped[0]
+
+        where:
+        direction << [SortDirection.ASC, SortDirection.DESC]
+    }
+
+    def "Thread safe row mappers map rows in parallel, keeping their order"() {
+        when:
+        List<ResultSet> mapped = mapBothWays(new SketchRoundUpMapper(column.name), resultSet(20, 10))
+
+        then:
+        mapped[0]*.getMetricValueAsNumber(column) == resultSet(20, 10)*.getMetricValueAsNumber(column)*.add(0.5)
+        mapped[1] == mapped[0]
+    }
+}
@@ -0,0 +1,106 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.metric.mappers
+
+import com.yahoo.bard.webservice.data.Result
+import com.yahoo.bard.webservice.data.ResultSet
+import com.yahoo.bard.webservice.data.ResultSetSchema
+import com.yahoo.bard.webservice.data.metric.MetricColumn
+import com.yahoo.bard.webservice.data.time.DefaultTimeGrain
+import com.yahoo.bard.webservice.druid.model.orderby.OrderByColumn
+import com.yahoo.bard.webservice.druid.model.orderby.SortDirection
+
+import org.joda.time.DateTime
+import org.joda.time.DateTimeZone
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class TopNResultSetMapperSpec extends Specification {
+
+    static final DateTime DAY_1 = new DateTime(2019, 1, 1, 0, 0, DateTimeZone.UTC)
+    static final DateTime DAY_2 = DAY_1.plusDays(1)
+
+    MetricColumn pageViews = new MetricColumn("pageViews")
+    MetricColumn users = new MetricColumn("users")
+    ResultSetSchema schema = new ResultSetSchema(DefaultTimeGrain.DAY, [pageViews, users] as Set)
+
+    /**
+     * Build a result set from rows of timestamp, page views and users.
+     */
+    ResultSet resultSet(List<List> rows) {
+        new ResultSet(schema, rows.collect {
+            new Result([:], [(pageViews): it[1] as BigDecimal, (users): it[2] as BigDecimal], it[0] as DateTime)
+        })
+    }
+
+    /**
+     * Get the timestamp and the page views of each result.
+     */
+    List<List> pageViewsByDay(ResultSet resultSet) {
+        resultSet.collect { [it.timeStamp, it.getMetricValueAsNumber(pageViews) as int] }
+    }
+
+    def "Without sorts, the first N rows of each bucket are kept"() {
+        given:
+        ResultSet results = resultSet([[DAY_1, 1, 0], [DAY_1, 3, 0], [DAY_1, 2, 0], [DAY_2, 5, 0], [DAY_2, 4, 0]])
+
+        expect:
+        pageViewsByDay(new TopNResultSetMapper(2).map(results)) == [[DAY_1, 1], [DAY_1, 3], [DAY_2, 5], [DAY_2, 4]]
+    }
+
+    @Unroll
+    def "Sorting #direction, the top 2 rows of each bucket are kept in order from unordered rows"() {
+        given:
+        ResultSet results = resultSet([
+                [DAY_1, 1, 0], [DAY_1, 5, 0], [DAY_1, 3, 0], [DAY_1, 4, 0],
+                [DAY_2, 2, 0], [DAY_2, 8, 0], [DAY_2, 6, 0]
+        ])
+        TopNResultSetMapper mapper = new TopNResultSetMapper(2, [new OrderByColumn("pageViews", direction)])
+
+        expect:
+        pageViewsByDay(mapper.map(results)) == expected
+
+        where:
+        direction          | expected
+        SortDirection.DESC | [[DAY_1, 5], [DAY_1, 4], [DAY_2, 8], [DAY_2, 6]]
+        SortDirection.ASC  | [[DAY_1, 1], [DAY_1, 3], [DAY_2, 2], [DAY_2, 6]]
+    }
+
+    def "Later sorts break the ties of earlier sorts, and remaining ties keep their order"() {
+        given:
+        ResultSet results = resultSet([[DAY_1, 1, 1], [DAY_1, 2, 1], [DAY_1, 2, 3], [DAY_1, 2, 3], [DAY_1, 2, 2]])
+        TopNResultSetMapper mapper = new TopNResultSetMapper(3, [
+                new OrderByColumn("pageViews", SortDirection.DESC),
+                new OrderByColumn("users", SortDirection.DESC)
+        ])
+
+        when:
+        ResultSet mapped = mapper.map(results)
+
+        then:
+        mapped*.getMetricValueAsNumber(users)*.intValue() == [3, 3, 2]
+        mapped[0].is(results[2])
+        mapped[1].is(results[3])
+    }
+
+    def "Metric values of different number types are sorted by value"() {
+        given: "Values that would sort differently as strings"
+        ResultSet results = new ResultSet(schema, [9L, 10.5d, 100 as BigDecimal, 2.5f, 11 as BigInteger].collect {
+            new Result([:], [(pageViews): it, (users): 0 as BigDecimal], DAY_1)
+        })
+        TopNResultSetMapper mapper = new TopNResultSetMapper(3, [new OrderByColumn("pageViews", SortDirection.DESC)])
+
+        expect:
+        mapper.map(results)*.getMetricValue(pageViews) == [100 as BigDecimal, 11 as BigInteger, 10.5d]
+    }
+
+    def "Sorts on columns missing from the schema are ignored"() {
+        given:
+        ResultSet results = resultSet([[DAY_1, 1, 0], [DAY_1, 3, 0], [DAY_1, 2, 0]])
+        TopNResultSetMapper mapper = new TopNResultSetMapper(2, [new OrderByColumn("unknown", SortDirection.DESC)])
+
+        expect:
+        pageViewsByDay(mapper.map(results)) == [[DAY_1, 1], [DAY_1, 3]]
+    }
+}
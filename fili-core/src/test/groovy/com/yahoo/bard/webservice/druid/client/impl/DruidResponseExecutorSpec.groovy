@@ -0,0 +1,74 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.druid.client.impl
+
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class DruidResponseExecutorSpec extends Specification {
+
+    DruidResponseExecutor executor = new DruidResponseExecutor(1, 1)
+
+    def cleanup() {
+        executor.shutdownNow()
+    }
+
+    def "Responses are processed on a named pool thread and timed"() {
+        given:
+        long handoffs = DruidResponseExecutor.HANDOFF_TIMER.count
+        long processed = DruidResponseExecutor.PROCESSING_TIMER.count
+        String threadName = null
+        CountDownLatch done = new CountDownLatch(1)
+
+        when:
+        executor.execute({ threadName = Thread.currentThread().name; done.countDown() })
+        executor.shutdown()
+        executor.awaitTermination(5, TimeUnit.SECONDS)
+
+        then:
+        done.count == 0
+        threadName.startsWith("druid-response-")
+        DruidResponseExecutor.HANDOFF_TIMER.count == handoffs + 1
+        DruidResponseExecutor.PROCESSING_TIMER.count == processed + 1
+    }
+
+    def "A response that does not fit in the queue is processed on the submitting thread"() {
+        given: "The only thread is busy and the queue is full"
+        CountDownLatch release = new CountDownLatch(1)
+        CountDownLatch started = new CountDownLatch(1)
+        executor.execute({ started.countDown(); release.await() })
+        started.await(5, TimeUnit.SECONDS)
+        executor.execute({})
+        long callerRuns = DruidResponseExecutor.CALLER_RUNS.count
+        String threadName = null
+
+        when:
+        executor.execute({ threadName = Thread.currentThread().name })
+
+        then:
+        threadName == Thread.currentThread().name
+        DruidResponseExecutor.CALLER_RUNS.count == callerRuns + 1
+
+        cleanup:
+        release.countDown()
+    }
+
+    def "A response handed off after shutdown is still processed, on the submitting thread"() {
+        given:
+        executor.shutdown()
+        String threadName = null
+
+        when:
+        executor.execute({ threadName = Thread.currentThread().name })
+
+        then:
+        threadName == Thread.currentThread().name
+    }
+
+    def "The shared executor is a single instance"() {
+        expect:
+        DruidResponseExecutor.getDefault().is(DruidResponseExecutor.getDefault())
+    }
+}
@@ -0,0 +1,56 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.druid.model.query
+
+import com.yahoo.bard.webservice.application.ObjectMappersSuite
+import com.yahoo.bard.webservice.util.Utils
+import com.yahoo.bard.webservice.web.RequestUtils
+
+import com.fasterxml.jackson.databind.JsonNode
+import com.fasterxml.jackson.databind.ObjectMapper
+
+import org.joda.time.Interval
+
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class QueryFingerprinterSpec extends Specification {
+
+    @Shared ObjectMapper mapper = new ObjectMappersSuite().getMapper()
+    @Shared QueryFingerprinter fingerprinter = new QueryFingerprinter(mapper)
+
+    @Shared TimeSeriesQuery timeSeries = RequestUtils.buildTimeSeriesQuery()
+    @Shared GroupByQuery groupBy = RequestUtils.buildGroupByQuery()
+    @Shared QueryContext context = new QueryContext([:]).withTimeout(5).withQueryId("other")
+
+    /**
+     * Build the canonical JSON of a query, which cache keys are built from without fingerprints.
+     */
+    String canonicalJson(DruidQuery<?> query) {
+        JsonNode root = mapper.valueToTree(query)
+        Utils.canonicalize(root, mapper, false)
+        return mapper.writeValueAsString(root)
+    }
+
+    @Unroll
+    def "Fingerprints of #description are #expected like their canonical JSON"() {
+        expect:
+        (fingerprinter.fingerprint(first) == fingerprinter.fingerprint(second)) == (expected == "equal")
+        (canonicalJson(first) == canonicalJson(second)) == (expected == "equal")
+
+        where:
+        description                       | first      | second                                                 | expected
+        "a query rebuilt"                 | timeSeries | RequestUtils.buildTimeSeriesQuery()                    | "equal"
+        "queries differing by context"    | timeSeries | timeSeries.withContext(context)                        | "equal"
+        "group bys differing by context"  | groupBy    | groupBy.withContext(context)                           | "equal"
+        "queries differing by interval"   | timeSeries | timeSeries.withAllIntervals([new Interval(0L, 1000L)]) | "different"
+        "different query types"           | timeSeries | groupBy                                                | "different"
+        "group bys differing by interval" | groupBy    | groupBy.withAllIntervals([new Interval(0L, 1000L)])    | "different"
+    }
+
+    def "The fingerprint is a 128 bit hex string"() {
+        expect:
+        fingerprinter.fingerprint(groupBy) ==~ /[0-9a-f]{32}/
+    }
+}
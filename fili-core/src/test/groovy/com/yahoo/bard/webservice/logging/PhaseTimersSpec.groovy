@@ -0,0 +1,56 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.logging
+
+import com.yahoo.bard.webservice.application.MetricRegistryFactory
+
+import com.codahale.metrics.MetricRegistry
+import com.codahale.metrics.Timer
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.util.concurrent.TimeUnit
+
+class PhaseTimersSpec extends Specification {
+
+    MetricRegistry registry = MetricRegistryFactory.getRegistry()
+
+    Timer timer(String... names) {
+        return registry.timer(MetricRegistry.name(PhaseTimers.PREFIX, names))
+    }
+
+    @Unroll
+    def "The timer of phase #phase is #expected"() {
+        expect:
+        PhaseTimers.getPhaseName(phase) == expected
+
+        where:
+        phase                         | expected
+        "QueryingLucene"              | "QueryingLucene"
+        "DruidProcessing_Q_0001"      | "DruidProcessing_Q_"
+        "DruidQuerySerializationSeq2" | "DruidQuerySerializationSeq"
+        "DruidProcessing_S_0"         | "DruidProcessing_S_"
+    }
+
+    def "Phase durations are added to the timer of each phase, and of each phase of the table if there is one"() {
+        given:
+        long druidCount = timer("DruidProcessing_Q_").count
+        long sortCount = timer("sortResultSet").count
+        long tableSortCount = timer("shapes", "sortResultSet").count
+        long sortMax = TimeUnit.MILLISECONDS.toNanos(3)
+
+        when:
+        PhaseTimers.update(
+                [DruidProcessing_Q_0001: 1000000L, DruidProcessing_Q_0002: 2000000L, sortResultSet: sortMax],
+                null
+        )
+        PhaseTimers.update([sortResultSet: sortMax], "shapes")
+
+        then:
+        timer("DruidProcessing_Q_").count == druidCount + 2
+        timer("sortResultSet").count == sortCount + 2
+        timer("shapes", "sortResultSet").count == tableSortCount + 1
+        timer("shapes", "sortResultSet").snapshot.max == sortMax
+    }
+}
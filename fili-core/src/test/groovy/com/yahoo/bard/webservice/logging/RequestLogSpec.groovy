@@ -0,0 +1,111 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.logging
+
+import static com.yahoo.bard.webservice.druid.client.impl.AsyncDruidWebServiceImpl.DRUID_QUERY_TIMER
+
+import com.yahoo.bard.webservice.logging.blocks.Threads
+
+import spock.lang.Specification
+import spock.lang.Timeout
+
+@Timeout(30)
+class RequestLogSpec extends Specification {
+
+    def setup() {
+        RequestLog.dump()
+    }
+
+    def cleanup() {
+        RequestLog.dump()
+    }
+
+    /**
+     * Time a phase on the request log of the current thread.
+     */
+    void time(String phase) {
+        RequestLog.startTiming(phase)
+        RequestLog.stopTiming(phase)
+    }
+
+    def "Contexts restored from the same dumped context do not see each other's timers"() {
+        given: "A context forked into two branches"
+        time("Shared")
+        RequestLog context = RequestLog.dump()
+
+        RequestLog.restore(context)
+        time("FirstBranch")
+        RequestLog first = RequestLog.dump()
+
+        RequestLog.restore(context)
+        time("SecondBranch")
+        RequestLog second = RequestLog.dump()
+
+        expect:
+        RequestLog.restore(context)
+        RequestLog.getDurations().keySet() == ["Shared"] as Set
+        RequestLog.restore(first)
+        RequestLog.getDurations().keySet() == ["Shared", "FirstBranch"] as Set
+        RequestLog.restore(second)
+        RequestLog.getDurations().keySet() == ["Shared", "SecondBranch"] as Set
+    }
+
+    def "Restarting a phase of a restored context keeps timing the same phase"() {
+        given:
+        time("Phase")
+        long duration = RequestLog.getDurations().Phase
+        RequestLog context = RequestLog.dump()
+
+        when:
+        RequestLog.restore(context)
+        time("Phase")
+
+        then:
+        RequestLog.getDurations().size() == 1
+        RequestLog.getDurations().Phase >= duration
+    }
+
+    def "A context restored on another thread records both threads, leaving the dumped context unchanged"() {
+        given:
+        time("Phase")
+        RequestLog context = RequestLog.dump()
+        RequestLog handedOff = null
+
+        when:
+        Thread thread = new Thread({
+            RequestLog.restore(context)
+            handedOff = RequestLog.dump()
+        }, "handed-off")
+        thread.start()
+        thread.join()
+
+        RequestLog.restore(handedOff)
+        RequestLog.export()
+        Set<String> handedOffThreads = ((Threads) RequestLog.retrieve(Threads)).threads
+
+        RequestLog.restore(context)
+        RequestLog.export()
+        Set<String> contextThreads = ((Threads) RequestLog.retrieve(Threads)).threads
+
+        then:
+        handedOffThreads == [Thread.currentThread().name, "handed-off"] as LinkedHashSet
+        contextThreads == [Thread.currentThread().name] as Set
+    }
+
+    def "Accumulating a context adds its Druid query timers"() {
+        given: "A Druid query timed on a context forked from the request"
+        time("Request")
+        RequestLog request = RequestLog.dump()
+        RequestLog.restore(request)
+        time(DRUID_QUERY_TIMER + "0001")
+        time("Other")
+        RequestLog query = RequestLog.dump()
+
+        when:
+        RequestLog.restore(request)
+        RequestLog.accumulate(query)
+
+        then:
+        RequestLog.getDurations().keySet() == ["Request", DRUID_QUERY_TIMER + "0001"] as Set
+    }
+}
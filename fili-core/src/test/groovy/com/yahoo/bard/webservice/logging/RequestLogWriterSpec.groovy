@@ -0,0 +1,111 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.logging
+
+import com.yahoo.bard.webservice.logging.blocks.Epilogue
+import com.yahoo.bard.webservice.logging.blocks.Threads
+import com.yahoo.bard.webservice.util.CacheLastObserver
+
+import spock.lang.Specification
+import spock.lang.Timeout
+import spock.lang.Unroll
+import spock.util.concurrent.PollingConditions
+
+import javax.ws.rs.core.Response
+
+class RequestLogWriterSpec extends Specification {
+
+    List<String> written = Collections.synchronizedList([])
+
+    /**
+     * Build the log block of a finished request answered with a status.
+     */
+    LogBlock logBlock(Response.Status status) {
+        LogBlock logBlock = new LogBlock(UUID.randomUUID().toString())
+        logBlock.add(new Epilogue("message", status, new CacheLastObserver<Long>()))
+        return logBlock
+    }
+
+    def "Without a queue, log lines are written on the calling thread"() {
+        given:
+        RequestLogWriter writer = new RequestLogWriter(0, 10, 1.0, 1000L, { written << it })
+        LogBlock logBlock = logBlock(Response.Status.OK)
+
+        when:
+        writer.write(logBlock, [:])
+
+        then:
+        written == [LogFormatterProvider.getInstance().format(logBlock)]
+    }
+
+    @Unroll
+    def "With a sample rate of 0, a request answered #status in #totalMs ms is #outcome"() {
+        given:
+        RequestLogWriter writer = new RequestLogWriter(0, 10, 0.0, 1000L, { written << it })
+        long sampledOut = RequestLogWriter.SAMPLED_OUT.count
+
+        when:
+        writer.write(logBlock(status), [TotalTime: totalMs as Float])
+
+        then:
+        written.size() == (outcome == "logged" ? 1 : 0)
+        RequestLogWriter.SAMPLED_OUT.count == sampledOut + (outcome == "logged" ? 0 : 1)
+
+        where:
+        status                                | totalMs | outcome
+        Response.Status.OK                    | 10      | "sampled out"
+        Response.Status.OK                    | 1500    | "logged"
+        Response.Status.BAD_REQUEST           | 10      | "logged"
+        Response.Status.INTERNAL_SERVER_ERROR | 10      | "logged"
+    }
+
+    def "Log lines beyond the queue size are dropped until the writer catches up"() {
+        given: "A writer whose background thread is not started yet"
+        RequestLogWriter writer = new RequestLogWriter(2, 10, 1.0, 1000L, { written << it })
+        long dropped = RequestLogWriter.DROPPED.count
+
+        when:
+        3.times { writer.write(logBlock(Response.Status.OK), [:]) }
+
+        then:
+        written.isEmpty()
+        RequestLogWriter.DROPPED.count == dropped + 1
+    }
+
+    @Timeout(10)
+    def "Queued log lines are written by the background thread, which reports their lag"() {
+        given:
+        RequestLogWriter writer = new RequestLogWriter(10, 2, 1.0, 1000L, { written << it })
+        long lagCount = RequestLogWriter.LAG_TIMER.count
+        5.times { writer.write(logBlock(Response.Status.OK), [:]) }
+
+        when:
+        writer.start()
+
+        then:
+        new PollingConditions(timeout: 5).eventually {
+            assert written.size() == 5
+        }
+        RequestLogWriter.LAG_TIMER.count == lagCount + 5
+    }
+
+    @Timeout(10)
+    def "Queued log lines keep the thread ids of their request after the request log is cleared"() {
+        given: "A request handled on two threads, whose log line waits in the queue"
+        RequestLogWriter writer = new RequestLogWriter(10, 2, 1.0, 1000L, { written << it })
+        Set<String> threadIds = ["http-1", "druid-response-1"] as LinkedHashSet
+        LogBlock logBlock = logBlock(Response.Status.OK)
+        logBlock.add(new Threads(threadIds))
+        writer.write(logBlock, [:])
+
+        when: "The request log is cleared for the next request before the line is written"
+        threadIds.clear()
+        writer.start()
+
+        then:
+        new PollingConditions(timeout: 5).eventually {
+            assert written.size() == 1
+        }
+        written[0].contains('"Threads":["http-1","druid-response-1"]')
+    }
+}
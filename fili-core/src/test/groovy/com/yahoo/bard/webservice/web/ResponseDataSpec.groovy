@@ -14,6 +14,7 @@ import com.yahoo.bard.webservice.data.dimension.Dimension
 import com.yahoo.bard.webservice.data.dimension.DimensionColumn
 import com.yahoo.bard.webservice.data.dimension.DimensionField
 import com.yahoo.bard.webservice.data.dimension.DimensionRow
+import com.yahoo.bard.webservice.data.dimension.LazyDimensionRow
 import com.yahoo.bard.webservice.data.dimension.MapStoreManager
 import com.yahoo.bard.webservice.data.dimension.impl.KeyValueStoreDimension
 import com.yahoo.bard.webservice.data.dimension.impl.ScanSearchProviderManager
@@ -235,4 +236,56 @@ class ResponseDataSpec extends Specification {
         expect:
         row == expectedRow
     }
+
+    def "Lazy dimension rows are looked up in bulk, only for dimensions showing fields other than the key"() {
+        given:
+        Dimension keyOnly = Mock(Dimension) {
+            getApiName() >> "keyOnly"
+            getKey() >> BardDimensionField.ID
+            getDimensionFields() >> ([BardDimensionField.ID, BardDimensionField.DESC] as LinkedHashSet)
+        }
+        Dimension described = Mock(Dimension) {
+            getApiName() >> "described"
+            getKey() >> BardDimensionField.ID
+            getDimensionFields() >> ([BardDimensionField.ID, BardDimensionField.DESC] as LinkedHashSet)
+        }
+        DimensionColumn keyOnlyColumn = new DimensionColumn(keyOnly)
+        DimensionColumn describedColumn = new DimensionColumn(described)
+        LazyDimensionRow a = new LazyDimensionRow(described, "a")
+        LazyDimensionRow b = new LazyDimensionRow(described, "b")
+        List<Result> results = ["a": a, "b": b, "a2": a].collect { key, row ->
+            new Result(
+                    [(keyOnlyColumn): new LazyDimensionRow(keyOnly, key), (describedColumn): row] as LinkedHashMap,
+                    [:],
+                    dateTime
+            )
+        }
+        ResponseData lazyResponse = new ResponseData(
+                new ResultSet(new ResultSetSchema(DAY, [keyOnlyColumn, describedColumn] as Set), results),
+                [] as LinkedHashSet,
+                [
+                        (keyOnly): [BardDimensionField.ID] as LinkedHashSet,
+                        (described): [BardDimensionField.ID, BardDimensionField.DESC] as LinkedHashSet
+                ] as LinkedHashMap,
+                new SimplifiedIntervalList(),
+                volatileIntervals,
+                (Pagination) null,
+                [:]
+        )
+
+        when:
+        List<Map<String, Object>> rows = results.collect { lazyResponse.buildResultRow(it) }
+
+        then:
+        1 * described.findDimensionRowsByKeyValues({ it as Set == ["a", "b"] as Set }) >> [
+                "a": BardDimensionField.makeDimensionRow(described, "a", "A")
+        ]
+        0 * described.findDimensionRowByKeyValue(_)
+        0 * keyOnly.findDimensionRowsByKeyValues(_)
+        0 * keyOnly.findDimensionRowByKeyValue(_)
+
+        and:
+        rows*.get("keyOnly|id") == ["a", "b", "a2"]
+        rows*.get("described|desc") == ["A", "", "A"]
+    }
 }
@@ -29,6 +29,7 @@ import com.yahoo.bard.webservice.web.DefaultResponseFormatType
 import com.yahoo.bard.webservice.web.ErrorMessageFormat
 import com.yahoo.bard.webservice.web.FilteredThetaSketchMetricsHelper
 import com.yahoo.bard.webservice.web.MetricsFilterSetBuilder
+import com.yahoo.bard.webservice.web.apirequest.binders.BindingCache
 import com.yahoo.bard.webservice.web.apirequest.utils.TestingDataApiRequestImpl
 
 import org.joda.time.DateTime
@@ -38,6 +39,9 @@ import spock.lang.Shared
 import spock.lang.Specification
 import spock.lang.Unroll
 
+import javax.ws.rs.core.MultivaluedHashMap
+import javax.ws.rs.core.PathSegment
+
 class DataApiRequestImplSpec extends Specification {
 
     @Shared
@@ -143,6 +147,70 @@ class DataApiRequestImplSpec extends Specification {
     }
 
     @Unroll
+    def "Bound metrics are reused from the binding cache until the metric dictionary changes"() {
+        given:
+        TestingDataApiRequestImpl request = new TestingDataApiRequestImpl()
+        request.bindingCache = new BindingCache(10)
+        long hits = BindingCache.HITS.count
+
+        when:
+        LinkedHashSet<LogicalMetric> first = request.bindLogicalMetrics("met1,met2", table, metricDict, dimensionDict)
+        LinkedHashSet<LogicalMetric> second = request.bindLogicalMetrics("met1,met2", table, metricDict, dimensionDict)
+
+        then:
+        second == first
+        !second.is(first)
+        BindingCache.HITS.count == hits + 1
+
+        when:
+        LogicalMetric replacement = new LogicalMetric(null, null, "met1")
+        metricDict.put("met1", replacement)
+        LinkedHashSet<LogicalMetric> third = request.bindLogicalMetrics("met1,met2", table, metricDict, dimensionDict)
+
+        then:
+        third.find { it.name == "met1" }.is(replacement)
+        BindingCache.HITS.count == hits + 1
+    }
+
+    def "Bound grouping dimensions are reused from the binding cache until the dimension dictionary changes"() {
+        given:
+        TestingDataApiRequestImpl request = new TestingDataApiRequestImpl()
+        request.bindingCache = new BindingCache(10)
+        List<PathSegment> segments = ["one", "two"].collect { name ->
+            Stub(PathSegment) {
+                getPath() >> name
+                getMatrixParameters() >> new MultivaluedHashMap<>()
+            }
+        }
+        long hits = BindingCache.HITS.count
+
+        when:
+        LinkedHashSet<Dimension> first = request.bindGroupingDimensions(segments, table, dimensionDict)
+        LinkedHashSet<Dimension> second = request.bindGroupingDimensions(segments, table, dimensionDict)
+
+        then:
+        first*.apiName == ["one", "two"]
+        second == first
+        BindingCache.HITS.count == hits + 1
+
+        when:
+        DimensionDictionary otherDictionary = new DimensionDictionary()
+        dimensionDict.findAll().each { Dimension dimension ->
+            otherDictionary.add(new KeyValueStoreDimension(
+                    dimension.apiName,
+                    dimension.description,
+                    dimension.dimensionFields,
+                    MapStoreManager.getInstance(dimension.apiName),
+                    ScanSearchProviderManager.getInstance(dimension.apiName)
+            ))
+        }
+        LinkedHashSet<Dimension> third = request.bindGroupingDimensions(segments, table, otherDictionary)
+
+        then:
+        third*.apiName == ["one", "two"]
+        third.every { otherDictionary.findByApiName(it.apiName).is(it) }
+    }
+
     def "check valid granularity name #name parses to granularity #expected"() {
         expect:
         new TestingDataApiRequestImpl().generateGranularity(name, granularityParser) == expected
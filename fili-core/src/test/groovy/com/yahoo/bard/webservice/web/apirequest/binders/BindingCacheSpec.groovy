@@ -0,0 +1,112 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.web.apirequest.binders
+
+import com.yahoo.bard.webservice.web.BadApiRequestException
+
+import spock.lang.Specification
+
+import java.util.function.Supplier
+
+import javax.ws.rs.core.MultivaluedHashMap
+import javax.ws.rs.core.PathSegment
+
+class BindingCacheSpec extends Specification {
+
+    BindingCache cache = new BindingCache(2)
+    Supplier<List<String>> binder = Mock(Supplier)
+
+    List<String> bind(String raw, boolean current = true) {
+        return cache.bind(["kind", raw], binder, { current }, { new ArrayList<>(it) })
+    }
+
+    def "A repeated binding reuses the bound component and counts the bind time saved"() {
+        given:
+        long hits = BindingCache.HITS.count
+
+        when:
+        List<String> first = bind("a,b")
+        List<String> second = bind("a,b")
+
+        then:
+        1 * binder.get() >> ["a", "b"]
+        first == ["a", "b"]
+        second == ["a", "b"]
+
+        and: "Each binding gets its own copy"
+        !first.is(second)
+
+        and:
+        BindingCache.HITS.count == hits + 1
+    }
+
+    def "A cached component that is no longer current is bound again"() {
+        when:
+        bind("a")
+        bind("a", false)
+
+        then:
+        2 * binder.get() >> ["a"]
+    }
+
+    def "Binding errors are not cached"() {
+        when:
+        bind("bad")
+
+        then:
+        1 * binder.get() >> { throw new BadApiRequestException("bad") }
+        thrown(BadApiRequestException)
+        cache.size() == 0
+    }
+
+    def "The least recently used components are dropped past the maximum size"() {
+        given:
+        binder.get() >> ["x"]
+
+        when:
+        bind("a")
+        bind("b")
+        bind("a")
+        bind("c")
+
+        then:
+        cache.size() == 2
+
+        when:
+        bind("a")
+        bind("b")
+
+        then:
+        1 * binder.get() >> ["b"]
+    }
+
+    def "A cache of size 0 binds every time"() {
+        given:
+        cache = new BindingCache(0)
+
+        when:
+        bind("a")
+        bind("a")
+
+        then:
+        2 * binder.get() >> ["a"]
+        cache.size() == 0
+    }
+
+    def "Path segments with different matrix parameters have different keys"() {
+        given:
+        PathSegment plain = Stub(PathSegment) {
+            getPath() >> "dim"
+            getMatrixParameters() >> new MultivaluedHashMap<>()
+        }
+        PathSegment shown = Stub(PathSegment) {
+            getPath() >> "dim"
+            getMatrixParameters() >> new MultivaluedHashMap<>([show: "id"])
+        }
+
+        expect:
+        BindingCache.pathSegmentsKey([plain]) == BindingCache.pathSegmentsKey([plain])
+        BindingCache.pathSegmentsKey([plain]) != BindingCache.pathSegmentsKey([shown])
+        BindingCache.pathSegmentsKey(null) == ""
+    }
+}
@@ -0,0 +1,186 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.web.filters
+
+import com.yahoo.bard.webservice.metadata.DataSourceMetadataService
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.charset.StandardCharsets
+import java.time.Clock
+
+import javax.ws.rs.container.ContainerRequestContext
+import javax.ws.rs.container.ContainerResponseContext
+import javax.ws.rs.core.HttpHeaders
+import javax.ws.rs.core.MediaType
+import javax.ws.rs.core.MultivaluedHashMap
+import javax.ws.rs.core.MultivaluedMap
+import javax.ws.rs.core.Response
+import javax.ws.rs.core.StreamingOutput
+import javax.ws.rs.core.UriInfo
+
+class MetadataResponseCacheFilterSpec extends Specification {
+
+    static final String BODY = '{"tables":[]}'
+
+    DataSourceMetadataService metadataService = Mock(DataSourceMetadataService)
+    long now = 0
+    Clock clock = Stub(Clock) { millis() >> { now } }
+    MetadataResponseCacheFilter filter = new MetadataResponseCacheFilter(metadataService, 10, 1000, clock)
+
+    ContainerRequestContext request(String path = "tables", String ifNoneMatch = null, String method = "GET") {
+        Map<String, Object> properties = [:]
+        ContainerRequestContext request = Mock(ContainerRequestContext)
+        request.getMethod() >> method
+        request.getUriInfo() >> Stub(UriInfo) {
+            getPath() >> path
+            getRequestUri() >> new URI("http://localhost/v1/$path")
+        }
+        request.getHeaderString(HttpHeaders.IF_NONE_MATCH) >> ifNoneMatch
+        request.setProperty(_, _) >> { String name, Object value -> properties[name] = value }
+        request.getProperty(_) >> { String name -> properties[name] }
+        return request
+    }
+
+    /**
+     * Run a request through the filter, answering it with the given entity if it is not served from the cache.
+     */
+    Response run(ContainerRequestContext request, Object entity = BODY) {
+        Response aborted = null
+        request.abortWith(_) >> { Response response -> aborted = response }
+
+        filter.filter(request)
+        if (aborted != null) {
+            return aborted
+        }
+
+        int status = 200
+        Object body = entity
+        MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>([(HttpHeaders.CONTENT_LENGTH): "12"])
+        headers.add("Link", "<next>")
+        ContainerResponseContext response = Stub(ContainerResponseContext) {
+            getStatus() >> { status }
+            getEntity() >> { body }
+            getMediaType() >> MediaType.APPLICATION_JSON_TYPE
+            getHeaders() >> headers
+            setStatus(_) >> { int newStatus -> status = newStatus }
+            setEntity(_) >> { Object newBody -> body = newBody }
+            setEntity(_, _, _) >> { Object newBody, a, MediaType m -> body = newBody }
+        }
+        filter.filter(request, response)
+
+        Response.ResponseBuilder builder = Response.status(status).entity(body)
+        headers.each { name, values -> values.each { builder.header(name, it) } }
+        return builder.build()
+    }
+
+    String text(Response response) {
+        return new String(response.entity as byte[], StandardCharsets.UTF_8)
+    }
+
+    def "A repeated metadata request is served from the cache with the same entity tag"() {
+        given:
+        long hits = MetadataResponseCacheFilter.HITS.count
+
+        when:
+        Response first = run(request())
+        Response second = run(request(), "not used")
+
+        then:
+        text(first) == BODY
+        text(second) == BODY
+        second.getHeaderString("Link") == "<next>"
+        second.getHeaderString(HttpHeaders.CONTENT_LENGTH) == null
+        first.getHeaderString(HttpHeaders.ETAG) != null
+        second.getEntityTag().toString() == first.getHeaderString(HttpHeaders.ETAG)
+        MetadataResponseCacheFilter.HITS.count == hits + 1
+    }
+
+    def "Streamed responses are serialized for the cache"() {
+        given:
+        StreamingOutput stream = { OutputStream out -> out.write(BODY.getBytes(StandardCharsets.UTF_8)) }
+
+        when:
+        Response first = run(request(), stream)
+        Response second = run(request(), "not used")
+
+        then:
+        text(first) == BODY
+        text(second) == BODY
+    }
+
+    def "A conditional request for an unchanged response is answered with Not Modified"() {
+        given:
+        String tag = run(request()).getHeaderString(HttpHeaders.ETAG)
+
+        when:
+        Response cached = run(request("tables", tag))
+
+        then:
+        cached.status == Response.Status.NOT_MODIFIED.statusCode
+        !cached.hasEntity()
+
+        when: "The response has been dropped from the cache but rebuilds to the same bytes"
+        filter.clear()
+        Response rebuilt = run(request("tables", "\"other\", $tag"))
+
+        then:
+        rebuilt.status == Response.Status.NOT_MODIFIED.statusCode
+        rebuilt.getHeaderString(HttpHeaders.ETAG) == tag
+    }
+
+    def "Cached responses are rebuilt after the data source metadata is updated"() {
+        given:
+        long updates = 0
+        metadataService.getUpdateCount() >> { updates }
+        run(request())
+
+        when:
+        updates++
+
+        then:
+        text(run(request(), "new")) == "new"
+    }
+
+    def "Cached responses are rebuilt once they expire"() {
+        given:
+        run(request())
+
+        when:
+        now = 999
+
+        then:
+        text(run(request(), "new")) == BODY
+
+        when:
+        now = 1000
+
+        then:
+        text(run(request(), "new")) == "new"
+    }
+
+    @Unroll
+    def "#method #path is #description"() {
+        when:
+        run(request(path, null, method))
+        Response second = run(request(path, null, method), "new")
+
+        then:
+        (text(second) == BODY) == cached
+
+        where:
+        method | path                           | cached
+        "GET"  | "tables"                       | true
+        "GET"  | "tables/shapes/day"            | true
+        "GET"  | "metrics/width"                | true
+        "GET"  | "dimensions"                   | true
+        "GET"  | "dimensions/color"             | true
+        "GET"  | "dimensions/color/values"      | false
+        "GET"  | "dimensions/color/search"      | false
+        "GET"  | "data/shapes/day"              | false
+        "POST" | "tables"                       | false
+
+        description = cached ? "cached" : "not cached"
+    }
+}
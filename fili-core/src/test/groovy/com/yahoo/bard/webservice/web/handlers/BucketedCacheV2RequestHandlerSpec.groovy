@@ -0,0 +1,233 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.web.handlers
+
+import static com.yahoo.bard.webservice.async.ResponseContextUtils.createResponseContext
+import static com.yahoo.bard.webservice.web.responseprocessors.ResponseContextKeys.VOLATILE_INTERVALS_CONTEXT_KEY
+
+import com.yahoo.bard.webservice.application.ObjectMappersSuite
+import com.yahoo.bard.webservice.data.cache.MemTupleDataCache
+import com.yahoo.bard.webservice.data.cache.TupleDataCache
+import com.yahoo.bard.webservice.druid.model.orderby.LimitSpec
+import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery
+import com.yahoo.bard.webservice.druid.model.query.GroupByQuery
+import com.yahoo.bard.webservice.druid.model.query.TimeSeriesQuery
+import com.yahoo.bard.webservice.logging.blocks.BardQueryInfoUtils
+import com.yahoo.bard.webservice.metadata.QuerySigningService
+import com.yahoo.bard.webservice.util.SimplifiedIntervalList
+import com.yahoo.bard.webservice.web.RequestUtils
+import com.yahoo.bard.webservice.web.apirequest.DataApiRequest
+import com.yahoo.bard.webservice.web.responseprocessors.CacheV2ResponseProcessor
+import com.yahoo.bard.webservice.web.responseprocessors.LoggingContext
+import com.yahoo.bard.webservice.web.responseprocessors.ResponseContext
+import com.yahoo.bard.webservice.web.responseprocessors.ResponseProcessor
+
+import com.fasterxml.jackson.databind.JsonNode
+import com.fasterxml.jackson.databind.ObjectMapper
+
+import org.joda.time.DateTime
+import org.joda.time.Interval
+import org.joda.time.chrono.ISOChronology
+
+import spock.lang.Specification
+
+import javax.ws.rs.container.ContainerRequestContext
+import javax.ws.rs.core.MultivaluedHashMap
+
+class BucketedCacheV2RequestHandlerSpec extends Specification {
+
+    ObjectMapper mapper = new ObjectMappersSuite().getMapper()
+
+    Map<String, TupleDataCache.DataEntry<String, Long, String>> entries = [:]
+    TupleDataCache<String, Long, String> dataCache = Mock(TupleDataCache) {
+        get(_) >> { String key -> entries[key] }
+        set(_, _, _) >> { String key, Long meta, String value ->
+            entries[key] = new MemTupleDataCache.DataEntry<String>(key, meta, value)
+            true
+        }
+    }
+
+    long signature = 1234L
+    QuerySigningService<Long> querySigningService = Mock(QuerySigningService) {
+        getSegmentSetId(_) >> { Optional.of(signature) }
+    }
+
+    DataRequestHandler next = Mock(DataRequestHandler)
+    DataApiRequest apiRequest = Mock(DataApiRequest)
+    ResponseContext responseContext = createResponseContext([:])
+    ResponseProcessor response = Mock(ResponseProcessor) {
+        getResponseContext() >> { responseContext }
+    }
+
+    RequestContext requestContext
+    BucketedCacheV2RequestHandler handler
+
+    TimeSeriesQuery baseQuery = RequestUtils.buildTimeSeriesQuery()
+
+    def setup() {
+        ContainerRequestContext containerRequestContext = Mock(ContainerRequestContext)
+        containerRequestContext.getHeaders() >> (["Bard-Testing": "###BYPASS###", "ClientId": "UI"] as
+                MultivaluedHashMap<String, String>)
+        requestContext = new RequestContext(containerRequestContext, true)
+        BardQueryInfoUtils.initializeBardQueryInfo()
+        handler = new BucketedCacheV2RequestHandler(next, dataCache, querySigningService, mapper)
+    }
+
+    def cleanup() {
+        BardQueryInfoUtils.resetBardQueryInfo()
+    }
+
+    Interval interval(String text) {
+        return new Interval(text, ISOChronology.instanceUTC)
+    }
+
+    /**
+     * Build the timeseries query over an interval of days.
+     */
+    DruidAggregationQuery<?> query(String text) {
+        return baseQuery.withAllIntervals([interval(text)])
+    }
+
+    /**
+     * Build the Druid response to a query, with one row per day holding the day of the month.
+     */
+    JsonNode druidResponse(DruidAggregationQuery<?> druidQuery) {
+        List rows = druidQuery.intervals.collectMany { Interval interval ->
+            (0..<(interval.toDuration().standardDays as int)).collect { int day ->
+                DateTime timestamp = interval.start.plusDays(day)
+                [timestamp: timestamp.toString(), result: [day: timestamp.dayOfMonth]]
+            }
+        }
+        return mapper.valueToTree(rows)
+    }
+
+    /**
+     * Answer the queries sent to the next handler from Druid, and collect them.
+     */
+    List<DruidAggregationQuery<?>> answerFromDruid() {
+        List<DruidAggregationQuery<?>> sent = []
+        next.handleRequest(_, _, _, _) >> { RequestContext context, DataApiRequest request,
+                                             DruidAggregationQuery<?> druidQuery, ResponseProcessor processor ->
+            sent << druidQuery
+            processor.processResponse(druidResponse(druidQuery), druidQuery, new LoggingContext(null))
+            true
+        }
+        return sent
+    }
+
+    List<Integer> days(JsonNode json) {
+        return json.collect { it.get("result").get("day").asInt() }
+    }
+
+    def "Only the buckets missing from the cache are queried, and the response is stitched in time order"() {
+        given:
+        List<DruidAggregationQuery<?>> sent = answerFromDruid()
+        List<JsonNode> responses = []
+        response.processResponse(_, _, _) >> { JsonNode json, DruidAggregationQuery<?> q, LoggingContext c ->
+            responses << json
+        }
+        long partialHits = BucketedCacheV2RequestHandler.PARTIAL_HITS.count
+
+        when: "The first request caches each day"
+        handler.handleRequest(requestContext, apiRequest, query("2019-01-01/2019-01-04"), response)
+
+        then:
+        sent*.intervals == [[interval("2019-01-01/2019-01-04")]]
+        days(responses[0]) == [1, 2, 3]
+        entries.size() == 3
+
+        when: "The window slides by a day"
+        handler.handleRequest(requestContext, apiRequest, query("2019-01-02/2019-01-05"), response)
+
+        then: "Only the new day is queried"
+        sent[1].intervals*.toString() == ["2019-01-04T00:00:00.000Z/2019-01-05T00:00:00.000Z"]
+        days(responses[1]) == [2, 3, 4]
+        BucketedCacheV2RequestHandler.PARTIAL_HITS.count == partialHits + 1
+    }
+
+    def "Missing buckets are coalesced into contiguous intervals"() {
+        given:
+        List<DruidAggregationQuery<?>> sent = answerFromDruid()
+        List<JsonNode> responses = []
+        response.processResponse(_, _, _) >> { JsonNode json, DruidAggregationQuery<?> q, LoggingContext c ->
+            responses << json
+        }
+        handler.handleRequest(requestContext, apiRequest, query("2019-01-03/2019-01-04"), response)
+
+        when:
+        handler.handleRequest(requestContext, apiRequest, query("2019-01-01/2019-01-06"), response)
+
+        then:
+        sent[1].intervals*.toString() == [
+                "2019-01-01T00:00:00.000Z/2019-01-03T00:00:00.000Z",
+                "2019-01-04T00:00:00.000Z/2019-01-06T00:00:00.000Z"
+        ]
+        days(responses[1]) == [1, 2, 3, 4, 5]
+    }
+
+    def "A request whose buckets are all cached is answered without querying Druid"() {
+        given:
+        answerFromDruid()
+        handler.handleRequest(requestContext, apiRequest, query("2019-01-01/2019-01-04"), response)
+        long hits = CacheV2RequestHandler.CACHE_HITS.count
+        JsonNode answer = null
+
+        when:
+        handler.handleRequest(requestContext, apiRequest, query("2019-01-02/2019-01-04"), response)
+
+        then:
+        0 * next.handleRequest(*_)
+        1 * response.processResponse(_, _, _) >> { JsonNode json, DruidAggregationQuery<?> q, LoggingContext c ->
+            answer = json
+        }
+        days(answer) == [2, 3]
+        CacheV2RequestHandler.CACHE_HITS.count == hits + 1
+    }
+
+    def "Buckets cached with another segment set are queried again"() {
+        given:
+        List<DruidAggregationQuery<?>> sent = answerFromDruid()
+        handler.handleRequest(requestContext, apiRequest, query("2019-01-01/2019-01-03"), response)
+
+        when:
+        signature = 5678L
+        handler.handleRequest(requestContext, apiRequest, query("2019-01-01/2019-01-03"), response)
+
+        then:
+        sent.size() == 2
+        sent[1].intervals == [interval("2019-01-01/2019-01-03")]
+    }
+
+    def "Buckets holding volatile data are not cached"() {
+        given:
+        answerFromDruid()
+        responseContext.put(
+                VOLATILE_INTERVALS_CONTEXT_KEY.name,
+                new SimplifiedIntervalList([interval("2019-01-03/2019-01-04")])
+        )
+
+        when:
+        handler.handleRequest(requestContext, apiRequest, query("2019-01-01/2019-01-04"), response)
+
+        then:
+        entries.size() == 2
+    }
+
+    def "Group by queries with a row limit are cached whole"() {
+        given:
+        GroupByQuery limited = RequestUtils.buildGroupByQuery()
+                .withLimitSpec(new LimitSpec([] as LinkedHashSet, Optional.of(10)))
+                .withAllIntervals([interval("2019-01-01/2019-01-04")])
+
+        expect:
+        !handler.isBucketable(limited)
+        handler.isBucketable(RequestUtils.buildGroupByQuery())
+        handler.isBucketable(RequestUtils.buildTopNQuery())
+
+        when:
+        handler.handleRequest(requestContext, apiRequest, limited, response)
+
+        then:
+        1 * next.handleRequest(requestContext, apiRequest, limited, _ as CacheV2ResponseProcessor) >> true
+    }
+}
@@ -2,10 +2,15 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.web.handlers
 
+import static com.yahoo.bard.webservice.config.BardFeatureFlag.COMPRESSED_CACHE_VALUES
+import static com.yahoo.bard.webservice.config.BardFeatureFlag.QUERY_FINGERPRINT_CACHE_KEYS
+
 import com.yahoo.bard.webservice.application.ObjectMappersSuite
+import com.yahoo.bard.webservice.data.cache.CacheValueCodec
 import com.yahoo.bard.webservice.data.cache.MemTupleDataCache
 import com.yahoo.bard.webservice.data.cache.TupleDataCache
 import com.yahoo.bard.webservice.druid.model.query.GroupByQuery
+import com.yahoo.bard.webservice.druid.model.query.QueryFingerprinter
 import com.yahoo.bard.webservice.druid.model.query.TimeSeriesQuery
 import com.yahoo.bard.webservice.druid.model.query.TopNQuery
 import com.yahoo.bard.webservice.logging.blocks.BardQueryInfo
@@ -25,6 +30,8 @@ import com.fasterxml.jackson.databind.node.JsonNodeFactory
 
 import spock.lang.Specification
 
+import java.nio.ByteBuffer
+
 import javax.ws.rs.container.ContainerRequestContext
 import javax.ws.rs.core.MultivaluedHashMap
 
@@ -65,6 +72,8 @@ class CacheV2RequestHandlerSpec extends Specification {
 
     def cleanup() {
         BardQueryInfoUtils.resetBardQueryInfo()
+        QUERY_FINGERPRINT_CACHE_KEYS.reset()
+        COMPRESSED_CACHE_VALUES.reset()
     }
 
     def "Test constructor initializes object"() {
@@ -222,7 +231,28 @@ class CacheV2RequestHandlerSpec extends Specification {
         requestProcessed
 
         and: "The count of fact query cache hit is not incremented"
-        bardQueryInfo.queryCounter.get(BardQueryInfo.FACT_QUERY_CACHE_HIT).get() == 1
+        bardQueryInfo.queryCounter.get(BardQueryInfo.FACT_QUERY_CACHE_HIT).get() == 0
+    }
+
+    def "A compressed entry with an unreachable uncompressed size is handled as a cache miss"() {
+        given: "A compressed entry whose header claims the largest uncompressed size"
+        COMPRESSED_CACHE_VALUES.setOn(true)
+        byte[] value = new CacheValueCodec(mapper).encode(json, 1234L) as byte[]
+        ByteBuffer.wrap(value).putInt(Byte.BYTES + Byte.BYTES + Long.BYTES, Integer.MAX_VALUE)
+
+        when:
+        boolean requestProcessed = handler.handleRequest(requestContext, apiRequest, groupByQuery, response)
+
+        then: "The cache returns the entry"
+        1 * dataCache.get(_) >> new MemTupleDataCache.DataEntry<byte[]>("key1", 1234L, value)
+
+        then: "Continue the request to the next handler with a CacheV2ResponseProcessor"
+        1 * next.handleRequest(requestContext, apiRequest, groupByQuery, _ as CacheV2ResponseProcessor) >> true
+        0 * response.processResponse(_, _, _)
+
+        and: "The request is marked as processed without counting a cache hit"
+        requestProcessed
+        bardQueryInfo.queryCounter.get(BardQueryInfo.FACT_QUERY_CACHE_HIT).get() == 0
     }
 
     def "Test handle request key parse error delegates to next handler with original processor"() {
@@ -250,4 +280,18 @@ class CacheV2RequestHandlerSpec extends Specification {
         and: "The count of fact query cache hit is not incremented"
         bardQueryInfo.queryCounter.get(BardQueryInfo.FACT_QUERY_CACHE_HIT).get() == 0
     }
+
+    def "Responses are cached under the fingerprint of their query when fingerprint cache keys are enabled"() {
+        given:
+        QUERY_FINGERPRINT_CACHE_KEYS.setOn(true)
+        String fingerprint = new QueryFingerprinter(mapper).fingerprint(groupByQuery)
+
+        when:
+        handler.handleRequest(requestContext, apiRequest, groupByQuery, response)
+
+        then:
+        1 * dataCache.get(fingerprint) >> new MemTupleDataCache.DataEntry<String>(fingerprint, 1234L, "[]")
+        1 * response.processResponse(json, groupByQuery, _)
+        0 * next.handleRequest(*_)
+    }
 }
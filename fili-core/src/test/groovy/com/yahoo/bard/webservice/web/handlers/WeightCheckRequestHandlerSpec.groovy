@@ -2,6 +2,7 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.web.handlers
 
+import static com.yahoo.bard.webservice.config.BardFeatureFlag.WEIGHT_ESTIMATE_CACHE
 import static com.yahoo.bard.webservice.data.time.DefaultTimeGrain.DAY
 
 import com.yahoo.bard.webservice.application.ObjectMappersSuite
@@ -18,6 +19,7 @@ import com.yahoo.bard.webservice.web.apirequest.DataApiRequest
 import com.yahoo.bard.webservice.web.responseprocessors.ResponseProcessor
 import com.yahoo.bard.webservice.web.responseprocessors.WeightCheckResponseProcessor
 import com.yahoo.bard.webservice.web.util.QueryWeightUtil
+import com.yahoo.bard.webservice.web.util.WeightEstimateCache
 
 import com.fasterxml.jackson.core.JsonFactory
 import com.fasterxml.jackson.core.JsonParser
@@ -61,6 +63,7 @@ class WeightCheckRequestHandlerSpec extends Specification {
 
     def cleanup() {
         BardQueryInfoUtils.resetBardQueryInfo()
+        WEIGHT_ESTIMATE_CACHE.reset()
     }
 
     def "Test constructor"() {
@@ -295,4 +298,71 @@ class WeightCheckRequestHandlerSpec extends Specification {
         and:
         bardQueryInfo.queryCounter.get(BardQueryInfo.WEIGHT_CHECK).get() == 0
     }
+
+    def "A confident weight estimate under the limit runs the query without a weight check query"() {
+        setup:
+        WEIGHT_ESTIMATE_CACHE.setOn(true)
+        WeightEstimateCache weightEstimates = Mock(WeightEstimateCache)
+        groupByQuery.getGranularity() >> DAY
+        queryWeightUtil.skipWeightCheckQuery(groupByQuery) >> false
+        queryWeightUtil.getQueryWeightThreshold(DAY) >> 100
+        queryWeightUtil.getWeightEstimateCache() >> weightEstimates
+        WeightCheckRequestHandler handler = new WeightCheckRequestHandler(next, webService, queryWeightUtil, mapper)
+
+        when:
+        handler.handleRequest(context, request, groupByQuery, response)
+
+        then:
+        1 * weightEstimates.getConfidentEstimate(groupByQuery, 100) >> OptionalLong.of(10)
+        1 * next.handleRequest(context, request, groupByQuery, _ as WeightCheckResponseProcessor) >> true
+        0 * webService.postDruidQuery(*_)
+
+        and:
+        bardQueryInfo.queryCounter.get(BardQueryInfo.WEIGHT_CHECK).get() == 0
+    }
+
+    def "A confident weight estimate over the limit refuses the query without a weight check query"() {
+        setup:
+        WEIGHT_ESTIMATE_CACHE.setOn(true)
+        WeightEstimateCache weightEstimates = Mock(WeightEstimateCache)
+        HttpErrorCallback ec = Mock(HttpErrorCallback)
+        groupByQuery.getGranularity() >> DAY
+        queryWeightUtil.skipWeightCheckQuery(groupByQuery) >> false
+        queryWeightUtil.getQueryWeightThreshold(DAY) >> 100
+        queryWeightUtil.getWeightEstimateCache() >> weightEstimates
+        WeightCheckRequestHandler handler = new WeightCheckRequestHandler(next, webService, queryWeightUtil, mapper)
+
+        when:
+        handler.handleRequest(context, request, groupByQuery, response)
+
+        then:
+        1 * weightEstimates.getConfidentEstimate(groupByQuery, 100) >> OptionalLong.of(1000)
+        1 * response.getErrorCallback(groupByQuery) >> ec
+        1 * ec.invoke(507, _, _)
+        0 * next.handleRequest(*_)
+        0 * webService.postDruidQuery(*_)
+    }
+
+    def "Weight check results teach the weight estimate cache"() {
+        setup:
+        WEIGHT_ESTIMATE_CACHE.setOn(true)
+        WeightEstimateCache weightEstimates = Mock(WeightEstimateCache)
+        queryWeightUtil.getWeightEstimateCache() >> weightEstimates
+        WeightCheckRequestHandler handler = new WeightCheckRequestHandler(next, webService, queryWeightUtil, MAPPER)
+        SuccessCallback success = handler.buildSuccessCallback(context, request, groupByQuery, response, 100)
+
+        when:
+        success.invoke(MAPPER.readTree('[ { "event" : { "count" : 60 } } ]'))
+
+        then:
+        1 * weightEstimates.observeWeight(groupByQuery, 60)
+        1 * next.handleRequest(context, request, groupByQuery, response)
+
+        when:
+        success.invoke(MAPPER.readTree('[ ]'))
+
+        then:
+        1 * weightEstimates.observeWeight(groupByQuery, 0)
+        1 * next.handleRequest(context, request, groupByQuery, response)
+    }
 }
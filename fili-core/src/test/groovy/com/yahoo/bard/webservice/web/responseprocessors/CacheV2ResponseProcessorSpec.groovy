@@ -4,12 +4,14 @@ package com.yahoo.bard.webservice.web.responseprocessors
 
 import static com.yahoo.bard.webservice.async.ResponseContextUtils.createResponseContext
 import static com.yahoo.bard.webservice.config.BardFeatureFlag.CACHE_PARTIAL_DATA
+import static com.yahoo.bard.webservice.config.BardFeatureFlag.COMPRESSED_CACHE_VALUES
 import static com.yahoo.bard.webservice.web.responseprocessors.ResponseContextKeys.MISSING_INTERVALS_CONTEXT_KEY
 import static com.yahoo.bard.webservice.web.responseprocessors.ResponseContextKeys.VOLATILE_INTERVALS_CONTEXT_KEY
 
 import com.yahoo.bard.webservice.application.ObjectMappersSuite
 import com.yahoo.bard.webservice.config.SystemConfig
 import com.yahoo.bard.webservice.config.SystemConfigProvider
+import com.yahoo.bard.webservice.data.cache.CacheValueCodec
 import com.yahoo.bard.webservice.data.cache.TupleDataCache
 import com.yahoo.bard.webservice.data.metric.mappers.ResultSetMapper
 import com.yahoo.bard.webservice.druid.client.FailureCallback
@@ -67,6 +69,7 @@ class CacheV2ResponseProcessorSpec extends Specification {
 
     def cleanup() {
         CACHE_PARTIAL_DATA.setOn(cache_partial_data)
+        COMPRESSED_CACHE_VALUES.reset()
     }
 
     def "Test Constructor"() {
@@ -111,6 +114,62 @@ class CacheV2ResponseProcessorSpec extends Specification {
 
     }
 
+    def "The cache write is handed to the cache write executor and runs after the response continues"() {
+        given:
+        List<Runnable> writes = []
+        crp = new CacheV2ResponseProcessor(next, cacheKey, dataCache, querySigningService, MAPPER, { writes << it })
+        next.getResponseContext() >> responseContext
+
+        when:
+        crp.processResponse(json, groupByQuery, null)
+
+        then:
+        1 * next.processResponse(json, groupByQuery, null)
+        0 * dataCache.set(*_)
+        writes.size() == 1
+
+        when:
+        writes[0].run()
+
+        then:
+        1 * dataCache.set(cacheKey, segmentId, '[]')
+    }
+
+    def "A handed off cache write is signed with the segment set id from when the response was received"() {
+        given: "A segment set that changes after the response is handed off"
+        Long segmentSetId = 1234L
+        QuerySigningService<Long> changingSigningService = Mock(QuerySigningService) {
+            getSegmentSetId(_) >> { Optional.of(segmentSetId) }
+        }
+        List<Runnable> writes = []
+        crp = new CacheV2ResponseProcessor(next, cacheKey, dataCache, changingSigningService, MAPPER, { writes << it })
+        next.getResponseContext() >> responseContext
+
+        when:
+        crp.processResponse(json, groupByQuery, null)
+        segmentSetId = 5678L
+        writes[0].run()
+
+        then:
+        1 * dataCache.set(cacheKey, 1234L, '[]')
+    }
+
+    def "Compressed responses are cached as bytes that decode to the response"() {
+        given:
+        COMPRESSED_CACHE_VALUES.setOn(true)
+        crp = new CacheV2ResponseProcessor(next, cacheKey, dataCache, querySigningService, MAPPER)
+        next.getResponseContext() >> responseContext
+        byte[] value = null
+
+        when:
+        crp.processResponse(json, groupByQuery, null)
+
+        then:
+        1 * dataCache.set(cacheKey, segmentId, _) >> { String key, Long meta, byte[] bytes -> value = bytes }
+        CacheValueCodec.getSegmentSetId(value) == segmentId
+        new CacheValueCodec(MAPPER).decode(value, segmentId) == json
+    }
+
     @Unroll
     def "After error #savedToCache, process response continues"() {
         when:
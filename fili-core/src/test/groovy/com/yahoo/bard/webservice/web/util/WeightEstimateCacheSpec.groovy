@@ -0,0 +1,120 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.web.util
+
+import static com.yahoo.bard.webservice.data.time.DefaultTimeGrain.DAY
+
+import com.yahoo.bard.webservice.data.dimension.Dimension
+import com.yahoo.bard.webservice.druid.model.DefaultQueryType
+import com.yahoo.bard.webservice.druid.model.aggregation.Aggregation
+import com.yahoo.bard.webservice.druid.model.aggregation.LongSumAggregation
+import com.yahoo.bard.webservice.druid.model.aggregation.ThetaSketchAggregation
+import com.yahoo.bard.webservice.druid.model.datasource.DataSource
+import com.yahoo.bard.webservice.druid.model.having.Having
+import com.yahoo.bard.webservice.druid.model.query.GroupByQuery
+
+import org.joda.time.DateTime
+import org.joda.time.Interval
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class WeightEstimateCacheSpec extends Specification {
+
+    static final long LIMIT = 1000
+
+    WeightEstimateCache cache = new WeightEstimateCache(10, 3, 0.5)
+
+    GroupByQuery query(int days, int sketches, List<String> dimensions = ["color"], Having having = null) {
+        List<Aggregation> aggregations = (1..sketches).collect { new ThetaSketchAggregation("s$it", "s$it", 16384) }
+        aggregations << new LongSumAggregation("sum", "sum")
+        DateTime start = new DateTime("2019-01-01")
+        return new GroupByQuery(
+                Stub(DataSource) { getNames() >> (["ds"] as Set) },
+                DAY,
+                dimensions.collect { name -> Stub(Dimension) { getApiName() >> name } },
+                null,
+                having,
+                aggregations,
+                [],
+                [new Interval(start, start.plusDays(days))],
+                null
+        )
+    }
+
+    def "No estimate is used until the query shape has been observed enough times"() {
+        when:
+        cache.observeWeight(query(1, 1), 10)
+        cache.observeWeight(query(1, 1), 10)
+
+        then:
+        !cache.getConfidentEstimate(query(1, 1), LIMIT).isPresent()
+
+        when:
+        cache.observeWeight(query(1, 1), 10)
+
+        then:
+        cache.getConfidentEstimate(query(1, 1), LIMIT).getAsLong() == 10
+    }
+
+    def "Estimates are scaled by the number of time buckets and sketches"() {
+        given:
+        3.times { cache.observeWeight(query(2, 1), 20) }
+
+        expect:
+        cache.getConfidentEstimate(query(10, 3), LIMIT).getAsLong() == 300
+    }
+
+    @Unroll
+    def "An estimate of #weight against a limit of #LIMIT is #description"() {
+        given:
+        3.times { cache.observeWeight(query(1, 1), weight) }
+
+        expect:
+        cache.getConfidentEstimate(query(1, 1), LIMIT).isPresent() == confident
+
+        where:
+        weight | confident | description
+        100    | true      | "clearly below the limit"
+        900    | false     | "too close to the limit"
+        1900   | false     | "too close to the limit"
+        2100   | true      | "clearly above the limit"
+    }
+
+    def "Queries of different shapes do not share estimates"() {
+        given:
+        3.times { cache.observeWeight(query(1, 1, ["color"]), 10) }
+
+        expect:
+        !cache.getConfidentEstimate(query(1, 1, ["color", "shape"]), LIMIT).isPresent()
+    }
+
+    def "Result rows are counted once per sketch, and results of queries with a having clause are ignored"() {
+        when:
+        3.times { cache.observeResultRows(query(1, 2, ["color"], Stub(Having)), 100) }
+
+        then:
+        !cache.getConfidentEstimate(query(1, 2), LIMIT).isPresent()
+
+        when:
+        3.times { cache.observeResultRows(query(1, 2), 100) }
+
+        then:
+        cache.getConfidentEstimate(query(1, 2), LIMIT).getAsLong() == 200
+    }
+
+    def "Hits and misses are metered"() {
+        given:
+        long hits = WeightEstimateCache.HITS.count
+        long misses = WeightEstimateCache.MISSES.count
+        3.times { cache.observeWeight(query(1, 1), 10) }
+
+        when:
+        cache.getConfidentEstimate(query(1, 1), LIMIT)
+        cache.getConfidentEstimate(query(1, 1, ["shape"]), LIMIT)
+
+        then:
+        WeightEstimateCache.HITS.count == hits + 1
+        WeightEstimateCache.MISSES.count == misses + 1
+    }
+}
@@ -18,6 +18,7 @@ import com.yahoo.bard.webservice.data.config.luthier.factories.metricmaker.LongM
 import com.yahoo.bard.webservice.data.config.luthier.factories.metricmaker.LongSumMakerFactory;
 import com.yahoo.bard.webservice.data.config.luthier.factories.searchprovider.LuceneSearchProviderFactory;
 import com.yahoo.bard.webservice.data.config.luthier.factories.keyvaluestore.MapKeyValueStoreFactory;
+import com.yahoo.bard.webservice.data.config.luthier.factories.keyvaluestore.MappedFileKeyValueStoreFactory;
 import com.yahoo.bard.webservice.data.config.luthier.factories.searchprovider.NoOpSearchProviderFactory;
 import com.yahoo.bard.webservice.data.config.luthier.factories.physicaltable.PermissivePhysicalTableFactory;
 import com.yahoo.bard.webservice.data.config.luthier.factories.searchprovider.ScanSearchProviderFactory;
@@ -38,6 +39,7 @@ import com.yahoo.bard.webservice.data.dimension.Dimension;
 import com.yahoo.bard.webservice.data.dimension.DimensionDictionary;
 import com.yahoo.bard.webservice.data.dimension.KeyValueStore;
 import com.yahoo.bard.webservice.data.dimension.MapStore;
+import com.yahoo.bard.webservice.data.dimension.MappedFileStore;
 import com.yahoo.bard.webservice.data.dimension.SearchProvider;
 import com.yahoo.bard.webservice.data.dimension.impl.KeyValueStoreDimension;
 import com.yahoo.bard.webservice.data.dimension.impl.LuceneSearchProvider;
@@ -426,6 +428,12 @@ public class LuthierIndustrialPark implements ConfigurationLoader {
         private Map<String, Factory<KeyValueStore>> getDefaultKeyValueStoreFactories() {
             Map<String, Factory<KeyValueStore>> factoryMap = new LinkedHashMap<>();
             addAliasesToFactory(factoryMap, new MapKeyValueStoreFactory(), MapStore.class, "memory", "map");
+            addAliasesToFactory(
+                    factoryMap,
+                    new MappedFileKeyValueStoreFactory(),
+                    MappedFileStore.class,
+                    "mappedFile"
+            );
             // TODO: add in Redis Store later
             return factoryMap;
         }
@@ -0,0 +1,46 @@
+// Copyright 2019 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.config.luthier.factories.keyvaluestore;
+
+import com.yahoo.bard.webservice.application.luthier.LuthierConfigNode;
+import com.yahoo.bard.webservice.data.config.luthier.Factory;
+import com.yahoo.bard.webservice.data.config.luthier.LuthierIndustrialPark;
+import com.yahoo.bard.webservice.data.config.luthier.LuthierValidationUtils;
+import com.yahoo.bard.webservice.data.dimension.KeyValueStore;
+import com.yahoo.bard.webservice.data.dimension.MappedFileStore;
+
+import java.nio.file.Paths;
+
+/**
+ * A factory that is used to support the memory mapped, file backed KeyValueStore.
+ */
+public class MappedFileKeyValueStoreFactory implements Factory<KeyValueStore> {
+
+    private static final String ENTITY_TYPE = "KeyValueStore";
+    private static final String STORE_PATH = "storePath";
+    private static final String SEGMENT_SIZE_BYTES = "segmentSizeBytes";
+
+    /**
+     * Build a MappedFileStore instance.
+     * <p>
+     * The store keeps its files in a subdirectory of {@code storePath} named after the store. The segment size is
+     * optional.
+     *
+     * @param name  the config dictionary name (normally the apiName)
+     * @param configTable  LuthierConfigNode that points to the value of corresponding table entry in config file
+     * @param resourceFactories  the source for locating dependent objects
+     *
+     * @return  A newly constructed config instance for the name and config provided
+     */
+    @Override
+    public KeyValueStore build(String name, LuthierConfigNode configTable, LuthierIndustrialPark resourceFactories) {
+        LuthierValidationUtils.validateField(configTable.get(STORE_PATH), ENTITY_TYPE, name, STORE_PATH);
+
+        String storePath = configTable.get(STORE_PATH).textValue();
+        long segmentSizeBytes = configTable.has(SEGMENT_SIZE_BYTES)
+                ? configTable.get(SEGMENT_SIZE_BYTES).longValue()
+                : MappedFileStore.DEFAULT_SEGMENT_SIZE_BYTES;
+
+        return new MappedFileStore(Paths.get(storePath, name), segmentSizeBytes);
+    }
+}
@@ -120,6 +120,8 @@ local FIELDSETS = {
             Requires setup of a Redis cluster.
         memory - Backed by an in-memory map data structure.
             Recommended for smallish (<10K values) dimensions
+        mappedFile - Backed by memory mapped files on local disk. Survives
+            restarts without reloading the dimension.
 ]]
 -------------------------------------------------------------------------------
 
@@ -13,13 +13,17 @@ local M = {}
 -- This is just to provide an insight about which class you will actually invoke.
 local FULLY_QUALIFIED_NAME = {
     map = "com.yahoo.bard.webservice.data.dimension.MapStore",
-    redis = "com.yahoo.bard.webservice.data.dimension.RedisStore"
+    redis = "com.yahoo.bard.webservice.data.dimension.RedisStore",
+    mappedFile = "com.yahoo.bard.webservice.data.dimension.MappedFileStore"
 }
 
 --- For RedisStore config
 -- config arguments TO BE DETERMINED
 --- For mapStore config
 -- <currently there is no argument needed>
+--- For mappedFileStore config
+-- storePath: the directory holding the store files, each store uses a subdirectory named after its dimension
+-- segmentSizeBytes: optional, the size of each preallocated store file
 M = {
     redis = {
         type = FULLY_QUALIFIED_NAME.redis,
@@ -28,6 +32,10 @@ M = {
     memory = {
         type = FULLY_QUALIFIED_NAME.map,
     },
+    mappedFile = {
+        type = FULLY_QUALIFIED_NAME.mappedFile,
+        storePath = "/tmp/fili/keyValueStores",
+    },
 }
 
 return M